@@ -0,0 +1,145 @@
+/*
+ * BatchRunner.java
+ *
+ * Runs the independent instances of a batch program (convert.java and the *_experiments.java programs) on a
+ * pool of threads, and passes their results on in the order of the instances.
+ *
+ * An instance minimizes and learns its target in objects of its own (see Minimizer.java and LearnerSession.java),
+ * so the instances of a batch share one JVM. The program reads its input on the calling thread and submits a task
+ * per instance, which returns the result of the instance as a String. A result is passed on to the handler as soon
+ * as the results of all earlier instances are, so the output of a batch doesn't depend on the number of threads,
+ * and is still written while the batch runs. At most twice as many instances as threads are submitted and not yet
+ * done, so the targets of a long batch are never all in memory at once.
+ *
+ * The number of threads is set with -Dworkers=n. With one thread (the default) every instance runs on the calling
+ * thread as it is submitted, exactly as before.
+ *
+ * An instance that draws random numbers seeds its generators with seed(instance), which only depends on the
+ * instance and on -Dseed (if it is set), so a batch run with -Dseed gives the same results on any number of threads.
+ *
+ * A program runs its batch as:
+ *
+ * 	BatchRunner batch = new BatchRunner(numInstances, handler);
+ * 	for every instance i: batch.submit(i, () -> result of i);
+ * 	batch.finish();
+ */
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class BatchRunner {
+
+	// handles the result of an instance, called in the order of the instances
+	public interface ResultHandler {
+		void accept(int instance, String result) throws Exception;
+	}
+
+	private final int numInstances;
+	private final ResultHandler handler;
+	private final int numWorkers;
+	// the threads running the instances, null with one worker
+	private final ExecutorService pool;
+	// one permit for every instance that may be submitted and not yet done
+	private final Semaphore slots;
+	private final long baseSeed;
+
+	// results that arrived before the results of earlier instances, and the next instance to pass on
+	private final String[] pending;
+	private int next;
+	// the first failure of an instance or of the handler
+	private volatile Throwable failure;
+	private final long startTime;
+
+	public BatchRunner(int numInstances, ResultHandler handler) {
+		this.numInstances = numInstances;
+		this.handler = handler;
+		this.numWorkers = Math.max(1, Math.min(Integer.getInteger("workers", 1), numInstances));
+		this.pool = (numWorkers > 1) ? Executors.newFixedThreadPool(numWorkers) : null;
+		this.slots = new Semaphore(2 * numWorkers);
+		this.baseSeed = Long.getLong("seed", System.nanoTime());
+		this.pending = new String[numInstances];
+		this.startTime = System.nanoTime();
+	}
+
+	public int numWorkers() {
+		return numWorkers;
+	}
+
+	// the seed of the random numbers of an instance
+	public long seed(int instance) {
+		return new SplittableRandom(baseSeed + instance * 0x9E3779B97F4A7C15L).nextLong();
+	}
+
+	/*
+	 * Runs an instance, on the calling thread with one worker, and otherwise on the pool once fewer than
+	 * 2*numWorkers instances are running or waiting (instances must be submitted in order). Throws the failure of
+	 * an earlier instance, if there is one.
+	 */
+	public void submit(int instance, Callable<String> task) throws Exception {
+		if (pool == null) {
+			receive(instance, task.call());
+			return;
+		}
+
+		rethrowFailure();
+		slots.acquire();
+		pool.execute(() -> {
+			try {
+				if (failure == null) {
+					receive(instance, task.call());
+				}
+			} catch (Throwable e) {
+				if (failure == null) {
+					failure = e;
+				}
+			} finally {
+				slots.release();
+			}
+		});
+	}
+
+	// stores the result, and passes on every result that is now next in order
+	private synchronized void receive(int instance, String result) throws Exception {
+		pending[instance] = result;
+		while (next < numInstances && pending[next] != null) {
+			handler.accept(next, pending[next]);
+			pending[next] = null;
+			next++;
+		}
+	}
+
+	// throws the failure of an instance if there is one, after stopping the pool so that the JVM can exit
+	private void rethrowFailure() throws Exception {
+		Throwable e = failure;
+		if (e != null && pool != null) {
+			pool.shutdownNow();
+		}
+		if (e instanceof Exception) {
+			throw (Exception) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		}
+	}
+
+	// waits for every instance, throws the failure of an instance if there is one, and displays the number of
+	// instances run per second
+	public void finish() throws Exception {
+		if (pool != null) {
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		rethrowFailure();
+		if (next != numInstances) {
+			throw new Exception("Only " + next + " of " + numInstances + " instances were run.");
+		}
+
+		double seconds = (System.nanoTime() - startTime) / Math.pow(10, 9);
+		double rate = (seconds == 0) ? 0 : numInstances / seconds;
+		System.out.println("Ran " + numInstances + " instances on " + numWorkers + " worker" + (numWorkers == 1 ? "" : "s")
+				+ " at " + (Math.round(100 * rate) / 100.0) + " instances/s.");
+	}
+}
@@ -3,7 +3,7 @@
  * 
  * Oracle that loads a DFA from a .dot file and answers membership queries.
  * Also collects all membership queries and their answers (positive/negative).
- * Uses statistical equivalence queries (following arbitrary.java pattern).
+ * Uses exact equivalence queries on the words up to a maximum length (see EQ).
  * 
  * Usage: 
  *   1. Call loadDFAFromDot(filename) to load the DFA
@@ -30,15 +30,23 @@ public class CharacteristicSetGeneratingOracle {
 	public static Set<String> states = new HashSet<>();
 	public static String[] alphabet = null;
 	
+	// The DFA encoded over the alphabet of M2MA (see Word.java): states are numbered from 0 (the start state),
+	// encodedTransitions[state][letter] is the next state or -1 if the transition is undefined.
+	// Rebuilt whenever the alphabet of M2MA changes.
+	private static int[][] encodedTransitions = null;
+	private static boolean[] encodedAccepting = null;
+	private static Map<String, Integer> encodedFor = null;
+	
+	// Membership oracle of the learner (see MembershipOracle.java).
+	// Words are answered one at a time, in order, so that allQueries and the journal record every batch in order.
+	public static final MembershipOracle ORACLE = CharacteristicSetGeneratingOracle::MQ;
+	
 	// Track all membership queries and their answers
 	public static Map<String, Integer> allQueries = new HashMap<>(); // word -> answer (1 for accept, 0 for reject)
 	public static int totalQueries = 0;
 	
-	// Full logging of MQ calls and EQ counterexamples
-	public static List<String> mqLog = new ArrayList<>(); // Sequence of MQ calls: "word:answer"
-	public static List<String> eqCounterExampleLog = new ArrayList<>(); // Sequence of counterexamples from EQ
-	public static int mqCallNumber = 0;
-	public static int eqCallNumber = 0;
+	// Journal of MQ calls and EQ counterexamples, in the mode set by -DqueryJournal (see QueryJournal.java)
+	public static QueryJournal journal = new QueryJournal("CharacteristicSetGeneratingOracle");
 	
 	// EQ settings
 	public static int EQMaxTestLen = 25;
@@ -62,6 +70,9 @@ public class CharacteristicSetGeneratingOracle {
 		allQueries.clear();
 		totalQueries = 0;
 		startState = null;
+		encodedTransitions = null;
+		encodedAccepting = null;
+		encodedFor = null;
 		
 		BufferedReader reader = new BufferedReader(new FileReader(filename));
 		String line;
@@ -202,6 +213,119 @@ public class CharacteristicSetGeneratingOracle {
 		return acceptingStates.contains(currentState) ? 1 : 0;
 	}
 	
+	/**
+	 * Simulate the encoded DFA on an encoded word without recording the query.
+	 * 
+	 * @param w The word to test
+	 * @return 1 if accepted, 0 if rejected
+	 */
+	private static int simulateDFA(Word w) {
+		encode();
+		
+		int currentState = 0;
+		for (int i = 0; i < w.length(); i++) {
+			currentState = encodedTransitions[currentState][w.letterAt(i)];
+			if (currentState == -1) {
+				// No transition - reject
+				return 0;
+			}
+		}
+		
+		return encodedAccepting[currentState] ? 1 : 0;
+	}
+	
+	/**
+	 * Encodes the DFA over the alphabet of M2MA, unless it is already encoded.
+	 */
+	private static void encode() {
+		if (encodedTransitions != null && encodedFor == M2MA.letterToIndex) {
+			return;
+		}
+		
+		// number the states, starting with the start state
+		Map<String, Integer> stateToIndex = new HashMap<>();
+		stateToIndex.put(startState, 0);
+		for (String state : states) {
+			if (!stateToIndex.containsKey(state)) {
+				stateToIndex.put(state, stateToIndex.size());
+			}
+		}
+		
+		encodedTransitions = new int[stateToIndex.size()][M2MA.alphabet.length];
+		encodedAccepting = new boolean[stateToIndex.size()];
+		for (Map.Entry<String, Integer> entry : stateToIndex.entrySet()) {
+			int from = entry.getValue();
+			Map<String, String> stateTransitions = transitions.get(entry.getKey());
+			for (int a = 0; a < M2MA.alphabet.length; a++) {
+				String toState = (stateTransitions == null) ? null : stateTransitions.get(M2MA.alphabet[a]);
+				encodedTransitions[from][a] = (toState == null) ? -1 : stateToIndex.get(toState);
+			}
+			encodedAccepting[from] = acceptingStates.contains(entry.getKey());
+		}
+		encodedFor = M2MA.letterToIndex;
+	}
+	
+	/**
+	 * Final vector of the DFA as a mod-2-MA over the alphabet of M2MA (see getTransitionMatrices).
+	 */
+	public static GF2Matrix getFinalVector() {
+		encode();
+		GF2Matrix finalVector = new GF2Matrix(1, encodedAccepting.length);
+		for (int state = 0; state < encodedAccepting.length; state++) {
+			if (encodedAccepting[state]) {
+				finalVector.set(0, state);
+			}
+		}
+		return finalVector;
+	}
+	
+	/**
+	 * Transition matrices of the DFA as a mod-2-MA: the state vector of a word is the unit vector of the
+	 * state it reaches (or 0 if it falls off an undefined transition), so the mod-2-MA computes exactly
+	 * the language of the DFA.
+	 */
+	public static GF2Matrix[] getTransitionMatrices() {
+		encode();
+		GF2Matrix[] transitionMatrices = new GF2Matrix[M2MA.alphabet.length];
+		for (int a = 0; a < M2MA.alphabet.length; a++) {
+			transitionMatrices[a] = new GF2Matrix(encodedTransitions.length, encodedTransitions.length);
+			for (int state = 0; state < encodedTransitions.length; state++) {
+				if (encodedTransitions[state][a] != -1) {
+					transitionMatrices[a].set(state, encodedTransitions[state][a]);
+				}
+			}
+		}
+		return transitionMatrices;
+	}
+	
+	/**
+	 * Membership query on an encoded word, as asked by the learning algorithm.
+	 * The query is recorded under its space-separated spelling.
+	 * 
+	 * @param w The word to test
+	 * @return 1 if accepted, 0 if rejected
+	 */
+	public static int MQ(Word w) throws Exception {
+		String word = w.toString();
+		
+		// Check if we've already queried this word
+		Integer known = allQueries.get(word);
+		if (known != null) {
+			// Still log it (cached query)
+			journal.mq(word, known, true);
+			return known;
+		}
+		
+		int result = simulateDFA(w);
+		
+		allQueries.put(word, result);
+		totalQueries++;
+		
+		journal.mq(word, result, false);
+		
+		return result;
+	}
+	
 	/**
 	 * Membership query - answers queries from the learning algorithm.
 	 * Records all queries in allQueries for output to JSON.
@@ -213,8 +337,7 @@ public class CharacteristicSetGeneratingOracle {
 		// Check if we've already queried this word
 		if (allQueries.containsKey(w)) {
 			// Still log it (cached query)
-			mqCallNumber++;
-			mqLog.add(mqCallNumber + ": " + w + " -> " + allQueries.get(w) + " (cached)");
+			journal.mq(w, allQueries.get(w), true);
 			return allQueries.get(w);
 		}
 		
@@ -226,8 +349,7 @@ public class CharacteristicSetGeneratingOracle {
 		totalQueries++;
 		
 		// Log the MQ call
-		mqCallNumber++;
-		mqLog.add(mqCallNumber + ": " + w + " -> " + result);
+		journal.mq(w, result, false);
 		
 		return result;
 	}
@@ -333,100 +455,54 @@ public class CharacteristicSetGeneratingOracle {
 	}
 	
 	/**
-	 * Equivalence query using systematic enumeration (deterministic).
-	 * Tests the hypothesis against all possible test strings up to maxTestLen,
-	 * in lexicographic order.
-	 * Returns false with the LEXICOGRAPHICALLY SMALLEST counterexample found, true if all tests pass.
+	 * Exact equivalence query (deterministic).
+	 * Compares the hypothesis with the DFA, read as a mod-2-MA, on all words up to EQMaxTestLen at once
+	 * (see M2MA.smallestDistinguishingWord), in polynomial time rather than by enumerating |Σ|^len words.
+	 * Returns false with the LEXICOGRAPHICALLY SMALLEST counterexample (shortest first, letters in the order
+	 * of the DFA's sorted alphabet), true if there is no counterexample of length at most EQMaxTestLen.
 	 * 
 	 * Note: Test strings are NOT added to allQueries.
 	 * However, counterexamples ARE immediately recorded since they are important
 	 * for learning and may not be queried via MQ() later.
 	 */
-	public static boolean EQ(HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector, 
-	                          HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices) throws Exception {
-		String lexSmallestCounterExample = null;
-		
-		// Enumerate all possible words up to EQMaxTestLen in lexicographic order
-		for (int len = 0; len <= EQMaxTestLen; len++) {
-			// Generate all words of this length
-			List<String> wordsOfLength = generateAllWords(len);
+	public static boolean EQ(GF2Matrix hypothesisFinalVector, 
+	                          GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		// Letters of M2MA in the order of the DFA's (sorted) alphabet
+		int[] order = new int[alphabet.length];
+		for (int i = 0; i < alphabet.length; i++) {
+			order[i] = M2MA.letterToIndex.get(alphabet[i]);
+		}
+		
+		Word test = M2MA.smallestDistinguishingWord(getFinalVector(), getTransitionMatrices(),
+				hypothesisFinalVector, hypothesisTransitionMatrices, order);
+		
+		if (test != null && test.length() <= EQMaxTestLen) {
+			// Found a counterexample
+			// Use the DFA directly - do NOT record test queries
+			int dfaAnswer = simulateDFA(test);
+			String lexSmallestCounterExample = test.toString();
 			
-			for (String test : wordsOfLength) {
-				// Use simulateDFA directly - do NOT record test queries
-				int dfaAnswer = simulateDFA(test);
-				int hypothesisAnswer = M2MA.MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, test);
-				
-				if (dfaAnswer != hypothesisAnswer) {
-					// Found a counterexample
-					// Since we iterate in lexicographic order, first found is lexicographically smallest
-					lexSmallestCounterExample = test;
-					
-					// Record counterexample in allQueries (important for learning)
-					// Check if not already recorded to avoid double-counting
-					if (!allQueries.containsKey(lexSmallestCounterExample)) {
-						allQueries.put(lexSmallestCounterExample, dfaAnswer);
-						totalQueries++;
-					}
-					
-					M2MA.counterExample = lexSmallestCounterExample;
-					
-					// Log the counterexample
-					eqCallNumber++;
-					eqCounterExampleLog.add(eqCallNumber + ": " + lexSmallestCounterExample);
-					
-					return false;
-				}
+			// Record counterexample in allQueries (important for learning)
+			// Check if not already recorded to avoid double-counting
+			if (!allQueries.containsKey(lexSmallestCounterExample)) {
+				allQueries.put(lexSmallestCounterExample, dfaAnswer);
+				totalQueries++;
 			}
+			
+			M2MA.counterExample = test;
+			
+			// Log the counterexample
+			journal.eq(lexSmallestCounterExample);
+			
+			return false;
 		}
 		
 		// All tests passed - log that no counterexample was found
-		eqCallNumber++;
-		eqCounterExampleLog.add(eqCallNumber + ": (no counterexample - hypothesis correct)");
+		journal.eq(null);
 		
 		return true;
 	}
 	
-	/**
-	 * Generate all possible words of a given length in lexicographic order.
-	 * Words are space-separated (e.g., "a b c").
-	 * 
-	 * @param length The length of words to generate
-	 * @return List of all words of given length, in lexicographic order
-	 */
-	private static List<String> generateAllWords(int length) {
-		List<String> words = new ArrayList<>();
-		
-		if (length == 0) {
-			words.add("");
-			return words;
-		}
-		
-		// Generate all combinations recursively
-		generateWordsRecursive("", length, words);
-		
-		return words;
-	}
-	
-	/**
-	 * Recursively generate all words of given length.
-	 * 
-	 * @param prefix Current prefix
-	 * @param remaining Remaining length
-	 * @param words List to add words to
-	 */
-	private static void generateWordsRecursive(String prefix, int remaining, List<String> words) {
-		if (remaining == 0) {
-			words.add(prefix.trim());
-			return;
-		}
-		
-		// Try each symbol in alphabet order (for lexicographic ordering)
-		for (String symbol : alphabet) {
-			String newPrefix = prefix.isEmpty() ? symbol : prefix + " " + symbol;
-			generateWordsRecursive(newPrefix, remaining - 1, words);
-		}
-	}
-	
 	/**
 	 * Set EQ parameters.
 	 * Should be called before learning starts.
@@ -450,10 +526,7 @@ public class CharacteristicSetGeneratingOracle {
 	public static void clearQueries() {
 		allQueries.clear();
 		totalQueries = 0;
-		mqLog.clear();
-		eqCounterExampleLog.clear();
-		mqCallNumber = 0;
-		eqCallNumber = 0;
+		journal.clear();
 	}
 }
 
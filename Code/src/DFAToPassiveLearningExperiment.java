@@ -60,7 +60,7 @@ public class DFAToPassiveLearningExperiment {
         for (int i = 0; i < M2MA.alphabet.length; i++) {
             M2MA.letterToIndex.put(M2MA.alphabet[i], i);
         }
-        M2MA.Hankel = new HashMap<>();
+        M2MA.Hankel = new HankelStore(M2MA.alphabet.length);
         M2MA.startTime = System.nanoTime();
         
         // Run learning
@@ -69,8 +69,8 @@ public class DFAToPassiveLearningExperiment {
         M2MA.learn();
         
         // Save Phase 1 results
-        HashMap<Integer, ArrayList<Integer>> phase1FinalVector = M2MA.resultFinalVector;
-        HashMap<Integer, ArrayList<Integer>>[] phase1TransitionMatrices = M2MA.resultTransitionMatrices;
+        GF2Matrix phase1FinalVector = M2MA.resultFinalVector;
+        GF2Matrix[] phase1TransitionMatrices = M2MA.resultTransitionMatrices;
         int phase1Dimension = M2MA.learnedSize;
         
         System.out.println("\nPhase 1 Results:");
@@ -144,7 +144,7 @@ public class DFAToPassiveLearningExperiment {
         for (int i = 0; i < alphabet.length; i++) {
             M2MA.letterToIndex.put(alphabet[i], i);
         }
-        M2MA.Hankel = new HashMap<>();
+        M2MA.Hankel = new HankelStore(M2MA.alphabet.length);
         M2MA.startTime = System.nanoTime();
         
         // Run learning again
@@ -153,8 +153,8 @@ public class DFAToPassiveLearningExperiment {
         M2MA.learn();
         
         // Save Phase 2 results
-        HashMap<Integer, ArrayList<Integer>> phase2FinalVector = M2MA.resultFinalVector;
-        HashMap<Integer, ArrayList<Integer>>[] phase2TransitionMatrices = M2MA.resultTransitionMatrices;
+        GF2Matrix phase2FinalVector = M2MA.resultFinalVector;
+        GF2Matrix[] phase2TransitionMatrices = M2MA.resultTransitionMatrices;
         int phase2Dimension = M2MA.learnedSize;
         
         System.out.println("\nPhase 2 Results:");
@@ -204,84 +204,151 @@ public class DFAToPassiveLearningExperiment {
     
     /**
      * Compare MQ and EQ logs between Phase 1 and Phase 2.
+     * The journals of the two oracles are streamed side by side (see QueryJournal.java), so they are
+     * compared in full if neither dropped queries (always with -DqueryJournal=file); a ring that
+     * overflowed only keeps the last calls, which wouldn't line up, so they are listed but not compared.
      */
-    public static void compareLogs() {
+    public static void compareLogs() throws IOException {
+        QueryJournal journal1 = CharacteristicSetGeneratingOracle.journal;
+        QueryJournal journal2 = PassiveLearningOracle.journal;
+        
         System.out.println("\nMQ Call Comparison:");
         System.out.println("-------------------");
-        System.out.println("Phase 1 (CharacteristicSetGeneratingOracle): " + CharacteristicSetGeneratingOracle.mqLog.size() + " MQ calls");
-        System.out.println("Phase 2 (PassiveLearningOracle): " + PassiveLearningOracle.mqLog.size() + " MQ calls");
-        
-        // Show first 20 MQ calls from each phase
-        System.out.println("\nFirst 20 MQ calls from Phase 1:");
-        for (int i = 0; i < Math.min(20, CharacteristicSetGeneratingOracle.mqLog.size()); i++) {
-            System.out.println("  " + CharacteristicSetGeneratingOracle.mqLog.get(i));
+        System.out.println("Phase 1 (CharacteristicSetGeneratingOracle): " + journal1.numMQs() + " MQ calls");
+        System.out.println("Phase 2 (PassiveLearningOracle): " + journal2.numMQs() + " MQ calls");
+        if (journal1.mode() == QueryJournal.Mode.OFF || journal2.mode() == QueryJournal.Mode.OFF) {
+            System.out.println("\nQuery journal is off - nothing to compare");
+            return;
         }
         
-        System.out.println("\nFirst 20 MQ calls from Phase 2:");
-        for (int i = 0; i < Math.min(20, PassiveLearningOracle.mqLog.size()); i++) {
-            System.out.println("  " + PassiveLearningOracle.mqLog.get(i));
+        // Show first 20 MQ calls kept from each phase
+        System.out.println("\nFirst 20 MQ calls" + kept(journal1, QueryJournal.MQ) + " from Phase 1:");
+        printFirst(journal1, 20);
+        
+        System.out.println("\nFirst 20 MQ calls" + kept(journal2, QueryJournal.MQ) + " from Phase 2:");
+        printFirst(journal2, 20);
+        
+        // Find the first MQ call that differs (only if neither journal dropped calls, or the calls kept wouldn't line up)
+        if (isTruncated(journal1, journal2, QueryJournal.MQ)) {
+            System.out.println("\n⚠️ MQ journal truncated - the MQ calls aren't compared");
+            System.out.println("    (run with -DqueryJournal=file, or a ring of at least " + Math.max(journal1.numMQs(), journal2.numMQs()) + " calls)");
+        } else {
+            try (QueryJournal.Reader mqs1 = journal1.read(QueryJournal.MQ);
+                 QueryJournal.Reader mqs2 = journal2.read(QueryJournal.MQ)) {
+                int compared = 0;
+                boolean differ = false;
+                while (mqs1.hasNext() && mqs2.hasNext() && !differ) {
+                    QueryJournal.Entry mq1 = mqs1.next();
+                    QueryJournal.Entry mq2 = mqs2.next();
+                    if (mq1.sameQuery(mq2)) {
+                        compared++;
+                    } else {
+                        System.out.println("\nFirst different MQ call:");
+                        System.out.println("    Phase 1: " + mq1);
+                        System.out.println("    Phase 2: " + mq2);
+                        differ = true;
+                    }
+                }
+                if (!differ && !mqs1.hasNext() && !mqs2.hasNext()) {
+                    System.out.println("\n✓ All " + compared + " MQ calls kept match");
+                } else if (!differ) {
+                    System.out.println("\n✓ The first " + compared + " MQ calls kept match (Phase " + (mqs1.hasNext() ? 1 : 2) + " has more)");
+                }
+            }
         }
         
         System.out.println("\n\nEQ Counterexample Comparison:");
         System.out.println("------------------------------");
-        System.out.println("Phase 1 (CharacteristicSetGeneratingOracle): " + CharacteristicSetGeneratingOracle.eqCounterExampleLog.size() + " EQ calls");
-        System.out.println("Phase 2 (PassiveLearningOracle): " + PassiveLearningOracle.eqCounterExampleLog.size() + " EQ calls");
+        System.out.println("Phase 1 (CharacteristicSetGeneratingOracle): " + journal1.numEQs() + " EQ calls");
+        System.out.println("Phase 2 (PassiveLearningOracle): " + journal2.numEQs() + " EQ calls");
         
-        // Show all counterexamples
-        System.out.println("\nAll counterexamples from Phase 1:");
-        for (String entry : CharacteristicSetGeneratingOracle.eqCounterExampleLog) {
-            System.out.println("  " + entry);
-        }
+        // Show all counterexamples kept
+        System.out.println("\nAll counterexamples" + kept(journal1, QueryJournal.EQ) + " from Phase 1:");
+        printAll(journal1);
         
-        System.out.println("\nAll counterexamples from Phase 2:");
-        for (String entry : PassiveLearningOracle.eqCounterExampleLog) {
-            System.out.println("  " + entry);
-        }
+        System.out.println("\nAll counterexamples" + kept(journal2, QueryJournal.EQ) + " from Phase 2:");
+        printAll(journal2);
         
         // Compare counterexamples
         System.out.println("\n\nCounterexample Sequence Comparison:");
         System.out.println("-----------------------------------");
-        int minSize = Math.min(CharacteristicSetGeneratingOracle.eqCounterExampleLog.size(), 
-                              PassiveLearningOracle.eqCounterExampleLog.size());
-        
+        int minSize = 0;
         boolean allMatch = true;
-        for (int i = 0; i < minSize; i++) {
-            String phase1 = CharacteristicSetGeneratingOracle.eqCounterExampleLog.get(i);
-            String phase2 = PassiveLearningOracle.eqCounterExampleLog.get(i);
-            
-            // Extract counterexample word (everything after ": ")
-            String ce1 = phase1.contains(": ") ? phase1.substring(phase1.indexOf(": ") + 2) : phase1;
-            String ce2 = phase2.contains(": ") ? phase2.substring(phase2.indexOf(": ") + 2) : phase2;
-            
-            if (ce1.equals(ce2)) {
-                System.out.println("  EQ #" + (i+1) + ": ✓ Match - " + ce1);
-            } else {
-                System.out.println("  EQ #" + (i+1) + ": ✗ DIFFERENT");
-                System.out.println("    Phase 1: " + ce1);
-                System.out.println("    Phase 2: " + ce2);
-                allMatch = false;
+        if (isTruncated(journal1, journal2, QueryJournal.EQ)) {
+            System.out.println("\n  ⚠️ EQ journal truncated - the counterexamples aren't compared");
+            System.out.println("    (run with -DqueryJournal=file, or a ring of at least " + Math.max(journal1.numEQs(), journal2.numEQs()) + " calls)");
+            allMatch = false;
+        } else {
+            try (QueryJournal.Reader eqs1 = journal1.read(QueryJournal.EQ);
+                 QueryJournal.Reader eqs2 = journal2.read(QueryJournal.EQ)) {
+                while (eqs1.hasNext() && eqs2.hasNext()) {
+                    QueryJournal.Entry eq1 = eqs1.next();
+                    QueryJournal.Entry eq2 = eqs2.next();
+                    minSize++;
+                    
+                    String ce1 = (eq1.word == null) ? "(no counterexample - hypothesis correct)" : eq1.word;
+                    String ce2 = (eq2.word == null) ? "(no counterexample - hypothesis correct)" : eq2.word;
+                    
+                    if (eq1.sameQuery(eq2)) {
+                        System.out.println("  EQ #" + minSize + ": ✓ Match - " + ce1);
+                    } else {
+                        System.out.println("  EQ #" + minSize + ": ✗ DIFFERENT");
+                        System.out.println("    Phase 1: " + ce1);
+                        System.out.println("    Phase 2: " + ce2);
+                        allMatch = false;
+                    }
+                }
             }
         }
         
-        if (CharacteristicSetGeneratingOracle.eqCounterExampleLog.size() != PassiveLearningOracle.eqCounterExampleLog.size()) {
+        if (journal1.numEQs() != journal2.numEQs()) {
             System.out.println("\n  ⚠️ Different number of EQ calls!");
-            System.out.println("    Phase 1: " + CharacteristicSetGeneratingOracle.eqCounterExampleLog.size());
-            System.out.println("    Phase 2: " + PassiveLearningOracle.eqCounterExampleLog.size());
+            System.out.println("    Phase 1: " + journal1.numEQs());
+            System.out.println("    Phase 2: " + journal2.numEQs());
             allMatch = false;
         }
         
         if (allMatch && minSize > 0) {
             System.out.println("\n✓ All counterexamples match!");
-        } else if (minSize == 0) {
+        } else if (minSize == 0 && !isTruncated(journal1, journal2, QueryJournal.EQ)) {
             System.out.println("\n⚠️ No counterexamples found in either phase");
         }
     }
     
+    // Whether either journal dropped queries of the given kind
+    private static boolean isTruncated(QueryJournal journal1, QueryJournal journal2, byte kind) {
+        return journal1.numDropped(kind) > 0 || journal2.numDropped(kind) > 0;
+    }
+    
+    // " kept (the first n dropped)" if a journal dropped queries of the given kind, "" otherwise
+    private static String kept(QueryJournal journal, byte kind) {
+        int dropped = journal.numDropped(kind);
+        return (dropped == 0) ? "" : " kept (the first " + dropped + " dropped)";
+    }
+    
+    // Print the first n MQ calls kept in a journal
+    private static void printFirst(QueryJournal journal, int n) throws IOException {
+        try (QueryJournal.Reader mqs = journal.read(QueryJournal.MQ)) {
+            for (int i = 0; i < n && mqs.hasNext(); i++) {
+                System.out.println("  " + mqs.next());
+            }
+        }
+    }
+    
+    // Print all EQ counterexamples kept in a journal
+    private static void printAll(QueryJournal journal) throws IOException {
+        try (QueryJournal.Reader eqs = journal.read(QueryJournal.EQ)) {
+            while (eqs.hasNext()) {
+                System.out.println("  " + eqs.next());
+            }
+        }
+    }
+    
     /**
      * Verify Phase 2 M2MA against all queries from Phase 1.
      */
-    public static void verifyAgainstQueries(HashMap<Integer, ArrayList<Integer>> finalVector,
-                                           HashMap<Integer, ArrayList<Integer>>[] transitionMatrices) throws Exception {
+    public static void verifyAgainstQueries(GF2Matrix finalVector,
+                                           GF2Matrix[] transitionMatrices) throws Exception {
         int correct = 0;
         int wrong = 0;
         
@@ -311,8 +378,8 @@ public class DFAToPassiveLearningExperiment {
     /**
      * Verify Phase 2 M2MA against original DFA.
      */
-    public static void verifyAgainstDFA(HashMap<Integer, ArrayList<Integer>> finalVector,
-                                        HashMap<Integer, ArrayList<Integer>>[] transitionMatrices,
+    public static void verifyAgainstDFA(GF2Matrix finalVector,
+                                        GF2Matrix[] transitionMatrices,
                                         String dotFile) throws Exception {
         // Reload DFA for verification
         CharacteristicSetGeneratingOracle.loadDFAFromDot(dotFile);
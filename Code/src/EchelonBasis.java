@@ -0,0 +1,135 @@
+/*
+ * EchelonBasis.java
+ *
+ * An incrementally built basis of packed GF(2) vectors (see GF2Matrix.java), kept in echelon form.
+ *
+ * Every inserted vector is first reduced by the rows already in the basis, and is stored with its
+ * pivot, the lowest index where the reduced vector has a 1. A later row always has 0's at the pivots
+ * of the earlier rows, so a vector is reduced by XORing in, in insertion order, every row whose pivot
+ * is still set in it. Deciding whether a vector is independent therefore takes O(rank * n/64) time.
+ *
+ * If combinations are tracked, every row also stores which of the inserted vectors sum to it, so that
+ * a dependent vector can be expressed as a combination of the inserted vectors.
+ */
+
+import java.util.Arrays;
+
+public class EchelonBasis {
+
+	// length of the vectors
+	private final int dimension;
+	private final int numWords;
+	private final boolean trackCombinations;
+
+	private int rank;
+	// reduced rows, in insertion order
+	private long[][] rows;
+	// pivot table: pivots[i] is the pivot of rows[i]
+	private int[] pivots;
+	// combinations[i] has a 1 at index j iff the j-th inserted vector is a summand of rows[i]
+	private long[][] combinations;
+
+	public EchelonBasis(int dimension) {
+		this(dimension, false);
+	}
+
+	public EchelonBasis(int dimension, boolean trackCombinations) {
+		this.dimension = dimension;
+		this.numWords = GF2Matrix.words(dimension);
+		this.trackCombinations = trackCombinations;
+
+		int capacity = Math.max(1, Math.min(dimension, 16));
+		rows = new long[capacity][];
+		pivots = new int[capacity];
+		if (trackCombinations) {
+			combinations = new long[capacity][];
+		}
+	}
+
+	public int rank() {
+		return rank;
+	}
+
+	public int dimension() {
+		return dimension;
+	}
+
+	// returns the pivot of the i-th inserted vector
+	public int pivot(int i) {
+		return pivots[i];
+	}
+
+	// returns true if vector is not in the span of the basis
+	public boolean isIndependent(long[] vector) {
+		return !GF2Matrix.isZero(reduce(vector, null));
+	}
+
+	/*
+	 * Inserts vector into the basis if it is not in the span of the basis.
+	 * Returns true if vector was linearly independent (and was inserted), false otherwise.
+	 */
+	public boolean add(long[] vector) {
+		long[] combination = trackCombinations ? new long[GF2Matrix.words(dimension)] : null;
+		long[] reduced = reduce(vector, combination);
+
+		int pivot = GF2Matrix.nextSetBit(reduced, 0);
+		if (pivot == -1 || pivot >= dimension) {
+			return false;
+		}
+
+		if (rank == rows.length) {
+			int capacity = Math.min(2 * rows.length, Math.max(dimension, 1));
+			rows = Arrays.copyOf(rows, capacity);
+			pivots = Arrays.copyOf(pivots, capacity);
+			if (trackCombinations) {
+				combinations = Arrays.copyOf(combinations, capacity);
+			}
+		}
+
+		rows[rank] = reduced;
+		pivots[rank] = pivot;
+		if (trackCombinations) {
+			// the new row is the new vector plus the rows used to reduce it
+			GF2Matrix.setBit(combination, rank);
+			combinations[rank] = combination;
+		}
+		rank++;
+		return true;
+	}
+
+	/*
+	 * Returns the coefficients c (a packed vector over the inserted vectors, in insertion order) such
+	 * that vector = sum(c_j * (j-th inserted vector)), or null if vector is not in the span of the basis.
+	 * Requires the basis to track combinations.
+	 */
+	public long[] combination(long[] vector) {
+		if (!trackCombinations) {
+			throw new IllegalStateException("The basis does not track combinations.");
+		}
+
+		long[] combination = new long[GF2Matrix.words(dimension)];
+		if (!GF2Matrix.isZero(reduce(vector, combination))) {
+			return null;
+		}
+		return combination;
+	}
+
+	// returns a reduced copy of vector, adding to combination (if not null) the combinations of the rows used
+	private long[] reduce(long[] vector, long[] combination) {
+		long[] reduced = Arrays.copyOf(vector, numWords);
+		if (numWords > 0 && (dimension & 63) != 0) {
+			// ignore any bits past the end of the vector
+			reduced[numWords - 1] &= (1L << dimension) - 1;
+		}
+
+		for (int i=0; i<rank; i++) {
+			if (GF2Matrix.getBit(reduced, pivots[i]) == 1) {
+				GF2Matrix.xorInto(reduced, rows[i]);
+				if (combination != null) {
+					GF2Matrix.xorInto(combination, combinations[i]);
+				}
+			}
+		}
+		return reduced;
+	}
+}
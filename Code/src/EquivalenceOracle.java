@@ -0,0 +1,13 @@
+/*
+ * EquivalenceOracle.java
+ *
+ * A target function that answers equivalence queries: given a hypothesis mod-2-MA (its final vector and
+ * transition matrices), it returns a word on which the hypothesis and the target differ, or null if they are
+ * equivalent. See LearnerSession.java, which asks one equivalence query per round of the learning algorithm.
+ */
+
+public interface EquivalenceOracle {
+
+	// returns a counter-example to the hypothesis, or null if it is equivalent to the target
+	Word counterExample(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) throws Exception;
+}
@@ -36,91 +36,14 @@ public class ExampleLoader {
 	 * }
 	 */
 	public static String[] loadFromJSON(String filename) throws Exception {
-		StringBuilder content = new StringBuilder();
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			content.append(line).append("\n");
-		}
-		reader.close();
-		
-		String json = content.toString();
-		
-		// Parse alphabet
-		List<String> alphabetList = new ArrayList<>();
-		int alphaStart = json.indexOf("\"alphabet\"");
-		if (alphaStart != -1) {
-			int arrayStart = json.indexOf("[", alphaStart);
-			int arrayEnd = json.indexOf("]", arrayStart);
-			String alphaArray = json.substring(arrayStart + 1, arrayEnd);
-			String[] parts = alphaArray.split(",");
-			for (String part : parts) {
-				String letter = part.trim().replace("\"", "").trim();
-				if (!letter.isEmpty()) {
-					alphabetList.add(letter);
-				}
-			}
-		}
-		
-		// Parse positive samples
 		positiveWords.clear();
-		int posStart = json.indexOf("\"Positive sample\"");
-		if (posStart != -1) {
-			int arrayStart = json.indexOf("[", posStart);
-			int arrayEnd = findMatchingBracket(json, arrayStart);
-			parseWordArray(json.substring(arrayStart + 1, arrayEnd), positiveWords);
-		}
-		
-		// Parse negative samples
 		negativeWords.clear();
-		int negStart = json.indexOf("\"Negative sample\"");
-		if (negStart != -1) {
-			int arrayStart = json.indexOf("[", negStart);
-			int arrayEnd = findMatchingBracket(json, arrayStart);
-			parseWordArray(json.substring(arrayStart + 1, arrayEnd), negativeWords);
-		}
+		String[] alphabet = JSONSampleReader.read(filename, positiveWords::add, negativeWords::add);
 		
 		System.out.println("Loaded " + positiveWords.size() + " positive and " + 
 		                   negativeWords.size() + " negative examples");
 		
-		return alphabetList.toArray(new String[0]);
-	}
-	
-	private static int findMatchingBracket(String s, int start) {
-		int depth = 0;
-		for (int i = start; i < s.length(); i++) {
-			if (s.charAt(i) == '[') depth++;
-			else if (s.charAt(i) == ']') {
-				depth--;
-				if (depth == 0) return i;
-			}
-		}
-		return s.length() - 1;
-	}
-	
-	private static void parseWordArray(String arrayContent, Set<String> target) {
-		StringBuilder current = new StringBuilder();
-		boolean inQuote = false;
-		boolean foundQuote = false;
-		
-		for (int i = 0; i < arrayContent.length(); i++) {
-			char c = arrayContent.charAt(i);
-			if (c == '"') {
-				inQuote = !inQuote;
-				foundQuote = true;
-			} else if (c == ',' && !inQuote) {
-				if (foundQuote) {
-					target.add(current.toString());
-				}
-				current = new StringBuilder();
-				foundQuote = false;
-			} else if (inQuote) {
-				current.append(c);
-			}
-		}
-		if (foundQuote) {
-			target.add(current.toString());
-		}
+		return alphabet;
 	}
 }
 
@@ -17,6 +17,7 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class FromExamples {
     
@@ -35,17 +36,28 @@ public class FromExamples {
     public static Set<String> prefixSet = new HashSet<>();
     public static Set<String> suffixSet = new HashSet<>();
     
-    // Hankel matrix: hankel[prefixIndex][suffixIndex] = 0, 1, or -1 (unknown)
-    public static int[][] hankel;
+    // Hankel matrix: hankel.get(prefixIndex, suffixIndex) = 0, 1, or -1 (unknown)
+    public static HankelTable hankel;
+    public static Map<String, Integer> prefixRows = new HashMap<>(); // prefix -> prefixIndex
     
-    // Basis rows (linearly independent)
+    // The labels as a trie (see HankelStore.java), the prefixes as words over the alphabet (null if they
+    // aren't), and the suffixes as a trie whose nodes hold their column (-1 if none), so that a Hankel row
+    // is filled in one walk of both tries from the node of its prefix
+    private static HankelStore labelTrie;
+    private static List<Word> prefixWords = new ArrayList<>();
+    private static int[] suffixChildren;
+    private static int[] suffixCols;
+    private static List<Integer> irregularSuffixes = new ArrayList<>(); // columns not over the alphabet
+    
+    // Basis rows (linearly independent), packed (see GF2Matrix.java)
     public static List<Integer> basisRowIndices = new ArrayList<>();
-    public static List<int[]> basisRows = new ArrayList<>();
+    public static List<long[]> basisRows = new ArrayList<>();
     
     // Result M2MA
     public static int dimension;
-    public static int[] finalVector;
-    public static int[][][] transitionMatrices; // [letterIndex][row][col]
+    public static GF2Matrix finalVector;
+    public static GF2Matrix[] transitionMatrices; // [letterIndex]
+    public static M2MAEvaluator evaluator;
     
     // Verbose mode
     public static boolean verbose = false;
@@ -95,9 +107,9 @@ public class FromExamples {
         // Step 3: Build Hankel matrix
         System.out.println("Step 3: Building Hankel matrix");
         buildHankelMatrix();
-        int unknownCount = countUnknown();
+        long unknownCount = hankel.countUnknown();
         System.out.println("  Matrix size: " + prefixes.size() + " x " + suffixes.size());
-        System.out.println("  Known entries: " + (prefixes.size() * suffixes.size() - unknownCount));
+        System.out.println("  Known entries: " + ((long) prefixes.size() * suffixes.size() - unknownCount));
         System.out.println("  Unknown entries: " + unknownCount);
         if (verbose) {
             printHankelMatrix();
@@ -149,96 +161,15 @@ public class FromExamples {
      * }
      */
     public static void loadExamplesFromJSON(String filename) throws Exception {
-        StringBuilder content = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            content.append(line).append("\n");
-        }
-        reader.close();
-        
-        String json = content.toString();
-        
-        // Parse alphabet from metadata
-        List<String> alphabetList = new ArrayList<>();
-        int alphaStart = json.indexOf("\"alphabet\"");
-        if (alphaStart != -1) {
-            int arrayStart = json.indexOf("[", alphaStart);
-            int arrayEnd = json.indexOf("]", arrayStart);
-            String alphaArray = json.substring(arrayStart + 1, arrayEnd);
-            String[] parts = alphaArray.split(",");
-            for (String part : parts) {
-                String letter = part.trim().replace("\"", "").trim();
-                if (!letter.isEmpty()) {
-                    alphabetList.add(letter);
-                }
-            }
-        }
-        alphabet = alphabetList.toArray(new String[0]);
+        alphabet = JSONSampleReader.read(filename, positiveWords::add, negativeWords::add);
         for (int i = 0; i < alphabet.length; i++) {
             letterToIndex.put(alphabet[i], i);
         }
         
-        // Parse positive samples
-        int posStart = json.indexOf("\"Positive sample\"");
-        if (posStart != -1) {
-            int arrayStart = json.indexOf("[", posStart);
-            int arrayEnd = findMatchingBracket(json, arrayStart);
-            parseWordArray(json.substring(arrayStart + 1, arrayEnd), positiveWords);
-        }
-        
-        // Parse negative samples
-        int negStart = json.indexOf("\"Negative sample\"");
-        if (negStart != -1) {
-            int arrayStart = json.indexOf("[", negStart);
-            int arrayEnd = findMatchingBracket(json, arrayStart);
-            parseWordArray(json.substring(arrayStart + 1, arrayEnd), negativeWords);
-        }
-        
         allWords.addAll(positiveWords);
         allWords.addAll(negativeWords);
     }
     
-    private static int findMatchingBracket(String s, int start) {
-        int depth = 0;
-        for (int i = start; i < s.length(); i++) {
-            if (s.charAt(i) == '[') depth++;
-            else if (s.charAt(i) == ']') {
-                depth--;
-                if (depth == 0) return i;
-            }
-        }
-        return s.length() - 1;
-    }
-    
-    private static void parseWordArray(String arrayContent, Set<String> target) {
-        // Split by comma, but handle quoted strings
-        StringBuilder current = new StringBuilder();
-        boolean inQuote = false;
-        boolean foundQuote = false; // Track if we've seen any quote for this entry
-        
-        for (int i = 0; i < arrayContent.length(); i++) {
-            char c = arrayContent.charAt(i);
-            if (c == '"') {
-                inQuote = !inQuote;
-                foundQuote = true;
-            } else if (c == ',' && !inQuote) {
-                // Add the word if we found a quoted string (even if empty)
-                if (foundQuote) {
-                    target.add(current.toString());
-                }
-                current = new StringBuilder();
-                foundQuote = false;
-            } else if (inQuote) {
-                current.append(c);
-            }
-        }
-        // Don't forget the last word
-        if (foundQuote) {
-            target.add(current.toString());
-        }
-    }
-    
     /**
      * Extract all prefixes and suffixes from the example words.
      * Automatically detects maximum length with full coverage and restricts suffixes.
@@ -357,16 +288,128 @@ public class FromExamples {
     
     /**
      * Build the Hankel matrix from known labels.
+     * The rows are independent, so they are filled in parallel.
      */
     public static void buildHankelMatrix() {
-        int numPrefixes = prefixes.size();
-        int numSuffixes = suffixes.size();
-        hankel = new int[numPrefixes][numSuffixes];
-        
-        for (int i = 0; i < numPrefixes; i++) {
-            for (int j = 0; j < numSuffixes; j++) {
-                String word = concatenate(prefixes.get(i), suffixes.get(j));
-                hankel[i][j] = lookup(word);
+        indexLabelsAndSuffixes();
+        
+        hankel = new HankelTable(suffixes.size());
+        prefixRows.clear();
+        prefixWords.clear();
+        for (String prefix : prefixes) {
+            prefixRows.put(prefix, hankel.addRow());
+            prefixWords.add(encode(prefix));
+        }
+        
+        IntStream.range(0, prefixes.size()).parallel().forEach(FromExamples::fillRow);
+    }
+    
+    /**
+     * Add a prefix after the Hankel matrix is built, and fill its row.
+     * @return the index of the new prefix
+     */
+    public static int addPrefix(String prefix) {
+        prefixes.add(prefix);
+        prefixSet.add(prefix);
+        int prefixIdx = hankel.addRow();
+        prefixRows.put(prefix, prefixIdx);
+        prefixWords.add(encode(prefix));
+        fillRow(prefixIdx);
+        return prefixIdx;
+    }
+    
+    /**
+     * Build the trie of the labels and the trie of the suffixes.
+     */
+    private static void indexLabelsAndSuffixes() {
+        // Negative labels first, as a word in both samples is positive (see lookup)
+        labelTrie = new HankelStore(alphabet.length);
+        for (String word : negativeWords) {
+            Word w = encode(word);
+            if (w != null) labelTrie.put(w, 0);
+        }
+        for (String word : positiveWords) {
+            Word w = encode(word);
+            if (w != null) labelTrie.put(w, 1);
+        }
+        
+        int numLetters = alphabet.length;
+        int numNodes = 1;
+        suffixChildren = new int[64 * Math.max(numLetters, 1)];
+        suffixCols = new int[64];
+        Arrays.fill(suffixCols, -1);
+        irregularSuffixes.clear();
+        for (int j = 0; j < suffixes.size(); j++) {
+            Word w = encode(suffixes.get(j));
+            if (w == null) {
+                irregularSuffixes.add(j);
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < w.length(); i++) {
+                int slot = node * numLetters + w.letterAt(i);
+                if (suffixChildren[slot] == 0) {
+                    if (numNodes == suffixCols.length) {
+                        suffixChildren = Arrays.copyOf(suffixChildren, 2 * suffixChildren.length);
+                        suffixCols = Arrays.copyOf(suffixCols, 2 * numNodes);
+                        Arrays.fill(suffixCols, numNodes, 2 * numNodes, -1);
+                    }
+                    suffixChildren[slot] = numNodes++;
+                }
+                node = suffixChildren[slot];
+            }
+            suffixCols[node] = j;
+        }
+    }
+    
+    /**
+     * Encode a word over the alphabet, or return null if it isn't spelled exactly as one
+     * (so that it can't be confused with another spelling of the same letters).
+     */
+    private static Word encode(String word) {
+        Word w = Word.tryParse(word, letterToIndex);
+        return (w != null && w.toString(alphabet, " ").equals(word)) ? w : null;
+    }
+    
+    /**
+     * Fill a row of the Hankel matrix, as lookup(concatenate(prefix, suffix)) for every suffix.
+     */
+    private static void fillRow(int prefixIdx) {
+        String prefix = prefixes.get(prefixIdx);
+        Word w = prefixWords.get(prefixIdx);
+        if (w == null) {
+            for (int j = 0; j < suffixes.size(); j++) {
+                hankel.set(prefixIdx, j, lookup(concatenate(prefix, suffixes.get(j))));
+            }
+        } else {
+            fillFrom(prefixIdx, labelTrie.nodeOf(w), 0);
+            for (int j : irregularSuffixes) {
+                hankel.set(prefixIdx, j, lookup(concatenate(prefix, suffixes.get(j))));
+            }
+        }
+        
+        if (closedWorld) {
+            hankel.setAllKnown(prefixIdx); // Assume unknown words are negative
+        } else {
+            hankel.compact(prefixIdx);
+        }
+    }
+    
+    /**
+     * Fill the entries of a row for the suffixes below suffixNode in the suffix trie,
+     * labelNode being the node of the prefix followed by the suffix of suffixNode in the label trie.
+     */
+    private static void fillFrom(int prefixIdx, int labelNode, int suffixNode) {
+        if (labelNode == -1) return; // no labels below: unknown
+        
+        int col = suffixCols[suffixNode];
+        if (col != -1) {
+            hankel.set(prefixIdx, col, labelTrie.answerAt(labelNode));
+        }
+        for (int a = 0; a < alphabet.length; a++) {
+            int child = suffixChildren[suffixNode * alphabet.length + a];
+            if (child != 0) {
+                fillFrom(prefixIdx, labelTrie.childOf(labelNode, a), child);
             }
         }
     }
@@ -393,6 +436,7 @@ public class FromExamples {
     
     // Pivot tracking for basis
     public static int[] pivotCol;
+    private static List<Integer> basisPivots = new ArrayList<>(); // basis row -> c with pivotCol[c] == it, or -1
     
     /**
      * Find linearly independent rows to form the basis.
@@ -401,6 +445,7 @@ public class FromExamples {
     public static void findBasis() {
         basisRowIndices.clear();
         basisRows.clear();
+        basisPivots.clear();
         
         // For tracking which columns have pivots
         pivotCol = new int[suffixes.size()]; // -1 means no pivot
@@ -416,7 +461,8 @@ public class FromExamples {
         if (dimension == 0) {
             // Add empty row as trivial basis
             basisRowIndices.add(0);
-            basisRows.add(new int[suffixes.size()]);
+            basisRows.add(new long[GF2Matrix.words(suffixes.size())]);
+            basisPivots.add(-1);
             dimension = 1;
         }
     }
@@ -426,51 +472,32 @@ public class FromExamples {
      * @return true if added, false if it was dependent on existing basis
      */
     public static boolean tryAddToBasis(int prefixIdx) {
-        int[] row = hankel[prefixIdx].clone();
-        
-        // Check if row has any unknown entries
-        boolean hasUnknown = false;
-        for (int val : row) {
-            if (val == -1) {
-                hasUnknown = true;
-                break;
-            }
-        }
-        
         // Skip rows with unknown entries
-        if (hasUnknown) return false;
+        if (!hankel.isComplete(prefixIdx)) return false;
+        
+        long[] row = hankel.valueRow(prefixIdx);
         
         // Reduce by existing basis rows
         for (int b = 0; b < basisRows.size(); b++) {
-            int[] basisRow = basisRows.get(b);
-            int pivotColumn = -1;
-            for (int c = 0; c < suffixes.size(); c++) {
-                if (basisRow[c] == 1 && pivotCol[c] == b) {
-                    pivotColumn = c;
-                    break;
-                }
-            }
-            if (pivotColumn != -1 && row[pivotColumn] == 1) {
+            long[] basisRow = basisRows.get(b);
+            int pivotColumn = pivotColumn(basisRow, b);
+            if (pivotColumn != -1 && GF2Matrix.getBit(row, pivotColumn) == 1) {
                 // XOR with basis row
-                for (int c = 0; c < suffixes.size(); c++) {
-                    row[c] ^= basisRow[c];
-                }
+                GF2Matrix.xorInto(row, basisRow);
             }
         }
         
         // Check if row is non-zero (linearly independent)
-        int firstOne = -1;
-        for (int c = 0; c < suffixes.size(); c++) {
-            if (row[c] == 1) {
-                firstOne = c;
-                break;
-            }
-        }
+        int firstOne = GF2Matrix.nextSetBit(row, 0);
         
         if (firstOne != -1) {
             basisRowIndices.add(prefixIdx);
             basisRows.add(row);
+            if (pivotCol[firstOne] != -1) {
+                basisPivots.set(pivotCol[firstOne], -1); // the column is no longer its pivot
+            }
             pivotCol[firstOne] = basisRows.size() - 1;
+            basisPivots.add(firstOne);
             dimension = basisRows.size();
             return true;
         }
@@ -483,25 +510,9 @@ public class FromExamples {
      * @return the index of this prefix in the basis, or -1 if dependent
      */
     public static int ensureInBasis(String prefix) {
-        int prefixIdx = prefixes.indexOf(prefix);
-        if (prefixIdx == -1) {
-            // Add prefix to the list
-            prefixes.add(prefix);
-            prefixSet.add(prefix);
-            prefixIdx = prefixes.size() - 1;
-            
-            // Extend Hankel matrix
-            int[][] newHankel = new int[prefixes.size()][suffixes.size()];
-            for (int i = 0; i < hankel.length; i++) {
-                newHankel[i] = hankel[i];
-            }
-            // Fill new row
-            for (int j = 0; j < suffixes.size(); j++) {
-                String word = concatenate(prefix, suffixes.get(j));
-                newHankel[prefixIdx][j] = lookup(word);
-            }
-            hankel = newHankel;
-        }
+        Integer row = prefixRows.get(prefix);
+        // Add prefix to the list and extend Hankel matrix
+        int prefixIdx = (row != null) ? row : addPrefix(prefix);
         
         // Check if already in basis
         for (int i = 0; i < basisRowIndices.size(); i++) {
@@ -535,9 +546,9 @@ public class FromExamples {
                 String uSigma = concatenate(u, sigma);
                 
                 // Find or check this row
-                int rowIdx = prefixes.indexOf(uSigma);
+                Integer rowIdx = prefixRows.get(uSigma);
                 
-                if (rowIdx == -1) {
+                if (rowIdx == null) {
                     // This prefix is not in our prefix set - need to add it
                     // and check all its suffix combinations
                     for (String suffix : suffixes) {
@@ -549,7 +560,7 @@ public class FromExamples {
                 } else {
                     // Check if this row has all known entries
                     for (int j = 0; j < suffixes.size(); j++) {
-                        if (hankel[rowIdx][j] == -1) {
+                        if (hankel.get(rowIdx, j) == -1) {
                             String word = concatenate(uSigma, suffixes.get(j));
                             missing.add(word);
                         }
@@ -582,28 +593,12 @@ public class FromExamples {
                     String uSigma = concatenate(u, sigma);
                     
                     // Ensure uSigma is in prefixes and has Hankel row
-                    int uSigmaIdx = prefixes.indexOf(uSigma);
-                    if (uSigmaIdx == -1) {
-                        // Add new prefix
-                        prefixes.add(uSigma);
-                        prefixSet.add(uSigma);
-                        uSigmaIdx = prefixes.size() - 1;
-                        
-                        // Extend Hankel matrix
-                        int[][] newHankel = new int[prefixes.size()][suffixes.size()];
-                        for (int i = 0; i < hankel.length; i++) {
-                            newHankel[i] = hankel[i];
-                        }
-                        for (int j = 0; j < suffixes.size(); j++) {
-                            String word = concatenate(uSigma, suffixes.get(j));
-                            newHankel[uSigmaIdx][j] = lookup(word);
-                        }
-                        hankel = newHankel;
-                    }
+                    Integer row = prefixRows.get(uSigma);
+                    // Add new prefix and extend Hankel matrix
+                    int uSigmaIdx = (row != null) ? row : addPrefix(uSigma);
                     
                     // Try to express uSigma row as combination of basis rows
-                    int[] targetRow = hankel[uSigmaIdx];
-                    boolean canExpress = canExpressAsLinearCombination(targetRow);
+                    boolean canExpress = canExpressAsLinearCombination(uSigmaIdx);
                     
                     if (!canExpress) {
                         // Add to basis
@@ -633,42 +628,42 @@ public class FromExamples {
         System.out.println("  Final basis: " + formatBasisRows());
         
         // Now construct the final vector and transition matrices
-        finalVector = new int[dimension];
+        finalVector = new GF2Matrix(1, dimension);
         int emptyColIdx = suffixes.indexOf("");
         for (int i = 0; i < dimension; i++) {
             int rowIdx = basisRowIndices.get(i);
-            finalVector[i] = hankel[rowIdx][emptyColIdx];
+            if (hankel.get(rowIdx, emptyColIdx) == 1) {
+                finalVector.set(0, i);
+            }
         }
         
         // Transition matrices
-        transitionMatrices = new int[alphabet.length][dimension][dimension];
+        transitionMatrices = new GF2Matrix[alphabet.length];
         
         for (int a = 0; a < alphabet.length; a++) {
             String sigma = alphabet[a];
+            transitionMatrices[a] = new GF2Matrix(dimension, dimension);
             
             for (int i = 0; i < dimension; i++) {
                 String u = prefixes.get(basisRowIndices.get(i));
                 String uSigma = concatenate(u, sigma);
                 
-                int uSigmaRowIdx = prefixes.indexOf(uSigma);
-                int[] targetRow = hankel[uSigmaRowIdx];
+                int uSigmaRowIdx = prefixRows.get(uSigma);
                 
                 // Express as linear combination
                 try {
-                    int[] coefficients = expressAsLinearCombination(targetRow);
+                    int[] coefficients = expressAsLinearCombination(uSigmaRowIdx);
                     for (int j = 0; j < dimension; j++) {
-                        transitionMatrices[a][i][j] = coefficients[j];
+                        if (coefficients[j] == 1) {
+                            transitionMatrices[a].set(i, j);
+                        }
                     }
                 } catch (Exception e) {
                     System.out.println("  ERROR: Cannot express " + uSigma + " (row " + uSigmaRowIdx + ") as linear combination");
-                    System.out.print("    Target row: [");
-                    for (int v : targetRow) System.out.print(v + " ");
-                    System.out.println("]");
+                    System.out.println("    Target row: " + formatRow(uSigmaRowIdx));
                     System.out.println("    Basis rows:");
                     for (int b = 0; b < basisRowIndices.size(); b++) {
-                        System.out.print("      " + prefixes.get(basisRowIndices.get(b)) + ": [");
-                        for (int v : hankel[basisRowIndices.get(b)]) System.out.print(v + " ");
-                        System.out.println("]");
+                        System.out.println("      " + prefixes.get(basisRowIndices.get(b)) + ": " + formatRow(basisRowIndices.get(b)));
                     }
                     throw e;
                 }
@@ -677,74 +672,75 @@ public class FromExamples {
     }
     
     /**
-     * Check if a row can be expressed as linear combination of basis rows.
+     * Check if a Hankel row can be expressed as linear combination of basis rows.
+     * Unknown entries of the row match anything: they are never taken as a 1, neither
+     * to pick a basis row nor in the final check.
      */
-    public static boolean canExpressAsLinearCombination(int[] targetRow) {
-        int[] current = targetRow.clone();
+    public static boolean canExpressAsLinearCombination(int rowIdx) {
+        long[] current = hankel.valueRow(rowIdx);
+        long[] known = hankel.knownRow(rowIdx);
         
         for (int b = 0; b < basisRowIndices.size(); b++) {
             int basisRowIdx = basisRowIndices.get(b);
-            int[] basisRow = hankel[basisRowIdx];
+            long[] basisRow = hankel.valueRow(basisRowIdx);
             
             // Find pivot column
-            int pivotColumn = -1;
-            for (int c = 0; c < suffixes.size(); c++) {
-                if (basisRow[c] == 1 && pivotCol[c] == b) {
-                    pivotColumn = c;
-                    break;
-                }
-            }
+            int pivotColumn = pivotColumn(basisRow, b);
             
-            if (pivotColumn != -1 && current[pivotColumn] == 1) {
-                for (int c = 0; c < suffixes.size(); c++) {
-                    current[c] ^= basisRow[c];
-                }
+            if (pivotColumn != -1 && GF2Matrix.getBit(known, pivotColumn) == 1 && GF2Matrix.getBit(current, pivotColumn) == 1) {
+                GF2Matrix.xorInto(current, basisRow);
             }
         }
         
-        // Check if reduced to zero
-        for (int val : current) {
-            if (val == 1) return false;
+        // Check if the known entries reduced to zero
+        return isZeroWhereKnown(current, known);
+    }
+    
+    /**
+     * Find the column where a row has a 1 that is the pivot of basis row b (-1 if none).
+     */
+    private static int pivotColumn(long[] row, int b) {
+        int c = basisPivots.get(b);
+        return (c != -1 && GF2Matrix.getBit(row, c) == 1) ? c : -1;
+    }
+    
+    /**
+     * Whether every known entry of a packed row is 0.
+     */
+    private static boolean isZeroWhereKnown(long[] row, long[] known) {
+        for (int i = 0; i < row.length; i++) {
+            if ((row[i] & known[i]) != 0) return false;
         }
         return true;
     }
     
     /**
-     * Express a row as a linear combination of basis rows.
+     * Express a Hankel row as a linear combination of basis rows.
      * Returns the coefficients.
      * Uses the pivotCol array that was set during basis construction.
+     * Unknown entries of the row match anything, as in canExpressAsLinearCombination.
      */
-    public static int[] expressAsLinearCombination(int[] targetRow) throws Exception {
+    public static int[] expressAsLinearCombination(int rowIdx) throws Exception {
         int[] coefficients = new int[dimension];
-        int[] current = targetRow.clone();
+        long[] current = hankel.valueRow(rowIdx);
+        long[] known = hankel.knownRow(rowIdx);
         
         // Use the REDUCED basis rows and their pivot columns
         // (must match the reduction process in tryAddToBasis)
         for (int b = 0; b < dimension; b++) {
             // Find the pivot column for this basis row (stored in pivotCol array)
-            int pc = -1;
-            for (int c = 0; c < suffixes.size(); c++) {
-                if (pivotCol[c] == b) {
-                    pc = c;
-                    break;
-                }
-            }
+            int pc = basisPivots.get(b);
             
-            if (pc != -1 && current[pc] == 1) {
+            if (pc != -1 && GF2Matrix.getBit(known, pc) == 1 && GF2Matrix.getBit(current, pc) == 1) {
                 coefficients[b] = 1;
                 // XOR with the REDUCED basis row (same as used in tryAddToBasis)
-                int[] reducedRow = basisRows.get(b);
-                for (int c = 0; c < suffixes.size(); c++) {
-                    current[c] ^= reducedRow[c];
-                }
+                GF2Matrix.xorInto(current, basisRows.get(b));
             }
         }
         
-        // Verify: current should now be all zeros
-        for (int val : current) {
-            if (val == 1) {
-                throw new Exception("Failed to express row as linear combination of basis rows");
-            }
+        // Verify: the known entries of current should now be all zeros
+        if (!isZeroWhereKnown(current, known)) {
+            throw new Exception("Failed to express row as linear combination of basis rows");
         }
         
         return coefficients;
@@ -761,7 +757,7 @@ public class FromExamples {
         
         System.out.print("Final Vector: ");
         for (int i = 0; i < dimension; i++) {
-            System.out.print(finalVector[i] + " ");
+            System.out.print(finalVector.get(0, i) + " ");
         }
         System.out.println("\n");
         
@@ -770,7 +766,7 @@ public class FromExamples {
             System.out.println("Letter " + alphabet[a]);
             for (int i = 0; i < dimension; i++) {
                 for (int j = 0; j < dimension; j++) {
-                    System.out.print(transitionMatrices[a][i][j] + " ");
+                    System.out.print(transitionMatrices[a].get(i, j) + " ");
                 }
                 System.out.println();
             }
@@ -821,47 +817,21 @@ public class FromExamples {
      * where initial_vector = (1, 0, 0, ..., 0)
      */
     public static int evaluate(String word) {
-        // Start with initial vector [1, 0, 0, ..., 0]
-        int[] state = new int[dimension];
-        state[0] = 1;
-        
-        // Parse word
-        String[] letters = word.isEmpty() ? new String[0] : word.split(" ");
-        
-        // Apply transition matrices
-        for (String letter : letters) {
-            int letterIdx = letterToIndex.get(letter);
-            int[] newState = new int[dimension];
-            
-            for (int i = 0; i < dimension; i++) {
-                if (state[i] == 1) {
-                    for (int j = 0; j < dimension; j++) {
-                        newState[j] ^= transitionMatrices[letterIdx][i][j];
-                    }
-                }
-            }
-            state = newState;
-        }
-        
-        // Dot product with final vector
-        int result = 0;
-        for (int i = 0; i < dimension; i++) {
-            result ^= (state[i] & finalVector[i]);
+        if (evaluator == null || !evaluator.isFor(finalVector, transitionMatrices)) {
+            evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
         }
-        
-        return result;
+        return evaluator.evaluate(word, letterToIndex);
     }
     
     // Helper methods for display
     
-    private static int countUnknown() {
-        int count = 0;
-        for (int i = 0; i < prefixes.size(); i++) {
-            for (int j = 0; j < suffixes.size(); j++) {
-                if (hankel[i][j] == -1) count++;
-            }
+    private static String formatRow(int prefixIdx) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int j = 0; j < suffixes.size(); j++) {
+            sb.append(hankel.get(prefixIdx, j)).append(" ");
         }
-        return count;
+        sb.append("]");
+        return sb.toString();
     }
     
     private static String formatWordList(List<String> words) {
@@ -900,7 +870,7 @@ public class FromExamples {
             String p = prefixes.get(i).isEmpty() ? "ε" : prefixes.get(i);
             System.out.printf("%8s ", p.length() > 7 ? p.substring(0, 7) : p);
             for (int j = 0; j < Math.min(suffixes.size(), 10); j++) {
-                String val = hankel[i][j] == -1 ? "?" : String.valueOf(hankel[i][j]);
+                String val = hankel.get(i, j) == -1 ? "?" : String.valueOf(hankel.get(i, j));
                 System.out.printf("%6s ", val);
             }
             if (suffixes.size() > 10) System.out.print("...");
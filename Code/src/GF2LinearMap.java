@@ -0,0 +1,32 @@
+/*
+ * GF2LinearMap.java
+ *
+ * The operations the minimization (M2MA.minimize and M2MA.basis) and the difference automaton of an exact
+ * equivalence check (M2MA.distinguishingWord) need from the transition matrices of a target mod-2-MA. They
+ * are implemented by the dense GF2Matrix and by the read-only SparseGF2Matrix of a SUBA target, so a sparse
+ * target is minimized and checked without being converted; toDense converts it where a GF2Matrix is required.
+ *
+ * Vectors are packed as in GF2Matrix (bit (c % 64) of word (c / 64) holds entry c).
+ */
+
+public interface GF2LinearMap {
+
+	int getRowDimension();
+
+	int getColumnDimension();
+
+	// out = v * this
+	void vectorTimes(long[] v, long[] out);
+
+	// out = this * v^T
+	void timesVector(long[] v, long[] out);
+
+	// returns this * other
+	GF2Matrix multiply(GF2Matrix other);
+
+	// returns the block diagonal matrix [[this, 0], [0, other]]
+	GF2LinearMap directSum(GF2Matrix other);
+
+	// returns the entries as a GF2Matrix
+	GF2Matrix toDense();
+}
@@ -0,0 +1,456 @@
+/*
+ * GF2Matrix.java
+ *
+ * Dense matrices and vectors over GF(2), bit-packed 64 entries to a long.
+ *
+ * Row r of the matrix is stored as a long[] of ceil(numCols/64) words, where bit (c % 64) of
+ * word (c / 64) holds the entry (r, c). Indices are 0-based; the 1-based helpers in M2MA
+ * (initialize, addElement, getEntry, ...) are thin wrappers around this class.
+ *
+ * Addition over GF(2) is XOR and the dot product of two rows is the parity of the popcount
+ * of their AND, so every kernel below works a word (64 entries) at a time. Vectors are
+ * represented as raw long[] rows so that they can be multiplied and compared without
+ * allocating a matrix.
+ *
+ * Products of large matrices use the Method of Four Russians (M4RM): the rows of the right
+ * factor are taken M4RI_BITS at a time, all 2^M4RI_BITS of their sums are tabulated with one
+ * row XOR each, and every row of the left factor then adds one table entry per group instead
+ * of up to M4RI_BITS rows.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+public class GF2Matrix implements GF2LinearMap {
+
+	// matrices with at least this many rows, columns and product columns are multiplied (and inverted, see solver.java) with M4RI,
+	// set with -Dm4riThreshold=n
+	public static final int M4RI_THRESHOLD = Integer.getInteger("m4riThreshold", 256);
+	// number of rows combined in one M4RI table, divides 64 so that a group never straddles two words
+	public static final int M4RI_BITS = 8;
+
+	protected int numRows;
+	protected final int numCols;
+	// number of longs in each row
+	protected final int numWords;
+	protected long[][] rows;
+
+	public GF2Matrix(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numWords = words(numCols);
+		this.rows = new long[Math.max(numRows, 1)][];
+		for (int r=0; r<numRows; r++) {
+			rows[r] = new long[numWords];
+		}
+	}
+
+	// number of longs needed to hold n bits
+	public static int words(int n) {
+		return (n + 63) >>> 6;
+	}
+
+	public static GF2Matrix identity(int size) {
+		GF2Matrix out = new GF2Matrix(size, size);
+		for (int i=0; i<size; i++) {
+			out.set(i, i);
+		}
+		return out;
+	}
+
+	public int getRowDimension() {
+		return numRows;
+	}
+
+	public int getColumnDimension() {
+		return numCols;
+	}
+
+	public int get(int row, int col) {
+		return (int) (rows[row][col >>> 6] >>> col) & 1;
+	}
+
+	public void set(int row, int col) {
+		rows[row][col >>> 6] |= 1L << col;
+	}
+
+	public void clear(int row, int col) {
+		rows[row][col >>> 6] &= ~(1L << col);
+	}
+
+	public void flip(int row, int col) {
+		rows[row][col >>> 6] ^= 1L << col;
+	}
+
+	// returns the packed words of a row (not a copy)
+	public long[] getRow(int row) {
+		return rows[row];
+	}
+
+	public void setRow(int row, long[] words) {
+		System.arraycopy(words, 0, rows[row], 0, numWords);
+	}
+
+	public void swapRows(int r1, int r2) {
+		long[] temp = rows[r1];
+		rows[r1] = rows[r2];
+		rows[r2] = temp;
+	}
+
+	// row_dst += row_src
+	public void addRow(int src, int dst) {
+		xorInto(rows[dst], rows[src]);
+	}
+
+	// appends a copy of words as a new last row, growing the row array geometrically
+	public int appendRow(long[] words) {
+		if (numRows == rows.length) {
+			rows = Arrays.copyOf(rows, rows.length * 2);
+		}
+		rows[numRows] = Arrays.copyOf(words, numWords);
+		return numRows++;
+	}
+
+	public boolean isZeroRow(int row) {
+		return isZero(rows[row]);
+	}
+
+	// returns the number of 1's in the matrix
+	public int cardinality() {
+		int count = 0;
+		for (int r=0; r<numRows; r++) {
+			for (long word : rows[r]) {
+				count += Long.bitCount(word);
+			}
+		}
+		return count;
+	}
+
+	// returns the mxp product of this mxn matrix and an nxp matrix
+	public GF2Matrix multiply(GF2Matrix other) {
+		if (numCols != other.numRows) {
+			throw new IllegalArgumentException("Multiplied matrices of invalid dimension.");
+		}
+
+		if (numRows >= M4RI_THRESHOLD && numCols >= M4RI_THRESHOLD && other.numCols >= M4RI_THRESHOLD) {
+			return multiplyM4RM(other);
+		}
+
+		GF2Matrix out = new GF2Matrix(numRows, other.numCols);
+		for (int r=0; r<numRows; r++) {
+			other.vectorTimes(rows[r], out.rows[r]);
+		}
+		return out;
+	}
+
+	// returns the product of this matrix and other using the Method of Four Russians
+	public GF2Matrix multiplyM4RM(GF2Matrix other) {
+		if (numCols != other.numRows) {
+			throw new IllegalArgumentException("Multiplied matrices of invalid dimension.");
+		}
+
+		GF2Matrix out = new GF2Matrix(numRows, other.numCols);
+		long[][] table = new long[1 << M4RI_BITS][other.numWords];
+
+		for (int base=0; base<numCols; base+=M4RI_BITS) {
+			int k = Math.min(M4RI_BITS, numCols - base);
+			other.fillCombinationTable(base, k, table);
+
+			// add to every row of out the combination of the k rows selected by its bits base, ..., base+k-1
+			int shift = base & 63;
+			int word = base >>> 6;
+			int mask = (1 << k) - 1;
+			for (int r=0; r<numRows; r++) {
+				int bits = (int) (rows[r][word] >>> shift) & mask;
+				if (bits != 0) {
+					xorInto(out.rows[r], table[bits]);
+				}
+			}
+		}
+		return out;
+	}
+
+	// table[i] = sum of the rows first+j of this matrix for every bit j set in i, for 0 <= i < 2^k
+	public void fillCombinationTable(int first, int k, long[][] table) {
+		int[] selected = new int[k];
+		for (int j=0; j<k; j++) {
+			selected[j] = first + j;
+		}
+		fillCombinationTable(selected, k, table);
+	}
+
+	// table[i] = sum of the rows selected[j] of this matrix for every bit j set in i, for 0 <= i < 2^k
+	public void fillCombinationTable(int[] selected, int k, long[][] table) {
+		Arrays.fill(table[0], 0L);
+		for (int i=1; i<(1 << k); i++) {
+			// i differs from i with its lowest bit cleared by a single row
+			long[] prev = table[i & (i - 1)];
+			long[] row = rows[selected[Integer.numberOfTrailingZeros(i)]];
+			long[] entry = table[i];
+			for (int w=0; w<numWords; w++) {
+				entry[w] = prev[w] ^ row[w];
+			}
+		}
+	}
+
+	/*
+	 * out = v * this, where v is a packed row vector of length numRows and out has length numCols.
+	 * Row r of this matrix is XORed into out for every bit r set in v.
+	 */
+	public void vectorTimes(long[] v, long[] out) {
+		Arrays.fill(out, 0, numWords, 0L);
+		for (int w=0; w<v.length; w++) {
+			long word = v[w];
+			while (word != 0) {
+				int r = (w << 6) + Long.numberOfTrailingZeros(word);
+				if (r >= numRows) {
+					return;
+				}
+				xorInto(out, rows[r]);
+				word &= word - 1;
+			}
+		}
+	}
+
+	// out = this * v^T, where v is a packed vector of length numCols and out has length numRows
+	public void timesVector(long[] v, long[] out) {
+		Arrays.fill(out, 0, words(numRows), 0L);
+		for (int r=0; r<numRows; r++) {
+			if (dot(rows[r], v) == 1) {
+				out[r >>> 6] |= 1L << r;
+			}
+		}
+	}
+
+	public GF2Matrix transpose() {
+		GF2Matrix out = new GF2Matrix(numCols, numRows);
+		for (int r=0; r<numRows; r++) {
+			long[] row = rows[r];
+			for (int w=0; w<numWords; w++) {
+				long word = row[w];
+				while (word != 0) {
+					int c = (w << 6) + Long.numberOfTrailingZeros(word);
+					out.rows[c][r >>> 6] |= 1L << r;
+					word &= word - 1;
+				}
+			}
+		}
+		return out;
+	}
+
+	public GF2Matrix copy() {
+		GF2Matrix out = new GF2Matrix(numRows, numCols);
+		for (int r=0; r<numRows; r++) {
+			System.arraycopy(rows[r], 0, out.rows[r], 0, numWords);
+		}
+		return out;
+	}
+
+	// returns a copy resized to newRows x newCols, padded with 0's (or truncated)
+	public GF2Matrix copy(int newRows, int newCols) {
+		GF2Matrix out = new GF2Matrix(newRows, newCols);
+		int copyWords = Math.min(numWords, out.numWords);
+		for (int r=0; r<Math.min(numRows, newRows); r++) {
+			System.arraycopy(rows[r], 0, out.rows[r], 0, copyWords);
+			if (newCols < numCols && (newCols & 63) != 0) {
+				out.rows[r][out.numWords - 1] &= (1L << newCols) - 1;
+			}
+		}
+		return out;
+	}
+
+	// returns the block diagonal matrix [[this, 0], [0, other]]
+	public GF2Matrix directSum(GF2Matrix other) {
+		return directSum(this, other);
+	}
+
+	// a dense matrix is its own dense form (not a copy)
+	public GF2Matrix toDense() {
+		return this;
+	}
+
+	// returns the block diagonal matrix [[a, 0], [0, b]]
+	public static GF2Matrix directSum(GF2Matrix a, GF2Matrix b) {
+		GF2Matrix out = new GF2Matrix(a.numRows + b.numRows, a.numCols + b.numCols);
+		for (int r=0; r<a.numRows; r++) {
+			System.arraycopy(a.rows[r], 0, out.rows[r], 0, a.numWords);
+		}
+		for (int r=0; r<b.numRows; r++) {
+			long[] row = out.rows[a.numRows + r];
+			for (int c=nextSetBit(b.rows[r], 0); c != -1; c=nextSetBit(b.rows[r], c + 1)) {
+				setBit(row, a.numCols + c);
+			}
+		}
+		return out;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof GF2Matrix)) {
+			return false;
+		}
+		GF2Matrix other = (GF2Matrix) o;
+		if (numRows != other.numRows || numCols != other.numCols) {
+			return false;
+		}
+		for (int r=0; r<numRows; r++) {
+			if (!Arrays.equals(rows[r], other.rows[r])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 31 * numRows + numCols;
+		for (int r=0; r<numRows; r++) {
+			hash = 31 * hash + Arrays.hashCode(rows[r]);
+		}
+		return hash;
+	}
+
+	/* Packed vector kernels. */
+
+	// returns the dot product of two packed vectors
+	public static int dot(long[] v1, long[] v2) {
+		long parity = 0;
+		int len = Math.min(v1.length, v2.length);
+		for (int w=0; w<len; w++) {
+			parity ^= v1[w] & v2[w];
+		}
+		return Long.bitCount(parity) & 1;
+	}
+
+	// dst += src
+	public static void xorInto(long[] dst, long[] src) {
+		int len = Math.min(dst.length, src.length);
+		for (int w=0; w<len; w++) {
+			dst[w] ^= src[w];
+		}
+	}
+
+	public static boolean isZero(long[] v) {
+		for (long word : v) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static int getBit(long[] v, int i) {
+		return (int) (v[i >>> 6] >>> i) & 1;
+	}
+
+	public static void setBit(long[] v, int i) {
+		v[i >>> 6] |= 1L << i;
+	}
+
+	// returns the index of the first 1 at or after from, or -1 if there is none
+	public static int nextSetBit(long[] v, int from) {
+		int w = from >>> 6;
+		if (w >= v.length) {
+			return -1;
+		}
+		long word = v[w] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w == v.length) {
+				return -1;
+			}
+			word = v[w];
+		}
+	}
+
+	/* Adapters to the other matrix representations. */
+
+	// converts a sparse HashMap matrix (see the old M2MA representation) into a packed matrix
+	public static GF2Matrix fromSparse(HashMap<Integer, ArrayList<Integer>> arr) {
+		GF2Matrix out = new GF2Matrix(arr.get(0).get(0), arr.get(0).get(1));
+		for (int row : arr.keySet()) {
+			if (row > 0) {
+				for (int col : arr.get(row)) {
+					out.set(row - 1, col - 1);
+				}
+			}
+		}
+		return out;
+	}
+
+	// converts a packed matrix into a sparse HashMap matrix with sorted rows and columns
+	public HashMap<Integer, ArrayList<Integer>> toSparse() {
+		HashMap<Integer, ArrayList<Integer>> out = new HashMap<Integer, ArrayList<Integer>>();
+		ArrayList<Integer> dim = new ArrayList<Integer>();
+		dim.add(numRows);
+		dim.add(numCols);
+		out.put(0, dim);
+
+		for (int r=0; r<numRows; r++) {
+			for (int c = nextSetBit(rows[r], 0); c != -1; c = nextSetBit(rows[r], c + 1)) {
+				if (out.get(r + 1) == null) {
+					out.put(r + 1, new ArrayList<Integer>());
+				}
+				if (out.get(-(c + 1)) == null) {
+					out.put(-(c + 1), new ArrayList<Integer>());
+				}
+				out.get(r + 1).add(c + 1);
+				out.get(-(c + 1)).add(r + 1);
+			}
+		}
+		return out;
+	}
+
+	public static GF2Matrix fromReal(RealMatrix arr) {
+		GF2Matrix out = new GF2Matrix(arr.getRowDimension(), arr.getColumnDimension());
+		for (int r=0; r<out.numRows; r++) {
+			for (int c=0; c<out.numCols; c++) {
+				if (M2MA.mod2(arr.getEntry(r, c)) == 1) {
+					out.set(r, c);
+				}
+			}
+		}
+		return out;
+	}
+
+	public RealMatrix toReal() {
+		RealMatrix out = MatrixUtils.createRealMatrix(numRows, numCols);
+		for (int r=0; r<numRows; r++) {
+			for (int c = nextSetBit(rows[r], 0); c != -1; c = nextSetBit(rows[r], c + 1)) {
+				out.setEntry(r, c, 1);
+			}
+		}
+		return out;
+	}
+
+	public static GF2Matrix fromIntArray(int[][] arr) {
+		GF2Matrix out = new GF2Matrix(arr.length, arr[0].length);
+		for (int r=0; r<arr.length; r++) {
+			for (int c=0; c<arr[0].length; c++) {
+				if (arr[r][c] == 1) {
+					out.set(r, c);
+				}
+			}
+		}
+		return out;
+	}
+
+	// returns the rows of the matrix as space-separated 0's and 1's, the format used by the input files
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int r=0; r<numRows; r++) {
+			for (int c=0; c<numCols; c++) {
+				sb.append(get(r, c)).append(' ');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * HankelStore.java
+ *
+ * A cache of membership query answers, stored as a trie over letter indices (see Word.java).
+ *
+ * Every node of the trie stands for the word spelled by the path to it, and holds two bits: whether the
+ * answer for that word is known, and the answer itself. A word therefore costs at most one node per letter
+ * that it does not share with a word already in the store, instead of a String (or Word) and a boxed Integer
+ * per entry. An entry of an observation table, x+y, is looked up by walking x and then y, so the
+ * concatenation is never built.
+ *
+ * The store counts its lookups and hits, so that the effectiveness of the cache can be reported.
+ *
+ * The trie can be written to and read back from a stream as its raw arrays, e.g. for the checkpoints of
+ * M2MA.learn().
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class HankelStore {
+
+	private final int alphabetSize;
+
+	private int numNodes;
+	// children[node * alphabetSize + letter] is the child of node on letter, or 0 if there is none (0 is the root)
+	private int[] children;
+	// known has the bit of a node set iff the answer for its word is stored, and values holds the answers
+	private long[] known;
+	private long[] values;
+
+	// number of stored answers
+	private int size;
+	private long lookups;
+	private long hits;
+
+	public HankelStore(int alphabetSize) {
+		this.alphabetSize = alphabetSize;
+		clear();
+	}
+
+	public void clear() {
+		numNodes = 1;
+		children = new int[64 * Math.max(alphabetSize, 1)];
+		known = new long[1];
+		values = new long[1];
+		size = 0;
+		lookups = 0;
+		hits = 0;
+	}
+
+	/* Lookups: return the stored answer, or -1 if the answer is unknown. */
+
+	public int get(Word word) {
+		return answer(descend(0, word));
+	}
+
+	// answer for row+col
+	public int get(Word row, Word col) {
+		return answer(descend(descend(0, row), col));
+	}
+
+	// answer for row+letter+col
+	public int get(Word row, int letter, Word col) {
+		return answer(descend(child(descend(0, row), letter), col));
+	}
+
+	public boolean containsKey(Word word) {
+		int node = descend(0, word);
+		return node != -1 && getBit(known, node);
+	}
+
+	/*
+	 * Walks: the node of a word, its children and the answer stored at it, e.g. to look up a word and all its
+	 * extensions in one walk. These don't count as lookups, so a store that isn't modified can be walked from
+	 * several threads at once. -1 stands for a word that isn't in the trie.
+	 */
+
+	public int nodeOf(Word word) {
+		return descend(0, word);
+	}
+
+	public int childOf(int node, int letter) {
+		return child(node, letter);
+	}
+
+	// stored answer at node, or -1 if the answer is unknown
+	public int answerAt(int node) {
+		if (node == -1 || !getBit(known, node)) {
+			return -1;
+		}
+		return getBit(values, node) ? 1 : 0;
+	}
+
+	/* Insertions: store the answer (0 or 1) for a word. */
+
+	public void put(Word word, int answer) {
+		store(insert(0, word), answer);
+	}
+
+	public void put(Word row, Word col, int answer) {
+		store(insert(insert(0, row), col), answer);
+	}
+
+	public void put(Word row, int letter, Word col, int answer) {
+		store(insert(insertChild(insert(0, row), letter), col), answer);
+	}
+
+	/* Statistics. */
+
+	// number of stored answers
+	public int size() {
+		return size;
+	}
+
+	public int numNodes() {
+		return numNodes;
+	}
+
+	public long lookups() {
+		return lookups;
+	}
+
+	public long hits() {
+		return hits;
+	}
+
+	// fraction of lookups that found a stored answer
+	public double hitRate() {
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return size + " answers in " + numNodes + " nodes, " + hits + "/" + lookups + " lookups hit ("
+				+ (Math.round(1000 * hitRate()) / 10.0) + "%)";
+	}
+
+	/* Serialization: the alphabet size, the number of nodes and answers, and the arrays of the trie. */
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(alphabetSize);
+		out.writeInt(numNodes);
+		out.writeInt(size);
+		for (int i=0; i<numNodes * alphabetSize; i++) {
+			out.writeInt(children[i]);
+		}
+		for (int w=0; w<GF2Matrix.words(numNodes); w++) {
+			out.writeLong(known[w]);
+			out.writeLong(values[w]);
+		}
+	}
+
+	// reads a store written by writeTo (its lookups and hits start from 0)
+	public static HankelStore readFrom(DataInput in) throws IOException {
+		HankelStore store = new HankelStore(in.readInt());
+		store.numNodes = in.readInt();
+		store.size = in.readInt();
+
+		int numWords = GF2Matrix.words(store.numNodes);
+		store.children = new int[Math.max(store.children.length, store.numNodes * store.alphabetSize)];
+		store.known = new long[Math.max(store.known.length, numWords)];
+		store.values = new long[Math.max(store.values.length, numWords)];
+		for (int i=0; i<store.numNodes * store.alphabetSize; i++) {
+			store.children[i] = in.readInt();
+		}
+		for (int w=0; w<numWords; w++) {
+			store.known[w] = in.readLong();
+			store.values[w] = in.readLong();
+		}
+		return store;
+	}
+
+	// returns the node of word below node, or -1 if it isn't in the trie
+	private int descend(int node, Word word) {
+		for (int i=0; i<word.length() && node != -1; i++) {
+			node = child(node, word.letterAt(i));
+		}
+		return node;
+	}
+
+	private int child(int node, int letter) {
+		if (node == -1) {
+			return -1;
+		}
+		int child = children[node * alphabetSize + letter];
+		return child == 0 ? -1 : child;
+	}
+
+	private int answer(int node) {
+		lookups++;
+		if (node == -1 || !getBit(known, node)) {
+			return -1;
+		}
+		hits++;
+		return getBit(values, node) ? 1 : 0;
+	}
+
+	// returns the node of word below node, adding the nodes that are missing
+	private int insert(int node, Word word) {
+		for (int i=0; i<word.length(); i++) {
+			node = insertChild(node, word.letterAt(i));
+		}
+		return node;
+	}
+
+	private int insertChild(int node, int letter) {
+		int child = children[node * alphabetSize + letter];
+		if (child == 0) {
+			child = newNode();
+			children[node * alphabetSize + letter] = child;
+		}
+		return child;
+	}
+
+	private int newNode() {
+		if ((long) (numNodes + 1) * alphabetSize > children.length) {
+			children = Arrays.copyOf(children, 2 * children.length);
+		}
+		if ((numNodes >>> 6) == known.length) {
+			known = Arrays.copyOf(known, 2 * known.length);
+			values = Arrays.copyOf(values, 2 * values.length);
+		}
+		return numNodes++;
+	}
+
+	private void store(int node, int answer) {
+		if (!getBit(known, node)) {
+			known[node >>> 6] |= 1L << node;
+			size++;
+		}
+		if (answer == 1) {
+			values[node >>> 6] |= 1L << node;
+		} else {
+			values[node >>> 6] &= ~(1L << node);
+		}
+	}
+
+	private static boolean getBit(long[] bits, int node) {
+		return ((bits[node >>> 6] >>> node) & 1L) == 1L;
+	}
+}
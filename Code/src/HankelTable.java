@@ -0,0 +1,144 @@
+/*
+ * HankelTable.java
+ *
+ * A partially known Hankel matrix over GF(2) with a fixed set of columns and a growing set of rows, as built by
+ * FromExamples.java from the labels of a sample.
+ *
+ * Every row is stored as two packed bitsets (see GF2Matrix.java): known has the bit of a column set iff the entry
+ * is known, and values holds the entries, with 0 for the unknown ones. A bitset only reaches as far as its last
+ * 1 (it grows by doubling as entries are set), and a row whose entries are all known drops its known bitset
+ * (known[r] is null). A table of k rows and n columns thus takes at most k*n/4 bytes, instead of the 4*k*n of an
+ * int[][], and much less when the columns are sorted by length, as the rows of long prefixes then only have
+ * labels in the first columns. Rows are added at the end, and the arrays of rows grow by doubling.
+ *
+ * The rows are independent, so different rows can be set from several threads once they have been added.
+ */
+
+import java.util.Arrays;
+
+public class HankelTable {
+
+	private static final long[] EMPTY = new long[0];
+
+	private final int numCols;
+	// number of longs in each row
+	private final int words;
+
+	private int numRows;
+	private long[][] known = new long[16][];
+	private long[][] values = new long[16][];
+
+	public HankelTable(int numCols) {
+		this.numCols = numCols;
+		this.words = GF2Matrix.words(numCols);
+	}
+
+	public int numRows() {
+		return numRows;
+	}
+
+	public int numCols() {
+		return numCols;
+	}
+
+	// adds a row of unknown entries, and returns its index
+	public int addRow() {
+		if (numRows == values.length) {
+			known = Arrays.copyOf(known, 2 * numRows);
+			values = Arrays.copyOf(values, 2 * numRows);
+		}
+		known[numRows] = EMPTY;
+		values[numRows] = EMPTY;
+		return numRows++;
+	}
+
+	// returns the entry at (row, col), or -1 if it is unknown
+	public int get(int row, int col) {
+		if (known[row] != null && getBit(known[row], col) == 0) {
+			return -1;
+		}
+		return getBit(values[row], col);
+	}
+
+	// sets the entry at (row, col) to answer (0 or 1, and -1 leaves it unknown)
+	public void set(int row, int col, int answer) {
+		if (answer == -1) {
+			return;
+		}
+		if (known[row] != null) {
+			known[row] = reach(known[row], col);
+			GF2Matrix.setBit(known[row], col);
+		}
+		if (answer == 1) {
+			values[row] = reach(values[row], col);
+			GF2Matrix.setBit(values[row], col);
+		} else if (getBit(values[row], col) == 1) {
+			values[row][col >>> 6] &= ~(1L << col);
+		}
+	}
+
+	// makes every entry of row known, the unknown ones 0
+	public void setAllKnown(int row) {
+		known[row] = null;
+	}
+
+	// drops the known bitset of row if every entry is known
+	public void compact(int row) {
+		if (known[row] != null && countUnknown(row) == 0) {
+			known[row] = null;
+		}
+	}
+
+	public boolean isComplete(int row) {
+		return known[row] == null || countUnknown(row) == 0;
+	}
+
+	// returns a copy of the packed entries of row, in GF2Matrix.words(numCols) longs (the unknown entries are 0)
+	public long[] valueRow(int row) {
+		return Arrays.copyOf(values[row], words);
+	}
+
+	// returns the packed known bits of row, in GF2Matrix.words(numCols) longs (a bit is set iff the entry is known)
+	public long[] knownRow(int row) {
+		if (known[row] != null) {
+			return Arrays.copyOf(known[row], words);
+		}
+		long[] bits = new long[words];
+		Arrays.fill(bits, -1L);
+		if ((numCols & 63) != 0) {
+			bits[words - 1] = (1L << numCols) - 1;
+		}
+		return bits;
+	}
+
+	public int countUnknown(int row) {
+		if (known[row] == null) {
+			return 0;
+		}
+		int count = numCols;
+		for (long w : known[row]) {
+			count -= Long.bitCount(w);
+		}
+		return count;
+	}
+
+	public long countUnknown() {
+		long count = 0;
+		for (int r=0; r<numRows; r++) {
+			count += countUnknown(r);
+		}
+		return count;
+	}
+
+	// returns bits, or a copy grown by doubling if it doesn't reach bit i
+	private long[] reach(long[] bits, int i) {
+		if ((i >>> 6) < bits.length) {
+			return bits;
+		}
+		return Arrays.copyOf(bits, Math.min(words, Math.max((i >>> 6) + 1, 2 * bits.length)));
+	}
+
+	private static int getBit(long[] bits, int i) {
+		return ((i >>> 6) < bits.length) ? GF2Matrix.getBit(bits, i) : 0;
+	}
+}
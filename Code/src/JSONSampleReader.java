@@ -0,0 +1,249 @@
+/*
+ * JSONSampleReader.java
+ *
+ * Reads a sample of labelled words from a JSON file, in one pass over a memory-mapped view of the file:
+ * {
+ *   "metadata": { "alphabet": ["a", "b"], ... },
+ *   "Positive sample": ["", "a a", ...],
+ *   "Negative sample": ["a", "b", ...]
+ * }
+ *
+ * The file is tokenized as it is read, and every string in the "Positive sample" and "Negative sample" arrays is
+ * passed to the store of the caller as soon as it is read, so the file is never held in memory as a whole, and
+ * no value outside the alphabet and the samples is kept. The sections may appear in any order and at any depth,
+ * and a missing section is empty. The file is mapped MAP_SIZE bytes at a time, so files over 2GB can be read.
+ *
+ * Used by ExampleLoader, PassiveLearningOracle, LearnFromExamples and FromExamples.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class JSONSampleReader {
+
+	// number of bytes of the file mapped at once
+	private static final long MAP_SIZE = 1L << 28;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private MappedByteBuffer buffer;
+	// position in the file of the start of buffer
+	private long bufferStart;
+	// the byte read last was pushed back, and is returned by the next read
+	private int pushedBack = -1;
+
+	private final Consumer<String> positive;
+	private final Consumer<String> negative;
+	private List<String> alphabet;
+
+	// the bytes of the string being read
+	private byte[] string = new byte[64];
+
+	private JSONSampleReader(FileChannel channel, Consumer<String> positive, Consumer<String> negative) throws IOException {
+		this.channel = channel;
+		this.fileSize = channel.size();
+		this.positive = positive;
+		this.negative = negative;
+		map(0);
+	}
+
+	/*
+	 * Reads the file, passing the words of the positive and negative samples to positive and negative in the
+	 * order of the file, and returns the alphabet (empty if the file has none).
+	 */
+	public static String[] read(String filename, Consumer<String> positive, Consumer<String> negative) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			JSONSampleReader reader = new JSONSampleReader(file.getChannel(), positive, negative);
+			reader.value(null, null);
+			if (reader.next() != -1) {
+				throw reader.error("unexpected content after the JSON value");
+			}
+			return (reader.alphabet == null) ? new String[0] : reader.alphabet.toArray(new String[0]);
+		}
+	}
+
+	/*
+	 * Reads one value. key is the key of the value if it is a member of an object, and words is the sample its
+	 * strings belong to (if it is in a sample array).
+	 */
+	private void value(String key, Consumer<String> words) throws IOException {
+		int c = next();
+		if (c == '{') {
+			c = next();
+			if (c == '}') {
+				return;
+			}
+			while (true) {
+				if (c != '"') {
+					throw error("expected a key");
+				}
+				String memberKey = string();
+				if (next() != ':') {
+					throw error("expected ':'");
+				}
+				value(memberKey, words);
+				c = next();
+				if (c == '}') {
+					return;
+				} else if (c != ',') {
+					throw error("expected ',' or '}'");
+				}
+				c = next();
+			}
+		} else if (c == '[') {
+			boolean isAlphabet = "alphabet".equals(key) && alphabet == null;
+			if (isAlphabet) {
+				alphabet = new ArrayList<String>();
+			} else if ("Positive sample".equals(key)) {
+				words = positive;
+			} else if ("Negative sample".equals(key)) {
+				words = negative;
+			}
+
+			c = next();
+			if (c == ']') {
+				return;
+			}
+			pushBack(c);
+			while (true) {
+				if (isAlphabet) {
+					letter();
+				} else {
+					value(null, words);
+				}
+				c = next();
+				if (c == ']') {
+					return;
+				} else if (c != ',') {
+					throw error("expected ',' or ']'");
+				}
+			}
+		} else if (c == '"') {
+			String s = string();
+			if (words != null) {
+				words.accept(s);
+			}
+		} else if (c != -1) {
+			literal(c);
+		} else {
+			throw error("unexpected end of file");
+		}
+	}
+
+	// reads a letter of the alphabet, a string or a literal such as a number
+	private void letter() throws IOException {
+		int c = next();
+		String letter = (c == '"') ? string() : literal(c).trim();
+		if (!letter.isEmpty()) {
+			alphabet.add(letter);
+		}
+	}
+
+	// reads a number, true, false or null that begins with c, and returns its text
+	private String literal(int c) throws IOException {
+		int length = 0;
+		while (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+			append(length++, c);
+			c = read();
+		}
+		pushBack(c);
+		return new String(string, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	// reads the rest of a string after its opening quote
+	private String string() throws IOException {
+		int length = 0;
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return new String(string, 0, length, StandardCharsets.UTF_8);
+			} else if (c == -1) {
+				throw error("unterminated string");
+			} else if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'b': c = '\b'; break;
+				case 'f': c = '\f'; break;
+				case 'n': c = '\n'; break;
+				case 'r': c = '\r'; break;
+				case 't': c = '\t'; break;
+				case 'u':
+					char[] hex = new char[4];
+					for (int i=0; i<4; i++) {
+						hex[i] = (char) read();
+					}
+					byte[] utf8;
+					try {
+						utf8 = String.valueOf((char) Integer.parseInt(new String(hex), 16)).getBytes(StandardCharsets.UTF_8);
+					} catch (NumberFormatException e) {
+						throw error("invalid escape \\u" + new String(hex));
+					}
+					for (byte b : utf8) {
+						append(length++, b);
+					}
+					continue;
+				case '"': case '\\': case '/': break;
+				default: throw error("invalid escape");
+				}
+			}
+			append(length++, c);
+		}
+	}
+
+	private void append(int index, int b) {
+		if (index == string.length) {
+			string = Arrays.copyOf(string, 2 * string.length);
+		}
+		string[index] = (byte) b;
+	}
+
+	// returns the next byte that isn't whitespace, or -1 at the end of the file
+	private int next() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != -1 && isWhitespace(c));
+		return c;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	// returns the next byte, or -1 at the end of the file
+	private int read() throws IOException {
+		if (pushedBack != -1) {
+			int c = pushedBack;
+			pushedBack = -1;
+			return c;
+		}
+		if (!buffer.hasRemaining()) {
+			if (bufferStart + buffer.limit() >= fileSize) {
+				return -1;
+			}
+			map(bufferStart + buffer.limit());
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	private void pushBack(int c) {
+		pushedBack = c;
+	}
+
+	private void map(long start) throws IOException {
+		bufferStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_SIZE, fileSize - start));
+	}
+
+	private IOException error(String message) {
+		long position = bufferStart + buffer.position();
+		return new IOException("Invalid JSON sample file at byte " + position + ": " + message + ".");
+	}
+}
@@ -49,7 +49,7 @@ public class LearnFromDFA {
         for (int i = 0; i < M2MA.alphabet.length; i++) {
             M2MA.letterToIndex.put(M2MA.alphabet[i], i);
         }
-        M2MA.Hankel = new HashMap<>();
+        M2MA.Hankel = new HankelStore(M2MA.alphabet.length);
         M2MA.startTime = System.nanoTime();
         
         // Run the learning algorithm
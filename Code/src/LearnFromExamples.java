@@ -15,7 +15,6 @@
 
 import java.io.*;
 import java.util.*;
-import org.apache.commons.math3.linear.*;
 
 public class LearnFromExamples {
     
@@ -39,12 +38,12 @@ public class LearnFromExamples {
     public static ArrayList<String> colIndices = new ArrayList<>();
     public static int dimension;
     
-    // Hankel cache
-    public static Map<String, Integer> Hankel = new HashMap<>();
+    // Hankel cache, over the letter indices of the words (words not over the alphabet are only in the example sets)
+    public static HankelStore Hankel;
     
     // Result M2MA
-    public static HashMap<Integer, ArrayList<Integer>> resultFinalVector;
-    public static HashMap<Integer, ArrayList<Integer>>[] resultTransitionMatrices;
+    public static GF2Matrix resultFinalVector;
+    public static GF2Matrix[] resultTransitionMatrices;
     
     // Counterexample from EQ
     public static String counterExample;
@@ -119,80 +118,20 @@ public class LearnFromExamples {
     // ==================== JSON Loading ====================
     
     public static void loadExamplesFromJSON(String filename) throws Exception {
-        StringBuilder content = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            content.append(line).append("\n");
-        }
-        reader.close();
-        
-        String json = content.toString();
-        
-        // Parse alphabet
-        List<String> alphabetList = new ArrayList<>();
-        int alphaStart = json.indexOf("\"alphabet\"");
-        if (alphaStart != -1) {
-            int arrayStart = json.indexOf("[", alphaStart);
-            int arrayEnd = json.indexOf("]", arrayStart);
-            String alphaArray = json.substring(arrayStart + 1, arrayEnd);
-            for (String part : alphaArray.split(",")) {
-                String letter = part.trim().replace("\"", "").trim();
-                if (!letter.isEmpty()) alphabetList.add(letter);
-            }
-        }
-        alphabet = alphabetList.toArray(new String[0]);
-        for (int i = 0; i < alphabet.length; i++) {
-            letterToIndex.put(alphabet[i], i);
-        }
-        
-        // Parse positive samples
         positiveWords.clear();
-        int posStart = json.indexOf("\"Positive sample\"");
-        if (posStart != -1) {
-            int arrayStart = json.indexOf("[", posStart);
-            int arrayEnd = findMatchingBracket(json, arrayStart);
-            parseWordArray(json.substring(arrayStart + 1, arrayEnd), positiveWords);
-        }
-        
-        // Parse negative samples
         negativeWords.clear();
-        int negStart = json.indexOf("\"Negative sample\"");
-        if (negStart != -1) {
-            int arrayStart = json.indexOf("[", negStart);
-            int arrayEnd = findMatchingBracket(json, arrayStart);
-            parseWordArray(json.substring(arrayStart + 1, arrayEnd), negativeWords);
+        alphabet = JSONSampleReader.read(filename, positiveWords::add, negativeWords::add);
+        for (int i = 0; i < alphabet.length; i++) {
+            letterToIndex.put(alphabet[i], i);
         }
         
         allWords.addAll(positiveWords);
         allWords.addAll(negativeWords);
         
         // Pre-populate Hankel cache
-        for (String w : positiveWords) Hankel.put(w, 1);
-        for (String w : negativeWords) Hankel.put(w, 0);
-    }
-    
-    private static int findMatchingBracket(String s, int start) {
-        int depth = 0;
-        for (int i = start; i < s.length(); i++) {
-            if (s.charAt(i) == '[') depth++;
-            else if (s.charAt(i) == ']') { depth--; if (depth == 0) return i; }
-        }
-        return s.length() - 1;
-    }
-    
-    private static void parseWordArray(String content, Set<String> target) {
-        StringBuilder current = new StringBuilder();
-        boolean inQuote = false, foundQuote = false;
-        for (char c : content.toCharArray()) {
-            if (c == '"') { inQuote = !inQuote; foundQuote = true; }
-            else if (c == ',' && !inQuote) {
-                if (foundQuote) target.add(current.toString());
-                current = new StringBuilder(); foundQuote = false;
-            }
-            else if (inQuote) current.append(c);
-        }
-        if (foundQuote) target.add(current.toString());
+        Hankel = new HankelStore(alphabet.length);
+        for (String w : positiveWords) cache(w, 1);
+        for (String w : negativeWords) cache(w, 0);
     }
     
     // ==================== Prefix/Suffix Extraction ====================
@@ -244,18 +183,19 @@ public class LearnFromExamples {
      */
     public static int MQ(String word) throws Exception {
         // Check cache first
-        if (Hankel.containsKey(word)) {
-            return Hankel.get(word);
+        int cached = cached(word);
+        if (cached != -1) {
+            return cached;
         }
         
         // Word not in examples - try to infer
         // Strategy 1: Check if word is directly in positive/negative sets
         if (positiveWords.contains(word)) {
-            Hankel.put(word, 1);
+            cache(word, 1);
             return 1;
         }
         if (negativeWords.contains(word)) {
-            Hankel.put(word, 0);
+            cache(word, 0);
             return 0;
         }
         
@@ -268,12 +208,28 @@ public class LearnFromExamples {
      * Safe MQ that returns -1 for unknown words instead of throwing.
      */
     public static int MQSafe(String word) {
-        if (Hankel.containsKey(word)) return Hankel.get(word);
-        if (positiveWords.contains(word)) { Hankel.put(word, 1); return 1; }
-        if (negativeWords.contains(word)) { Hankel.put(word, 0); return 0; }
+        int cached = cached(word);
+        if (cached != -1) return cached;
+        if (positiveWords.contains(word)) { cache(word, 1); return 1; }
+        if (negativeWords.contains(word)) { cache(word, 0); return 0; }
         return -1; // Unknown
     }
     
+    /**
+     * Cached answer for a word, or -1 if it is not cached (or not over the alphabet).
+     */
+    private static int cached(String word) {
+        Word encoded = Word.tryParse(word, letterToIndex);
+        return encoded == null ? -1 : Hankel.get(encoded);
+    }
+    
+    private static void cache(String word, int answer) {
+        Word encoded = Word.tryParse(word, letterToIndex);
+        if (encoded != null) {
+            Hankel.put(encoded, answer);
+        }
+    }
+    
     // ==================== Learning Algorithm ====================
     
     public static void learn() throws Exception {
@@ -510,7 +466,7 @@ public class LearnFromExamples {
         
         if (resultTransitionMatrices == null) {
             System.out.println("  Warning: singular matrix");
-            resultTransitionMatrices = new HashMap[alphabet.length];
+            resultTransitionMatrices = new GF2Matrix[alphabet.length];
             for (int i = 0; i < alphabet.length; i++) {
                 resultTransitionMatrices[i] = initialize(dimension, dimension);
             }
@@ -537,18 +493,17 @@ public class LearnFromExamples {
     
     // Track unknown entries for exhaustive search
     public static List<int[]> unknownEntries = new ArrayList<>(); // [letterIdx, row, col]
-    public static double[][][] F_letter_matrices; // Stores F_a matrices for each letter
-    public static DecompositionSolver baseSolver;
+    public static GF2Matrix[] F_letter_matrices; // Stores F_a matrices for each letter
+    public static solver baseSolver;
     
     /**
      * Exhaustive search over unknown Hankel entries.
      * Tries all combinations of unknown values in both base matrix and transition matrices.
      */
-    @SuppressWarnings("unchecked")
     public static boolean exhaustiveSearchUnknowns() throws Exception {
         // Collect unknowns in base matrix
         List<int[]> baseUnknowns = new ArrayList<>(); // [-1, i, j] for base matrix
-        double[][] baseF = new double[dimension][dimension];
+        GF2Matrix baseF = initialize(dimension, dimension);
         
         for (int i = 0; i < dimension; i++) {
             for (int j = 0; j < dimension; j++) {
@@ -558,19 +513,19 @@ public class LearnFromExamples {
                 
                 if (val == -1) {
                     baseUnknowns.add(new int[]{-1, i, j});
-                    baseF[j][i] = 0;
-                } else {
-                    baseF[j][i] = val;
+                } else if (val == 1) {
+                    addElement(baseF, i + 1, j + 1);
                 }
             }
         }
         
         // Collect unknowns in transition matrices
         unknownEntries.clear();
-        F_letter_matrices = new double[alphabet.length][dimension][dimension];
+        F_letter_matrices = new GF2Matrix[alphabet.length];
         
         for (int c = 0; c < alphabet.length; c++) {
             String letter = alphabet[c];
+            F_letter_matrices[c] = initialize(dimension, dimension);
             for (int i = 0; i < dimension; i++) {
                 for (int j = 0; j < dimension; j++) {
                     String word = addStrings(addStrings(rowIndices.get(i), letter), colIndices.get(j));
@@ -579,9 +534,8 @@ public class LearnFromExamples {
                     
                     if (val == -1) {
                         unknownEntries.add(new int[]{c, i, j});
-                        F_letter_matrices[c][i][j] = 0;
-                    } else {
-                        F_letter_matrices[c][i][j] = val;
+                    } else if (val == 1) {
+                        addElement(F_letter_matrices[c], i + 1, j + 1);
                     }
                 }
             }
@@ -607,63 +561,39 @@ public class LearnFromExamples {
         
         for (long combo = 0; combo < totalCombinations; combo++) {
             // Set base matrix unknowns
-            double[][] testBaseF = new double[dimension][dimension];
-            for (int i = 0; i < dimension; i++) {
-                testBaseF[i] = baseF[i].clone();
-            }
+            GF2Matrix testBaseF = baseF.copy();
             
             for (int k = 0; k < numBaseUnknowns; k++) {
                 int[] entry = baseUnknowns.get(k);
-                int bit = (int)((combo >> k) & 1);
-                testBaseF[entry[2]][entry[1]] = bit;
+                if (((combo >> k) & 1) == 1) {
+                    addElement(testBaseF, entry[1] + 1, entry[2] + 1);
+                }
             }
             
             // Check if base matrix is invertible
-            RealMatrix baseMatrix = new Array2DRowRealMatrix(testBaseF);
-            DecompositionSolver testSolver;
-            try {
-                testSolver = new solver(baseMatrix).getSolver();
-            } catch (Exception e) {
+            solver testSolver = new solver(testBaseF);
+            if (!testSolver.isNonSingular()) {
                 continue; // This combination gives singular matrix
             }
             
             // Set transition matrix unknowns
-            double[][][] testTransF = new double[alphabet.length][dimension][dimension];
+            GF2Matrix[] testTransF = new GF2Matrix[alphabet.length];
             for (int c = 0; c < alphabet.length; c++) {
-                for (int i = 0; i < dimension; i++) {
-                    testTransF[c][i] = F_letter_matrices[c][i].clone();
-                }
+                testTransF[c] = F_letter_matrices[c].copy();
             }
             
             for (int k = 0; k < numTransUnknowns; k++) {
                 int[] entry = unknownEntries.get(k);
-                int bit = (int)((combo >> (numBaseUnknowns + k)) & 1);
-                testTransF[entry[0]][entry[1]][entry[2]] = bit;
-            }
-            
-            // Build transition matrices
-            HashMap<Integer, ArrayList<Integer>>[] testMatrices = new HashMap[alphabet.length];
-            boolean valid = true;
-            
-            for (int c = 0; c < alphabet.length && valid; c++) {
-                testMatrices[c] = initialize(dimension, dimension);
-                
-                for (int i = 0; i < dimension; i++) {
-                    RealVector constants = new ArrayRealVector(testTransF[c][i]);
-                    try {
-                        RealVector solution = testSolver.solve(constants);
-                        for (int j = 0; j < dimension; j++) {
-                            if (mod2(solution.getEntry(j)) == 1) {
-                                addElement(testMatrices[c], i + 1, j + 1);
-                            }
-                        }
-                    } catch (Exception e) {
-                        valid = false;
-                    }
+                if (((combo >> (numBaseUnknowns + k)) & 1) == 1) {
+                    addElement(testTransF[entry[0]], entry[1] + 1, entry[2] + 1);
                 }
             }
             
-            if (!valid) continue;
+            // Build transition matrices: row i of testMatrices[c] expresses row i of F_c in the base rows
+            GF2Matrix[] testMatrices = new GF2Matrix[alphabet.length];
+            for (int c = 0; c < alphabet.length; c++) {
+                testMatrices[c] = testSolver.solveLeft(testTransF[c]);
+            }
             
             // Test against all examples
             String ce = findCounterexample(resultFinalVector, testMatrices);
@@ -691,11 +621,11 @@ public class LearnFromExamples {
         return shortest;
     }
     
-    public static HashMap<Integer, ArrayList<Integer>> createHypothesisFinalVector() throws Exception {
+    public static GF2Matrix createHypothesisFinalVector() throws Exception {
         // Sync dimension with actual row count
         dimension = rowIndices.size();
         
-        HashMap<Integer, ArrayList<Integer>> fv = initialize(1, dimension);
+        GF2Matrix fv = initialize(1, dimension);
         for (int i = 0; i < dimension; i++) {
             int val = MQSafe(rowIndices.get(i));
             if (val == 1) {
@@ -705,8 +635,7 @@ public class LearnFromExamples {
         return fv;
     }
     
-    @SuppressWarnings("unchecked")
-    public static HashMap<Integer, ArrayList<Integer>>[] createHypothesisTransitionMatrices() throws Exception {
+    public static GF2Matrix[] createHypothesisTransitionMatrices() throws Exception {
         // Sync dimension with actual row count
         dimension = rowIndices.size();
         int numCols = colIndices.size();
@@ -723,9 +652,9 @@ public class LearnFromExamples {
         }
         numCols = colIndices.size();
         
-        HashMap<Integer, ArrayList<Integer>>[] matrices = new HashMap[alphabet.length];
+        GF2Matrix[] matrices = new GF2Matrix[alphabet.length];
         
-        double[][] F_xi = new double[dimension][dimension];
+        GF2Matrix F_xi = initialize(dimension, dimension);
         
         // Build the base matrix (dimension x dimension using first 'dimension' columns)
         for (int i = 0; i < dimension; i++) {
@@ -736,25 +665,18 @@ public class LearnFromExamples {
                     // Try to find an equivalent query
                     val = findEquivalentMQ(rowIndices.get(i), colIndices.get(j));
                 }
-                if (val == -1) val = 0; // Default to 0 for unknown
-                F_xi[j][i] = val;
+                if (val == 1) addElement(F_xi, i + 1, j + 1); // Default to 0 for unknown
             }
         }
         
-        RealMatrix baseMatrix = new Array2DRowRealMatrix(F_xi);
-        DecompositionSolver solver;
-        try {
-            solver = new solver(baseMatrix).getSolver();
-        } catch (Exception e) {
-            return null; // Matrix is singular
-        }
+        solver solver = new solver(F_xi);
         
         if (verbose) {
-            System.out.println("  Base matrix F:");
+            System.out.println("  Base matrix F (rank " + solver.getRank() + "):");
             for (int i = 0; i < dimension; i++) {
                 System.out.print("    ");
                 for (int j = 0; j < dimension; j++) {
-                    System.out.print((int)F_xi[i][j] + " ");
+                    System.out.print(getEntry(F_xi, j + 1, i + 1) + " ");
                 }
                 System.out.println();
             }
@@ -764,7 +686,7 @@ public class LearnFromExamples {
             matrices[c] = initialize(dimension, dimension);
             String letter = alphabet[c];
             
-            double[][] F_xi_letter = new double[dimension][dimension];
+            GF2Matrix F_xi_letter = initialize(dimension, dimension);
             int unknownCount = 0;
             for (int i = 0; i < dimension; i++) {
                 for (int j = 0; j < dimension; j++) {
@@ -774,8 +696,7 @@ public class LearnFromExamples {
                         unknownCount++;
                         val = findEquivalentMQ(addStrings(rowIndices.get(i), letter), colIndices.get(j));
                     }
-                    if (val == -1) val = 0;
-                    F_xi_letter[i][j] = val;
+                    if (val == 1) addElement(F_xi_letter, i + 1, j + 1);
                 }
             }
             
@@ -788,30 +709,26 @@ public class LearnFromExamples {
                 for (int i = 0; i < dimension; i++) {
                     System.out.print("    ");
                     for (int j = 0; j < dimension; j++) {
-                        System.out.print((int)F_xi_letter[i][j] + " ");
+                        System.out.print(getEntry(F_xi_letter, i + 1, j + 1) + " ");
                     }
                     System.out.println();
                 }
             }
             
-            for (int i = 0; i < dimension; i++) {
-                RealVector constants = new ArrayRealVector(F_xi_letter[i]);
-                try {
-                    RealVector solution = solver.solve(constants);
-                    if (verbose) {
-                        System.out.print("    Row " + i + " solution: ");
-                        for (int j = 0; j < dimension; j++) {
-                            System.out.print(String.format("%.2f ", solution.getEntry(j)));
-                        }
-                        System.out.println();
-                    }
+            if (!solver.isNonSingular()) {
+                // leave the matrix zero, as every row would fail to solve
+                if (verbose) System.out.println("    Base matrix is singular, no solution for letter " + letter);
+                continue;
+            }
+            
+            matrices[c] = solver.solveLeft(F_xi_letter);
+            if (verbose) {
+                for (int i = 0; i < dimension; i++) {
+                    System.out.print("    Row " + i + " solution: ");
                     for (int j = 0; j < dimension; j++) {
-                        if (mod2(solution.getEntry(j)) == 1) {
-                            addElement(matrices[c], i + 1, j + 1);
-                        }
+                        System.out.print(getEntry(matrices[c], i + 1, j + 1) + " ");
                     }
-                } catch (Exception e) {
-                    if (verbose) System.out.println("    Row " + i + " solver exception: " + e.getMessage());
+                    System.out.println();
                 }
             }
         }
@@ -1007,28 +924,38 @@ public class LearnFromExamples {
         return result;
     }
     
+    // Trie over the labelled examples, rebuilt when the examples change
+    public static WordTrie exampleTrie;
+    private static int exampleTrieSize = -1;
+    
     /**
      * Find a counterexample from the known examples.
+     * All examples are evaluated in one walk over exampleTrie, and the
+     * lexicographically smallest misclassified example is returned.
      */
-    public static String findCounterexample(HashMap<Integer, ArrayList<Integer>> fv, 
-                                            HashMap<Integer, ArrayList<Integer>>[] transitions) throws Exception {
-        // Check all positive examples
-        for (String word : positiveWords) {
-            int result = evaluateHypothesis(fv, transitions, word);
-            if (result != 1) {
-                return word;
+    public static String findCounterexample(GF2Matrix fv, 
+                                            GF2Matrix[] transitions) throws Exception {
+        if (exampleTrie == null || exampleTrieSize != positiveWords.size() + negativeWords.size()) {
+            exampleTrie = new WordTrie(alphabet.length);
+            // as in the Hankel cache, a word given as both positive and negative is taken as negative
+            for (String word : positiveWords) {
+                exampleTrie.add(Word.parse(word, letterToIndex), 1);
+            }
+            for (String word : negativeWords) {
+                exampleTrie.add(Word.parse(word, letterToIndex), 0);
             }
+            exampleTrieSize = positiveWords.size() + negativeWords.size();
         }
         
-        // Check all negative examples
-        for (String word : negativeWords) {
-            int result = evaluateHypothesis(fv, transitions, word);
-            if (result != 0) {
-                return word;
-            }
+        if (hypothesisEvaluator == null || !hypothesisEvaluator.isFor(fv, transitions)) {
+            hypothesisEvaluator = new M2MAEvaluator(fv, transitions);
         }
         
-        return null; // No counterexample
+        int mismatch = exampleTrie.firstMismatch(hypothesisEvaluator, WordTrie.alphabetOrder(alphabet));
+        if (mismatch == -1) {
+            return null; // No counterexample
+        }
+        return exampleTrie.get(mismatch).toString(alphabet, " ");
     }
     
     /**
@@ -1036,7 +963,7 @@ public class LearnFromExamples {
      * Only adds rows/columns where the resulting queries can be answered.
      */
     public static boolean processCounterexample(String ce, 
-                                                HashMap<Integer, ArrayList<Integer>>[] transitions) throws Exception {
+                                                GF2Matrix[] transitions) throws Exception {
         String[] parts = ce.isEmpty() ? new String[0] : ce.split(" ");
         boolean added = false;
         
@@ -1265,35 +1192,16 @@ public class LearnFromExamples {
     
     // ==================== M2MA Evaluation ====================
     
-    public static int evaluateHypothesis(HashMap<Integer, ArrayList<Integer>> fv,
-                                         HashMap<Integer, ArrayList<Integer>>[] transitions,
+    // Evaluator of the hypothesis most recently passed to evaluateHypothesis
+    public static M2MAEvaluator hypothesisEvaluator;
+    
+    public static int evaluateHypothesis(GF2Matrix fv,
+                                         GF2Matrix[] transitions,
                                          String word) throws Exception {
-        int[] state = new int[dimension];
-        state[0] = 1;
-        
-        String[] parts = word.isEmpty() ? new String[0] : word.split(" ");
-        for (String letter : parts) {
-            int letterIdx = letterToIndex.get(letter);
-            int[] newState = new int[dimension];
-            for (int i = 0; i < dimension; i++) {
-                if (state[i] == 1) {
-                    for (int j = 0; j < dimension; j++) {
-                        if (getEntry(transitions[letterIdx], i + 1, j + 1) == 1) {
-                            newState[j] ^= 1;
-                        }
-                    }
-                }
-            }
-            state = newState;
+        if (hypothesisEvaluator == null || !hypothesisEvaluator.isFor(fv, transitions)) {
+            hypothesisEvaluator = new M2MAEvaluator(fv, transitions);
         }
-        
-        int result = 0;
-        for (int i = 0; i < dimension; i++) {
-            if (state[i] == 1 && getEntry(fv, 1, i + 1) == 1) {
-                result ^= 1;
-            }
-        }
-        return result;
+        return hypothesisEvaluator.evaluate(word, letterToIndex);
     }
     
     public static int evaluateM2MA(String word) throws Exception {
@@ -1332,8 +1240,8 @@ public class LearnFromExamples {
         System.out.println("  Before: " + dimension + ", After: " + minDim);
         
         // Verify minimized result
-        HashMap<Integer, ArrayList<Integer>> minFV = M2MA.minFinalVector;
-        HashMap<Integer, ArrayList<Integer>>[] minTM = M2MA.minTransitionMatrices;
+        GF2Matrix minFV = M2MA.minFinalVector;
+        GF2Matrix[] minTM = M2MA.minTransitionMatrices;
         
         int wrongAfter = 0;
         for (String w : positiveWords) {
@@ -1422,27 +1330,18 @@ public class LearnFromExamples {
         }
     }
     
-    // ==================== Sparse Matrix Utilities (from M2MA.java) ====================
+    // ==================== Matrix Utilities (from M2MA.java) ====================
     
-    public static HashMap<Integer, ArrayList<Integer>> initialize(int rows, int cols) {
-        HashMap<Integer, ArrayList<Integer>> m = new HashMap<>();
-        ArrayList<Integer> dim = new ArrayList<>();
-        dim.add(rows);
-        dim.add(cols);
-        m.put(0, dim);
-        return m;
+    public static GF2Matrix initialize(int rows, int cols) {
+        return new GF2Matrix(rows, cols);
     }
     
-    public static void addElement(HashMap<Integer, ArrayList<Integer>> m, int row, int col) {
-        if (m.get(row) == null) m.put(row, new ArrayList<>());
-        m.get(row).add(col);
-        if (m.get(-col) == null) m.put(-col, new ArrayList<>());
-        m.get(-col).add(row);
+    public static void addElement(GF2Matrix m, int row, int col) {
+        m.set(row - 1, col - 1);
     }
     
-    public static int getEntry(HashMap<Integer, ArrayList<Integer>> m, int row, int col) {
-        if (m.get(row) == null) return 0;
-        return m.get(row).contains(col) ? 1 : 0;
+    public static int getEntry(GF2Matrix m, int row, int col) {
+        return m.get(row - 1, col - 1);
     }
     
     public static String addStrings(String a, String b) {
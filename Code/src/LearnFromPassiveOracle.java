@@ -44,7 +44,7 @@ public class LearnFromPassiveOracle {
         for (int i = 0; i < alphabet.length; i++) {
             M2MA.letterToIndex.put(alphabet[i], i);
         }
-        M2MA.Hankel = new HashMap<>();
+        M2MA.Hankel = new HankelStore(M2MA.alphabet.length);
         M2MA.startTime = System.nanoTime();
         
         // Run the learning algorithm
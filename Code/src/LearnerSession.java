@@ -0,0 +1,596 @@
+/*
+ * LearnerSession.java
+ *
+ * One run of the learning algorithm for mod-2-MAs, with all of its state: the alphabet, the membership and
+ * equivalence oracles of the target function, the Hankel matrix, the observation table and its hypothesis tables.
+ *
+ * Sessions share no state, so one JVM can learn many targets at once, one session per thread (a session itself
+ * is not thread-safe). forM2MA and forTarget make a session for a mod-2-MA (e.g. the minimization of the mod-2-MA
+ * of a SUBA, see Minimizer.java) and for a target that only answers MQ's (e.g. an NBA, see NBA.MQ); such a session
+ * reads and writes no static field.
+ *
+ * The static entry points of M2MA.java (M2MA.learn(), M2MA.MQ, ...) run the default session, which reads its
+ * target and settings from the static fields of M2MA and of the target's class, and publishes its table and
+ * result back to them. The passive and characteristic-set oracles (PassiveLearningOracle.java and
+ * CharacteristicSetGeneratingOracle.java) keep their examples in static fields, so they are only used by the
+ * default session, one at a time.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.ToIntFunction;
+
+public class LearnerSession {
+
+	public final String[] alphabet;
+	public final MembershipOracle oracle;
+	public final EquivalenceOracle equivalenceOracle;
+	// answers of the words queried so far
+	public HankelStore Hankel;
+
+	// if true, displays the observation table as it is constructed
+	public boolean observationTableFlag;
+	// if true, learn() periodically writes a checkpoint to checkpointFile
+	public boolean checkpointFlag;
+	// if true, learn() resumes from checkpointFile if it exists
+	public boolean resumeFlag;
+	public String checkpointFile;
+	// minimum time between two checkpoints, in milliseconds
+	public long checkpointInterval = 60000;
+	private long lastCheckpointTime;
+	// dimension of the target function if it is known (the algorithm fails beyond it), or -1
+	public int maxSize = -1;
+
+	// mod-2-MA being learned
+	public int learnedSize;
+	// row and column indices of the observation table being constructed
+	public ArrayList<Word> learnedRowIndices;
+	public ArrayList<Word> learnedColIndices;
+	public Word counterExample;
+
+	// tables of the observation table being constructed, kept between rounds (see createHypothesisTransitionMatrices)
+	// they describe the first hypothesisTableSize indices of hypothesisTableRows
+	private ArrayList<Word> hypothesisTableRows;
+	private int hypothesisTableSize;
+	private GF2Matrix F_xi;
+	private GF2Matrix[] F_xi_letter;
+	// F_xi^-1 (null if F_xi is singular), and the transition matrices F_xi_letter * F_xi^-1
+	private GF2Matrix F_xi_inverse;
+	private GF2Matrix[] hypothesisTransitions;
+
+	// learned mod-2-MA
+	public GF2Matrix resultFinalVector;
+	public GF2Matrix[] resultTransitionMatrices;
+
+	public LearnerSession(String[] alphabet, MembershipOracle oracle, EquivalenceOracle equivalenceOracle) {
+		this.alphabet = alphabet;
+		this.oracle = oracle;
+		this.equivalenceOracle = equivalenceOracle;
+	}
+
+	// returns a session learning the given mod-2-MA, with exact EQ's against it (see M2MA.distinguishingWord)
+	public static LearnerSession forM2MA(String[] alphabet, GF2Matrix finalVector, GF2Matrix[] transitionMatrices) {
+		return new LearnerSession(alphabet, M2MA.oracleFor(finalVector, transitionMatrices),
+				(hypothesisFinalVector, hypothesisTransitionMatrices) -> M2MA.distinguishingWord(finalVector,
+						transitionMatrices, hypothesisFinalVector, hypothesisTransitionMatrices));
+	}
+
+	/*
+	 * Returns a session learning a target that answers MQ's from several threads at once, with the statistical
+	 * EQ's of StatisticalEquivalenceOracle.java drawn from a generator with the given seed. Learning ends at the
+	 * EQ limit, with the last hypothesis as result (see StatisticalEquivalenceOracle.failuresAtLimit).
+	 */
+	public static LearnerSession forTarget(String[] alphabet, ToIntFunction<Word> target, int maxTestLen, int numTests, int limit, long seed) {
+		MembershipOracle oracle = new MembershipOracle() {
+			@Override
+			public int answer(Word word) {
+				return target.applyAsInt(word);
+			}
+
+			@Override
+			public int[] answerBatch(List<Word> words) {
+				return MembershipOracle.answerInParallel(words, target);
+			}
+		};
+		StatisticalEquivalenceOracle equivalenceOracle = new StatisticalEquivalenceOracle(alphabet.length, target,
+				maxTestLen, numTests, limit, new SplittableRandom(seed));
+		LearnerSession session = new LearnerSession(alphabet, oracle, equivalenceOracle);
+		equivalenceOracle.Hankel = () -> session.Hankel;
+		return session;
+	}
+
+	public void learn() throws Exception {
+		lastCheckpointTime = System.currentTimeMillis();
+		if (resumeFlag && readCheckpoint()) {
+			System.out.println("Resumed from " + checkpointFile + " with an observation table of size " + learnedSize + "\n");
+		} else {
+			learnInitial();
+		}
+
+		if (observationTableFlag) {
+			System.out.println("Observation table after individual queries\n------------------------------------------");
+			displayTable();
+		}
+
+		learnMain();
+
+		if (checkpointFile != null) {
+			// the learned mod-2-MA is complete, so the checkpoint must not be resumed by another run
+			new File(checkpointFile).delete();
+		}
+
+		if (observationTableFlag) {
+			System.out.println("Hankel matrix: " + Hankel + "\n");
+		}
+	}
+
+	// initializes the observation table with the empty word
+	public void learnInitial() throws Exception {
+		learnedRowIndices = new ArrayList<Word>();
+		learnedColIndices = new ArrayList<Word>();
+		learnedRowIndices.add(Word.EMPTY);
+		learnedColIndices.add(Word.EMPTY);
+		learnedSize = 1;
+
+		if (Hankel == null) {
+			Hankel = new HankelStore(alphabet.length);
+		}
+
+		/*
+		 * F("") cannot equal 0 (otherwise can't form a linearly independent basis of elements in learnedRowIndices).
+		 * The algorithm instead begins with a 2x2 matrix of full rank.
+		 */
+		if (MQ(Word.EMPTY) == 0) {
+			GF2Matrix hypothesisFinalVector = createHypothesisFinalVector();
+			GF2Matrix[] hypothesisTransitionMatrices = createHypothesisTransitionMatrices();
+
+			if (!EQ(hypothesisFinalVector, hypothesisTransitionMatrices)) {
+				learnedSize++;
+				learnedRowIndices.add(counterExample);
+				learnedColIndices.add(counterExample);
+			}
+		}
+	}
+
+	// one round per equivalence query, until the hypothesis is correct
+	public void learnMain() throws Exception {
+		while (true) {
+			GF2Matrix hypothesisFinalVector = createHypothesisFinalVector();
+			GF2Matrix[] hypothesisTransitionMatrices = createHypothesisTransitionMatrices();
+
+			if (EQ(hypothesisFinalVector, hypothesisTransitionMatrices)) {
+				resultFinalVector = hypothesisFinalVector;
+				resultTransitionMatrices = hypothesisTransitionMatrices;
+				return;
+			}
+
+			growObservationTable(hypothesisTransitionMatrices);
+
+			if (checkpointFlag && System.currentTimeMillis() - lastCheckpointTime >= checkpointInterval) {
+				writeCheckpoint();
+				lastCheckpointTime = System.currentTimeMillis();
+			}
+		}
+	}
+
+	// EQ for the target function, sets counterExample if the hypothesis is not equivalent
+	public boolean EQ(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		Word out = equivalenceOracle.counterExample(hypothesisFinalVector, hypothesisTransitionMatrices);
+		if (out == null) {
+			return true;
+		}
+		counterExample = out;
+		return false;
+	}
+
+	/*
+	 * Checkpoints of learn(): the alphabet, the row and column indices of the observation table, and the
+	 * answers of the queries made so far (see HankelStore.java). Resuming restarts the round after the last
+	 * checkpoint with every answer the oracle already gave, so only new words are queried again.
+	 * The checkpoint is written to a temporary file first, so a crash never leaves a partial checkpoint.
+	 */
+	private static final int CHECKPOINT_VERSION = 1;
+
+	public void writeCheckpoint() throws IOException {
+		File file = new File(checkpointFile);
+		File temp = new File(checkpointFile + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeInt(alphabet.length);
+			for (String letter : alphabet) {
+				out.writeUTF(letter);
+			}
+
+			out.writeInt(learnedSize);
+			for (int i=0; i<learnedSize; i++) {
+				learnedRowIndices.get(i).writeTo(out);
+				learnedColIndices.get(i).writeTo(out);
+			}
+
+			Hankel.writeTo(out);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// restores the observation table and the Hankel matrix from checkpointFile, returns false if there is no checkpoint
+	public boolean readCheckpoint() throws Exception {
+		File file = new File(checkpointFile);
+		if (!file.exists()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != CHECKPOINT_VERSION) {
+				throw new Exception("Invalid checkpoint: " + checkpointFile + " was written by another version.");
+			}
+
+			boolean sameAlphabet = (in.readInt() == alphabet.length);
+			for (int i=0; sameAlphabet && i<alphabet.length; i++) {
+				sameAlphabet = in.readUTF().equals(alphabet[i]);
+			}
+			if (!sameAlphabet) {
+				throw new Exception("Invalid checkpoint: " + checkpointFile + " has a different alphabet.");
+			}
+
+			learnedSize = in.readInt();
+			learnedRowIndices = new ArrayList<Word>();
+			learnedColIndices = new ArrayList<Word>();
+			for (int i=0; i<learnedSize; i++) {
+				learnedRowIndices.add(Word.readFrom(in));
+				learnedColIndices.add(Word.readFrom(in));
+			}
+
+			Hankel = HankelStore.readFrom(in);
+		}
+		return true;
+	}
+
+	public GF2Matrix createHypothesisFinalVector() throws Exception {
+		QueryBatch batch = new QueryBatch(this);
+		for (int i=0; i<learnedSize; i++) {
+			batch.add(learnedRowIndices.get(i));
+		}
+		batch.run();
+
+		GF2Matrix hypothesisFinalVector = new GF2Matrix(1, learnedSize);
+		for (int i=0; i<learnedSize; i++) {
+			if (batch.get(i) == 1) {
+				hypothesisFinalVector.set(0, i);
+			}
+		}
+		return hypothesisFinalVector;
+	}
+
+	public GF2Matrix[] createHypothesisTransitionMatrices() throws Exception {
+		/*
+		 * For every letter in alphabet, define a transition matrix by letting its i-th row be the coefficients
+		 * of the vector F_{xi+letter}(y) when expressed as a linear combination of the row vectors of F (such
+		 * coefficients exist as the row vectors are linearly independent).
+		 *
+		 * The tables are kept between rounds. The observation table only grows by one row and one column at
+		 * a time, so each new index is added with a bordered update (see growHypothesisTables).
+		 */
+		if (hypothesisTableRows != learnedRowIndices || hypothesisTableSize > learnedSize) {
+			createHypothesisTables();
+		}
+		while (hypothesisTableSize < learnedSize) {
+			growHypothesisTables();
+		}
+		return hypothesisTransitions;
+	}
+
+	// builds the tables of the observation table from scratch
+	private void createHypothesisTables() throws Exception {
+		// F_xi[i][j] = F(x_i+y_j) and F_xi_letter[i][j] = F(x_i+letter+y_j), so transitionMatrix_letter = F_xi_letter * F_xi^-1
+		// every entry is known up front, so all of them are asked in one batch
+		QueryBatch batch = new QueryBatch(this);
+		for (int c=0; c<alphabet.length; c++) {
+			for (int i=0; i<learnedSize; i++) {
+				for (int j=0; j<learnedSize; j++) {
+					if (c == 0) {
+						batch.add(learnedRowIndices.get(i), learnedColIndices.get(j));
+					}
+					batch.add(learnedRowIndices.get(i), c, learnedColIndices.get(j));
+				}
+			}
+		}
+		batch.run();
+
+		// the answers are read back in the order in which they were added
+		int id = 0;
+		F_xi = new GF2Matrix(learnedSize, learnedSize);
+		F_xi_letter = new GF2Matrix[alphabet.length];
+		for (int c=0; c<alphabet.length; c++) {
+			F_xi_letter[c] = new GF2Matrix(learnedSize, learnedSize);
+
+			for (int i=0; i<learnedSize; i++) {
+				for (int j=0; j<learnedSize; j++) {
+					if (c == 0 && batch.get(id++) == 1) {
+						F_xi.set(i, j);
+					}
+					if (batch.get(id++) == 1) {
+						F_xi_letter[c].set(i, j);
+					}
+				}
+			}
+		}
+		hypothesisTableRows = learnedRowIndices;
+		hypothesisTableSize = learnedSize;
+
+		factorHypothesisTables();
+	}
+
+	// factors F_xi once and solves for every letter
+	private void factorHypothesisTables() {
+		int size = F_xi.getRowDimension();
+		solver solver = new solver(F_xi);
+		F_xi_inverse = solver.getInverse();
+
+		hypothesisTransitions = new GF2Matrix[alphabet.length];
+		for (int c=0; c<alphabet.length; c++) {
+			if (solver.isNonSingular()) {
+				hypothesisTransitions[c] = solver.solveLeft(F_xi_letter[c]);
+			} else {
+				// matrix is not invertible
+				hypothesisTransitions[c] = new GF2Matrix(size, size);
+			}
+		}
+	}
+
+	/*
+	 * Adds the next row and column index to the tables.
+	 *
+	 * Write F_xi = A and the grown table as [[A, b], [c^T, d]]. If s = d + c^T*A^-1*b is 1, then with
+	 * u = A^-1*b and v^T = c^T*A^-1, the grown table is invertible with inverse [[A^-1 + u*v^T, u], [v^T, 1]].
+	 * If F_xi_letter is grown to [[L, f], [g^T, e]] and z = [[L, f], [g^T, e]] * (u, 1)^T, the grown transition
+	 * matrix is [[T + z'*v^T, z'], [g^T*A^-1 + z_n*v^T, z_n]], where T = L*A^-1 and z' is z without its last entry.
+	 * Only the new entries are queried, and every update is a product of a matrix and a vector.
+	 * If s = 0 the grown table is singular, and it is factored from scratch once it is grown again.
+	 */
+	private void growHypothesisTables() throws Exception {
+		int n = hypothesisTableSize;
+
+		// query the new row and column in one batch, in the order in which createHypothesisTables would first query them
+		QueryBatch batch = new QueryBatch(this);
+		for (int c=0; c<alphabet.length; c++) {
+			for (int i=0; i<=n; i++) {
+				for (int j=(i < n) ? n : 0; j<=n; j++) {
+					if (c == 0) {
+						batch.add(learnedRowIndices.get(i), learnedColIndices.get(j));
+					}
+					batch.add(learnedRowIndices.get(i), c, learnedColIndices.get(j));
+				}
+			}
+		}
+		batch.run();
+
+		int id = 0;
+		GF2Matrix grownF_xi = F_xi.copy(n + 1, n + 1);
+		GF2Matrix[] grownF_xi_letter = new GF2Matrix[alphabet.length];
+		for (int c=0; c<alphabet.length; c++) {
+			grownF_xi_letter[c] = F_xi_letter[c].copy(n + 1, n + 1);
+
+			for (int i=0; i<=n; i++) {
+				for (int j=(i < n) ? n : 0; j<=n; j++) {
+					if (c == 0 && batch.get(id++) == 1) {
+						grownF_xi.set(i, j);
+					}
+					if (batch.get(id++) == 1) {
+						grownF_xi_letter[c].set(i, j);
+					}
+				}
+			}
+		}
+
+		GF2Matrix inverse = F_xi_inverse;
+		GF2Matrix[] transitions = hypothesisTransitions;
+		F_xi = grownF_xi;
+		F_xi_letter = grownF_xi_letter;
+		hypothesisTableSize = n + 1;
+
+		if (inverse == null) {
+			factorHypothesisTables();
+			return;
+		}
+
+		// b is the new column and c the new row of F_xi (both without the corner d)
+		long[] b = new long[GF2Matrix.words(n)];
+		for (int i=0; i<n; i++) {
+			if (F_xi.get(i, n) == 1) {
+				GF2Matrix.setBit(b, i);
+			}
+		}
+		long[] c = F_xi.getRow(n);
+
+		long[] u = new long[GF2Matrix.words(n)];
+		long[] v = new long[GF2Matrix.words(n)];
+		inverse.timesVector(b, u);
+		inverse.vectorTimes(c, v);
+
+		// (u, 1)
+		long[] u1 = Arrays.copyOf(u, GF2Matrix.words(n + 1));
+		GF2Matrix.setBit(u1, n);
+
+		long[] z = new long[GF2Matrix.words(n + 1)];
+		F_xi.timesVector(u1, z);
+		if (GF2Matrix.getBit(z, n) == 0) {
+			// the grown table is singular
+			F_xi_inverse = null;
+			hypothesisTransitions = new GF2Matrix[alphabet.length];
+			for (int a=0; a<alphabet.length; a++) {
+				hypothesisTransitions[a] = new GF2Matrix(n + 1, n + 1);
+			}
+			return;
+		}
+
+		hypothesisTransitions = new GF2Matrix[alphabet.length];
+		for (int a=0; a<alphabet.length; a++) {
+			F_xi_letter[a].timesVector(u1, z);
+			hypothesisTransitions[a] = border(transitions[a], z, v, inverse, F_xi_letter[a].getRow(n), n);
+		}
+
+		// for F_xi itself z = (0, ..., 0, 1), and g^T*A^-1 = v^T
+		F_xi_inverse = inverse.copy(n + 1, n + 1);
+		for (int i=0; i<n; i++) {
+			if (GF2Matrix.getBit(u, i) == 1) {
+				GF2Matrix.xorInto(F_xi_inverse.getRow(i), v);
+				F_xi_inverse.set(i, n);
+			}
+		}
+		GF2Matrix.xorInto(F_xi_inverse.getRow(n), v);
+		F_xi_inverse.set(n, n);
+	}
+
+	// returns [[T + z'*v^T, z'], [g^T*A^-1 + z_n*v^T, z_n]] (see growHypothesisTables)
+	private static GF2Matrix border(GF2Matrix T, long[] z, long[] v, GF2Matrix inverse, long[] g, int n) {
+		GF2Matrix out = T.copy(n + 1, n + 1);
+		for (int i=0; i<n; i++) {
+			if (GF2Matrix.getBit(z, i) == 1) {
+				GF2Matrix.xorInto(out.getRow(i), v);
+				out.set(i, n);
+			}
+		}
+
+		// only the first n entries of g are read
+		long[] bottom = new long[GF2Matrix.words(n)];
+		inverse.vectorTimes(g, bottom);
+		if (GF2Matrix.getBit(z, n) == 1) {
+			GF2Matrix.xorInto(bottom, v);
+			out.set(n, n);
+		}
+		GF2Matrix.xorInto(out.getRow(n), bottom);
+		return out;
+	}
+
+	// MQ for the target function
+	public int MQ(Word word) throws Exception {
+		// MQ(ω) was previously calculated and is in the Hankel matrix
+		int out = Hankel.get(word);
+		if (out == -1) {
+			out = oracle.answer(word);
+			Hankel.put(word, out);
+		}
+		return out;
+	}
+
+	// MQ for the target function on row+col, without building the word unless it must be queried
+	public int MQ(Word row, Word col) throws Exception {
+		int out = Hankel.get(row, col);
+		if (out == -1) {
+			out = oracle.answer(row.concat(col));
+			Hankel.put(row, col, out);
+		}
+		return out;
+	}
+
+	// MQ for the target function on row+letter+col
+	public int MQ(Word row, int letter, Word col) throws Exception {
+		int out = Hankel.get(row, letter, col);
+		if (out == -1) {
+			out = oracle.answer(row.concat(letter, col));
+			Hankel.put(row, letter, col, out);
+		}
+		return out;
+	}
+
+	public void growObservationTable(GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		// prefix of the counter-example = ω + σ
+		Word w = Word.EMPTY;
+		int sigma;
+		// experiment
+		Word y;
+
+		// μ(ω)_1 (the first row of transitionMatrix_ω), advanced by one letter per prefix
+		long[] w_row = new long[GF2Matrix.words(learnedSize)];
+		long[] nextRow = new long[GF2Matrix.words(learnedSize)];
+		GF2Matrix.setBit(w_row, 0);
+		// sums[j] = sum(μ(ω)_1,i * F_xi(y_j)), or the same with F_{xi+σ}
+		long[] sums = new long[GF2Matrix.words(learnedSize)];
+
+		// go through every possible prefix of the counter-example starting with ω = "" and σ = (first character of ω)
+		for (int i=0; i<counterExample.length(); i++) {
+			if (i != 0) {
+				w = counterExample.prefix(i);
+			}
+			sigma = counterExample.letterAt(i);
+
+			if (i != 0) {
+				hypothesisTransitionMatrices[counterExample.letterAt(i - 1)].vectorTimes(w_row, nextRow);
+				long[] temp = w_row;
+				w_row = nextRow;
+				nextRow = temp;
+			}
+
+			// if F is the Hankel matrix, check if F_ω = sum(μ(ω)_1,i * F_xi)
+			// the entries F_xi(y) of the observation table are already in F_xi (see createHypothesisTransitionMatrices),
+			// so the sums for every y are the single product μ(ω)_1 * F_xi, and only F_ω(y) is asked
+			F_xi.vectorTimes(w_row, sums);
+			for (int j=0; j<learnedSize; j++) {
+				if (MQ(w, learnedColIndices.get(j)) != GF2Matrix.getBit(sums, j)) {
+					break;
+				}
+			}
+
+			// go through every possible value of y in learnedColIndices
+			// check if F_{ω+σ}(y) != sum(μ(ω)_1,i * F_{xi+σ}(y)), where the sums are μ(ω)_1 * F_xi_σ
+			F_xi_letter[sigma].vectorTimes(w_row, sums);
+			for (int j=0; j<learnedSize; j++) {
+				y = learnedColIndices.get(j);
+
+				// found a solution
+				if (MQ(w, sigma, y) != GF2Matrix.getBit(sums, j)) {
+					if (learnedSize == maxSize) {
+						throw new Exception("Algorithm failed: size of the hypothesis exceeds that of the target function.");
+					}
+
+					learnedSize++;
+					learnedRowIndices.add(w);
+					learnedColIndices.add(y.prepend(sigma));
+
+					if (observationTableFlag) {
+						displayTable();
+					}
+
+					return;
+				}
+			}
+		}
+
+		throw new Exception("Algorithm failed: didn't find a suitable omega, sigma, and gamma.");
+	}
+
+	public void displayTable() throws Exception {
+		System.out.println("Size: " + learnedSize);
+		System.out.print("Rows: ɛ ");
+		for (int i=1; i<learnedRowIndices.size(); i++) {
+			System.out.print(learnedRowIndices.get(i).toString(alphabet, "") + " ");
+		}
+		System.out.println();
+
+		System.out.print("Cols: ɛ ");
+		for (int i=1; i<learnedColIndices.size(); i++) {
+			System.out.print(learnedColIndices.get(i).toString(alphabet, "") + " ");
+		}
+
+		System.out.println("\nTable:");
+		for (int i=0; i<learnedRowIndices.size(); i++) {
+			for (int j=0; j<learnedColIndices.size(); j++) {
+				System.out.print(MQ(learnedRowIndices.get(i), learnedColIndices.get(j)) + " ");
+			}
+			System.out.println();
+		}
+		System.out.println();
+	}
+}
@@ -8,39 +8,29 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.DecompositionSolver;
-import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
 
 public class M2MA {
 	
 	/*
-	 * Matrices are represented as sparse matrices using a HashMap<Integer, ArrayList<Integer>>.
-	 * Each element in the hashmap consists of a (Integer, ArrayList<Integer>) pair.
+	 * Matrices are represented as bit-packed matrices over GF(2) (see GF2Matrix.java).
+	 * Every row is stored as an array of longs holding 64 entries each, so that addition is XOR
+	 * and the dot product of two rows is the parity of the popcount of their AND.
 	 * 
-	 * map.get(0) returns an arraylist of size 2, where the first element is the row dimension, and
-	 * the second element is the column dimension.
-	 * i.e. map.get(0).get(0) = row dimension, map.get(0).get(1) = column dimension
+	 * Vectors are stored as 1xn matrices, or as the packed long[] of a single row.
 	 * 
-	 * Every row/column in the matrix is represented as an arraylist, where the arraylist contains
-	 * the indices (starting from 1 instead of 0) corresponding to locations of the 1's.
-	 * E.g. [1, 0, 0, 1, 0, 0, 0, 1] -> [1, 4, 8]
+	 * Words are stored as arrays of letter indices (see Word.java), and are only converted from and to
+	 * space-separated strings when they are read or displayed.
 	 * 
-	 * For any positive integer r, map.get(r) returns the arraylist corresponding to row r.
-	 * For any negative integer c, map.get(c) returns the arraylist corresponding to row -c.
-	 * 
-	 * Useful sparse matrix functions are implemented such as initializing matrices, adding elements, 
-	 * and multiplying matrices.
+	 * The matrix functions below (initializing matrices, adding elements, multiplying matrices, ...)
+	 * index rows and columns starting from 1 instead of 0, and wrap the 0-based GF2Matrix kernels.
 	 */
 	
 	// if true, displays the observation table as it is constructed
@@ -51,8 +41,17 @@ public class M2MA {
 	public static boolean minDimensionFlag;
 	// if true, displays the dimension of an equivalent minimal DFA
 	public static boolean dfaFlag;
+	// the search for the states of the minimal DFA stops at this many states (set with -DdfaStateCap=n)
+	public static int dfaStateCap = Integer.getInteger("dfaStateCap", Integer.MAX_VALUE);
 	// if true, nothing is displayed
 	public static boolean displayFlag;
+	// if true, learn() periodically writes a checkpoint to checkpointFile
+	public static boolean checkpointFlag;
+	// if true, learn() resumes from checkpointFile if it exists
+	public static boolean resumeFlag;
+	public static String checkpointFile;
+	// minimum time between two checkpoints, in milliseconds
+	public static long checkpointInterval = 60000;
 	
 	public static String[] alphabet;
 	// maps each letter in the alphabet to an index
@@ -60,32 +59,35 @@ public class M2MA {
 	
 	// input mod-2-MA
 	public static int inputSize;
-	public static HashMap<Integer, ArrayList<Integer>> inputFinalVector;
-	public static HashMap<Integer, ArrayList<Integer>>[] inputTransitionMatrices;
-	public static HashMap<String, Integer> Hankel;
+	public static GF2Matrix inputFinalVector;
+	// sparse for a SUBA target (see SUBA.UFAtoMod2MA), dense otherwise
+	public static GF2LinearMap[] inputTransitionMatrices;
+	// answers of the words queried so far
+	public static HankelStore Hankel;
 	
 	// minimized mod-2-MA
-	public static HashMap<Integer, ArrayList<Integer>> minFinalVector;
-	public static HashMap<Integer, ArrayList<Integer>>[] minTransitionMatrices;
+	public static GF2Matrix minFinalVector;
+	public static GF2Matrix[] minTransitionMatrices;
 	public static int minSize;
 	// row and column indices of the minimized mod-2-MA's observation table
-	public static ArrayList<String> minRowIndices;
-	public static ArrayList<String> minColIndices;
+	public static ArrayList<Word> minRowIndices;
+	public static ArrayList<Word> minColIndices;
 	
 	// mod-2-MA being learned
 	public static int learnedSize;
 	// row and column indices of the observation table being constructed
-	public static ArrayList<String> learnedRowIndices;
-	public static ArrayList<String> learnedColIndices;
-	public static String counterExample;
+	public static ArrayList<Word> learnedRowIndices;
+	public static ArrayList<Word> learnedColIndices;
+	public static Word counterExample;
+	// the default session, which runs learn() on the fields above (see LearnerSession.java)
+	public static LearnerSession session;
 
 	// learned mod-2-MA
-	public static HashMap<Integer, ArrayList<Integer>> resultFinalVector;
-	public static HashMap<Integer, ArrayList<Integer>>[] resultTransitionMatrices;
+	public static GF2Matrix resultFinalVector;
+	public static GF2Matrix[] resultTransitionMatrices;
 	
-	// used in EQ to avoid testing the same word
-	public static boolean[][] tested;
-	public static boolean[][][][] testedExtension;
+	// evaluator of the mod-2-MA last passed to MQArbitrary on each thread
+	private static final ThreadLocal<M2MAEvaluator> arbitraryEvaluator = new ThreadLocal<M2MAEvaluator>();
 	
 	public static Scanner in;
 	public static long startTime;
@@ -110,7 +112,7 @@ public class M2MA {
 					+ "(" + learnedSize + ") than the minimized mod-2-MA (" + minSize + ").");
 		}
 
-		if (finalCheck(25, 1000, false)) {
+		if (finalCheck(false)) {
 			displayResults();
 		} else {
 			throwException(null, "Algorithm failed: failed final check.");
@@ -121,15 +123,14 @@ public class M2MA {
 		operationsOnLearnedMA();
 	}
 	
-	@SuppressWarnings("unchecked")
 	public static void readInput() throws Exception {	
 		BufferedReader f;
 		if (inMinimize) {
 			System.out.println("Enter the input file name and optional flags -ma (e.g. M2MA_input1.txt, M2MA_input1.txt -m)");
 			f = getFile(false, true, false, true);
 		} else {
-			System.out.println("Enter the input file name and optional flags -vma (e.g. M2MA_input1.txt -v, M2MA_input1.txt -ma, M2MA_input1.txt -vma)");
-			f = getFile(true, true, false, true);
+			System.out.println("Enter the input file name and optional flags -vmacr (e.g. M2MA_input1.txt -v, M2MA_input1.txt -ma, M2MA_input1.txt -vcr)");
+			f = getFile(true, true, false, true, true);
 		}
 		
 		readAlphabet(f, false);
@@ -147,9 +148,9 @@ public class M2MA {
 			throwException(f, "Invalid input: final vector length exceeds the specified size.");
 		}
 		
-		inputTransitionMatrices = new HashMap[alphabet.length];
+		inputTransitionMatrices = new GF2Matrix[alphabet.length];
 		for (int i=0; i<alphabet.length; i++) {
-			HashMap<Integer, ArrayList<Integer>> transitionMatrix = initialize(inputSize, inputSize);
+			GF2Matrix transitionMatrix = initialize(inputSize, inputSize);
 			
 			for (int j=1; j<=inputSize; j++) {
 				st = new StringTokenizer(readFile(f));
@@ -173,6 +174,11 @@ public class M2MA {
 	}
 	
 	public static BufferedReader getFile(boolean vFlag, boolean mFlag, boolean dFlag, boolean aFlag) throws Exception {
+		return getFile(vFlag, mFlag, dFlag, aFlag, false);
+	}
+	
+	// cFlag enables the flags -c (write checkpoints) and -r (resume from the last checkpoint)
+	public static BufferedReader getFile(boolean vFlag, boolean mFlag, boolean dFlag, boolean aFlag, boolean cFlag) throws Exception {
 		in = new Scanner(System.in);
 		String[] arrInput = in.nextLine().split(" ");
 		startTime = System.nanoTime();
@@ -186,6 +192,9 @@ public class M2MA {
 		minProgressFlag = false;
 		minDimensionFlag = false;
 		dfaFlag = false;
+		checkpointFlag = false;
+		resumeFlag = false;
+		checkpointFile = null;
 		if (arrInput.length == 2) {
 			if (vFlag && arrInput[1].contains("v")) {
 				observationTableFlag = true;
@@ -199,6 +208,15 @@ public class M2MA {
 			if (aFlag && arrInput[1].contains("a")) {
 				dfaFlag = true;
 			}
+			if (cFlag && arrInput[1].contains("c")) {
+				checkpointFlag = true;
+			}
+			if (cFlag && arrInput[1].contains("r")) {
+				resumeFlag = true;
+			}
+		}
+		if (checkpointFlag || resumeFlag) {
+			checkpointFile = arrInput[0] + ".checkpoint";
 		}
 		
 		if (minProgressFlag && minDimensionFlag) {
@@ -259,7 +277,7 @@ public class M2MA {
 		throw new Exception(message);
 	}
 	
-	@SuppressWarnings("unchecked")
+	// minimizes the input mod-2-MA (see Minimizer.java) into the min* fields
 	public static void minimize() throws Exception {
 		int inConvert = 0;
 		if (convert.results != null) {
@@ -270,254 +288,123 @@ public class M2MA {
 			}
 		}
 		
-		if ((inConvert == 0) && minProgressFlag) {
-			System.out.println("Mod-2-MA to minimize:");
-			System.out.println("---------------------");
-			
-			System.out.println("Dimension: " + inputSize + '\n');
-			
-			System.out.print("Final Vector: ");
-			displayMatrix(inputFinalVector);
-			
-			System.out.println("Transition Matrices:\n");
-			for (int i=0; i<inputTransitionMatrices.length; i++) {
-				System.out.println("Letter " + alphabet[i]);
-				displayMatrix(inputTransitionMatrices[i]);
-			}
-			
-			System.out.println("Minimization in progress...");
-			System.out.println("-------------------------");
-		} else if ((inConvert == 0) && minDimensionFlag) {
-			System.out.println("Minimization in progress...");
-		}
+		Minimizer minimizer = new Minimizer(alphabet, inputFinalVector, inputTransitionMatrices);
+		minimizer.progressFlag = (inConvert == 0) && minProgressFlag;
+		minimizer.dimensionFlag = (inConvert == 0) && minDimensionFlag;
+		minimizer.sizeOnly = (inConvert == 1) || ((inConvert == 0) && minDimensionFlag && !dfaFlag);
+		minimizer.run();
 		
-		ArrayList<String> stateSpaceBasisIndices = new ArrayList<String>();
-		HashMap<String, HashMap<Integer, ArrayList<Integer>>> stateSpaceIndexToVector = new HashMap<String, HashMap<Integer, ArrayList<Integer>>>();
-		HashMap<Integer, ArrayList<Integer>> stateSpaceBasis = basis(inputFinalVector, inputTransitionMatrices, stateSpaceIndexToVector, stateSpaceBasisIndices, true);
-		
-		if ((inConvert == 0) && (minProgressFlag || minDimensionFlag)) {
-			System.out.println("Created the state space.");
-		}
-		
-		ArrayList<String> coStateSpaceBasisIndices = new ArrayList<String>();
-		HashMap<String, HashMap<Integer, ArrayList<Integer>>> coStateSpaceIndexToVector = new HashMap<String, HashMap<Integer, ArrayList<Integer>>>();
-		HashMap<Integer, ArrayList<Integer>> coStateSpaceBasis = basis(inputFinalVector, inputTransitionMatrices, coStateSpaceIndexToVector, coStateSpaceBasisIndices, false);
-		
-		if ((inConvert == 0) && (minProgressFlag || minDimensionFlag)) {
-			System.out.println("Created the co-state space.");
-			if (minProgressFlag) {
-				System.out.println();
-			}
-		}
-		
-		// (state space x co-state space) observation table
-		HashMap<Integer, ArrayList<Integer>> observationTable = multiply(stateSpaceBasis, coStateSpaceBasis);
-		
-		if ((inConvert == 0) && minDimensionFlag) {
-			System.out.println("Created the observation table.");
-		}
-		
-		if ((inConvert == 0) && minProgressFlag) {
-			System.out.println("Observation table:" );
-			System.out.println("Dimension: " + stateSpaceBasis.get(0).get(0) + " x " + coStateSpaceBasis.get(0).get(1));
-			System.out.println("Rows: " + displayIndices(stateSpaceBasisIndices));
-			System.out.println("Cols: " + displayIndices(coStateSpaceBasisIndices));
-			displayMatrix(observationTable);
-		}
+		minSize = minimizer.minSize;
+		minRowIndices = minimizer.minRowIndices;
+		minColIndices = minimizer.minColIndices;
+		minFinalVector = minimizer.minFinalVector;
+		minTransitionMatrices = minimizer.minTransitionMatrices;
 		
-		// obtain the smallest set of linearly independent rows and columns from observationTable
-		minRowIndices = new ArrayList<String>();
-		HashMap<Integer, ArrayList<Integer>> linIndRowsObservationTable = linIndSubMatrixRows(observationTable, stateSpaceBasisIndices, minRowIndices);
-		
-		minSize = linIndRowsObservationTable.get(0).get(0);
-		
-		if (inConvert == 1) {
-			return;
-		}
-		
-		if ((inConvert == 0) && minDimensionFlag) {
-			System.out.println("Minimized dimension: " + minSize);
-			
-			if (!dfaFlag) {
+		if (minimizer.sizeOnly) {
+			if (inConvert == 0) {
 				if (in != null) {
 					in.close();
 				}
 				System.exit(0);
 			}
-		}
-		
-		minColIndices = new ArrayList<String>();
-		HashMap<Integer, ArrayList<Integer>> minObservationTable = linIndSubMatrixCols(linIndRowsObservationTable, coStateSpaceBasisIndices, minColIndices);
-		
-		if ((inConvert == 0) && minProgressFlag) {
-			System.out.println("Minimized observation table:");
-			System.out.println("Dimension: " + minSize);
-			System.out.println("Rows: " + displayIndices(minRowIndices));
-			System.out.println("Cols: " + displayIndices(minColIndices));
-			System.out.println("Table:");
-			displayMatrix(minObservationTable);
-		}
-		
-		// case where minObservationTable = [[0]] (singular, must be treated separately)
-		if ((int) minObservationTable.get(0).get(0) == 1 && minObservationTable.get(1) == null) {
-			minFinalVector = initialize(1, 1);
-			minTransitionMatrices = new HashMap[alphabet.length];		
-			for (int i=0; i<alphabet.length; i++) {
-				minTransitionMatrices[i] = initialize(1, 1);
-			}
-			
-			if (inConvert == 0) {
-				if (minProgressFlag) {
-					System.out.println("Minimization completed.\n");
-				}
-				
-				tested = new boolean[1][1];	
-			}
-			
 			return;
 		}
 		
-		DecompositionSolver solver = new solver(sparseToReal(minObservationTable)).getSolver();
-		HashMap<Integer, ArrayList<Integer>> tableInverse = realToSparse(solver.getInverse());
-		
-		Hankel = new HashMap<String, Integer>();
-		
-		// minTransitionMatrices = xSigma*tableInverse, where xSigma is the matrix where row_i = row_(x_i+σ) of the observation table
-		minTransitionMatrices = new HashMap[alphabet.length];
-		int dim = minObservationTable.get(0).get(0);
-		for (int i=0; i<alphabet.length; i++) {	
-			minTransitionMatrices[i] = initialize(dim, dim);
-			HashMap<Integer, ArrayList<Integer>> xSigma = initialize(dim, dim);
-			
-			for (int j=0; j<dim; j++) {			
-				for (int k=0; k<dim; k++) {
-					HashMap<Integer, ArrayList<Integer>> stateVector = stateSpaceIndexToVector.get(minRowIndices.get(j));
-					HashMap<Integer, ArrayList<Integer>> coStateVector = coStateSpaceIndexToVector.get(minColIndices.get(k));
-					
-					if (dotProduct(multiply(stateVector, inputTransitionMatrices[i]).get(1), coStateVector.get(-1)) == 1) {
-						addElement(xSigma, j+1, k+1);
-					}
-				}
-			}
-
-			minTransitionMatrices[i] = multiply(xSigma, tableInverse);
+		// the zero function (minimized observation table [[0]]) is done
+		if (minSize == 1 && minFinalVector.isZeroRow(0)) {
+			return;
 		}
 		
-		// minFinalVector is the first column of minObservationTable
-		minFinalVector = initialize(1, minObservationTable.get(0).get(0));
-		if (minObservationTable.get(-1) != null) {
-			for (int num : minObservationTable.get(-1)) {
-				addElement(minFinalVector, 1, num);
-			}
-		}
+		Hankel = new HankelStore(alphabet.length);
 		
-		if (inConvert == 0) {
-			// used in EQ to avoid testing the same word
-			tested = new boolean[minRowIndices.size()][minColIndices.size()];
-			
-			if (minProgressFlag) {
-				System.out.println("Minimization completed.\n");
-			}
+		if ((inConvert == 0) && dfaFlag) {
+			int dimMinDFA = dimensionMinDFA(true);
+			System.out.println("Number of states of equivalent minimal DFA: " + (dimMinDFA >= dfaStateCap ? "≥ " : "") + dimMinDFA + "\n");
 			
-			if (dfaFlag) {
-				System.out.println("Number of states of equivalent minimal DFA: " + dimensionMinDFA(true) + "\n");
-				
-				if (minDimensionFlag) {
-					if (in != null) {
-						in.close();
-					}
-					System.exit(0);
+			if (minDimensionFlag) {
+				if (in != null) {
+					in.close();
 				}
-				
+				System.exit(0);
 			}
 		}
 	}
 	
-	public static String displayIndices(ArrayList<String> indices) {
+	public static String displayIndices(ArrayList<Word> indices) {
+		return displayIndices(indices, alphabet);
+	}
+	
+	public static String displayIndices(ArrayList<Word> indices, String[] alphabet) {
 		String out = "";
-		for (String index : indices) {
-			if (index.length() == 0) {
+		for (Word index : indices) {
+			if (index.isEmpty()) {
 				out += "ɛ ";
 			} else {
-				out += removeSpaces(index) + " ";
+				out += index.toString(alphabet, "") + " ";
 			}
 		}	
 		return out;
 	}
 	
 	// follows algorithm 1 detailed in Thon and Jaeger to form the basis for the state/co-state space
-	public static HashMap<Integer, ArrayList<Integer>> basis(HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector, HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices, HashMap<String, HashMap<Integer, ArrayList<Integer>>> indexToVector, ArrayList<String> indices, boolean stateSpace) throws Exception {
+	// the state space basis vectors are the rows of the returned matrix, the co-state space basis vectors are its columns
+	public static GF2Matrix basis(GF2Matrix hypothesisFinalVector, GF2LinearMap[] hypothesisTransitionMatrices, HashMap<Word, long[]> indexToVector, ArrayList<Word> indices, boolean stateSpace) throws Exception {
+		// begin with ω_i = (1,0,0,...,0)
+		long[] w_i = new long[GF2Matrix.words(hypothesisFinalVector.getColumnDimension())];
+		GF2Matrix.setBit(w_i, 0);
+		
+		return basis(w_i, hypothesisFinalVector, hypothesisTransitionMatrices, indexToVector, indices, stateSpace);
+	}
+	
+	// as above, with the given initial vector in place of (1,0,0,...,0) for the state space
+	// the basis vectors are found in breadth-first order, so indices are sorted by length
+	public static GF2Matrix basis(long[] initialVector, GF2Matrix hypothesisFinalVector, GF2LinearMap[] hypothesisTransitionMatrices, HashMap<Word, long[]> indexToVector, ArrayList<Word> indices, boolean stateSpace) throws Exception {
+		int dim = hypothesisFinalVector.getColumnDimension();
+		
 		// set with elements to try to add to the basis
-		ArrayList<HashMap<Integer, ArrayList<Integer>>> tests = new ArrayList<HashMap<Integer, ArrayList<Integer>>>();
+		ArrayDeque<long[]> tests = new ArrayDeque<long[]>();
 		
-		HashMap<Integer, ArrayList<Integer>> basis;
-		int sizeBasis = 0;
-		HashMap<Integer, ArrayList<Integer>> hypothesisFinalVectorTranpose = null;
+		// basis vectors are added as rows, and the basis is transposed at the end for the co-state space
+		GF2Matrix basis = new GF2Matrix(0, dim);
+		EchelonBasis echelonBasis = new EchelonBasis(dim);
 		
 		if (stateSpace) {
-			basis = initialize(1, hypothesisFinalVector.get(0).get(1));
-			
-			// begin with ω_i = (1,0,0,...,0)
-			HashMap<Integer, ArrayList<Integer>> w_i = initialize(1, hypothesisFinalVector.get(0).get(1));
-			addElement(w_i, 1, 1);
-			tests.add(w_i);
+			tests.add(initialVector.clone());
 		} else {
-			basis = initialize(hypothesisFinalVector.get(0).get(1), 1);		
-			
 			// begin with the transpose of hypothesisFinalVector
-			hypothesisFinalVectorTranpose = initialize(hypothesisFinalVector.get(0).get(1), 1);
-			if (hypothesisFinalVector.get(1) != null) {
-				for (int col : hypothesisFinalVector.get(1)) {
-					addElement(hypothesisFinalVectorTranpose, col, 1);
-				}
-			}
-			
-			tests.add(hypothesisFinalVectorTranpose);
+			tests.add(hypothesisFinalVector.getRow(0).clone());
 		}
 		
 		int sizeTests = 1;
 		
-		// contains the corresponding string for every element in tests
-		ArrayList<String> testStrings = new ArrayList<String>();
-		testStrings.add("");
-		
-		ArrayList<int[]> operations = new ArrayList<int[]>();
+		// contains the corresponding word for every element in tests
+		ArrayDeque<Word> testStrings = new ArrayDeque<Word>();
+		testStrings.add(Word.EMPTY);
 		
 		while (sizeTests > 0) {
-			HashMap<Integer, ArrayList<Integer>> test = tests.remove(0);
-			String testString = testStrings.remove(0);
+			long[] test = tests.poll();
+			Word testString = testStrings.poll();
 			sizeTests--;
 			
-			if (linInd(stateSpace ? test.get(1) : test.get(-1), operations, sizeBasis, hypothesisFinalVector.get(0).get(1))) {	
+			if (echelonBasis.add(test)) {
 				// extend the basis
-				sizeBasis++;
-				if (stateSpace) {
-					basis.get(0).set(0, sizeBasis);
-					for (int num : test.get(1)) {
-						addElement(basis, sizeBasis, num);
-					}
-				} else {
-					basis.get(0).set(1, sizeBasis);
-					for (int num : test.get(-1)) {
-						addElement(basis, num, sizeBasis);
-					}
-				}
+				basis.appendRow(test);
 				
 				indices.add(testString);
 				indexToVector.put(testString, test);
 				
 				// add to tests the one-letter extensions of test
-				for (int i=0; i<alphabet.length; i++) {
-					HashMap<Integer, ArrayList<Integer>> newTest;
+				for (int i=0; i<hypothesisTransitionMatrices.length; i++) {
+					long[] newTest = new long[GF2Matrix.words(dim)];
 					
 					if (stateSpace) {
 						// basis for the set span((initial vector) * (transitionMatrix_ω) : ω∈Σ*)
-						newTest = multiply(test, hypothesisTransitionMatrices[i]);
-						testStrings.add(addStrings(testString, alphabet[i]));
+						hypothesisTransitionMatrices[i].vectorTimes(test, newTest);
+						testStrings.add(testString.concat(i));
 					} else {
 						// basis for the set span((transitionMatrix_ω) * (final vector) : ω∈Σ*)
-						newTest = multiply(hypothesisTransitionMatrices[i], test);
-						testStrings.add(addStrings(alphabet[i], testString));
+						hypothesisTransitionMatrices[i].timesVector(test, newTest);
+						testStrings.add(testString.prepend(i));
 					}
 					
 					tests.add(newTest);
@@ -526,328 +413,163 @@ public class M2MA {
 			}
 		}
 		
-		if (sizeBasis == 0) {
-			indices.add("");
-			indexToVector.put("", hypothesisFinalVectorTranpose);
+		if (echelonBasis.rank() == 0) {
+			basis = new GF2Matrix(1, dim);
+			indices.add(Word.EMPTY);
+			indexToVector.put(Word.EMPTY, hypothesisFinalVector.getRow(0).clone());
 		}
 		
-		return basis;
+		return stateSpace ? basis : basis.transpose();
 	}
 	
 	// finds a maximal submatrix of linearly independent rows/columns of the observation table
-	public static HashMap<Integer, ArrayList<Integer>> linIndSubMatrixRows(HashMap<Integer, ArrayList<Integer>> observationTable, ArrayList<String> oldIndices, ArrayList<String> newIndices) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> newObservationTable = initialize(0, observationTable.get(0).get(1));
-		int sizeT = 0;
-		
-		ArrayList<int[]> operations = new ArrayList<int[]>();
-		
-		for (int row : observationTable.keySet()) {
-			if (row > 0) {
-				// extend the current subset of linearly independent rows/columns
-				if (linInd(observationTable.get(row), operations, sizeT, newObservationTable.get(0).get(1))) {
-					sizeT++;
-					newObservationTable.get(0).set(0, sizeT);
-					
-					for (int num : observationTable.get(row)) {
-						addElement(newObservationTable, sizeT, num);
-					}
-					
-					newIndices.add(oldIndices.get(row - 1));
-				}
+	public static GF2Matrix linIndSubMatrixRows(GF2Matrix observationTable, ArrayList<Word> oldIndices, ArrayList<Word> newIndices) throws Exception {
+		GF2Matrix newObservationTable = new GF2Matrix(0, observationTable.getColumnDimension());
+		EchelonBasis echelonBasis = new EchelonBasis(observationTable.getColumnDimension());
+		
+		for (int row=0; row<observationTable.getRowDimension(); row++) {
+			// extend the current subset of linearly independent rows/columns
+			if (echelonBasis.add(observationTable.getRow(row))) {
+				newObservationTable.appendRow(observationTable.getRow(row));
+				
+				newIndices.add(oldIndices.get(row));
 			}
 		}
 		
-		if ((int) newObservationTable.get(0).get(0) == 0 || (int) newObservationTable.get(0).get(1) == 0) {
-			newObservationTable.get(0).set(0, 1);
-			newObservationTable.get(0).set(1, 1);
-			newIndices.add("");
+		if (newObservationTable.getRowDimension() == 0 || newObservationTable.getColumnDimension() == 0) {
+			newObservationTable = initialize(1, 1);
+			newIndices.add(Word.EMPTY);
 		}
 		
 		return newObservationTable;
 	}
 	
 	// finds a maximal submatrix of linearly independent rows/columns of the observation table
-	public static HashMap<Integer, ArrayList<Integer>> linIndSubMatrixCols(HashMap<Integer, ArrayList<Integer>> observationTable, ArrayList<String> oldIndices, ArrayList<String> newIndices) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> newObservationTable = initialize(observationTable.get(0).get(0), 0);
-		int sizeT = 0;
-		
-		ArrayList<int[]> operations = new ArrayList<int[]>();
-		
-		for (int col : observationTable.keySet()) {
-			if (col < 0) {
-				// extend the current subset of linearly independent rows/columns
-				if (linInd(observationTable.get(col), operations, sizeT, observationTable.get(0).get(0))) {
-					sizeT++;
-					newObservationTable.get(0).set(1, sizeT);
-					
-					for (int num : observationTable.get(col)) {
-						addElement(newObservationTable, num, sizeT);
-					}
-					
-					newIndices.add(oldIndices.get((col * -1) - 1));
-				}
-			}
-		}
-		
-		if ((int) newObservationTable.get(0).get(0) == 0 || (int) newObservationTable.get(0).get(1) == 0) {
-			newObservationTable.get(0).set(0, 1);
-			newObservationTable.get(0).set(1, 1);
-			newIndices.add("");
-		}
-		
-		return newObservationTable;
+	public static GF2Matrix linIndSubMatrixCols(GF2Matrix observationTable, ArrayList<Word> oldIndices, ArrayList<Word> newIndices) throws Exception {
+		// the columns of the observation table are the rows of its transpose
+		return linIndSubMatrixRows(observationTable.transpose(), oldIndices, newIndices).transpose();
 	}
 	
 	/*
-	 * Returns false if vector is in the span of the basis, true otherwise.
-	 * 
-	 * Operations consists of all the elementary row operations needed to convert the basis into rref.
-	 * These operations are applied to vector, and the additional elementary row operations needed to
-	 * convert the augmented matrix basis+vector into rref are added to operations.
-	 * 
-	 * Each int[] in operations has size 3, where int[0] = 0 for a swap operation and
-	 * 1 for a subtract operation, and int[1] = row_1 and int[2] = row_2, meaning either
-	 * you swap row_1 and row_2 or subtract row_1 from row_2. 
+	 * Learns the target function in the default session: the oracles are those of oracle() and EQ, and the
+	 * Hankel matrix, the flags and the checkpoint settings are the static fields above. The observation table
+	 * and the learned mod-2-MA are published back to the static fields before every EQ and at the end, as the
+	 * EQ's of the oracles (and the programs after learn()) read them there.
 	 */
-	public static boolean linInd(ArrayList<Integer> vector, ArrayList<int[]> operations, int sizeBasis, int numRows) {	
-		if (vector == null || vector.size() == 0) {
-			return false;
-		}
+	public static void learn() throws Exception {
+		session = new LearnerSession(alphabet, oracle(), M2MA::sessionEQ);
+		session.Hankel = Hankel;
+		session.observationTableFlag = observationTableFlag;
+		session.checkpointFlag = checkpointFlag;
+		session.resumeFlag = resumeFlag;
+		session.checkpointFile = checkpointFile;
+		session.checkpointInterval = checkpointInterval;
+		session.maxSize = minSize;
 		
-		boolean[] booleanVector = new boolean[numRows + 1];
-		for (int n : vector) {
-			booleanVector[n] = true;
+		try {
+			session.learn();
+		} finally {
+			publish(session);
 		}
-		
-		// apply all of the previously done elementary row operations to vector
-		for (int[] operation : operations) {
-			if ((int) operation[0] == 0) {
-				// swap operation
-				if (booleanVector[operation[1]] && !booleanVector[operation[2]]) {
-					booleanVector[operation[1]] = false;
-					booleanVector[operation[2]] = true;
-				} else if (!booleanVector[operation[1]] && booleanVector[operation[2]]) {
-					booleanVector[operation[1]] = true;
-					booleanVector[operation[2]] = false;
-				}
-			} else {
-				// subtract operation 
-				if (booleanVector[operation[1]]) {
-					booleanVector[operation[2]] = !booleanVector[operation[2]];
-				}
-			}
-		}
-		
-		ArrayList<Integer> rows = new ArrayList<Integer>();
-		int index = -1;
-		
-		// convert booleanVector to a sparse vector
-		// find the first 1 in a row after sizeBasis
-		for (int row = 1; row <= numRows; row++) {
-			if (booleanVector[row]) {
-				if (row > sizeBasis && index == -1) {
-					index = row;
-				}
-				rows.add(row);
-			}
-		}
-		
-		// no 1 was found, so vector is linearly dependent with the basis
-		if (index == -1) {
-			return false;
-		}
-		
-		// add the operations needed to convert the augmented matrix basis+vector into rref
-		
-		// swap operations
-		if (index != sizeBasis + 1) {
-			// need to perform a swap
-			int[] swap = new int[3];
-			swap[0] = 0;
-			swap[1] = index;
-			swap[2] = sizeBasis + 1;
-			operations.add(swap);
-		}
-		
-		// subtract operations
-		for (int row : rows) {
-			if (row != index) {
-				// need to subtract two rows
-				int[] subtract = new int[3];
-				subtract[0] = 1;
-				subtract[1] = sizeBasis + 1;
-				subtract[2] = row;
-				operations.add(subtract);
-			}
-		}
-		
-		return true;
 	}
 	
-	public static void learn() throws Exception {	
-		learnedRowIndices = new ArrayList<String>();
-		learnedColIndices = new ArrayList<String>();
-		learnedRowIndices.add("");
-		learnedColIndices.add("");
-		learnedSize = 1;
-		
-		if (Hankel == null) {
-			Hankel = new HashMap<String, Integer>();
-		}
-		
-		/* 
-		 * F("") cannot equal 0 (otherwise can't form a linearly independent basis of elements in learnedRowIndices).
-		 * The algorithm instead begins with a 2x2 matrix of full rank.
-		 */
-		if (MQ("") == 0) {
-			HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector = createHypothesisFinalVector();
-			HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices = createHypothesisTransitionMatrices();
-			
-			if (!EQ(hypothesisFinalVector, hypothesisTransitionMatrices)) {
-				learnedSize++;
-				learnedRowIndices.add(counterExample);
-				learnedColIndices.add(counterExample);
-			}
-		}
-		
-		if (observationTableFlag) {
-			System.out.println("Observation table after individual queries\n------------------------------------------");
-			displayTable();
-		}
-
-		learnMain();
+	// copies the state of the session to the static fields
+	private static void publish(LearnerSession session) {
+		Hankel = session.Hankel;
+		learnedSize = session.learnedSize;
+		learnedRowIndices = session.learnedRowIndices;
+		learnedColIndices = session.learnedColIndices;
+		counterExample = session.counterExample;
+		resultFinalVector = session.resultFinalVector;
+		resultTransitionMatrices = session.resultTransitionMatrices;
 	}
 	
-	public static void learnMain() throws Exception {
-		HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector = createHypothesisFinalVector();
-		HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices = createHypothesisTransitionMatrices();
-		
-		if (EQ(hypothesisFinalVector, hypothesisTransitionMatrices)) {
-			resultFinalVector = hypothesisFinalVector;
-			resultTransitionMatrices = hypothesisTransitionMatrices;
-			return;
-		}
-		
-		growObservationTable(hypothesisTransitionMatrices);
-		
-		learnMain();
+	// equivalence oracle of the default session
+	private static Word sessionEQ(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		publish(session);
+		return EQ(hypothesisFinalVector, hypothesisTransitionMatrices) ? null : counterExample;
 	}
 	
-	public static HashMap<Integer, ArrayList<Integer>> createHypothesisFinalVector() throws Exception {
-		HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector = initialize(1, learnedSize);
-		for (int i=0; i<learnedSize; i++) {
-			if (MQ(learnedRowIndices.get(i)) == 1) {
-				addElement(hypothesisFinalVector, 1, i+1);
-			}
-		}
-		return hypothesisFinalVector;
+	// MQ for the target function on a space-separated word
+	public static int MQ(String word) throws Exception {
+		return MQ(Word.parse(word));
 	}
 	
-	@SuppressWarnings("unchecked")
-	public static HashMap<Integer, ArrayList<Integer>>[] createHypothesisTransitionMatrices() throws Exception {
-		/*
-		 * For every letter in alphabet, define a transition matrix by letting its i-th row be the coefficients 
-		 * of the vector F_{xi+letter}(y) when expressed as a linear combination of the row vectors of F (such 
-		 * coefficients exist as the row vectors are linearly independent).
-		 */
-		HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices = new HashMap[alphabet.length];
-		for (int c=0; c<alphabet.length; c++) {
-			hypothesisTransitionMatrices[c] = initialize(learnedSize, learnedSize);
-			String letter = alphabet[c];
-			
-			double[][] F_xi = new double[learnedSize][learnedSize];
-			double[][] F_xi_letter = new double[learnedSize][learnedSize];
-			for (int i=0; i<learnedSize; i++) {
-				for (int j=0; j<learnedSize; j++) {
-					F_xi[j][i] = MQ(addStrings(learnedRowIndices.get(i), learnedColIndices.get(j)));
-					F_xi_letter[i][j] = MQ(addStrings(addStrings(learnedRowIndices.get(i), letter), learnedColIndices.get(j)));
-				}
-			}
-			
-			// solve the matrix equation using LU Decomposition
-			RealMatrix coefficients = new Array2DRowRealMatrix(F_xi);
-			DecompositionSolver solver = new solver(coefficients).getSolver();
-			for (int i=0; i<learnedSize; i++) {
-				RealVector constants = new ArrayRealVector(F_xi_letter[i]);
-				try {
-					RealVector solution = solver.solve(constants);
-					for(int j=0; j<learnedSize; j++) {
-						if (mod2(solution.getEntry(j)) == 1) {
-							addElement(hypothesisTransitionMatrices[c], i + 1, j + 1);
-						}
-					}
-				} catch(Exception e) {
-					// matrix is not invertible
-					hypothesisTransitionMatrices[c] = initialize(learnedSize, learnedSize);
-				}
-			}
-		}
-		return hypothesisTransitionMatrices;
+	// MQ for the target function, in the default session
+	public static int MQ(Word word) throws Exception {	
+		return session.MQ(word);
 	}
 	
-	// MQ for the target function
-	public static int MQ(String word) throws Exception {	
-		// MQ(ω) was previously calculated and is in the Hankel matrix
-		if (Hankel.get(word) != null) {
-			return Hankel.get(word);
-		}
-		
-		int out = 0;
-		
+	// returns the oracle of the target function
+	public static MembershipOracle oracle() {
 		// Check for PassiveLearningOracle first
 		if (PassiveLearningOracle.active) {
-			out = PassiveLearningOracle.MQ(word);
+			return PassiveLearningOracle.ORACLE;
 		}
 		// Check for CharacteristicSetGeneratingOracle
 		else if (CharacteristicSetGeneratingOracle.active) {
-			out = CharacteristicSetGeneratingOracle.MQ(word);
+			return CharacteristicSetGeneratingOracle.ORACLE;
 		}
 		// NBA.java and arbitrary.java use their own MQ functions
 		else if(NBA.NBAFinalStates != null) {
-			out = NBA.MQ(word);
+			return NBA.ORACLE;
 		} else if(arbitrary.MQMethod != null) {
-			try {
-				out = (int) arbitrary.MQMethod.invoke(null, word);
-			} catch (Exception e) {
-				throwException(null, "Invalid input: invalid membership query function.");
-			} 
-		} else {
-			HashMap<Integer, ArrayList<Integer>> current = identity(minSize);
-			
-			String[] wordArr = word.split(" ");
-			if (word.length() == 0) {
-				wordArr = new String[0];
+			return arbitrary.ORACLE;
+		}
+		return oracleFor(minFinalVector, minTransitionMatrices);
+	}
+	
+	/*
+	 * Returns an oracle answering MQ's on the given mod-2-MA, which answers a batch with one walk over the trie of
+	 * its words (see WordTrie.java). The oracle owns its evaluator, so it must only be used by one thread at a time.
+	 */
+	public static MembershipOracle oracleFor(GF2Matrix finalVector, GF2Matrix[] transitionMatrices) {
+		M2MAEvaluator evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
+		return new MembershipOracle() {
+			@Override
+			public int answer(Word word) {
+				return evaluator.evaluate(word);
 			}
 			
-			for (int i=0; i<wordArr.length; i++) {
-				current = multiply(current, minTransitionMatrices[letterToIndex.get(wordArr[i])]);
+			@Override
+			public int[] answerBatch(List<Word> words) {
+				WordTrie trie = new WordTrie(transitionMatrices.length);
+				int[] ids = new int[words.size()];
+				for (int i=0; i<words.size(); i++) {
+					ids[i] = trie.add(words.get(i));
+				}
+				
+				int[] values = trie.evaluateAll(evaluator);
+				int[] out = new int[words.size()];
+				for (int i=0; i<words.size(); i++) {
+					out[i] = values[ids[i]];
+				}
+				return out;
 			}
-			
-			out = dotProduct(current.get(1), minFinalVector.get(1));
-		}
-		
-		Hankel.put(word, out);
-		
-		return out;
+		};
 	}
 	
 	// MQ for any given final vector and set of transition matrices
-	public static int MQArbitrary(HashMap<Integer, ArrayList<Integer>> finalVector, HashMap<Integer, ArrayList<Integer>>[] transitionMatrices, String word) throws Exception {	
-		HashMap<Integer, ArrayList<Integer>> current = identity(finalVector.get(0).get(1));
-		
-		String[] wordArr = word.split(" ");
-		if (word.length() == 0) {
-			wordArr = new String[0];
-		}
-		
-		for (int i=0; i<wordArr.length; i++) {
-			current = multiply(current, transitionMatrices[letterToIndex.get(wordArr[i])]);
+	// the evaluator is reused as long as the same mod-2-MA is queried, e.g. throughout an EQ
+	public static int MQArbitrary(GF2Matrix finalVector, GF2Matrix[] transitionMatrices, String word) throws Exception {	
+		return MQArbitrary(finalVector, transitionMatrices, Word.parse(word));
+	}
+	
+	public static int MQArbitrary(GF2Matrix finalVector, GF2Matrix[] transitionMatrices, Word word) throws Exception {	
+		return evaluatorFor(finalVector, transitionMatrices).evaluate(word);
+	}
+	
+	// returns an evaluator of the given mod-2-MA, reusing the last one of this thread if it was built for the same matrices
+	public static M2MAEvaluator evaluatorFor(GF2Matrix finalVector, GF2Matrix[] transitionMatrices) {
+		M2MAEvaluator evaluator = arbitraryEvaluator.get();
+		if (evaluator == null || !evaluator.isFor(finalVector, transitionMatrices)) {
+			evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
+			arbitraryEvaluator.set(evaluator);
 		}
-		
-		return dotProduct(current.get(1), finalVector.get(1));
+		return evaluator;
 	}
 	
-	public static boolean EQ(HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector, HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices) throws Exception {
+	public static boolean EQ(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
 		// Check for PassiveLearningOracle
 		if (PassiveLearningOracle.active) {
 			return PassiveLearningOracle.EQ(hypothesisFinalVector, hypothesisTransitionMatrices);
@@ -861,140 +583,135 @@ public class M2MA {
 			return arbitrary.EQstatistical(hypothesisFinalVector, hypothesisTransitionMatrices);
 		}
 		
-		// test every element in the observation table of the minimized mod-2-MA
-		for (int i=0; i<minRowIndices.size(); i++) {
-			for (int j=0; j<minColIndices.size(); j++) {
-				if (!tested[i][j]) {
-					// update tested to avoid testing the same words in the next EQ
-					tested[i][j] = true;
-					
-					String test = addStrings(minRowIndices.get(i), minColIndices.get(j));
+		// exact EQ against the minimized mod-2-MA (the function answering MQ's)
+		counterExample = distinguishingWord(minFinalVector, minTransitionMatrices, hypothesisFinalVector, hypothesisTransitionMatrices);
+		return counterExample == null;
+	}
 	
-					if (MQ(test) != MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, test)) {
-						counterExample = test;
-						return false;
-					}
-				}
-			}
-		}
-		
-		if (learnedSize == minSize) {
-			return true;
-		}
-		
-		System.out.println("Testing one-letter extensions.");
+	/*
+	 * Returns a shortest word on which the two mod-2-MAs differ, or null if they are equivalent.
+	 * 
+	 * The difference automaton of A and B has the initial vector (initial_A, initial_B), the final vector
+	 * (final_A, final_B) and the transition matrices [[transitionMatrix_A, 0], [0, transitionMatrix_B]] for every
+	 * letter, so it computes F_A(ω) + F_B(ω). The two are equivalent iff every vector of its state space is
+	 * orthogonal to its final vector. The state space basis is found in breadth-first order, so the first basis
+	 * vector that is not orthogonal to the final vector is reached by a shortest distinguishing word.
+	 */
+	public static Word distinguishingWord(GF2Matrix finalVectorA, GF2LinearMap[] transitionMatricesA, GF2Matrix finalVectorB, GF2Matrix[] transitionMatricesB) throws Exception {
+		long[] initialVector = differenceInitialVector(finalVectorA, finalVectorB);
+		GF2Matrix finalVector = differenceFinalVector(finalVectorA, finalVectorB);
+		GF2LinearMap[] transitionMatrices = differenceTransitionMatrices(transitionMatricesA, transitionMatricesB);
 		
-		testedExtension = new boolean[minRowIndices.size()][minColIndices.size()][alphabet.length+1][alphabet.length+1];
+		ArrayList<Word> indices = new ArrayList<Word>();
+		HashMap<Word, long[]> indexToVector = new HashMap<Word, long[]>();
+		basis(initialVector, finalVector, transitionMatrices, indexToVector, indices, true);
 		
-		// test the one-letter extensions of the row and column indices of the observation table
-		for (int i=0; i<minRowIndices.size(); i++) {
-			for (int j=0; j<minColIndices.size(); j++) {
-				for (int a1=0; a1<=alphabet.length; a1++) {
-					String letter1;
-					if (a1 == alphabet.length) {
-						letter1 = ""; 
-					} else {
-						letter1 = alphabet[a1];
-					}
-					
-					for (int a2=0; a2<=alphabet.length; a2++) {
-						if (!testedExtension[i][j][a1][a2] && (a1 != alphabet.length || a2 != alphabet.length)) {
-							testedExtension[i][j][a1][a2] = true;
-							
-							String letter2;
-							if (a2 == alphabet.length) {
-								letter2 = ""; 
-							} else {
-								letter2 = alphabet[a2];
-							}
-							
-							String test = addStrings(addStrings(addStrings(minRowIndices.get(i), letter1), minColIndices.get(j)), letter2);
-							if (MQ(test) != MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, test)) {
-								counterExample = test;
-								return false;
-							}
-						}
-					}
-				}
+		for (Word index : indices) {
+			if (GF2Matrix.dot(indexToVector.get(index), finalVector.getRow(0)) == 1) {
+				return index;
 			}
 		}
-		
-		return true;
+		return null;
 	}
 	
-	public static void growObservationTable(HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices) throws Exception {
-		// prefix of the counter-example = ω + σ
-		String w = "";
-		String sigma = "";
-		// experiment
-		String y = "";
-		
-		String[] counterExampleArr = counterExample.split(" ");
-		if (counterExample.length() == 0) {
-			counterExampleArr = new String[0];
-		}
-		
-		// go through every possible prefix of the counter-example starting with ω = "" and σ = (first character of ω)
-		for (int i=0; i<counterExampleArr.length; i++) {
-			if (i != 0) {
-				w = "";
-				for (int j=0; j<i-1; j++) {
-					w += counterExampleArr[j] + " ";
-				}
-				if (i >= 1) {
-					w += counterExampleArr[i - 1];
+	/*
+	 * Returns the smallest word in length-lexicographic order (letters compared by their position in order) on which
+	 * the two mod-2-MAs differ, or null if they are equivalent.
+	 * 
+	 * The length L of the word is that of a shortest distinguishing word. Let C_m be the span of the co-state vectors
+	 * (transitionMatrix_s) * (final vector) of the difference automaton over all words s of length m. A word p of length
+	 * k < L can be extended to a distinguishing word of length L iff its state vector is not orthogonal to C_(L-k). So
+	 * the letters are chosen one at a time, each time taking the first letter in order whose extension can still be
+	 * completed. Every C_m has a basis of at most dim vectors, so this takes polynomial time.
+	 */
+	public static Word smallestDistinguishingWord(GF2Matrix finalVectorA, GF2LinearMap[] transitionMatricesA, GF2Matrix finalVectorB, GF2Matrix[] transitionMatricesB, int[] order) throws Exception {
+		Word shortest = distinguishingWord(finalVectorA, transitionMatricesA, finalVectorB, transitionMatricesB);
+		if (shortest == null) {
+			return null;
+		}
+		int len = shortest.length();
+		
+		long[] initialVector = differenceInitialVector(finalVectorA, finalVectorB);
+		GF2Matrix finalVector = differenceFinalVector(finalVectorA, finalVectorB);
+		GF2LinearMap[] transitionMatrices = differenceTransitionMatrices(transitionMatricesA, transitionMatricesB);
+		int dim = finalVector.getColumnDimension();
+		
+		// coStates[m] is a basis of C_m
+		ArrayList<ArrayList<long[]>> coStates = new ArrayList<ArrayList<long[]>>();
+		ArrayList<long[]> current = new ArrayList<long[]>();
+		current.add(finalVector.getRow(0).clone());
+		coStates.add(current);
+		for (int m=1; m<len; m++) {
+			EchelonBasis echelonBasis = new EchelonBasis(dim);
+			ArrayList<long[]> next = new ArrayList<long[]>();
+			for (long[] coState : current) {
+				for (int i=0; i<transitionMatrices.length; i++) {
+					long[] newCoState = new long[GF2Matrix.words(dim)];
+					transitionMatrices[i].timesVector(coState, newCoState);
+					if (echelonBasis.add(newCoState)) {
+						next.add(newCoState);
+					}
 				}
 			}
-			sigma = counterExampleArr[i];
-			
-			HashMap<Integer, ArrayList<Integer>> transitionMatrix_w = identity(learnedSize);
-			for (int n=0; n<i; n++) {
-				transitionMatrix_w = multiply(transitionMatrix_w, hypothesisTransitionMatrices[letterToIndex.get(counterExampleArr[n])]);
-			}
-			
-			// if F is the Hankel matrix, check if F_ω = sum(μ(ω)_1,i * F_xi)
-			for (int j=0; j<learnedSize; j++) {
-				int sum = 0;
-				for (int k=0; k<learnedSize; k++) {
-					sum = mod2(sum + getEntry(transitionMatrix_w, 1, k+1) * MQ(addStrings(learnedRowIndices.get(k), learnedColIndices.get(j))));
-				}
-				if (MQ(addStrings(w, learnedColIndices.get(j))) != sum) {
+			coStates.add(next);
+			current = next;
+		}
+		
+		int[] letters = new int[len];
+		long[] state = initialVector.clone();
+		long[] newState = new long[GF2Matrix.words(dim)];
+		for (int k=0; k<len; k++) {
+			for (int letter : order) {
+				transitionMatrices[letter].vectorTimes(state, newState);
+				if (!isOrthogonal(newState, coStates.get(len - k - 1))) {
+					letters[k] = letter;
 					break;
 				}
 			}
-			
-			// go through every possible value of y in learnedColIndices
-			// check if F_{ω+σ}(y) != sum(μ(ω)_1,i * F_{xi+σ}(y))
-			for (int j=0; j<learnedSize; j++) {
-				y = learnedColIndices.get(j);
-			
-				int sum = 0;
-				for (int k=0; k<learnedSize; k++) {
-					sum = mod2(sum + getEntry(transitionMatrix_w, 1, k+1) * MQ(addStrings(addStrings(learnedRowIndices.get(k), sigma), y)));
-				}
-				
-				// found a solution
-				if (MQ(addStrings(addStrings(w, sigma), y)) != sum) {		
-					if (learnedSize == minSize) {
-						throwException(null, "Algorithm failed: size of the hypothesis exceeds that of the target function.");
-					}
-
-					learnedSize++;
-					learnedRowIndices.add(w);
-					learnedColIndices.add(addStrings(sigma, y));
-					
-					if (observationTableFlag) {
-						displayTable();
-					}
-					
-					return;
-				}
+			long[] temp = state;
+			state = newState;
+			newState = temp;
+		}
+		return Word.wrap(letters);
+	}
+	
+	// returns true if vector is orthogonal to every given vector
+	private static boolean isOrthogonal(long[] vector, ArrayList<long[]> vectors) {
+		for (long[] v : vectors) {
+			if (GF2Matrix.dot(vector, v) == 1) {
+				return false;
 			}
 		}
-
-		throwException(null, "Algorithm failed: didn't find a suitable omega, sigma, and gamma.");
+		return true;
 	}
-
+	
+	/* The difference automaton of A and B (see distinguishingWord). */
+	
+	// (initial_A, initial_B) = (1,0,...,0,1,0,...,0)
+	public static long[] differenceInitialVector(GF2Matrix finalVectorA, GF2Matrix finalVectorB) {
+		int dimA = finalVectorA.getColumnDimension();
+		long[] initialVector = new long[GF2Matrix.words(dimA + finalVectorB.getColumnDimension())];
+		GF2Matrix.setBit(initialVector, 0);
+		GF2Matrix.setBit(initialVector, dimA);
+		return initialVector;
+	}
+	
+	// (final_A, final_B)
+	public static GF2Matrix differenceFinalVector(GF2Matrix finalVectorA, GF2Matrix finalVectorB) {
+		GF2Matrix finalVector = GF2Matrix.directSum(finalVectorA, finalVectorB);
+		GF2Matrix.xorInto(finalVector.getRow(0), finalVector.getRow(1));
+		return finalVector.copy(1, finalVector.getColumnDimension());
+	}
+	
+	// [[transitionMatrix_A, 0], [0, transitionMatrix_B]] for every letter
+	public static GF2LinearMap[] differenceTransitionMatrices(GF2LinearMap[] transitionMatricesA, GF2Matrix[] transitionMatricesB) {
+		GF2LinearMap[] transitionMatrices = new GF2LinearMap[transitionMatricesA.length];
+		for (int i=0; i<transitionMatricesA.length; i++) {
+			transitionMatrices[i] = transitionMatricesA[i].directSum(transitionMatricesB[i]);
+		}
+		return transitionMatrices;
+	}
+	
 	public static void displayResults() {
 		System.out.println("Learned mod-2-MA");
 		System.out.println("----------------");
@@ -1012,151 +729,77 @@ public class M2MA {
 	}
 	
 	public static void displayTable() throws Exception {
-		System.out.println("Size: " + learnedSize);
-		System.out.print("Rows: ɛ ");
-		for (int i=1; i<learnedRowIndices.size(); i++) {
-			System.out.print(removeSpaces(learnedRowIndices.get(i)) + " ");
-		}
-		System.out.println();
-		
-		System.out.print("Cols: ɛ ");
-		for (int i=1; i<learnedColIndices.size(); i++) {
-			System.out.print(removeSpaces(learnedColIndices.get(i)) + " ");
-		}
-		
-		System.out.println("\nTable:");
-		for (int i=0; i<learnedRowIndices.size(); i++) {
-			for (int j=0; j<learnedColIndices.size(); j++) {
-				System.out.print(MQ(addStrings(learnedRowIndices.get(i), learnedColIndices.get(j))) + " ");
-			}
-			System.out.println();
-		}
-		System.out.println();
+		session.displayTable();
 	}
 
 	public static String genTest(int len, boolean smallerAlphabet) {
+		return genTestWord(len, smallerAlphabet).toString();
+	}
+	
+	// returns a uniformly random word of length len (if smallerAlphabet, the last letter of the alphabet is not used)
+	public static Word genTestWord(int len, boolean smallerAlphabet) {
 		int length = alphabet.length;
 		if (smallerAlphabet) {
 			length--;
 		}
 		
-		String test = "";
-		for (int i=0; i<len-1; i++) {
-			test += alphabet[(int) (Math.random() * length)] + " ";
+		int[] test = new int[len];
+		for (int i=0; i<len; i++) {
+			test[i] = (int) (Math.random() * length);
 		}
-		if (len >= 1) {
-			test +=  alphabet[(int) (Math.random() * length)];
-		}
-		return test;
+		return Word.wrap(test);
 	}
 
-	// performs a statistical EQ between the target and final mod-2-MA
-	public static boolean finalCheck(int maxTestLen, int numTests, boolean inMinimize) throws Exception {
-		for (int i=1; i<=numTests; i++) {
-			String test = genTest((int) (Math.random() * (maxTestLen + 1)), false);
-			
-			if (!inMinimize && MQArbitrary(inputFinalVector, inputTransitionMatrices, test) != MQArbitrary(resultFinalVector, resultTransitionMatrices, test)) {
-				return false;
-			} else if (inMinimize && M2MA.MQArbitrary(M2MA.inputFinalVector, M2MA.inputTransitionMatrices, test) != M2MA.MQArbitrary(M2MA.minFinalVector, M2MA.minTransitionMatrices, test)) {
-				return false;
-			}
+	// performs an exact EQ between the target and final mod-2-MA
+	public static boolean finalCheck(boolean inMinimize) throws Exception {
+		Word distinguishingWord;
+		if (inMinimize) {
+			distinguishingWord = distinguishingWord(inputFinalVector, inputTransitionMatrices, minFinalVector, minTransitionMatrices);
+		} else {
+			distinguishingWord = distinguishingWord(inputFinalVector, inputTransitionMatrices, resultFinalVector, resultTransitionMatrices);
+		}
+		
+		if (distinguishingWord != null) {
+			System.out.println("Distinguishing word: \"" + distinguishingWord + "\"");
+			return false;
 		}
 		return true;
 	}
 	
-	// returns the number of states of a minimal DFA equivalent to the minimized M2MA
-	// The number of states of the minimal DFA is the number of reachable states of the minimized M2MA.
-	// Uses sparse ArrayLists instead of the HashMap representation for the tests to avoid out of memory issues.
+	// returns the number of states of a minimal DFA equivalent to the minimized M2MA, or dfaStateCap if it has at least as many
 	public static int dimensionMinDFA(boolean minAutomata) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> orderedColSets = obtainColumnSets(minAutomata);
-		
-		HashSet<ArrayList<Integer>> reachable = new HashSet<ArrayList<Integer>>();
-		int sizeReachable = 0;
-		
-		ArrayList<ArrayList<Integer>> tests = new ArrayList<ArrayList<Integer>>();
-		
-		// begin with ω_i = (1,0,0,...,0)
-		ArrayList<Integer> w_i = new ArrayList<Integer>();
-		w_i.add(1);
-		tests.add(w_i);
-		int numTests = 1;
-		
-		while (numTests > 0) {
-			ArrayList<Integer> test = tests.remove(0);
-			numTests--;
-			
-			if (!reachable.contains(test)) {
-				reachable.add(test);
-				sizeReachable++;
-				
-				// add to tests the one-letter extensions of test
-				for (int i=0; i<alphabet.length; i++) {
-					if (minAutomata) {
-						tests.add(multiplyDimensionMinDFA(test, minTransitionMatrices[i], orderedColSets.get(i)));
-					} else {
-						tests.add(multiplyDimensionMinDFA(test, resultTransitionMatrices[i], orderedColSets.get(i)));
-					}
-					numTests++;
-				}
-			}
-		}
-		
-		return sizeReachable;
+		return dimensionMinDFA(minAutomata, dfaStateCap);
 	}
 	
-	public static HashMap<Integer, ArrayList<Integer>> obtainColumnSets(boolean minAutomata) {
-		HashMap<Integer, ArrayList<Integer>> orderedColSets = new HashMap<Integer, ArrayList<Integer>>();
-		
-		for (int i = 0; i < alphabet.length; i++) {
-			ArrayList<Integer> colSet = new ArrayList<Integer>();
-			int prevMax = 0;
-			boolean needsSorting = false;
-			
-			HashMap<Integer, ArrayList<Integer>> transitionMatrix;
-			
-			if (minAutomata) {
-				transitionMatrix = minTransitionMatrices[i];
-			} else {
-				transitionMatrix = resultTransitionMatrices[i];
-			}
-			
-			for (int c : transitionMatrix.keySet()) {
-				if (c < 0) {
-					colSet.add(c);
-					
-					if (!needsSorting && c > prevMax) {
-						needsSorting = true;
-					}
-					
-					prevMax = c;
-				}
-			}
-			
-			if (needsSorting) {
-				Collections.sort(colSet);
-			}
-			
-			orderedColSets.put(i, colSet);
-		}
-		
-		return orderedColSets;
+	// The number of states of the minimal DFA is the number of reachable states of the minimized M2MA.
+	// The reachable states are packed row vectors, found by a parallel breadth-first search (see ReachableStates.java)
+	// that stops once cap states are found.
+	public static int dimensionMinDFA(boolean minAutomata, int cap) throws Exception {
+		return dimensionMinDFA(minAutomata ? minTransitionMatrices : resultTransitionMatrices, cap);
 	}
 	
-	public static ArrayList<Integer> multiplyDimensionMinDFA(ArrayList<Integer> test, HashMap<Integer, ArrayList<Integer>> transitionMatrix, ArrayList<Integer> colSet) {
-		ArrayList<Integer> out = new ArrayList<Integer>();
-		
-		for (int c : colSet) {
-			if (dotProduct(test, transitionMatrix.get(c)) == 1) {
-				out.add(-1*c);
-			}
-		}
+	// as above, for the mod-2-MA with the given transition matrices
+	public static int dimensionMinDFA(GF2Matrix[] transitionMatrices, int cap) throws Exception {
+		return dimensionMinDFA(transitionMatrices, cap, ReachableStates.defaultHeapBudget());
+	}
+	
+	// as above, with a heap budget in bytes for the search (e.g. a share of the default for one of several searches at once)
+	public static int dimensionMinDFA(GF2Matrix[] transitionMatrices, int cap, long heapBudget) throws Exception {
+		// begin with ω_i = (1,0,0,...,0)
+		long[] w_i = new long[GF2Matrix.words(transitionMatrices[0].getRowDimension())];
+		GF2Matrix.setBit(w_i, 0);
 		
-		return out;
+		return ReachableStates.count(transitionMatrices, w_i, cap, heapBudget);
 	}
 	
 	public static void displayRuntime() {
 		long endTime = System.nanoTime();
-		double totalTime = (endTime - startTime) / Math.pow(10, 9);
+		displayRuntime(endTime - startTime);
+	}
+	
+	// displays a run time given in nanoseconds
+	public static void displayRuntime(long time) {
+		double totalTime = time / Math.pow(10, 9);
 		double roundedTime = ((int) (totalTime * 100))/100.0;
 		System.out.println("Ran in " + roundedTime + "s.\n");
 	}
@@ -1237,220 +880,79 @@ public class M2MA {
 		return out;
 	}
 	
-	/* Sparse matrix operations. */
+	/* Matrix operations (rows and columns are indexed starting from 1). */
 	
-	// initializes a sparse matrix with a given number of rows and columns
-	public static HashMap<Integer, ArrayList<Integer>> initialize(int numRows, int numCols) {
-		HashMap<Integer, ArrayList<Integer>> arr = new HashMap<Integer, ArrayList<Integer>>();
-		ArrayList<Integer> dim = new ArrayList<Integer>();
-		dim.add(numRows);
-		dim.add(numCols);
-		arr.put(0, dim);
-		return arr;
+	// initializes a zero matrix with a given number of rows and columns
+	public static GF2Matrix initialize(int numRows, int numCols) {
+		return new GF2Matrix(numRows, numCols);
 	}
 	
-	// multiplies a sparse mxn matrix by a sparse nxp matrix
-	public static HashMap<Integer, ArrayList<Integer>> multiply(HashMap<Integer, ArrayList<Integer>> arr1, HashMap<Integer, ArrayList<Integer>> arr2) throws Exception {
-		if ((int) arr1.get(0).get(1) != (int) arr2.get(0).get(0)) {
+	// multiplies a mxn matrix by a nxp matrix
+	public static GF2Matrix multiply(GF2Matrix arr1, GF2Matrix arr2) throws Exception {
+		if (arr1.getColumnDimension() != arr2.getRowDimension()) {
 			throwException(null, "Multiplied matrices of invalid dimension.");
 		}
-
-		HashMap<Integer, ArrayList<Integer>> out = initialize(arr1.get(0).get(0), arr2.get(0).get(1));
-		ArrayList<Integer> colSet = null;
-		
-		int rowsTraversed = 0;
-		for (int r : arr1.keySet()) {
-			if (rowsTraversed >= arr1.get(0).get(0)) {
-				break;
-			}
-			
-			if (r > 0) {
-				rowsTraversed++;
-				
-				if (colSet == null) {
-					colSet = new ArrayList<Integer>();
-					
-					int colsTraversed = 0;
-					for (int c : arr2.keySet()) {
-						if (colsTraversed == arr2.get(0).get(1)) {
-							break;
-						}
-						if (c < 0) {
-							colsTraversed++;
-							colSet.add(c);
-							
-							if (dotProduct(arr1.get(r), arr2.get(c)) == 1) {
-								addElement(out, r, c * -1);
-							}
-						}
-					}
-				} else {
-					for (int c : colSet) {
-						if (dotProduct(arr1.get(r), arr2.get(c)) == 1) {
-							addElement(out, r, c * -1);
-						}
-					}
-				}
-			}
-		}
 		
-		return out;
+		return arr1.multiply(arr2);
 	}
 	
-	// returns the dot product of two sparse vectors
-	public static int dotProduct(ArrayList<Integer> v1, ArrayList<Integer> v2) {
+	// returns the dot product of two packed vectors
+	public static int dotProduct(long[] v1, long[] v2) {
 		if (v1 == null || v2 == null) {
 			return 0;
 		}
 		
-		HashSet<Integer> set = new HashSet<Integer>();
-		for (int n : v1) {
-			set.add(n);
-		}
-		
-		int count = 0;
-		
-		for (int n : v2) {
-			if (set.contains(n)) {
-				count++;
-			}
-		}
-		
-		return count % 2;
+		return GF2Matrix.dot(v1, v2);
 	}
 	
 	// creates the identity matrix
-	public static HashMap<Integer, ArrayList<Integer>> identity(int size) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> identity = initialize(size, size);
-		for (int i=1; i<=size; i++) {
-			addElement(identity, i, i);
-		}
-		return identity;
+	public static GF2Matrix identity(int size) throws Exception {
+		return GF2Matrix.identity(size);
 	}
 	
-	// adds a 1 to a sparse array at the position (row, col)
-	public static void addElement(HashMap<Integer, ArrayList<Integer>> arr, int row, int col) throws Exception {
-		if (row < 1 || row > arr.get(0).get(0) || col < 1 || col > arr.get(0).get(1)) {
+	// adds a 1 to a matrix at the position (row, col)
+	public static void addElement(GF2Matrix arr, int row, int col) throws Exception {
+		if (row < 1 || row > arr.getRowDimension() || col < 1 || col > arr.getColumnDimension()) {
 			throwException(null, "Added an invalid element to a matrix.");
 		}
-		if (arr.get(row) == null) {
-			ArrayList<Integer> newRow = new ArrayList<Integer>();
-			newRow.add(col);
-			arr.put(row, newRow);
-		} else {
-			arr.get(row).add(col);
-		}
-		
-		if (arr.get(col * -1) == null) {
-			ArrayList<Integer> newCol = new ArrayList<Integer>();
-			newCol.add(row);
-			arr.put(col * -1, newCol);
-		} else {
-			arr.get(col * -1).add(row);
-		} 
+		arr.set(row - 1, col - 1);
 	}
 	
-	// removes a 1 from a sparse array at the position (row, col)
-	public static void removeElement(HashMap<Integer, ArrayList<Integer>> arr, int row, int col) throws Exception {
-		if (row < 1 || row > arr.get(0).get(0) || col < 1 || col > arr.get(0).get(1) || arr.get(row) == null || arr.get(col * -1) == null) {
+	// removes a 1 from a matrix at the position (row, col)
+	public static void removeElement(GF2Matrix arr, int row, int col) throws Exception {
+		if (row < 1 || row > arr.getRowDimension() || col < 1 || col > arr.getColumnDimension() || arr.get(row - 1, col - 1) == 0) {
 			throwException(null, "Attempted to remove an invalid element from a matrix.");
 		}
-		
-		arr.get(row).remove(Integer.valueOf(col));
-		arr.get(col * -1).remove(Integer.valueOf(row));
+		arr.clear(row - 1, col - 1);
 	}
 	
 	// returns the element at position (row, col)
-	public static int getEntry(HashMap<Integer, ArrayList<Integer>> arr, int row, int col) {
-		if (arr.get(row) == null) {
-			return 0;
-		}
-		
-		for (int num : arr.get(row)) {
-			if (num == col) {
-				return 1;
-			}
-		}
-		
-		return 0;
+	public static int getEntry(GF2Matrix arr, int row, int col) {
+		return arr.get(row - 1, col - 1);
 	}
 	
-	// displays a sparse matrix
-	public static void displayMatrix(HashMap<Integer, ArrayList<Integer>> arr) {
-		ArrayList<Integer> dim = arr.get(0);
-		
-		if (dim.get(0) == 0 || dim.get(1) == 0) {
+	// displays a matrix
+	public static void displayMatrix(GF2Matrix arr) {
+		if (arr.getRowDimension() == 0 || arr.getColumnDimension() == 0) {
 			System.out.println();
 			return;
 		}
 		
-		for (int row = 1; row <= dim.get(0); row++) {
-			String rowStr = "";
-			
-			if (arr.get(row) == null) {
-				for (int col = 1; col <= dim.get(1); col++) {
-					rowStr += 0 + " ";
-				}
-			} else {
-				ArrayList<Integer> rowVector = arr.get(row);
-				int pos = 0;
-				for (int col = 1; col <= dim.get(1); col++) {
-					if (pos < rowVector.size() && rowVector.get(pos) == col) {
-						rowStr += 1 + " ";
-						pos++;
-					} else {
-						rowStr += 0 + " ";
-					}
-				}
-			}
-			
-			System.out.println(rowStr);
-		}
-		System.out.println();
+		System.out.println(arr);
 	}
 
-	// converts a sparse matrix into a real matrix
-	public static RealMatrix sparseToReal(HashMap<Integer, ArrayList<Integer>> arr) {
-		RealMatrix out = MatrixUtils.createRealMatrix(arr.get(0).get(0), arr.get(0).get(1));
-		
-		for (int row : arr.keySet()) {
-			if (row > 0) {
-				for (int col : arr.get(row)) {
-					out.setEntry(row - 1, col - 1, 1);
-				}
-			}
-		}
-		
-		return out;
+	// converts a matrix into a real matrix
+	public static RealMatrix matrixToReal(GF2Matrix arr) {
+		return arr.toReal();
 	}
 	
-	// converts a real matrix into a sparse matrix
-	public static HashMap<Integer, ArrayList<Integer>> realToSparse(RealMatrix arr) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> out = initialize(arr.getRowDimension(), arr.getColumnDimension());
-		
-		for (int r = 0; r < arr.getRowDimension(); r++) {
-			for (int c = 0; c < arr.getColumnDimension(); c++) {
-				if ((int) arr.getEntry(r, c) == 1) {
-					addElement(out, r + 1, c + 1);
-				}
-			}
-		}
-		
-		return out;
+	// converts a real matrix into a matrix
+	public static GF2Matrix realToMatrix(RealMatrix arr) {
+		return GF2Matrix.fromReal(arr);
 	}
 	
-	// converts a int[][] into a sparse matrix
-	public static HashMap<Integer, ArrayList<Integer>> intArrayToSparse(int[][] arr) throws Exception {
-		HashMap<Integer, ArrayList<Integer>> out = initialize(arr.length, arr[0].length);
-		
-		for (int r = 0; r < arr.length; r++) {
-			for (int c = 0; c < arr[0].length; c++) {
-				if ((int) arr[r][c] == 1) {
-					addElement(out, r + 1, c + 1);
-				}
-			}
-		}
-		
-		return out;
+	// converts a int[][] into a matrix
+	public static GF2Matrix intArrayToMatrix(int[][] arr) {
+		return GF2Matrix.fromIntArray(arr);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+/*
+ * M2MAEvaluator.java
+ *
+ * Evaluates words on a fixed mod-2-MA by carrying a single packed state vector through the word.
+ *
+ * The value of a word w = σ_1...σ_k is (1,0,...,0) * μ(σ_1) * ... * μ(σ_k) * (final vector)^T, so only
+ * the first row of μ(w) is ever needed. Each letter costs one vector-matrix product, O(n^2/64), and the
+ * evaluator reuses two scratch vectors so that no memory is allocated per letter.
+ *
+ * An evaluator is not thread-safe, as the scratch vectors are shared between calls. To evaluate many words
+ * that share prefixes, see WordTrie.java.
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class M2MAEvaluator {
+
+	private final GF2Matrix finalVector;
+	private final GF2Matrix[] transitionMatrices;
+	private final int size;
+
+	// scratch state vectors, swapped after every letter
+	private long[] current;
+	private long[] next;
+
+	public M2MAEvaluator(GF2Matrix finalVector, GF2Matrix[] transitionMatrices) {
+		this.finalVector = finalVector;
+		this.transitionMatrices = transitionMatrices;
+		this.size = finalVector.getColumnDimension();
+		this.current = new long[GF2Matrix.words(size)];
+		this.next = new long[GF2Matrix.words(size)];
+	}
+
+	// returns true if this evaluator was built from exactly these (not merely equal) matrices
+	public boolean isFor(GF2Matrix finalVector, GF2Matrix[] transitionMatrices) {
+		return this.finalVector == finalVector && this.transitionMatrices == transitionMatrices;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// returns the value of the word given by letter indices
+	public int evaluate(int[] letters) {
+		return evaluate(letters, 0, letters.length);
+	}
+
+	// returns the value of the word letters[from], ..., letters[to-1]
+	public int evaluate(int[] letters, int from, int to) {
+		Arrays.fill(current, 0L);
+		if (size > 0) {
+			current[0] = 1L;
+		}
+
+		for (int i=from; i<to; i++) {
+			transitionMatrices[letters[i]].vectorTimes(current, next);
+			long[] temp = current;
+			current = next;
+			next = temp;
+		}
+
+		return output(current);
+	}
+
+	// returns the value of a word over the alphabet of M2MA
+	public int evaluate(Word word) {
+		return evaluate(word.letters, 0, word.letters.length);
+	}
+
+	// returns the value of a space-separated word over the alphabet of M2MA
+	public int evaluate(String word) {
+		return evaluate(word, M2MA.letterToIndex);
+	}
+
+	// returns the value of a space-separated word, using letterToIndex to map letters to transition matrices
+	public int evaluate(String word, Map<String, Integer> letterToIndex) {
+		if (word.length() == 0) {
+			return evaluate(new int[0]);
+		}
+
+		String[] wordArr = word.split(" ");
+		int[] letters = new int[wordArr.length];
+		for (int i=0; i<wordArr.length; i++) {
+			letters[i] = letterToIndex.get(wordArr[i]);
+		}
+		return evaluate(letters);
+	}
+
+	/* Single steps, for callers that manage their own state vectors. */
+
+	// writes the initial state (1,0,...,0) into state
+	public void initialState(long[] state) {
+		Arrays.fill(state, 0L);
+		if (size > 0) {
+			state[0] = 1L;
+		}
+	}
+
+	// out = state * μ(letter)
+	public void step(long[] state, int letter, long[] out) {
+		transitionMatrices[letter].vectorTimes(state, out);
+	}
+
+	// returns state * (final vector)^T
+	public int output(long[] state) {
+		return GF2Matrix.dot(state, finalVector.getRow(0));
+	}
+
+	/* Steps from the right, for co-state vectors μ(w) * (final vector)^T. */
+
+	// writes the final co-state (final vector)^T into coState
+	public void finalCoState(long[] coState) {
+		System.arraycopy(finalVector.getRow(0), 0, coState, 0, coState.length);
+	}
+
+	// out = μ(letter) * coState
+	public void stepBackward(long[] coState, int letter, long[] out) {
+		transitionMatrices[letter].timesVector(coState, out);
+	}
+
+	// returns (1,0,...,0) * coState
+	public int coOutput(long[] coState) {
+		return size > 0 ? (int) (coState[0] & 1L) : 0;
+	}
+}
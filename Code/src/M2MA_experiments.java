@@ -1,6 +1,6 @@
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Scanner;
+import java.util.SplittableRandom;
 
 public class M2MA_experiments {
 	
@@ -9,8 +9,10 @@ public class M2MA_experiments {
 	public static int maxDim;
 	public static int dimIncrement;
 	public static int numM2MAs;
+	
+	// sum of the run times of the M2MAs of the current dimension, in nanoseconds
+	public static double sumRuntimes;
 
-	@SuppressWarnings("unchecked")
 	public static void main(String[] args) throws Exception {
 		System.out.println("Program Description:");
 		System.out.println("The program will run M2MA.java on a set of randomly generated M2MAs of dimensions within a certain range.");
@@ -35,60 +37,78 @@ public class M2MA_experiments {
 			M2MA.letterToIndex.put(M2MA.alphabet[i], i);
 		}
 		
-		for (int dim = minDim; dim <= maxDim; dim += dimIncrement) {
-			M2MA.inputSize = dim;
-			double sumRuntimes = 0;
+		// instance i learns an M2MA of dimension minDim + (i / numM2MAs) * dimIncrement
+		int numDims = (maxDim >= minDim) ? (maxDim - minDim) / dimIncrement + 1 : 0;
+		BatchRunner batch = new BatchRunner(numDims * numM2MAs, M2MA_experiments::addRuntime);
+		for (int i = 0; i < numDims * numM2MAs; i++) {
+			int dim = minDim + (i / numM2MAs) * dimIncrement;
+			SplittableRandom random = new SplittableRandom(batch.seed(i));
+			batch.submit(i, () -> Long.toString(runM2MA(dim, random)));
+		}
+		
+		batch.finish();
+		System.out.println("Algorithm complete.");
+	}
+	
+	// adds the run time of an instance, and displays the average once every M2MA of its dimension is done
+	public static void addRuntime(int instance, String runtime) {
+		sumRuntimes += Long.parseLong(runtime);
+		
+		if (instance % numM2MAs == numM2MAs - 1) {
+			int dim = minDim + (instance / numM2MAs) * dimIncrement;
+			double averageTime = sumRuntimes / numM2MAs;
+			double convertedTime = averageTime / Math.pow(10,  9);
+			double roundedTime = ((int) (convertedTime * 100))/100.0;
+			System.out.println("Average run time of M2MAs of dimension " + dim + ": " + roundedTime + "s");
+			sumRuntimes = 0;
+		}
+	}
+	
+	// learns a random M2MA of dimension dim drawn from random, in objects of its own, and returns the run time in nanoseconds
+	public static long runM2MA(int dim, SplittableRandom random) throws Exception {
+		GF2Matrix inputFinalVector = M2MA.initialize(1, dim);
+		for (int j = 1; j <= dim; j++) {
+			if (random.nextBoolean()) {
+				M2MA.addElement(inputFinalVector, 1, j);
+			}
+		}
+		
+		GF2Matrix[] inputTransitionMatrices = new GF2Matrix[alphabetSize];
+		for (int j = 0; j < alphabetSize; j++) {
+			GF2Matrix transitionMatrix = M2MA.initialize(dim, dim);
 			
-			for (int i = 0; i < numM2MAs; i++) {
-				// initialize M2MA parameters
-				M2MA.inputFinalVector = M2MA.initialize(1, M2MA.inputSize);
-				for (int j = 1; j <= M2MA.inputSize; j++) {
-					if (Math.random() < .5) {
-						M2MA.addElement(M2MA.inputFinalVector, 1, j);
+			for (int k = 1; k <= dim; k++) {
+				for (int l = 1; l <= dim; l++) {
+					if (random.nextBoolean()) {
+						M2MA.addElement(transitionMatrix, k, l);
 					}
 				}
-				
-				M2MA.inputTransitionMatrices = new HashMap[alphabetSize];
-				for (int j = 0; j < alphabetSize; j++) {
-					HashMap<Integer, ArrayList<Integer>> transitionMatrix = M2MA.initialize(M2MA.inputSize, M2MA.inputSize);
-					
-					for (int k = 1; k <= M2MA.inputSize; k++) {
-						for (int l = 1; l <= M2MA.inputSize; l++) {
-							if (Math.random() < .5) {
-								M2MA.addElement(transitionMatrix, k, l);
-							}
-						}
-					}
-					
-					M2MA.inputTransitionMatrices[j] = transitionMatrix;
-				}
-				
-				long startTime = System.nanoTime();
-				
-				// run the M2MA.java algorithms
-				M2MA.minimize();
-				
-				M2MA.learn();
-				
-				if (M2MA.minSize != M2MA.learnedSize) {
-					M2MA.throwException(null, "Algorithm failed: the learned mod-2-MA has a different dimension "
-							+ "(" + M2MA.learnedSize + ") than the minimized mod-2-MA (" + M2MA.minSize + ").");
-				}
-
-				if (M2MA.finalCheck(25, 1000, false)) {
-					long endTime = System.nanoTime();
-					sumRuntimes += endTime - startTime;
-				} else {
-					M2MA.throwException(null, "Algorithm failed: failed final check.");
-				}
 			}
 			
-			double averageTime = sumRuntimes / numM2MAs;
-			double convertedTime = averageTime / Math.pow(10,  9);
-			double roundedTime = ((int) (convertedTime * 100))/100.0;
-			System.out.println("Average run time of M2MAs of dimension " + dim + ": " + roundedTime + "s");
+			inputTransitionMatrices[j] = transitionMatrix;
 		}
-		System.out.println("Algorithm complete.");
+		
+		long startTime = System.nanoTime();
+		
+		// run the M2MA.java algorithms
+		Minimizer minimizer = new Minimizer(M2MA.alphabet, inputFinalVector, inputTransitionMatrices);
+		minimizer.run();
+		
+		LearnerSession session = LearnerSession.forM2MA(M2MA.alphabet, minimizer.minFinalVector, minimizer.minTransitionMatrices);
+		session.maxSize = minimizer.minSize;
+		session.learn();
+		
+		if (minimizer.minSize != session.learnedSize) {
+			M2MA.throwException(null, "Algorithm failed: the learned mod-2-MA has a different dimension "
+					+ "(" + session.learnedSize + ") than the minimized mod-2-MA (" + minimizer.minSize + ").");
+		}
+
+		Word distinguishingWord = M2MA.distinguishingWord(inputFinalVector, inputTransitionMatrices,
+				session.resultFinalVector, session.resultTransitionMatrices);
+		if (distinguishingWord != null) {
+			M2MA.throwException(null, "Algorithm failed: failed final check on \"" + distinguishingWord + "\".");
+		}
+		return System.nanoTime() - startTime;
 	}
 	
 	public static void readInput() {
@@ -0,0 +1,41 @@
+/*
+ * MembershipOracle.java
+ *
+ * A target function that answers membership queries: 1 if a word (see Word.java) is in the language, 0 otherwise.
+ *
+ * The learner asks for whole blocks of its observation table at once when it knows them up front (see
+ * QueryBatch.java), so an oracle may override answerBatch to share work between the words of a block or to
+ * answer them in parallel. By default the words are answered one at a time, in order.
+ */
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+public interface MembershipOracle {
+
+	// smallest batch answered in parallel by answerInParallel
+	int PARALLEL_THRESHOLD = 64;
+
+	int answer(Word word) throws Exception;
+
+	// returns the answers of the words, by position
+	default int[] answerBatch(List<Word> words) throws Exception {
+		int[] out = new int[words.size()];
+		for (int i=0; i<words.size(); i++) {
+			out[i] = answer(words.get(i));
+		}
+		return out;
+	}
+
+	// answers the words in parallel on the common fork-join pool, for oracles whose answers only read the target
+	static int[] answerInParallel(List<Word> words, ToIntFunction<Word> answer) {
+		int[] out = new int[words.size()];
+		IntStream range = IntStream.range(0, words.size());
+		if (words.size() >= PARALLEL_THRESHOLD) {
+			range = range.parallel();
+		}
+		range.forEach(i -> out[i] = answer.applyAsInt(words.get(i)));
+		return out;
+	}
+}
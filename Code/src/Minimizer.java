@@ -0,0 +1,177 @@
+/*
+ * Minimizer.java
+ *
+ * Minimizes a mod-2-MA following Thon and Jaeger: the bases of its state space and co-state space (see M2MA.basis)
+ * span an observation table, and a maximal set of linearly independent rows and columns of the table gives the
+ * minimized mod-2-MA.
+ *
+ * A Minimizer holds one input mod-2-MA and its minimization, so independent targets can be minimized at once, one
+ * Minimizer per thread. M2MA.minimize() runs one on the input mod-2-MA in the static fields of M2MA and copies the
+ * result to the static min* fields.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class Minimizer {
+
+	public final String[] alphabet;
+	// input mod-2-MA
+	public final GF2Matrix finalVector;
+	public final GF2LinearMap[] transitionMatrices;
+
+	// if true, displays information on the progress of the minimization algorithm
+	public boolean progressFlag;
+	// if true, displays the steps of the minimization algorithm and the minimized dimension
+	public boolean dimensionFlag;
+	// if true, run() stops once minSize is known, and the minimized mod-2-MA isn't constructed
+	public boolean sizeOnly;
+
+	// minimized mod-2-MA
+	public int minSize;
+	// row and column indices of the minimized mod-2-MA's observation table
+	public ArrayList<Word> minRowIndices;
+	public ArrayList<Word> minColIndices;
+	public GF2Matrix minFinalVector;
+	public GF2Matrix[] minTransitionMatrices;
+
+	public Minimizer(String[] alphabet, GF2Matrix finalVector, GF2LinearMap[] transitionMatrices) {
+		this.alphabet = alphabet;
+		this.finalVector = finalVector;
+		this.transitionMatrices = transitionMatrices;
+	}
+
+	public void run() throws Exception {
+		int inputSize = finalVector.getColumnDimension();
+
+		if (progressFlag) {
+			System.out.println("Mod-2-MA to minimize:");
+			System.out.println("---------------------");
+
+			System.out.println("Dimension: " + inputSize + '\n');
+
+			System.out.print("Final Vector: ");
+			M2MA.displayMatrix(finalVector);
+
+			System.out.println("Transition Matrices:\n");
+			for (int i=0; i<transitionMatrices.length; i++) {
+				System.out.println("Letter " + alphabet[i]);
+				M2MA.displayMatrix(transitionMatrices[i].toDense());
+			}
+
+			System.out.println("Minimization in progress...");
+			System.out.println("-------------------------");
+		} else if (dimensionFlag) {
+			System.out.println("Minimization in progress...");
+		}
+
+		ArrayList<Word> stateSpaceBasisIndices = new ArrayList<Word>();
+		HashMap<Word, long[]> stateSpaceIndexToVector = new HashMap<Word, long[]>();
+		GF2Matrix stateSpaceBasis = M2MA.basis(finalVector, transitionMatrices, stateSpaceIndexToVector, stateSpaceBasisIndices, true);
+
+		if (progressFlag || dimensionFlag) {
+			System.out.println("Created the state space.");
+		}
+
+		ArrayList<Word> coStateSpaceBasisIndices = new ArrayList<Word>();
+		HashMap<Word, long[]> coStateSpaceIndexToVector = new HashMap<Word, long[]>();
+		GF2Matrix coStateSpaceBasis = M2MA.basis(finalVector, transitionMatrices, coStateSpaceIndexToVector, coStateSpaceBasisIndices, false);
+
+		if (progressFlag || dimensionFlag) {
+			System.out.println("Created the co-state space.");
+			if (progressFlag) {
+				System.out.println();
+			}
+		}
+
+		// (state space x co-state space) observation table
+		GF2Matrix observationTable = M2MA.multiply(stateSpaceBasis, coStateSpaceBasis);
+
+		if (dimensionFlag) {
+			System.out.println("Created the observation table.");
+		}
+
+		if (progressFlag) {
+			System.out.println("Observation table:" );
+			System.out.println("Dimension: " + stateSpaceBasis.getRowDimension() + " x " + coStateSpaceBasis.getColumnDimension());
+			System.out.println("Rows: " + M2MA.displayIndices(stateSpaceBasisIndices, alphabet));
+			System.out.println("Cols: " + M2MA.displayIndices(coStateSpaceBasisIndices, alphabet));
+			M2MA.displayMatrix(observationTable);
+		}
+
+		// obtain the smallest set of linearly independent rows and columns from observationTable
+		minRowIndices = new ArrayList<Word>();
+		GF2Matrix linIndRowsObservationTable = M2MA.linIndSubMatrixRows(observationTable, stateSpaceBasisIndices, minRowIndices);
+
+		minSize = linIndRowsObservationTable.getRowDimension();
+
+		if (dimensionFlag) {
+			System.out.println("Minimized dimension: " + minSize);
+		}
+
+		if (sizeOnly) {
+			return;
+		}
+
+		minColIndices = new ArrayList<Word>();
+		GF2Matrix minObservationTable = M2MA.linIndSubMatrixCols(linIndRowsObservationTable, coStateSpaceBasisIndices, minColIndices);
+
+		if (progressFlag) {
+			System.out.println("Minimized observation table:");
+			System.out.println("Dimension: " + minSize);
+			System.out.println("Rows: " + M2MA.displayIndices(minRowIndices, alphabet));
+			System.out.println("Cols: " + M2MA.displayIndices(minColIndices, alphabet));
+			System.out.println("Table:");
+			M2MA.displayMatrix(minObservationTable);
+		}
+
+		// case where minObservationTable = [[0]] (singular, must be treated separately)
+		if (minObservationTable.getRowDimension() == 1 && minObservationTable.isZeroRow(0)) {
+			minFinalVector = M2MA.initialize(1, 1);
+			minTransitionMatrices = new GF2Matrix[alphabet.length];
+			for (int i=0; i<alphabet.length; i++) {
+				minTransitionMatrices[i] = M2MA.initialize(1, 1);
+			}
+
+			if (progressFlag) {
+				System.out.println("Minimization completed.\n");
+			}
+
+			return;
+		}
+
+		// minObservationTable has linearly independent rows and columns, so it is invertible
+		GF2Matrix tableInverse = new solver(minObservationTable).getInverse();
+
+		// minTransitionMatrices = xSigma*tableInverse, where xSigma is the matrix where row_i = row_(x_i+σ) of the observation table
+		// xSigma = minStates * transitionMatrix_σ * minCoStates, where the rows of minStates are the state vectors of minRowIndices
+		// and the columns of minCoStates are the co-state vectors of minColIndices
+		int dim = minObservationTable.getRowDimension();
+		GF2Matrix minStates = M2MA.initialize(0, inputSize);
+		GF2Matrix minCoStatesTranspose = M2MA.initialize(0, inputSize);
+		for (int j=0; j<dim; j++) {
+			minStates.appendRow(stateSpaceIndexToVector.get(minRowIndices.get(j)));
+			minCoStatesTranspose.appendRow(coStateSpaceIndexToVector.get(minColIndices.get(j)));
+		}
+		GF2Matrix minCoStates = minCoStatesTranspose.transpose();
+
+		minTransitionMatrices = new GF2Matrix[alphabet.length];
+		for (int i=0; i<alphabet.length; i++) {
+			GF2Matrix xSigma = M2MA.multiply(minStates, transitionMatrices[i].multiply(minCoStates));
+
+			minTransitionMatrices[i] = M2MA.multiply(xSigma, tableInverse);
+		}
+
+		// minFinalVector is the first column of minObservationTable
+		minFinalVector = M2MA.initialize(1, dim);
+		for (int j=1; j<=dim; j++) {
+			if (M2MA.getEntry(minObservationTable, j, 1) == 1) {
+				M2MA.addElement(minFinalVector, 1, j);
+			}
+		}
+
+		if (progressFlag) {
+			System.out.println("Minimization completed.\n");
+		}
+	}
+}
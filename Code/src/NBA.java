@@ -7,6 +7,7 @@
 
 import java.io.BufferedReader;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 public class NBA {
@@ -15,6 +16,21 @@ public class NBA {
 	public static int NBAStates;
 	public static ArrayList<Integer>[][] NBATransitions;
 	public static boolean[] NBAFinalStates;
+	// the NBA compiled into bitsets, shared by the threads answering MQ's
+	private static volatile NBASimulator simulator;
+	
+	// MQ only reads the NBA, so batches of MQ's are answered in parallel
+	public static final MembershipOracle ORACLE = new MembershipOracle() {
+		@Override
+		public int answer(Word word) {
+			return MQ(word);
+		}
+		
+		@Override
+		public int[] answerBatch(List<Word> words) {
+			return MembershipOracle.answerInParallel(words, word -> MQ(word));
+		}
+	};
 
 	public static void main(String[] args) throws Exception {
 		System.out.println("Program Description:");
@@ -35,9 +51,9 @@ public class NBA {
 	
 	@SuppressWarnings("unchecked")
 	public static void readInput() throws Exception {
-		System.out.println("Input file name and optional flag -v (e.g. NBA_input1.txt or NBA_input1.txt -v)");
+		System.out.println("Input file name and optional flag -vcr (e.g. NBA_input1.txt or NBA_input1.txt -v)");
 		
-		BufferedReader f = M2MA.getFile(true, false, false, false);
+		BufferedReader f = M2MA.getFile(true, false, false, false, true);
 		
 		arbitrary.EQMaxTestLen = Integer.parseInt(M2MA.readFile(f));	
 		arbitrary.EQNumTests = Integer.parseInt(M2MA.readFile(f));
@@ -97,12 +113,21 @@ public class NBA {
 	}
 	
 	public static int MQ(String w) {
+		return MQ(Word.parse(w));
+	}
+	
+	public static int MQ(Word w) {
+		return MQ(simulator(), M2MA.letterToIndex.get("$"), w);
+	}
+	
+	// MQ on the NBA compiled into simulator, where dollar is the letter index of $ (safe to call from several threads)
+	public static int MQ(NBASimulator simulator, int dollar, Word w) {
 		// ω must contain exactly one $
 		int dollarIndex = -1;
 		for (int i=0; i<w.length(); i++) {
-			if (w.charAt(i) == '$' && dollarIndex == -1) {
+			if (w.letterAt(i) == dollar && dollarIndex == -1) {
 				dollarIndex = i;
-			} else if(w.charAt(i) == '$' && dollarIndex != -1) {
+			} else if(w.letterAt(i) == dollar && dollarIndex != -1) {
 				return 0;
 			}
 		}
@@ -111,167 +136,18 @@ public class NBA {
 			return 0;
 		}
 		
-		String u = w.substring(0, dollarIndex).trim();
-		String v = w.substring(dollarIndex+1).trim();
-		
-		/*
-		 * States are represented as length-2 integer arrays.
-		 * The first element is the state number.
-		 * The second element is either 0 or 1, with 1 indicating that a final state was passed to reach the state (or if the state itself is final).
-		 */
-		
-		// initial state by default is q_1
-		ArrayList<int[]> initialState = new ArrayList<int[]>();
-		int[] state = {1, 0};
-		initialState.add(state);
-		
-		// states reachable from initialState on one u
-		ArrayList<int[]> readU = readStr(u, initialState);
-		
-		// states reachable from initialState on one u and a non-negative number of v's
-		ArrayList<int[]> reachable = readV(v, readU);
-		reachable.addAll(readU);
-		refine(reachable);
-		
-		// see if any of the states in reachable have an accepting loop
-		for (int i=0; i<reachable.size(); i++) {
-			if (acceptingLoop(reachable.get(i), v)) {
-				return 1;
-			}
-		}
-		return 0;
-	}
-	
-	// returns true if, starting at state, after reading some positive number of v's it returns to state while having passed a final state
-	public static boolean acceptingLoop(int[] state, String v) {
-		if(NBAFinalStates[state[0]]) {
-			state[1] = 1;
-		} else {
-			state[1] = 0;
-		}
-		ArrayList<int[]> initialState = new ArrayList<int[]>();
-		initialState.add(state);
-		
-		// find all of the states reachable from state on a positive number of v's
-		ArrayList<int[]> reachable = readV(v, initialState);
-		
-		// see if reachable contains (state, 1), which indicates an accepting loop
-		for (int i=0; i<reachable.size(); i++) {
-			if((state[0] == reachable.get(i)[0]) && (reachable.get(i)[1] == 1)) {
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	// returns an ArrayList with all of the states reachable from a state in states on a positive number of v's
-	public static ArrayList<int[]> readV(String v, ArrayList<int[]> states) {
-		// read one v (must read a positive number of v's)
-		ArrayList<int[]> reachable = readStr(v, states);
+		Word u = w.prefix(dollarIndex);
+		Word v = w.subword(dollarIndex+1, w.length());
 		
-		// keep reading v's until we find no new states upon reading another v
-		while (true)	{
-			ArrayList<int[]> readNextV = readStr(v, reachable);
-			
-			// check if readNextV has states not found in reachable
-			if (subset(readNextV, reachable)) {
-				return reachable;
-			}
-			refine(reachable);
-		}
+		return simulator.MQ(u, v);
 	}
 	
-	// returns an ArrayList with all of the states reachable from startStates on str
-	public static ArrayList<int[]> readStr(String str, ArrayList<int[]> startStates) {
-		if (str.length() == 0) {
-			return refine(startStates);
-		}
-		
-		ArrayList<int[]> nextStates = new ArrayList<int[]>();
-		boolean[][] visited = new boolean[NBAStates+1][2];
-		
-		String firstLetter = "";
-		int pos = 0;
-		while (pos < str.length() && str.charAt(pos) != ' ') {
-			firstLetter += str.charAt(pos++);
-		}
-		
-		// update nextStates with all of the states reachable from startStates on the first letter of str
-		for (int i=0; i<startStates.size(); i++) {
-			ArrayList<Integer> curTransition = NBATransitions[startStates.get(i)[0]][M2MA.letterToIndex.get(firstLetter)];
-			for (int j=0; j<curTransition.size(); j++) {
-				int nextState = curTransition.get(j);
-				int mark = 0;
-				
-				// either came from a state that has passed a final state or is a final state itself
-				if (startStates.get(i)[1] == 1 || NBAFinalStates[nextState]) {
-					mark = 1;
-				}
-				
-				if (!visited[nextState][1] && (!visited[nextState][0] || mark == 1)) {
-					visited[nextState][mark] = true;
-					int[] markedState = {nextState, mark};
-					nextStates.add(markedState);
-				}
-			}
-		}
-		
-		return readStr(str.substring(Math.min(firstLetter.length() + 1, str.length())), nextStates);
-	}
-	
-	// refines states so that it contains unique values 
-	// if both (state, 0) and (state, 1) are in states, only (state, 1) is kept
-	public static ArrayList<int[]> refine(ArrayList<int[]> states) {
-		// nothing to refine, makes reading u="" more efficient
-		if (states.size() <= 1) {
-			return states;
-		}
-		
-		// place the elements of states in a boolean array
-		boolean[][] seen = new boolean[NBAStates+1][2];
-		for (int i=0; i<states.size(); i++) {
-			if (states.get(i)[1] == 0) {
-				seen[states.get(i)[0]][0] = true; 
-			} else {
-				seen[states.get(i)[0]][1] = true; 
-			}
-		}
-		
-		// add unique, "maximal" states to out
-		ArrayList<int[]> out = new ArrayList<int[]>();
-		for (int i=1; i<=NBAStates; i++) {
-			if (seen[i][1]) {
-				int[] markedState = {i,1};
-				out.add(markedState);
-			} else if (seen[i][0]) {
-				int[] markedState = {i,0};
-				out.add(markedState);
-			}
-		}
-		return out;
-	}
-
-	// returns true if arr1 is a subset of arr2
-	// adds the elements in arr1 that are not in arr2 to arr2
-	public static boolean subset(ArrayList<int[]> arr1, ArrayList<int[]> arr2) {
-		boolean out = true;
-		
-		// place the elements of arr1 in a boolean array
-		boolean[][] inArr2 = new boolean[NBAStates+1][2];
-		for(int i=0; i<arr2.size(); i++) {
-			if (arr2.get(i)[1] == 0) {
-				inArr2[arr2.get(i)[0]][0] = true;
-			} else {
-				inArr2[arr2.get(i)[0]][1] = true;
-			}
-		}
-		
-		// arr2 = arr1 U arr2
-		for (int i=0; i<arr1.size(); i++) {
-			if (!inArr2[arr1.get(i)[0]][arr1.get(i)[1]]) {
-				arr2.add(arr1.get(i));
-				out = false;
-			}
+	// returns the simulator of the NBA, compiling it again if the NBA changed (see NBASimulator.java)
+	public static NBASimulator simulator() {
+		NBASimulator out = simulator;
+		if (out == null || !out.isFor(NBATransitions, NBAFinalStates)) {
+			out = new NBASimulator(NBAStates, NBATransitions, NBAFinalStates);
+			simulator = out;
 		}
 		return out;
 	}
@@ -0,0 +1,218 @@
+/*
+ * NBASimulator.java
+ *
+ * Answers the membership queries of NBA.java, whether u v^ω is accepted, on the NBA compiled into bitsets.
+ *
+ * For every letter and state, the successors of the state are stored as a bitset over the states, so reading a
+ * letter from a set of states is one OR of a successor set per state in the set. Sets of (state, passed a final
+ * state) pairs are stored as two bitsets, and a state reached both with and without passing a final state is only
+ * kept with the mark, as every path that continues from the unmarked pair continues from the marked pair.
+ *
+ * u v^ω is accepted iff some state q reachable on u v^k (k ≥ 0) lies on a cycle of v's that passes a final state.
+ * Let A be the relation p -> q iff q is reachable from p on v, and F ⊆ A the pairs for which some path on v passes
+ * a final state (p and q included). The states reachable on u v^k are found by a search along A from the states
+ * reachable on u, and the rows A[p] and F[p] are only computed for the states the search finds. There is an
+ * accepting cycle iff one of them, p, has an F-successor p' such that p is reachable from p' along A, which is
+ * read off the transitive closure of A over the states found.
+ *
+ * loopMQ answers the membership queries of a SUBA (see SUBA.java), for which u v^ω is accepted iff some state q
+ * reachable on u has a single v from q back to q that passes a final state, so it only computes the rows A[p] and
+ * F[p] of the states p reachable on u. Both queries take O(|u|·n²/64 + |v|·n³/64) time at most.
+ *
+ * A simulator is not modified after construction, so one instance answers MQ's from several threads.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class NBASimulator {
+
+	private final int numStates;
+	private final int words;
+	// successors[letter][state] is the set of successors of state on letter (state q of NBA.java is bit q-1)
+	private final long[][][] successors;
+	private final long[] finalStates;
+
+	// the NBA this simulator was compiled from
+	private final ArrayList<Integer>[][] transitions;
+	private final boolean[] finalStateFlags;
+
+	public NBASimulator(int numStates, ArrayList<Integer>[][] transitions, boolean[] finalStateFlags) {
+		this.numStates = numStates;
+		this.words = GF2Matrix.words(numStates);
+		this.transitions = transitions;
+		this.finalStateFlags = finalStateFlags;
+
+		int numLetters = (numStates == 0) ? 0 : transitions[1].length;
+		successors = new long[numLetters][numStates][words];
+		for (int state=1; state<=numStates; state++) {
+			for (int letter=0; letter<numLetters; letter++) {
+				for (int next : transitions[state][letter]) {
+					GF2Matrix.setBit(successors[letter][state - 1], next - 1);
+				}
+			}
+		}
+
+		finalStates = new long[words];
+		for (int state=1; state<=numStates; state++) {
+			if (finalStateFlags[state]) {
+				GF2Matrix.setBit(finalStates, state - 1);
+			}
+		}
+	}
+
+	// returns true if this simulator was compiled from exactly these (not merely equal) arrays
+	public boolean isFor(ArrayList<Integer>[][] transitions, boolean[] finalStateFlags) {
+		return this.transitions == transitions && this.finalStateFlags == finalStateFlags;
+	}
+
+	// returns 1 if u v^ω is accepted, 0 otherwise (v must not be empty)
+	public int MQ(Word u, Word v) {
+		if (numStates == 0) {
+			return 0;
+		}
+
+		long[] current = readU(u);
+
+		// search along A, found[0..numFound-1] are the states found in order
+		int[] found = new int[numStates];
+		boolean[] isFound = new boolean[numStates];
+		int numFound = 0;
+		for (int s=GF2Matrix.nextSetBit(current, 0); s!=-1; s=GF2Matrix.nextSetBit(current, s + 1)) {
+			isFound[s] = true;
+			found[numFound++] = s;
+		}
+
+		long[][] reach = new long[numStates][];
+		long[][] reachFinal = new long[numStates][];
+		for (int i=0; i<numFound; i++) {
+			int p = found[i];
+			readV(p, v, reach, reachFinal);
+
+			// a cycle of one v through a final state
+			if (GF2Matrix.getBit(reachFinal[p], p) == 1) {
+				return 1;
+			}
+
+			for (int q=GF2Matrix.nextSetBit(reach[p], 0); q!=-1; q=GF2Matrix.nextSetBit(reach[p], q + 1)) {
+				if (!isFound[q]) {
+					isFound[q] = true;
+					found[numFound++] = q;
+				}
+			}
+		}
+
+		// closure[p] = states reachable from p on a positive number of v's, closed over the states found (Warshall)
+		long[][] closure = new long[numStates][];
+		for (int i=0; i<numFound; i++) {
+			closure[found[i]] = reach[found[i]].clone();
+		}
+		for (int k=0; k<numFound; k++) {
+			int mid = found[k];
+			for (int i=0; i<numFound; i++) {
+				long[] row = closure[found[i]];
+				if (GF2Matrix.getBit(row, mid) == 1) {
+					orInto(row, closure[mid]);
+				}
+			}
+		}
+
+		// an F-edge p -> p' closed into a cycle by a path from p' back to p
+		for (int i=0; i<numFound; i++) {
+			int p = found[i];
+			long[] finalSuccessors = reachFinal[p];
+			for (int q=GF2Matrix.nextSetBit(finalSuccessors, 0); q!=-1; q=GF2Matrix.nextSetBit(finalSuccessors, q + 1)) {
+				if (GF2Matrix.getBit(closure[q], p) == 1) {
+					return 1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Returns 1 if some state q reachable on u has a path from q back to q on v that passes a final state (q
+	 * included), 0 otherwise (v must not be empty).
+	 */
+	public int loopMQ(Word u, Word v) {
+		if (numStates == 0) {
+			return 0;
+		}
+
+		long[] current = readU(u);
+		long[][] reach = new long[numStates][];
+		long[][] reachFinal = new long[numStates][];
+		for (int p=GF2Matrix.nextSetBit(current, 0); p!=-1; p=GF2Matrix.nextSetBit(current, p + 1)) {
+			readV(p, v, reach, reachFinal);
+			if (GF2Matrix.getBit(reachFinal[p], p) == 1) {
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	// returns the states reachable from q_1 on u
+	private long[] readU(Word u) {
+		long[] current = new long[words];
+		long[] next = new long[words];
+		GF2Matrix.setBit(current, 0);
+		for (int i=0; i<u.length(); i++) {
+			image(current, u.letterAt(i), next);
+			long[] temp = current;
+			current = next;
+			next = temp;
+		}
+		return current;
+	}
+
+	// reads v from (p, p is final), and sets reach[p] and reachFinal[p] to the states reached, and those reached with the mark
+	private void readV(int p, Word v, long[][] reach, long[][] reachFinal) {
+		// pairs (state, 0) and (state, 1), the two sets are disjoint
+		long[] unmarked = new long[words];
+		long[] marked = new long[words];
+		long[] nextUnmarked = new long[words];
+		long[] nextMarked = new long[words];
+		if (GF2Matrix.getBit(finalStates, p) == 1) {
+			GF2Matrix.setBit(marked, p);
+		} else {
+			GF2Matrix.setBit(unmarked, p);
+		}
+
+		for (int i=0; i<v.length(); i++) {
+			int letter = v.letterAt(i);
+			image(unmarked, letter, nextUnmarked);
+			image(marked, letter, nextMarked);
+			// a final state marks the pair, and a marked pair replaces the unmarked pair of the same state
+			for (int w=0; w<words; w++) {
+				nextMarked[w] |= nextUnmarked[w] & finalStates[w];
+				nextUnmarked[w] &= ~nextMarked[w];
+			}
+
+			long[] temp = unmarked;
+			unmarked = nextUnmarked;
+			nextUnmarked = temp;
+			temp = marked;
+			marked = nextMarked;
+			nextMarked = temp;
+		}
+
+		orInto(unmarked, marked);
+		reach[p] = unmarked;
+		reachFinal[p] = marked;
+	}
+
+	// out = the states reachable from a state in states on letter
+	private void image(long[] states, int letter, long[] out) {
+		Arrays.fill(out, 0L);
+		for (int s=GF2Matrix.nextSetBit(states, 0); s!=-1; s=GF2Matrix.nextSetBit(states, s + 1)) {
+			orInto(out, successors[letter][s]);
+		}
+	}
+
+	// dst |= src
+	private static void orInto(long[] dst, long[] src) {
+		for (int w=0; w<dst.length; w++) {
+			dst[w] |= src[w];
+		}
+	}
+}
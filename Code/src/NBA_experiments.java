@@ -19,26 +19,48 @@ public class NBA_experiments {
 		M2MA.minDimensionFlag = false;
 		M2MA.dfaFlag = false;
 		
-		for (int i = 1; i <= 5; i++) {
-			String fileName = "NBA_exp" + Integer.toString(i) + ".txt";
-			System.out.println("Running " + fileName + ": ");
+		// instance i runs NBA_exp(i+1).txt, the result is the learned dimension, the run time, and the number of failed
+		// tests of the last EQ if it reached the EQ limit (0 otherwise) out of the number of tests per EQ
+		BatchRunner batch = new BatchRunner(5, NBA_experiments::displayResult);
+		for (int i = 0; i < 5; i++) {
+			// the NBAs are read in order, and each is learned in a session of its own
+			NBAReadInputWithFile(new BufferedReader(new FileReader(fileName(i))));
 			
-			M2MA.startTime = System.nanoTime();
+			NBASimulator simulator = new NBASimulator(NBA.NBAStates, NBA.NBATransitions, NBA.NBAFinalStates);
+			int dollar = M2MA.letterToIndex.get("$");
+			LearnerSession session = LearnerSession.forTarget(M2MA.alphabet, w -> NBA.MQ(simulator, dollar, w),
+					arbitrary.EQMaxTestLen, arbitrary.EQNumTests, arbitrary.EQLimit, batch.seed(i));
 			
-			NBAReadInputWithFile(new BufferedReader(new FileReader(fileName)));
-			
-			M2MA.Hankel = null;
-			
-			M2MA.learn();
-			
-			System.out.println("Learned M2MA dimension: " + M2MA.learnedSize);
-			
-			M2MA.displayRuntime();
+			batch.submit(i, () -> {
+				long startTime = System.nanoTime();
+				
+				session.learn();
+				
+				StatisticalEquivalenceOracle equivalenceOracle = (StatisticalEquivalenceOracle) session.equivalenceOracle;
+				return session.learnedSize + " " + (System.nanoTime() - startTime) + " " + equivalenceOracle.failuresAtLimit
+						+ " " + equivalenceOracle.numTests;
+			});
 		}
 		
+		batch.finish();
 		System.out.println("\nProgram complete.");
 	}
 	
+	public static String fileName(int instance) {
+		return "NBA_exp" + Integer.toString(instance + 1) + ".txt";
+	}
+	
+	public static void displayResult(int instance, String result) {
+		String[] parts = result.split(" ");
+		System.out.println("Running " + fileName(instance) + ": ");
+		System.out.println("Learned M2MA dimension: " + parts[0]);
+		int failuresAtLimit = Integer.parseInt(parts[2]);
+		if (failuresAtLimit != 0) {
+			System.out.println("Reached equivalence query limit.\nFinal equivalence query failed on " + failuresAtLimit + " out of " + parts[3] + " tests.");
+		}
+		M2MA.displayRuntime(Long.parseLong(parts[1]));
+	}
+	
 	@SuppressWarnings("unchecked")
 	public static void NBAReadInputWithFile(BufferedReader f) throws Exception {
 		arbitrary.EQMaxTestLen = Integer.parseInt(M2MA.readFile(f));	
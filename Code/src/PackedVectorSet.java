@@ -0,0 +1,140 @@
+/*
+ * PackedVectorSet.java
+ *
+ * A set of packed GF(2) vectors of the same length (see GF2Matrix.java), hashed by content with open addressing.
+ *
+ * The vectors are copied into one flat long[] in the order they are added, so a set of many short vectors costs
+ * no object per vector, and the vectors can be read back by index, e.g. as the queue of a breadth-first search
+ * that adds each vector it discovers. The hash table holds the indices of the vectors and is probed linearly.
+ *
+ * The arrays grow by doubling, but never beyond the maximum size of the set, so a set that is filled up to its
+ * maximum size takes at most peakBytes(maxSize, words) of heap (see ReachableStates.java).
+ */
+
+import java.util.Arrays;
+
+public class PackedVectorSet {
+
+	// number of longs in each vector
+	private final int words;
+	// number of vectors the set can hold
+	private final int maxSize;
+
+	private int size;
+	// vector i is vectors[i*words], ..., vectors[(i+1)*words-1], and hashes[i] is its hash
+	private long[] vectors;
+	private int[] hashes;
+	// slots[h] is 1 + the index of a vector, or 0 for an empty slot, and at most half of the slots are full
+	private int[] slots;
+
+	public PackedVectorSet(int words) {
+		this(words, Integer.MAX_VALUE / words);
+	}
+
+	// a set of at most maxSize vectors
+	public PackedVectorSet(int words, int maxSize) {
+		this.words = words;
+		this.maxSize = maxSize;
+		int capacity = Math.min(8, maxSize);
+		this.vectors = new long[capacity * words];
+		this.hashes = new int[capacity];
+		this.slots = new int[16];
+	}
+
+	// the most heap a set of at most maxSize vectors of words longs takes, once it is full or while it grows: the
+	// last doubling copies the vectors and hashes of fewer than maxSize vectors, and the last rehash reallocates
+	// the slots from half as many
+	public static long peakBytes(int maxSize, int words) {
+		long numSlots = Math.max(16, Long.highestOneBit(2L * maxSize - 1) << 1);
+		long full = (8L * words + 4) * maxSize + 4 * numSlots;
+		return full + Math.max((8L * words + 4) * (maxSize - 1), 2 * numSlots);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isFull() {
+		return size == maxSize;
+	}
+
+	// adds a copy of v, and returns true if v wasn't in the set already
+	public boolean add(long[] v) {
+		int hash = hash(v);
+		int mask = slots.length - 1;
+		int h = hash & mask;
+		while (slots[h] != 0) {
+			int index = slots[h] - 1;
+			if (hashes[index] == hash && equals(index, v)) {
+				return false;
+			}
+			h = (h + 1) & mask;
+		}
+
+		if (size == hashes.length) {
+			if (size == maxSize) {
+				throw new IllegalStateException("The set already has " + maxSize + " vectors.");
+			}
+			int capacity = (int) Math.min(2L * size, maxSize);
+			vectors = Arrays.copyOf(vectors, capacity * words);
+			hashes = Arrays.copyOf(hashes, capacity);
+		}
+		System.arraycopy(v, 0, vectors, size * words, words);
+		hashes[size] = hash;
+		slots[h] = ++size;
+
+		if (2 * size > slots.length) {
+			rehash(2 * slots.length);
+		}
+		return true;
+	}
+
+	public boolean contains(long[] v) {
+		int hash = hash(v);
+		int mask = slots.length - 1;
+		for (int h=hash & mask; slots[h]!=0; h=(h + 1) & mask) {
+			int index = slots[h] - 1;
+			if (hashes[index] == hash && equals(index, v)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// copies the index-th vector added into out
+	public void get(int index, long[] out) {
+		System.arraycopy(vectors, index * words, out, 0, words);
+	}
+
+	private boolean equals(int index, long[] v) {
+		int offset = index * words;
+		for (int w=0; w<words; w++) {
+			if (vectors[offset + w] != v[w]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int numSlots) {
+		slots = new int[numSlots];
+		int mask = numSlots - 1;
+		for (int index=0; index<size; index++) {
+			int h = hashes[index] & mask;
+			while (slots[h] != 0) {
+				h = (h + 1) & mask;
+			}
+			slots[h] = index + 1;
+		}
+	}
+
+	// mixes every word into the hash, so that vectors differing in a few bits land in unrelated slots
+	public static int hash(long[] v) {
+		long h = 0;
+		for (int w=0; w<v.length; w++) {
+			h = (h ^ v[w]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 32;
+		}
+		return (int) (h ^ (h >>> 29));
+	}
+}
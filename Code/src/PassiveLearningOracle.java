@@ -21,16 +21,22 @@ public class PassiveLearningOracle {
 	// Storage for examples
 	public static Set<String> positiveWords = new HashSet<>();
 	public static Set<String> negativeWords = new HashSet<>();
-	public static Set<String> allWords = new HashSet<>();
+	
+	// The examples encoded over the alphabet of M2MA (see Word.java) in a trie labelled with their answers,
+	// which answers MQ(Word) and evaluates all of them at once in EQ.
+	// Rebuilt whenever the alphabet of M2MA changes, and dropped whenever the examples are reloaded.
+	private static WordTrie encodedTrie = null;
+	private static Map<String, Integer> encodedFor = null;
+	
+	// Membership oracle of the learner (see MembershipOracle.java).
+	// Words are answered one at a time, in order, so that the journal records every batch in order.
+	public static final MembershipOracle ORACLE = PassiveLearningOracle::MQ;
 	
 	// Closed-world assumption: unknown words are assumed negative
 	public static boolean closedWorld = false;
 	
-	// Full logging of MQ calls and EQ counterexamples
-	public static List<String> mqLog = new ArrayList<>(); // Sequence of MQ calls: "word:answer"
-	public static List<String> eqCounterExampleLog = new ArrayList<>(); // Sequence of counterexamples from EQ
-	public static int mqCallNumber = 0;
-	public static int eqCallNumber = 0;
+	// Journal of MQ calls and EQ counterexamples, in the mode set by -DqueryJournal (see QueryJournal.java)
+	public static QueryJournal journal = new QueryJournal("PassiveLearningOracle");
 	
 	/**
 	 * Load examples from a JSON file.
@@ -42,58 +48,15 @@ public class PassiveLearningOracle {
 	 * }
 	 */
 	public static String[] loadFromJSON(String filename) throws Exception {
-		StringBuilder content = new StringBuilder();
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			content.append(line).append("\n");
-		}
-		reader.close();
-		
-		String json = content.toString();
-		
-		// Parse alphabet
-		List<String> alphabetList = new ArrayList<>();
-		int alphaStart = json.indexOf("\"alphabet\"");
-		if (alphaStart != -1) {
-			int arrayStart = json.indexOf("[", alphaStart);
-			int arrayEnd = json.indexOf("]", arrayStart);
-			String alphaArray = json.substring(arrayStart + 1, arrayEnd);
-			String[] parts = alphaArray.split(",");
-			for (String part : parts) {
-				String letter = part.trim().replace("\"", "").trim();
-				if (!letter.isEmpty()) {
-					alphabetList.add(letter);
-				}
-			}
-		}
-		
-		// Parse positive samples
 		positiveWords.clear();
-		int posStart = json.indexOf("\"Positive sample\"");
-		if (posStart != -1) {
-			int arrayStart = json.indexOf("[", posStart);
-			int arrayEnd = findMatchingBracket(json, arrayStart);
-			parseWordArray(json.substring(arrayStart + 1, arrayEnd), positiveWords);
-		}
-		
-		// Parse negative samples
 		negativeWords.clear();
-		int negStart = json.indexOf("\"Negative sample\"");
-		if (negStart != -1) {
-			int arrayStart = json.indexOf("[", negStart);
-			int arrayEnd = findMatchingBracket(json, arrayStart);
-			parseWordArray(json.substring(arrayStart + 1, arrayEnd), negativeWords);
-		}
-		
-		allWords.clear();
-		allWords.addAll(positiveWords);
-		allWords.addAll(negativeWords);
+		encodedTrie = null;
+		String[] alphabet = JSONSampleReader.read(filename, positiveWords::add, negativeWords::add);
 		
 		System.out.println("PassiveLearningOracle: Loaded " + positiveWords.size() + 
 		                   " positive and " + negativeWords.size() + " negative examples");
 		
-		return alphabetList.toArray(new String[0]);
+		return alphabet;
 	}
 	
 	/**
@@ -102,24 +65,37 @@ public class PassiveLearningOracle {
 	 * and uses closed-world assumption for unknown words.
 	 */
 	public static int MQ(String w) {
-		// Always fail if word is not in the example set
-		if (!allWords.contains(w)) {
-			throw new RuntimeException("Unknown word encountered in passive learning: " + w + " (not in example set)");
-		}
-		
 		int result;
 		if (positiveWords.contains(w)) {
 			result = 1;
 		} else if (negativeWords.contains(w)) {
 			result = 0;
 		} else {
-			// Should not happen since we check allWords first
-			throw new RuntimeException("Word in allWords but not in positive or negative: " + w);
+			// Always fail if word is not in the example set
+			throw new RuntimeException("Unknown word encountered in passive learning: " + w + " (not in example set)");
+		}
+		
+		// Log the MQ call
+		journal.mq(w, result, false);
+		
+		return result;
+	}
+	
+	/**
+	 * Membership query on an encoded word.
+	 */
+	public static int MQ(Word w) {
+		encode();
+		
+		int id = encodedTrie.indexOf(w);
+		if (id == -1) {
+			throw new RuntimeException("Unknown word encountered in passive learning: " + w + " (not in example set)");
 		}
 		
+		int result = encodedTrie.label(id);
+		
 		// Log the MQ call
-		mqCallNumber++;
-		mqLog.add(mqCallNumber + ": " + w + " -> " + result);
+		journal.mq(w, result, false);
 		
 		return result;
 	}
@@ -133,90 +109,53 @@ public class PassiveLearningOracle {
 	 * Returns true if hypothesis matches all examples, false otherwise.
 	 * If false, sets M2MA.counterExample to the LEXICOGRAPHICALLY SMALLEST mismatched word.
 	 */
-	public static boolean EQ(HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector, 
-	                          HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices) throws Exception {
-		List<String> counterExamples = new ArrayList<>();
-		
-		// Check all positive words - they must be accepted (hypothesis returns 1)
-		for (String word : positiveWords) {
-			int expectedValue = 1; // Positive words should be accepted
-			int hypothesisValue = M2MA.MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, word);
+	public static boolean EQ(GF2Matrix hypothesisFinalVector, 
+	                          GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		encode();
+		
+		// Check all words - positive words must be accepted (hypothesis returns 1),
+		// negative words must be rejected (hypothesis returns 0)
+		// The trie is walked in the order of the letters' strings, so the first mismatch is the lexicographically
+		// smallest counterexample as a space-separated string
+		M2MAEvaluator hypothesis = M2MA.evaluatorFor(hypothesisFinalVector, hypothesisTransitionMatrices);
+		int mismatch = encodedTrie.firstMismatch(hypothesis, WordTrie.alphabetOrder(M2MA.alphabet));
+		
+		if (mismatch != -1) {
+			Word lexSmallestWord = encodedTrie.get(mismatch);
+			String lexSmallestCounterExample = lexSmallestWord.toString();
 			
-			if (hypothesisValue != expectedValue) {
-				// Found a counterexample: positive word was rejected
-				counterExamples.add(word);
-			}
-		}
-		
-		// Check all negative words - they must be rejected (hypothesis returns 0)
-		for (String word : negativeWords) {
-			int expectedValue = 0; // Negative words should be rejected
-			int hypothesisValue = M2MA.MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, word);
-			
-			if (hypothesisValue != expectedValue) {
-				// Found a counterexample: negative word was accepted
-				counterExamples.add(word);
-			}
-		}
-		
-		// If we found any counterexamples, find lexicographically smallest
-		if (!counterExamples.isEmpty()) {
-			// Sort to find lexicographically smallest
-			Collections.sort(counterExamples);
-			String lexSmallestCounterExample = counterExamples.get(0);
-			
-			M2MA.counterExample = lexSmallestCounterExample;
+			M2MA.counterExample = lexSmallestWord;
 			
 			// Log the counterexample
-			eqCallNumber++;
-			eqCounterExampleLog.add(eqCallNumber + ": " + lexSmallestCounterExample);
+			journal.eq(lexSmallestCounterExample);
 			
 			return false;
 		}
 		
 		// All examples match - hypothesis is correct
 		// Log that no counterexample was found
-		eqCallNumber++;
-		eqCounterExampleLog.add(eqCallNumber + ": (no counterexample - hypothesis correct)");
+		journal.eq(null);
 		
 		return true;
 	}
 	
-	private static int findMatchingBracket(String s, int start) {
-		int depth = 0;
-		for (int i = start; i < s.length(); i++) {
-			if (s.charAt(i) == '[') depth++;
-			else if (s.charAt(i) == ']') {
-				depth--;
-				if (depth == 0) return i;
-			}
+	/**
+	 * Encodes the examples over the alphabet of M2MA, unless they are already encoded.
+	 */
+	private static void encode() {
+		if (encodedTrie != null && encodedFor == M2MA.letterToIndex) {
+			return;
 		}
-		return s.length() - 1;
-	}
-	
-	private static void parseWordArray(String arrayContent, Set<String> target) {
-		StringBuilder current = new StringBuilder();
-		boolean inQuote = false;
-		boolean foundQuote = false;
 		
-		for (int i = 0; i < arrayContent.length(); i++) {
-			char c = arrayContent.charAt(i);
-			if (c == '"') {
-				inQuote = !inQuote;
-				foundQuote = true;
-			} else if (c == ',' && !inQuote) {
-				if (foundQuote) {
-					target.add(current.toString());
-				}
-				current = new StringBuilder();
-				foundQuote = false;
-			} else if (inQuote) {
-				current.append(c);
-			}
+		encodedTrie = new WordTrie(M2MA.alphabet.length);
+		for (String w : negativeWords) {
+			encodedTrie.add(Word.parse(w), 0);
 		}
-		if (foundQuote) {
-			target.add(current.toString());
+		// a word given as both positive and negative is answered as positive
+		for (String w : positiveWords) {
+			encodedTrie.add(Word.parse(w), 1);
 		}
+		encodedFor = M2MA.letterToIndex;
 	}
 }
 
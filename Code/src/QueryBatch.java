@@ -0,0 +1,93 @@
+/*
+ * QueryBatch.java
+ *
+ * A block of membership queries of a learner session (see LearnerSession.java), e.g. the entries of the
+ * observation table for one letter.
+ *
+ * Queries are added first, and the ones that are not in the Hankel matrix of the session are then passed to its
+ * oracle in a single call to answerBatch (see MembershipOracle.java). Entries of the form row+col or row+letter+col are
+ * looked up in the Hankel matrix without building the word, and a word that is added more than once is only
+ * asked once. The words are asked in the order in which they were first added, so an oracle that records its
+ * queries sees the same sequence as with one MQ per entry.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class QueryBatch {
+
+	private final LearnerSession session;
+
+	// answers[id] is the answer of query id, or -2-k if it is the k-th word asked
+	private int[] answers = new int[16];
+	private int size;
+
+	// words that are not in the Hankel matrix, and their positions
+	private final ArrayList<Word> asked = new ArrayList<Word>();
+	private final HashMap<Word, Integer> askedIndex = new HashMap<Word, Integer>();
+	private int[] askedAnswers;
+
+	public QueryBatch(LearnerSession session) {
+		this.session = session;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Additions: return the id of the query. */
+
+	public int add(Word word) {
+		return add(session.Hankel.get(word), word);
+	}
+
+	// query for row+col
+	public int add(Word row, Word col) {
+		int answer = session.Hankel.get(row, col);
+		return add(answer, (answer == -1) ? row.concat(col) : null);
+	}
+
+	// query for row+letter+col
+	public int add(Word row, int letter, Word col) {
+		int answer = session.Hankel.get(row, letter, col);
+		return add(answer, (answer == -1) ? row.concat(letter, col) : null);
+	}
+
+	private int add(int answer, Word word) {
+		if (answer == -1) {
+			Integer index = askedIndex.get(word);
+			if (index == null) {
+				index = asked.size();
+				asked.add(word);
+				askedIndex.put(word, index);
+			}
+			answer = -2 - index;
+		}
+
+		if (size == answers.length) {
+			answers = Arrays.copyOf(answers, 2 * size);
+		}
+		answers[size] = answer;
+		return size++;
+	}
+
+	// asks the oracle for the words that are not in the Hankel matrix, and stores their answers there
+	public void run() throws Exception {
+		if (asked.isEmpty()) {
+			askedAnswers = new int[0];
+			return;
+		}
+
+		askedAnswers = session.oracle.answerBatch(asked);
+		for (int k=0; k<asked.size(); k++) {
+			session.Hankel.put(asked.get(k), askedAnswers[k]);
+		}
+	}
+
+	// returns the answer of query id (after run)
+	public int get(int id) {
+		int answer = answers[id];
+		return (answer >= 0) ? answer : askedAnswers[-2 - answer];
+	}
+}
@@ -0,0 +1,509 @@
+/*
+ * QueryJournal.java
+ *
+ * A journal of the membership queries (MQ's) and equivalence query counterexamples (EQ's) an oracle answers, in
+ * order, used by PassiveLearningOracle and CharacteristicSetGeneratingOracle to compare two learning runs (see
+ * DFAToPassiveLearningExperiment.compareLogs).
+ *
+ * The journal is set with -DqueryJournal=mode, where mode is one of:
+ *
+ * 	off        counts the queries only
+ * 	ring[:n]   keeps the last n MQ's and the last n EQ's in memory (RING_SIZE by default)
+ * 	file[:dir] writes every query to the file dir/<name>.journal (dir is . by default)
+ *
+ * ring is the default. A file journal is written by a background thread, so the oracle only encodes a record into
+ * a chunk of CHUNK_SIZE bytes, and waits for the writer only if QUEUE_SIZE chunks are waiting already. A word is
+ * written as a W record that binds it to one of WORD_SLOTS slots, and a query is a fixed-size record of its call
+ * number, the slot of its word and its answer. The journal only remembers the words of its slots, so when they are
+ * all taken the word used least recently loses its slot to the new one, and is written again if it is asked again:
+ *
+ * 	header   int MAGIC, int number of slots
+ * 	W        byte 'W', int slot, int length, length bytes (the word spelled in UTF-8)
+ * 	MQ       byte 'M', int call, int slot, byte answer | (cached ? 2 : 0)
+ * 	EQ       byte 'E', int call, int slot (-1 if the hypothesis was correct)
+ *
+ * A journal in any mode is read back, one kind of query at a time, by a Reader, which streams a file journal from
+ * disk, so two journals can be compared whatever their length.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+public class QueryJournal {
+
+	public enum Mode { OFF, RING, FILE }
+
+	// the kinds of queries
+	public static final byte MQ = 'M';
+	public static final byte EQ = 'E';
+	private static final byte WORD = 'W';
+
+	private static final int MAGIC = 0x514A3032; // "QJ02"
+	private static final int RING_SIZE = 1 << 16;
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final int WORD_SLOTS = 1 << 16;
+	private static final int QUEUE_SIZE = 16;
+
+	// a query as read back from a journal
+	public static final class Entry {
+
+		public final byte kind;
+		public final int call;
+		// the word asked, or the counterexample (null if the hypothesis was correct)
+		public final String word;
+		public final int answer;
+		public final boolean cached;
+
+		private Entry(byte kind, int call, String word, int answer, boolean cached) {
+			this.kind = kind;
+			this.call = call;
+			this.word = word;
+			this.answer = answer;
+			this.cached = cached;
+		}
+
+		// the same answer to the same word (or the same counterexample), whatever the call number
+		public boolean sameQuery(Entry other) {
+			return (word == null ? other.word == null : word.equals(other.word)) && answer == other.answer;
+		}
+
+		@Override
+		public String toString() {
+			if (kind == EQ) {
+				return call + ": " + (word == null ? "(no counterexample - hypothesis correct)" : word);
+			}
+			return call + ": " + word + " -> " + answer + (cached ? " (cached)" : "");
+		}
+	}
+
+	private final String name;
+	private final Mode mode;
+	private final int ringSize;
+	private final File file;
+
+	private int numMQs;
+	private int numEQs;
+
+	// RING: the last ringSize entries of each kind
+	private final ArrayDeque<Entry> mqRing = new ArrayDeque<Entry>();
+	private final ArrayDeque<Entry> eqRing = new ArrayDeque<Entry>();
+
+	// FILE: the journal that last opened each file, flushed by one shutdown hook per file, so that a run ending
+	// without a flush still leaves a complete file
+	private static final HashMap<File, QueryJournal> journalOfFile = new HashMap<File, QueryJournal>();
+
+	// FILE: the slots of the words written, least recently used first, the chunk being filled and the writer it is
+	// handed to
+	private LinkedHashMap<String, Integer> wordSlots;
+	private ByteBuffer chunk;
+	private Writer writer;
+
+	// a journal in the mode set by -DqueryJournal, written to <name>.journal in FILE mode
+	public QueryJournal(String name) {
+		String setting = System.getProperty("queryJournal", "ring");
+		int colon = setting.indexOf(':');
+		String modeName = (colon == -1) ? setting : setting.substring(0, colon);
+		String argument = (colon == -1) ? null : setting.substring(colon + 1);
+
+		this.name = name;
+		switch (modeName) {
+		case "off":
+			mode = Mode.OFF;
+			ringSize = 0;
+			file = null;
+			break;
+		case "ring":
+			mode = Mode.RING;
+			ringSize = (argument == null) ? RING_SIZE : Integer.parseInt(argument);
+			file = null;
+			break;
+		case "file":
+			mode = Mode.FILE;
+			ringSize = 0;
+			file = new File((argument == null) ? "." : argument, name + ".journal").getAbsoluteFile();
+			break;
+		default:
+			throw new IllegalArgumentException("Invalid query journal " + setting + " (expected off, ring[:n] or file[:dir]).");
+		}
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	public int numMQs() {
+		return numMQs;
+	}
+
+	public int numEQs() {
+		return numEQs;
+	}
+
+	// the number of queries of the given kind (MQ or EQ) recorded but not kept, so that they can't be read back
+	public synchronized int numDropped(byte kind) {
+		int count = (kind == MQ) ? numMQs : numEQs;
+		if (mode == Mode.OFF) {
+			return count;
+		}
+		return (mode == Mode.RING) ? Math.max(0, count - ringSize) : 0;
+	}
+
+	// records an MQ of w answered with answer, from the cache of the oracle if cached
+	public synchronized void mq(String w, int answer, boolean cached) {
+		numMQs++;
+		if (mode == Mode.RING) {
+			keep(mqRing, new Entry(MQ, numMQs, w, answer, cached));
+		} else if (mode == Mode.FILE) {
+			int slot = slot(w);
+			ByteBuffer out = reserve(10);
+			out.put(MQ).putInt(numMQs).putInt(slot).put((byte) (answer | (cached ? 2 : 0)));
+		}
+	}
+
+	// as above, spelling w only if the journal keeps words
+	public void mq(Word w, int answer, boolean cached) {
+		if (mode == Mode.OFF) {
+			synchronized (this) {
+				numMQs++;
+			}
+		} else {
+			mq(w.toString(), answer, cached);
+		}
+	}
+
+	// records an EQ with the counterexample counterExample, or null if the hypothesis was correct
+	public synchronized void eq(String counterExample) {
+		numEQs++;
+		if (mode == Mode.RING) {
+			keep(eqRing, new Entry(EQ, numEQs, counterExample, 0, false));
+		} else if (mode == Mode.FILE) {
+			int slot = (counterExample == null) ? -1 : slot(counterExample);
+			reserve(9).put(EQ).putInt(numEQs).putInt(slot);
+		}
+	}
+
+	// forgets every query, and starts the file over in FILE mode
+	public synchronized void clear() {
+		numMQs = 0;
+		numEQs = 0;
+		mqRing.clear();
+		eqRing.clear();
+		if (writer != null) {
+			try {
+				writer.close(chunk);
+			} finally {
+				writer = null;
+				chunk = null;
+				wordSlots = null;
+			}
+		}
+	}
+
+	// waits until every query recorded so far is in the file (in FILE mode)
+	public synchronized void flush() {
+		if (writer != null) {
+			writer.flush(chunk);
+			chunk = ByteBuffer.allocate(CHUNK_SIZE);
+		}
+	}
+
+	// reads back the queries of the given kind (MQ or EQ) recorded so far, or those kept in RING mode
+	public Reader read(byte kind) throws IOException {
+		if (mode == Mode.FILE) {
+			synchronized (this) {
+				if (writer == null) {
+					// nothing recorded since the journal was opened or cleared
+					return new Reader(Collections.<Entry>emptyIterator());
+				}
+				flush();
+			}
+			return new Reader(kind, file);
+		}
+		synchronized (this) {
+			return new Reader(new ArrayDeque<Entry>((kind == MQ) ? mqRing : eqRing).iterator());
+		}
+	}
+
+	private static void flushAtExit(File file, QueryJournal journal) {
+		synchronized (journalOfFile) {
+			if (journalOfFile.put(file, journal) == null) {
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					QueryJournal last;
+					synchronized (journalOfFile) {
+						last = journalOfFile.get(file);
+					}
+					last.flush();
+				}));
+			}
+		}
+	}
+
+	private void keep(ArrayDeque<Entry> ring, Entry entry) {
+		if (ring.size() == ringSize) {
+			ring.pollFirst();
+		}
+		if (ringSize > 0) {
+			ring.addLast(entry);
+		}
+	}
+
+	// returns the slot of w, binding w to a free slot (or the slot of the word used least recently) with a W record
+	// if it has none
+	private int slot(String w) {
+		if (writer == null) {
+			open();
+		}
+		Integer slot = wordSlots.get(w);
+		if (slot == null) {
+			if (wordSlots.size() < WORD_SLOTS) {
+				slot = wordSlots.size();
+			} else {
+				Iterator<Integer> eldest = wordSlots.values().iterator();
+				slot = eldest.next();
+				eldest.remove();
+			}
+			wordSlots.put(w, slot);
+			byte[] spelling = w.getBytes(StandardCharsets.UTF_8);
+			reserve(9 + spelling.length).put(WORD).putInt(slot).putInt(spelling.length).put(spelling);
+		}
+		return slot;
+	}
+
+	// returns the current chunk with room for size more bytes, handing the chunk to the writer if it is full
+	private ByteBuffer reserve(int size) {
+		if (writer == null) {
+			open();
+		}
+		if (chunk.remaining() < size) {
+			writer.write(chunk);
+			chunk = ByteBuffer.allocate(Math.max(CHUNK_SIZE, size));
+		}
+		return chunk;
+	}
+
+	private void open() {
+		try {
+			writer = new Writer(new FileOutputStream(file), name);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Couldn't open the query journal " + file + ".", e);
+		}
+		flushAtExit(file, this);
+		wordSlots = new LinkedHashMap<String, Integer>(16, 0.75f, true);
+		chunk = ByteBuffer.allocate(CHUNK_SIZE);
+		chunk.putInt(MAGIC).putInt(WORD_SLOTS);
+	}
+
+	// writes the chunks handed to it on a background thread, in order
+	private static final class Writer implements Runnable {
+
+		// a chunk to write, or a latch to count down once every chunk before it is written (null to close)
+		// the writer keeps taking items after a write fails, so that no one waits for it forever
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+		private final OutputStream out;
+		private final Thread thread;
+		private volatile IOException failure;
+
+		private Writer(OutputStream out, String name) {
+			this.out = out;
+			this.thread = new Thread(this, name + " journal writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void write(ByteBuffer chunk) {
+			put(chunk);
+		}
+
+		private void flush(ByteBuffer chunk) {
+			put(chunk);
+			await(new CountDownLatch(1));
+		}
+
+		private void close(ByteBuffer chunk) {
+			try {
+				flush(chunk);
+			} finally {
+				put(null);
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		private void await(CountDownLatch latch) {
+			put(latch);
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw new UncheckedIOException("Couldn't write the query journal.", failure);
+			}
+		}
+
+		private void put(Object item) {
+			try {
+				queue.put((item == null) ? this : item);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Object item;
+				try {
+					item = queue.take();
+				} catch (InterruptedException e) {
+					continue;
+				}
+				try {
+					if (item == this) {
+						out.close();
+						return;
+					} else if (item instanceof CountDownLatch) {
+						if (failure == null) {
+							out.flush();
+						}
+					} else if (failure == null) {
+						ByteBuffer chunk = (ByteBuffer) item;
+						out.write(chunk.array(), 0, chunk.position());
+					}
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+					if (item == this) {
+						return;
+					}
+				} finally {
+					if (item instanceof CountDownLatch) {
+						((CountDownLatch) item).countDown();
+					}
+				}
+			}
+		}
+	}
+
+	// the queries of one kind in a journal, in order
+	public static final class Reader implements Iterator<Entry>, Closeable {
+
+		private final Iterator<Entry> entries;
+
+		// FILE mode: the file being read, the kind of queries returned, the word bound to each slot
+		private final DataInputStream in;
+		private final byte kind;
+		private String[] words;
+		private Entry next;
+
+		private Reader(Iterator<Entry> entries) {
+			this.entries = entries;
+			this.in = null;
+			this.kind = 0;
+		}
+
+		private Reader(byte kind, File file) throws IOException {
+			this.entries = null;
+			this.kind = kind;
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), CHUNK_SIZE));
+			if (file.length() > 0) {
+				if (in.readInt() != MAGIC) {
+					in.close();
+					throw new IOException(file + " isn't a query journal.");
+				}
+				words = new String[in.readInt()];
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (entries != null) {
+				return entries.hasNext();
+			}
+			if (next == null) {
+				try {
+					next = readEntry();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Entry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (entries != null) {
+				return entries.next();
+			}
+			Entry out = next;
+			next = null;
+			return out;
+		}
+
+		// returns the next entry of the kind read, or null at the end of the file
+		private Entry readEntry() throws IOException {
+			while (true) {
+				int tag;
+				try {
+					tag = in.readByte();
+				} catch (EOFException e) {
+					return null;
+				}
+				if (tag == WORD) {
+					int slot = in.readInt();
+					byte[] spelling = new byte[in.readInt()];
+					in.readFully(spelling);
+					words[slot] = new String(spelling, StandardCharsets.UTF_8);
+				} else if (tag == MQ) {
+					int call = in.readInt();
+					String word = words[in.readInt()];
+					int flags = in.readByte();
+					if (kind == MQ) {
+						return new Entry(MQ, call, word, flags & 1, (flags & 2) != 0);
+					}
+				} else if (tag == EQ) {
+					int call = in.readInt();
+					int slot = in.readInt();
+					if (kind == EQ) {
+						return new Entry(EQ, call, (slot == -1) ? null : words[slot], 0, false);
+					}
+				} else {
+					throw new IOException("Invalid query journal record " + tag + ".");
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+}
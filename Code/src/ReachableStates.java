@@ -0,0 +1,438 @@
+/*
+ * ReachableStates.java
+ *
+ * Counts the state vectors of a mod-2-MA reachable from an initial vector, i.e. the states of an equivalent DFA
+ * (see M2MA.dimensionMinDFA), for mod-2-MAs with millions of reachable states.
+ *
+ * The search is breadth-first and level-synchronous: the frontier (the vectors first reached on the last level)
+ * is split into chunks of CHUNK_SIZE vectors expanded in parallel on the common fork-join pool, and the vectors
+ * reached that weren't visited before form the next frontier. The count doesn't depend on the number of threads.
+ *
+ * The visited set is split into NUM_SHARDS shards by the high bits of a hash of the vector, so that the threads
+ * rarely wait for the same shard. A shard keeps its recently visited vectors in a PackedVectorSet of at most
+ * shardCapacity vectors, and once it is full, writes them to a run, a hash table in a memory-mapped temporary
+ * file, and starts over with an empty set. A vector was visited iff it is in the set or in one of the runs of its
+ * shard, so looking it up costs a probe of the set and of each run, with no heap taken by the runs. Runs of
+ * similar size are merged, so that a shard has about log2(visited / shardCapacity) runs.
+ *
+ * The part of the next frontier a shard reaches is kept in a buffer of frontierCapacity vectors, which is appended
+ * to a temporary file each time it is full, so the frontier doesn't have to fit on the heap either. It is read
+ * back from the files chunk by chunk, and the files of a level are deleted once it is expanded.
+ *
+ * The heap budget is set in MB with -DdfaHeapBudget=n (half the maximum heap size by default), and split evenly
+ * between the shards. A shard gives an eighth of its share to its two frontier buffers (the one being filled and
+ * the one being expanded), and the rest to its set, whose capacity is chosen so that the set stays within it
+ * while it grows (see PackedVectorSet.peakBytes). The runs and the frontier files are written to
+ * java.io.tmpdir.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class ReachableStates {
+
+	// number of shards of the visited set, a power of 2
+	private static final int NUM_SHARDS = 64;
+	// number of frontier vectors expanded by one task
+	private static final int CHUNK_SIZE = 256;
+	// number of vectors of one word a run can hold (a run is mapped in one piece, with up to 4 slots per vector,
+	// so it has under 2GB)
+	private static final int MAX_RUN_SIZE = Integer.MAX_VALUE / 32;
+
+	private final GF2Matrix[] transitionMatrices;
+	// number of longs in each vector
+	private final int words;
+	private final int cap;
+	// number of vectors a shard keeps in its set before it writes them to a run
+	private final int shardCapacity;
+	// number of frontier vectors a shard buffers before it appends them to a file, a multiple of CHUNK_SIZE
+	private final int frontierCapacity;
+	private final Shard[] shards = new Shard[NUM_SHARDS];
+	// the parts of the frontier being expanded, one per shard that reached vectors on the last level
+	private ArrayList<FrontierPart> frontier = new ArrayList<FrontierPart>();
+	// number of vectors visited
+	private final AtomicInteger size = new AtomicInteger();
+	// a direct buffer of CHUNK_SIZE vectors in native order for reading and writing the frontier files, one per thread
+	private final ThreadLocal<ByteBuffer> ioBuffers;
+
+	private ReachableStates(GF2Matrix[] transitionMatrices, int words, int cap, long heapBudget) {
+		this.transitionMatrices = transitionMatrices;
+		this.words = words;
+		this.cap = cap;
+		long shardBudget = heapBudget / NUM_SHARDS;
+		long bufferBytes = shardBudget / 16;
+		this.frontierCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE / (8L * words * CHUNK_SIZE), bufferBytes / (8L * words * CHUNK_SIZE))) * CHUNK_SIZE;
+		this.shardCapacity = setCapacity(shardBudget - 2 * 8L * words * frontierCapacity, words);
+		this.ioBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(8 * CHUNK_SIZE * words).order(ByteOrder.nativeOrder()));
+		for (int i=0; i<NUM_SHARDS; i++) {
+			shards[i] = new Shard();
+		}
+	}
+
+	// the largest number of vectors (but at least 1024) a PackedVectorSet can hold within setBudget bytes
+	private static int setCapacity(long setBudget, int words) {
+		int lo = 1024;
+		int hi = MAX_RUN_SIZE / words;
+		while (lo < hi) {
+			int mid = (int) ((lo + (long) hi + 1) >>> 1);
+			if (PackedVectorSet.peakBytes(mid, words) <= setBudget) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	// returns the number of vectors reachable from initialVector, or cap if there are at least cap of them
+	public static int count(GF2Matrix[] transitionMatrices, long[] initialVector, int cap) throws IOException {
+		return count(transitionMatrices, initialVector, cap, defaultHeapBudget());
+	}
+
+	// the heap budget in bytes of a search, set in MB with -DdfaHeapBudget=n (half the maximum heap size by default)
+	public static long defaultHeapBudget() {
+		return Long.getLong("dfaHeapBudget", Runtime.getRuntime().maxMemory() / 2 >> 20) << 20;
+	}
+
+	// as above, with a heap budget in bytes for the visited vectors and the frontier
+	public static int count(GF2Matrix[] transitionMatrices, long[] initialVector, int cap, long heapBudget) throws IOException {
+		ReachableStates search = new ReachableStates(transitionMatrices, initialVector.length, cap, heapBudget);
+		try {
+			return search.run(initialVector);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			search.deleteFiles();
+		}
+	}
+
+	private int run(long[] initialVector) throws IOException {
+		shardOf(initialVector).add(initialVector);
+		nextFrontier();
+
+		while (!frontier.isEmpty() && size.get() < cap) {
+			// split each part of the frontier into chunks
+			int numChunks = 0;
+			for (FrontierPart part : frontier) {
+				numChunks += (int) ((part.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+			}
+			FrontierPart[] chunkParts = new FrontierPart[numChunks];
+			long[] chunkStarts = new long[numChunks];
+			int numSplit = 0;
+			for (FrontierPart part : frontier) {
+				for (long start=0; start<part.size(); start+=CHUNK_SIZE) {
+					chunkParts[numSplit] = part;
+					chunkStarts[numSplit++] = start;
+				}
+			}
+
+			IntStream chunks = IntStream.range(0, numChunks);
+			if (numChunks > 1) {
+				chunks = chunks.parallel();
+			}
+			chunks.forEach(c -> {
+				int chunkSize = (int) Math.min(CHUNK_SIZE, chunkParts[c].size() - chunkStarts[c]);
+				long[] current = new long[chunkSize * words];
+				chunkParts[c].read(chunkStarts[c], chunkSize, current);
+				long[] test = new long[words];
+				long[] newTest = new long[words];
+				for (int i=0; i<chunkSize && size.get()<cap; i++) {
+					System.arraycopy(current, i * words, test, 0, words);
+
+					// add the one-letter extensions of test
+					for (int letter=0; letter<transitionMatrices.length; letter++) {
+						transitionMatrices[letter].vectorTimes(test, newTest);
+						shardOf(newTest).add(newTest);
+					}
+				}
+			});
+
+			nextFrontier();
+		}
+
+		return Math.min(size.get(), cap);
+	}
+
+	// makes the vectors added since the last call the frontier, and deletes the files of the last one
+	private void nextFrontier() {
+		for (FrontierPart part : frontier) {
+			part.delete();
+		}
+		frontier = new ArrayList<FrontierPart>();
+		for (Shard shard : shards) {
+			if (shard.added.size() > 0) {
+				frontier.add(shard.added);
+				shard.added = new FrontierPart();
+			}
+		}
+	}
+
+	private ByteBuffer ioBuffer() {
+		ByteBuffer bytes = ioBuffers.get();
+		bytes.clear();
+		return bytes;
+	}
+
+	// the high bits of a multiplicative hash, as the PackedVectorSet of a shard uses the low bits of its own hash
+	private Shard shardOf(long[] v) {
+		long h = 0;
+		for (int w=0; w<words; w++) {
+			h = (h + v[w]) * 0xC2B2AE3D27D4EB4FL;
+		}
+		return shards[(int) (h >>> (64 - Integer.numberOfTrailingZeros(NUM_SHARDS)))];
+	}
+
+	private void deleteFiles() {
+		for (FrontierPart part : frontier) {
+			part.delete();
+		}
+		for (Shard shard : shards) {
+			shard.added.delete();
+			for (Run run : shard.runs) {
+				run.file.delete();
+			}
+		}
+	}
+
+	// the visited vectors with the same shard hash
+	private final class Shard {
+
+		private PackedVectorSet recent = new PackedVectorSet(words, shardCapacity);
+		private final ArrayList<Run> runs = new ArrayList<Run>();
+		// the vectors added on the current level
+		private FrontierPart added = new FrontierPart();
+
+		// adds a copy of v if it wasn't visited, and writes the recent vectors to a run once the set is full
+		private synchronized void add(long[] v) {
+			if (recent.contains(v)) {
+				return;
+			}
+			// the runs written last are the likeliest to hold vectors reached again
+			for (int i=runs.size() - 1; i>=0; i--) {
+				if (runs.get(i).contains(v)) {
+					return;
+				}
+			}
+
+			recent.add(v);
+			size.incrementAndGet();
+			added.add(v);
+
+			if (recent.isFull()) {
+				try {
+					spill();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		// writes the recent vectors to a run, and merges the last two runs as long as the last one has at least
+		// as many vectors as the one before, so that a shard has about log2(visited / shardCapacity) runs
+		private void spill() throws IOException {
+			Run run = new Run(recent.size());
+			long[] v = new long[words];
+			for (int i=0; i<recent.size(); i++) {
+				recent.get(i, v);
+				run.add(v);
+			}
+			runs.add(run);
+			recent = new PackedVectorSet(words, shardCapacity);
+
+			int n = runs.size();
+			while (n >= 2 && runs.get(n - 1).size >= runs.get(n - 2).size && runs.get(n - 1).size + runs.get(n - 2).size <= MAX_RUN_SIZE / words) {
+				Run merged = new Run(runs.get(n - 2).size + runs.get(n - 1).size);
+				for (int i=n - 2; i<n; i++) {
+					runs.get(i).addTo(merged);
+					runs.get(i).file.delete();
+				}
+				runs.subList(n - 2, n).clear();
+				runs.add(merged);
+				n--;
+			}
+		}
+	}
+
+	// the vectors a shard added on one level, the first numWritten of them in a temporary file (created when the
+	// buffer first fills up) and the rest in the buffer
+	private final class FrontierPart {
+
+		private File file;
+		private FileChannel channel;
+		private long numWritten;
+		// buffer[i*words], ..., buffer[(i+1)*words-1] for i < numBuffered, grown by doubling up to frontierCapacity vectors
+		private long[] buffer = new long[16 * words];
+		private int numBuffered;
+
+		private long size() {
+			return numWritten + numBuffered;
+		}
+
+		private void add(long[] v) {
+			if (numBuffered == frontierCapacity) {
+				write();
+			}
+			if ((numBuffered + 1) * words > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.min(2 * buffer.length, frontierCapacity * words));
+			}
+			System.arraycopy(v, 0, buffer, numBuffered * words, words);
+			numBuffered++;
+		}
+
+		// appends the buffer to the file, CHUNK_SIZE vectors at a time through a direct buffer in native order,
+		// so that the longs are copied in bulk and the channel doesn't copy them again
+		private void write() {
+			try {
+				if (channel == null) {
+					file = File.createTempFile("reachable", ".frontier");
+					file.deleteOnExit();
+					channel = new RandomAccessFile(file, "rw").getChannel();
+				}
+				ByteBuffer bytes = ioBuffer();
+				for (int i=0; i<numBuffered; i+=CHUNK_SIZE) {
+					int n = Math.min(CHUNK_SIZE, numBuffered - i);
+					bytes.clear();
+					bytes.asLongBuffer().put(buffer, i * words, n * words);
+					bytes.limit(8 * n * words);
+					long position = 8L * (numWritten + i) * words;
+					while (bytes.hasRemaining()) {
+						position += channel.write(bytes, position);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			numWritten += numBuffered;
+			numBuffered = 0;
+		}
+
+		// copies the vectors start, ..., start+count-1 into out (they are either all in the file or all in the
+		// buffer, as numWritten is a multiple of CHUNK_SIZE)
+		private void read(long start, int count, long[] out) {
+			if (start >= numWritten) {
+				System.arraycopy(buffer, (int) (start - numWritten) * words, out, 0, count * words);
+				return;
+			}
+			ByteBuffer bytes = ioBuffer();
+			bytes.limit(8 * count * words);
+			long position = 8L * start * words;
+			try {
+				while (bytes.hasRemaining()) {
+					if (channel.read(bytes, position + bytes.position()) < 0) {
+						throw new IOException("Unexpected end of " + file + ".");
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			bytes.flip();
+			bytes.asLongBuffer().get(out, 0, count * words);
+		}
+
+		private void delete() {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// the file is deleted anyway
+				}
+				channel = null;
+				file.delete();
+			}
+		}
+	}
+
+	// vectors in a hash table in a memory-mapped temporary file, at least half of whose slots are empty (all 0), so
+	// that a search usually reads a single slot of the file
+	private final class Run {
+
+		private final File file;
+		// slot i is slots[i*words], ..., slots[(i+1)*words-1]
+		private final LongBuffer slots;
+		private final int mask;
+		private int size;
+		// the zero vector can't be put in a slot, as it marks the empty ones
+		private boolean hasZero;
+
+		// an empty run for up to capacity vectors
+		private Run(int capacity) throws IOException {
+			file = File.createTempFile("reachable", ".run");
+			file.deleteOnExit();
+			int numSlots = Math.max(16, Integer.highestOneBit(2 * capacity - 1) << 1);
+			mask = numSlots - 1;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				slots = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8L * numSlots * words).order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+		}
+
+		// adds v, which isn't in the run, probing linearly from its hash
+		private void add(long[] v) {
+			size++;
+			if (GF2Matrix.isZero(v)) {
+				hasZero = true;
+				return;
+			}
+			int h = PackedVectorSet.hash(v) & mask;
+			while (!isEmpty(h)) {
+				h = (h + 1) & mask;
+			}
+			slots.put(h * words, v);
+		}
+
+		// adds the vectors of this run to other
+		private void addTo(Run other) {
+			long[] v = new long[words];
+			if (hasZero) {
+				other.add(v);
+			}
+			for (int h=0; h<=mask; h++) {
+				if (!isEmpty(h)) {
+					slots.get(h * words, v);
+					other.add(v);
+				}
+			}
+		}
+
+		private boolean contains(long[] v) {
+			if (GF2Matrix.isZero(v)) {
+				return hasZero;
+			}
+			for (int h=PackedVectorSet.hash(v) & mask; !isEmpty(h); h=(h + 1) & mask) {
+				if (equals(h, v)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isEmpty(int slot) {
+			int offset = slot * words;
+			for (int w=0; w<words; w++) {
+				if (slots.get(offset + w) != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean equals(int slot, long[] v) {
+			int offset = slot * words;
+			for (int w=0; w<words; w++) {
+				if (slots.get(offset + w) != v[w]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -8,7 +8,6 @@
 
 import java.io.BufferedReader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.StringTokenizer;
 
 public class SUBA {
@@ -20,8 +19,12 @@ public class SUBA {
 	
 	// UFA
 	public static int UFAStates;
-	public static boolean[][][] UFATransitions;
+	// UFATransitions[a] collects the transitions on letter a, (q_j,a,q_k) as the 1 at (j-1,k-1)
+	public static SparseGF2Matrix.Builder[] UFATransitions;
 	public static boolean[] UFAFinalStates;
+	
+	// the SUBA compiled for MQ_SUBA
+	private static volatile NBASimulator simulator;
 
 	public static void main(String[] args) throws Exception {		
 		System.out.println("Program Description:");
@@ -44,7 +47,7 @@ public class SUBA {
 					+ "(" + M2MA.learnedSize + ") than the minimized mod-2-MA (" + M2MA.minSize + ").");
 		}
 		
-		if (finalCheck(25,1000)) {
+		if (finalCheck()) {
 			M2MA.displayResults();
 		} else {
 			M2MA.throwException(null, "Failed final check.");
@@ -55,7 +58,6 @@ public class SUBA {
 		M2MA.operationsOnLearnedMA();
 	}
 	
-	@SuppressWarnings("unchecked")
 	public static void SUBAtoUFA() throws Exception {	
 		BufferedReader f;
 		if (convert.f != null) {
@@ -64,10 +66,16 @@ public class SUBA {
 			System.out.println("Input file name and optional flag -ma or -da (e.g. SUBA_input1.txt, SUBA_input1.txt -m, SUBA_input1.txt -da)");
 			f = M2MA.getFile(false, true, true, true);
 		} else {
-			System.out.println("Input file name and optional flag -vma (e.g. SUBA_input1.txt -v, SUBA_input1.txt -ma, SUBA_input1.txt -vma)");
-			f = M2MA.getFile(true, true, false, true);
+			System.out.println("Input file name and optional flag -vmacr (e.g. SUBA_input1.txt -v, SUBA_input1.txt -ma, SUBA_input1.txt -vcr)");
+			f = M2MA.getFile(true, true, false, true, true);
 		}
 
+		SUBAtoUFA(f);
+	}
+	
+	// reads a SUBA from f and constructs its UFA
+	@SuppressWarnings("unchecked")
+	public static void SUBAtoUFA(BufferedReader f) throws Exception {
 		// UFAStates = SUBAStates U (SUBAStates x SUBAStates x {0,1})
 		SUBAStates = Integer.parseInt(M2MA.readFile(f));
 		UFAStates = SUBAStates + SUBAStates * SUBAStates * 2;
@@ -93,10 +101,11 @@ public class SUBA {
 		 * - all transitions of the form ((q,p,i),a,(q,p',i')), where (p,a,p')∈SUBATransitions, and
 		 * 	 i' = 1 if p'∈SUBAFinalStates and i if p'∉SUBAFinalStates
 		 * 
-		 * Transitions will be stored in a (UFAStates x alphabetSize x UFAStates) adjacency matrix.
-		 * The first states of UFATransitions will be SUBAStates.
+		 * Only these O(n*|SUBATransitions|) transitions are stored, as the 1's of a sparse (UFAStates x UFAStates)
+		 * matrix for every letter, rather than in a dense (UFAStates x alphabetSize x UFAStates) adjacency matrix.
+		 * The first states of the UFA will be SUBAStates.
 		 * The remaining states will be of the form (q_j,q_k,i), where q_j,q_k∈SUBAStates and i∈{0,1}.
-		 * State (q_j,q_k,i) will be found at index (2*SUBAStates*j)+(2*k)-(SUBAStates)+(i-1) of UFATransitions.
+		 * State (q_j,q_k,i) will be found at index (2*SUBAStates*j)+(2*k)-(SUBAStates)+(i-1) of the UFA.
 		*/
 		int numTransitions = Integer.parseInt(M2MA.readFile(f));
 		if (numTransitions > ((M2MA.alphabet.length - 1) * SUBAStates * SUBAStates)) {
@@ -116,7 +125,10 @@ public class SUBA {
 		}
 		
 		// (start state, letter, end state)
-		UFATransitions = new boolean[UFAStates + 1][M2MA.alphabet.length][UFAStates + 1];
+		UFATransitions = new SparseGF2Matrix.Builder[M2MA.alphabet.length];
+		for (int a=0; a<M2MA.alphabet.length; a++) {
+			UFATransitions[a] = new SparseGF2Matrix.Builder(UFAStates, UFAStates);
+		}
 		
 		// lines of the form q_j a q_k, where q_j,q_k∈SUBAStates and a∈alphabet
 		for (int i=0; i<numTransitions; i++) {
@@ -133,25 +145,25 @@ public class SUBA {
 			
 			// SUBATransitions ⊆ UFATransitions 
 			SUBATransitions[p_start][a].add(p_end);
-			UFATransitions[p_start][a][p_end] = true;
+			addUFATransition(p_start, a, p_end);
 			
 			// transitions of the form ((q,p,i),a,(q,p',i'))
 			// p'∈SUBAFinalStates so i'=1
 			if (SUBAFinalStates[p_end]) {
 				for (int q=1; q<=SUBAStates; q++) {
 					// ((q,p,0),a,(q,p',1))
-					UFATransitions[getIndex(q, p_start, 0)][a][getIndex(q, p_end, 1)] = true;
+					addUFATransition(getIndex(q, p_start, 0), a, getIndex(q, p_end, 1));
 					// ((q,p,1),a,(q,p',1))
-					UFATransitions[getIndex(q, p_start, 1)][a][getIndex(q, p_end, 1)] = true;
+					addUFATransition(getIndex(q, p_start, 1), a, getIndex(q, p_end, 1));
 				}
 			}
 			// p'∉SUBAFinalStates so i'=i
 			else {
 				for (int q=1; q<=SUBAStates; q++) {
 					// ((q,p,0),a,(q,p',0))
-					UFATransitions[getIndex(q, p_start, 0)][a][getIndex(q, p_end, 0)] = true;
+					addUFATransition(getIndex(q, p_start, 0), a, getIndex(q, p_end, 0));
 					// ((q,p,1),a,(q,p',1))
-					UFATransitions[getIndex(q, p_start, 1)][a][getIndex(q, p_end, 1)] = true;
+					addUFATransition(getIndex(q, p_start, 1), a, getIndex(q, p_end, 1));
 				}
 			}
 		}
@@ -160,7 +172,7 @@ public class SUBA {
 		// final states for the UFA of the form (q,q,1), where q∈SUBAStates
 		UFAFinalStates = new boolean[UFAStates+1];
 		for (int q=1; q<=SUBAStates; q++) {
-			UFATransitions[q][M2MA.letterToIndex.get("$")][getIndex(q, q, 0)] = true;
+			addUFATransition(q, M2MA.letterToIndex.get("$"), getIndex(q, q, 0));
 			UFAFinalStates[getIndex(q, q, 1)] = true;
 		}
 		
@@ -176,117 +188,83 @@ public class SUBA {
 	public static int getIndex(int j, int k, int i) {
 		return (2 * SUBAStates * j) + (2 * k) - SUBAStates + i - 1;
 	}
+	
+	// adds the transition (q_start,a,q_end) to the UFA
+	private static void addUFATransition(int start, int a, int end) {
+		UFATransitions[a].add(start - 1, end - 1);
+	}
 
-	@SuppressWarnings("unchecked")
 	public static void UFAtoMod2MA() throws Exception {
 		// the size of the target function equals the number of states in the UFA
 		M2MA.inputSize = UFAStates;
-		
-		// inputFinalVector is the characteristic vector of UFAFinalStates
-		M2MA.inputFinalVector = M2MA.initialize(1, M2MA.inputSize);
+		M2MA.inputFinalVector = UFAFinalVector();
+		M2MA.inputTransitionMatrices = UFATransitionMatrices();
+	}
+	
+	// the final vector of the mod-2-MA of the UFA, the characteristic vector of UFAFinalStates
+	public static GF2Matrix UFAFinalVector() throws Exception {
+		GF2Matrix finalVector = M2MA.initialize(1, UFAStates);
 		for (int i=1; i<=UFAStates; i++) {
 			if(UFAFinalStates[i]) {
-				M2MA.addElement(M2MA.inputFinalVector, 1, i);
+				M2MA.addElement(finalVector, 1, i);
 			}
 		}
-		
-		// for each letter in the alphabet, [transitionMatrix_letter]i,j = 1 iff (q_i,letter,q_j)∈UFATransitions
-		M2MA.inputTransitionMatrices = new HashMap[M2MA.alphabet.length];
-		for (int i=0; i<M2MA.alphabet.length; i++) {
-			M2MA.inputTransitionMatrices[i] = M2MA.initialize(M2MA.inputSize, M2MA.inputSize);
-			
-			for (int j=1; j<=M2MA.inputSize; j++) {
-				for (int k=1; k<=M2MA.inputSize; k++) {
-					if (UFATransitions[j][i][k]) {
-						M2MA.addElement(M2MA.inputTransitionMatrices[i], j, k);
-					}
-				}
-			}
+		return finalVector;
+	}
+	
+	// the transition matrices of the mod-2-MA of the UFA
+	// for each letter in the alphabet, [transitionMatrix_letter]i,j = 1 iff (q_i,letter,q_j)∈UFATransitions
+	// the matrices are sparse, with one 1 for every transition of the UFA
+	public static GF2LinearMap[] UFATransitionMatrices() {
+		GF2LinearMap[] transitionMatrices = new GF2LinearMap[UFATransitions.length];
+		for (int i=0; i<UFATransitions.length; i++) {
+			transitionMatrices[i] = UFATransitions[i].build();
 		}
+		return transitionMatrices;
 	}
 	
-	public static boolean MQ_SUBA(String u, String v, int curState, boolean passedFinal, int q_u) {
-		/* 
-		 * From Bosquet and Löding, u(v)^ω is accepted by the SUBA iff there is a state q∈SUBAStates such that
-		 * q_1 (read u) -> q (read v and pass by a final state) -> q.
-		 */
-		
-		// read u
-		if (u.length() != 0) {
-			String[] uArr = u.split(" ");
-			// look at the first character of u
-			String c = uArr[0];
-			
-			// check all possible states reachable from (curState, c)
-			for (int i=0; i<SUBATransitions[curState][M2MA.letterToIndex.get(c)].size(); i++) {
-				int newState = SUBATransitions[curState][M2MA.letterToIndex.get(c)].get(i);
-				
-				if (uArr.length == 1) {
-					// ready to read v
-					if (MQ_SUBA("", v, newState, false, newState)) {
-						return true;
-					}
-				} else if (MQ_SUBA(u.substring(Math.min(c.length()+1, u.length())), v, newState, false, q_u)) {
-					// more left to read in u
-					return true;
-				}
-			}
-			
-			// no successful transitions from a letter in u
-			return false;
-		} else {
-			// read v
-			
-			// finished reading v
-			if (v.length() == 0) {
-				// for u(v)^ω to be accepted, must be at state q_u and passed a final state
-				if (passedFinal && (curState == q_u)) {
-					return true;
-				}
-				return false;
-			}
-			
-			// reached a final state
-			if (SUBAFinalStates[curState]) {
-				passedFinal = true;
-			}
-			
-			String[] vArr = v.split(" ");
-			
-			// look at the first character of v
-			String c = vArr[0];
-			
-			// check all possible states reachable from (curState, c)
-			for (int i=0; i<SUBATransitions[curState][M2MA.letterToIndex.get(c)].size(); i++) {
-				int newState = SUBATransitions[curState][M2MA.letterToIndex.get(c)].get(i);
-				if (MQ_SUBA("", v.substring(Math.min(c.length() + 1, v.length())), newState, passedFinal, q_u)) {
-					return true;
-				}
-			}
+	/* 
+	 * From Bosquet and Löding, u(v)^ω is accepted by the SUBA iff there is a state q∈SUBAStates such that
+	 * q_1 (read u) -> q (read v and pass by a final state) -> q.
+	 * The runs are simulated on sets of states (see NBASimulator.loopMQ), in time polynomial in |u|, |v| and SUBAStates.
+	 */
+	public static boolean MQ_SUBA(Word u, Word v) {
+		if (v.length() == 0) {
 			return false;
 		}
+		return simulator().loopMQ(u, v) == 1;
 	}
 	
-	// performs a statistical EQ between the input SUBA and learned mod-2-MA
-	public static boolean finalCheck(int maxTestLen, int numTests) throws Exception {		
-		for (int i=1; i<=numTests; i++) {
-			// SUBA: ultimately periodic words of the form u(v)^w
-			int lenU = (int) (Math.random() * (maxTestLen + 1));
-			int lenV = (int) (Math.random() * (maxTestLen - lenU + 1));
-			String u = M2MA.genTest(lenU, true);
-			String v = M2MA.genTest(lenV, true);
-			boolean SUBA_accepts = MQ_SUBA(u, v, 1, false, 1);
-			
-			// mod-2-MA: words of the form u$v
-			int mod2_MA_accepts = M2MA.MQArbitrary(M2MA.resultFinalVector, M2MA.resultTransitionMatrices, M2MA.addStrings(M2MA.addStrings(u, "$"), v));
-			
-			if ((SUBA_accepts && mod2_MA_accepts == 0) || (!SUBA_accepts && mod2_MA_accepts == 1)) {
-				System.out.println("u: " + u);
-				System.out.println("v: " + v);
-				System.out.println("SUBA_accepts: " + SUBA_accepts);
-				return false;
-			}
+	// returns the simulator of the SUBA, compiling it again if the SUBA changed
+	public static NBASimulator simulator() {
+		NBASimulator out = simulator;
+		if (out == null || !out.isFor(SUBATransitions, SUBAFinalStates)) {
+			out = new NBASimulator(SUBAStates, SUBATransitions, SUBAFinalStates);
+			simulator = out;
+		}
+		return out;
+	}
+	
+	// performs an exact EQ between the mod-2-MA of the input SUBA (see UFAtoMod2MA) and the learned mod-2-MA
+	public static boolean finalCheck() throws Exception {
+		Word distinguishingWord = M2MA.distinguishingWord(M2MA.inputFinalVector, M2MA.inputTransitionMatrices,
+				M2MA.resultFinalVector, M2MA.resultTransitionMatrices);
+		if (distinguishingWord == null) {
+			return true;
+		}
+		
+		// words of the form u$v stand for the ultimately periodic words u(v)^w
+		int $letter = M2MA.letterToIndex.get("$");
+		int $index = distinguishingWord.indexOf($letter);
+		Word u = ($index == -1) ? null : distinguishingWord.prefix($index);
+		Word v = ($index == -1) ? null : distinguishingWord.subword($index + 1, distinguishingWord.length());
+		if (v == null || v.indexOf($letter) != -1) {
+			System.out.println("Distinguishing word: \"" + distinguishingWord + "\"");
+		} else {
+			System.out.println("u: " + u);
+			System.out.println("v: " + v);
+			System.out.println("SUBA_accepts: " + MQ_SUBA(u, v));
 		}
-		return true;
+		return false;
 	}
 }
\ No newline at end of file
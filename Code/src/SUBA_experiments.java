@@ -2,8 +2,6 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
 
 public class SUBA_experiments {
 
@@ -27,142 +25,53 @@ public class SUBA_experiments {
 		M2MA.minDimensionFlag = false;
 		M2MA.dfaFlag = false;
 		
-		for (int i = 1; i <= 11; i++) {
-			String fileName = "SUBA_exp" + Integer.toString(i) + ".txt";
-			System.out.println("Running " + fileName + ": ");
+		// instance i runs SUBA_exp(i+1).txt, the result is the learned dimension and the run time
+		BatchRunner batch = new BatchRunner(11, SUBA_experiments::displayResult);
+		for (int i = 0; i < 11; i++) {
+			// the SUBAs are read in order, and each is minimized and learned in objects of its own
+			SUBA.SUBAtoUFA(new BufferedReader(new FileReader(fileName(i))));
 			
-			M2MA.startTime = System.nanoTime();
+			String[] alphabet = M2MA.alphabet;
+			GF2Matrix inputFinalVector = SUBA.UFAFinalVector();
+			GF2LinearMap[] inputTransitionMatrices = SUBA.UFATransitionMatrices();
 			
-			SUBAtoUFAwithFile(new BufferedReader(new FileReader(fileName)));
-			
-			SUBA.UFAtoMod2MA();
-
-			M2MA.minimize();
-			
-			M2MA.learn();
-			
-			if (M2MA.minSize != M2MA.learnedSize) {
-				M2MA.throwException(null, "Algorithm failed: the learned mod-2-MA has a different dimension "
-						+ "(" + M2MA.learnedSize + ") than the minimized mod-2-MA (" + M2MA.minSize + ").");
-			}
-			
-			if (SUBA.finalCheck(25,1000)) {
-				System.out.println("Learned M2MA dimension: " + M2MA.learnedSize);
+			batch.submit(i, () -> {
+				long startTime = System.nanoTime();
+				
+				Minimizer minimizer = new Minimizer(alphabet, inputFinalVector, inputTransitionMatrices);
+				minimizer.run();
+				
+				LearnerSession session = LearnerSession.forM2MA(alphabet, minimizer.minFinalVector, minimizer.minTransitionMatrices);
+				session.maxSize = minimizer.minSize;
+				session.learn();
+				
+				if (minimizer.minSize != session.learnedSize) {
+					M2MA.throwException(null, "Algorithm failed: the learned mod-2-MA has a different dimension "
+							+ "(" + session.learnedSize + ") than the minimized mod-2-MA (" + minimizer.minSize + ").");
+				}
 				
-				M2MA.displayRuntime();
-			} else {
-				M2MA.throwException(null, "Failed final check.");
-			}
+				if (M2MA.distinguishingWord(inputFinalVector, inputTransitionMatrices, session.resultFinalVector,
+						session.resultTransitionMatrices) != null) {
+					M2MA.throwException(null, "Failed final check.");
+				}
+				
+				return session.learnedSize + " " + (System.nanoTime() - startTime);
+			});
 		}
 		
+		batch.finish();
 		System.out.println("\nProgram complete.");
 	}
 	
-	@SuppressWarnings("unchecked")
-	public static void SUBAtoUFAwithFile(BufferedReader f) throws IOException, Exception {
-		// UFAStates = SUBAStates U (SUBAStates x SUBAStates x {0,1})
-		SUBA.SUBAStates = Integer.parseInt(M2MA.readFile(f));
-		SUBA.UFAStates = SUBA.SUBAStates + SUBA.SUBAStates * SUBA.SUBAStates * 2;
-		
-		// alphabet ΣU{$}
-		M2MA.readAlphabet(f, true);
-		
-		StringTokenizer st = new StringTokenizer(M2MA.readFile(f));
-		SUBA.SUBAFinalStates = new boolean[SUBA.SUBAStates+1];
-		while (st.hasMoreTokens()) {
-			int state = Integer.parseInt(st.nextToken());
-			if (1 <= state && state <= SUBA.SUBAStates && !SUBA.SUBAFinalStates[state]) {
-				SUBA.SUBAFinalStates[state] = true;
-			} else {
-				M2MA.throwException(f,"Invalid input: invalid or duplicate final state.");
-			}
-		}
-		
-		/* 
-		 * Following the paper by Bousquet and Löding, UFATransitions contains (where q,p,p'∈SUBAStates)
-		 * - SUBATransitions
-		 * - all transitions of the form (q,$,(q,q,0))
-		 * - all transitions of the form ((q,p,i),a,(q,p',i')), where (p,a,p')∈SUBATransitions, and
-		 * 	 i' = 1 if p'∈SUBAFinalStates and i if p'∉SUBAFinalStates
-		 * 
-		 * Transitions will be stored in a (UFAStates x alphabetSize x UFAStates) adjacency matrix.
-		 * The first states of UFATransitions will be SUBAStates.
-		 * The remaining states will be of the form (q_j,q_k,i), where q_j,q_k∈SUBAStates and i∈{0,1}.
-		 * State (q_j,q_k,i) will be found at index (2*SUBAStates*j)+(2*k)-(SUBAStates)+(i-1) of UFATransitions.
-		*/
-		int numTransitions = Integer.parseInt(M2MA.readFile(f));
-		if (numTransitions > ((M2MA.alphabet.length - 1) * SUBA.SUBAStates * SUBA.SUBAStates)) {
-			M2MA.throwException(f, "Invalid input: invalid number of transitions.");
-		}
-		
-		/*
-		 *  For each index (q,a) where q∈SUBAStates and a∈alphabet, transition_SUBA[q][a] is an ArrayList containing 
-		 *  all of the reachable states from (q,a).
-		 *  The alphabet for the SUBA does not include $.
-		 */
-		SUBA.SUBATransitions = new ArrayList[SUBA.SUBAStates + 1][M2MA.alphabet.length - 1];
-		for (int i=1; i<=SUBA.SUBAStates; i++) {
-			for (int j=0; j<M2MA.alphabet.length-1; j++) {
-				SUBA.SUBATransitions[i][j] = new ArrayList<Integer>();
-			}
-		}
-		
-		// (start state, letter, end state)
-		SUBA.UFATransitions = new boolean[SUBA.UFAStates + 1][M2MA.alphabet.length][SUBA.UFAStates + 1];
-		
-		// lines of the form q_j a q_k, where q_j,q_k∈SUBAStates and a∈alphabet
-		for (int i=0; i<numTransitions; i++) {
-			st = new StringTokenizer(M2MA.readFile(f));
-			int p_start = Integer.parseInt(st.nextToken());
-			
-			String letter = st.nextToken();
-			
-			int a = M2MA.letterToIndex.get(letter);
-			int p_end = Integer.parseInt(st.nextToken());
-			if (p_start < 1 || p_start > SUBA.SUBAStates || p_end < 1 || p_end > SUBA.SUBAStates) {
-				M2MA.throwException(f, "Invalid input: invalid transition.");
-			}
-			
-			// SUBATransitions ⊆ UFATransitions 
-			SUBA.SUBATransitions[p_start][a].add(p_end);
-			SUBA.UFATransitions[p_start][a][p_end] = true;
-			
-			// transitions of the form ((q,p,i),a,(q,p',i'))
-			// p'∈SUBAFinalStates so i'=1
-			if (SUBA.SUBAFinalStates[p_end]) {
-				for (int q=1; q<=SUBA.SUBAStates; q++) {
-					// ((q,p,0),a,(q,p',1))
-					SUBA.UFATransitions[SUBA.getIndex(q, p_start, 0)][a][SUBA.getIndex(q, p_end, 1)] = true;
-					// ((q,p,1),a,(q,p',1))
-					SUBA.UFATransitions[SUBA.getIndex(q, p_start, 1)][a][SUBA.getIndex(q, p_end, 1)] = true;
-				}
-			}
-			// p'∉SUBAFinalStates so i'=i
-			else {
-				for (int q=1; q<=SUBA.SUBAStates; q++) {
-					// ((q,p,0),a,(q,p',0))
-					SUBA.UFATransitions[SUBA.getIndex(q, p_start, 0)][a][SUBA.getIndex(q, p_end, 0)] = true;
-					// ((q,p,1),a,(q,p',1))
-					SUBA.UFATransitions[SUBA.getIndex(q, p_start, 1)][a][SUBA.getIndex(q, p_end, 1)] = true;
-				}
-			}
-		}
-		
-		// transitions for the UFA of the form (q,$,(q,q,0)), where q∈SUBAStates
-		// final states for the UFA of the form (q,q,1), where q∈SUBAStates
-		SUBA.UFAFinalStates = new boolean[SUBA.UFAStates+1];
-		for (int q=1; q<=SUBA.SUBAStates; q++) {
-			SUBA.UFATransitions[q][M2MA.letterToIndex.get("$")][SUBA.getIndex(q, q, 0)] = true;
-			SUBA.UFAFinalStates[SUBA.getIndex(q, q, 1)] = true;
-		}
-		
-		if (convert.f == null) {
-			if (M2MA.readFile(f) != null) {
-				M2MA.throwException(f, "Invalid input: more transitions inputted than specified.");
-			}
-
-			f.close();
-		}
+	public static String fileName(int instance) {
+		return "SUBA_exp" + Integer.toString(instance + 1) + ".txt";
+	}
+	
+	public static void displayResult(int instance, String result) {
+		String[] parts = result.split(" ");
+		System.out.println("Running " + fileName(instance) + ": ");
+		System.out.println("Learned M2MA dimension: " + parts[0]);
+		M2MA.displayRuntime(Long.parseLong(parts[1]));
 	}
 
 }
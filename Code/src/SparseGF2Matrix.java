@@ -0,0 +1,182 @@
+/*
+ * SparseGF2Matrix.java
+ *
+ * A read-only matrix over GF(2) stored by its 1's (compressed sparse rows), for targets such as the UFA of a SUBA
+ * (see SUBA.java) that have O(n) 1's in an nxn transition matrix, where a dense GF2Matrix would need n^2 bits.
+ *
+ * The columns of the 1's of row r are cols[rowStart[r]], ..., cols[rowStart[r+1]-1], in increasing order. The
+ * products with packed vectors (vectorTimes and timesVector) and with a dense matrix (multiply), which are all that
+ * the minimization and the distinguishing word search ask of a target (see GF2LinearMap.java), take time
+ * proportional to the number of 1's they touch. It isn't a GF2Matrix: toDense returns a dense copy where one is
+ * required.
+ *
+ * A matrix is built with a Builder, which takes its 1's in any order (adding a 1 twice is the same as once):
+ *
+ * 	SparseGF2Matrix.Builder builder = new SparseGF2Matrix.Builder(numRows, numCols);
+ * 	builder.add(row, col); ...
+ * 	SparseGF2Matrix matrix = builder.build();
+ */
+
+import java.util.Arrays;
+
+public final class SparseGF2Matrix implements GF2LinearMap {
+
+	private final int numRows;
+	private final int numCols;
+	private final int[] rowStart;
+	private final int[] cols;
+
+	private SparseGF2Matrix(int numRows, int numCols, int[] rowStart, int[] cols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.rowStart = rowStart;
+		this.cols = cols;
+	}
+
+	// collects the 1's of a SparseGF2Matrix (0-based, like GF2Matrix.set)
+	public static class Builder {
+
+		private final int numRows;
+		private final int numCols;
+		// the i-th 1 added is at (addedRows[i], addedCols[i])
+		private int[] addedRows = new int[16];
+		private int[] addedCols = new int[16];
+		private int numAdded;
+
+		public Builder(int numRows, int numCols) {
+			this.numRows = numRows;
+			this.numCols = numCols;
+		}
+
+		public void add(int row, int col) {
+			if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+				throw new IndexOutOfBoundsException("Added an invalid element (" + row + ", " + col + ") to a matrix.");
+			}
+			if (numAdded == addedRows.length) {
+				addedRows = Arrays.copyOf(addedRows, 2 * numAdded);
+				addedCols = Arrays.copyOf(addedCols, 2 * numAdded);
+			}
+			addedRows[numAdded] = row;
+			addedCols[numAdded] = col;
+			numAdded++;
+		}
+
+		// sorts the 1's into rows (a counting sort), then sorts and removes the duplicates of every row
+		public SparseGF2Matrix build() {
+			int[] start = new int[numRows + 1];
+			for (int i=0; i<numAdded; i++) {
+				start[addedRows[i] + 1]++;
+			}
+			for (int r=0; r<numRows; r++) {
+				start[r + 1] += start[r];
+			}
+
+			int[] sorted = new int[numAdded];
+			int[] next = Arrays.copyOf(start, numRows);
+			for (int i=0; i<numAdded; i++) {
+				sorted[next[addedRows[i]]++] = addedCols[i];
+			}
+
+			int[] rowStart = new int[numRows + 1];
+			int size = 0;
+			for (int r=0; r<numRows; r++) {
+				Arrays.sort(sorted, start[r], start[r + 1]);
+				rowStart[r] = size;
+				for (int i=start[r]; i<start[r + 1]; i++) {
+					if (i == start[r] || sorted[i] != sorted[i - 1]) {
+						sorted[size++] = sorted[i];
+					}
+				}
+			}
+			rowStart[numRows] = size;
+			return new SparseGF2Matrix(numRows, numCols, rowStart, Arrays.copyOf(sorted, size));
+		}
+	}
+
+	public int getRowDimension() {
+		return numRows;
+	}
+
+	public int getColumnDimension() {
+		return numCols;
+	}
+
+	public int get(int row, int col) {
+		return (Arrays.binarySearch(cols, rowStart[row], rowStart[row + 1], col) >= 0) ? 1 : 0;
+	}
+
+	// number of 1's
+	public int cardinality() {
+		return cols.length;
+	}
+
+	// returns the mxp product of this mxn matrix and an nxp matrix, each row the sum of the rows of other selected by its 1's
+	public GF2Matrix multiply(GF2Matrix other) {
+		if (numCols != other.numRows) {
+			throw new IllegalArgumentException("Multiplied matrices of invalid dimension.");
+		}
+
+		GF2Matrix out = new GF2Matrix(numRows, other.numCols);
+		for (int r=0; r<numRows; r++) {
+			for (int i=rowStart[r]; i<rowStart[r + 1]; i++) {
+				GF2Matrix.xorInto(out.rows[r], other.rows[cols[i]]);
+			}
+		}
+		return out;
+	}
+
+	// out = v * this, where row r of this matrix is added to out for every bit r set in v
+	public void vectorTimes(long[] v, long[] out) {
+		Arrays.fill(out, 0, GF2Matrix.words(numCols), 0L);
+		for (int r=GF2Matrix.nextSetBit(v, 0); r != -1 && r < numRows; r=GF2Matrix.nextSetBit(v, r + 1)) {
+			flipRow(r, out);
+		}
+	}
+
+	// out = this * v^T, where entry r of out is the parity of the 1's of v at the 1's of row r
+	public void timesVector(long[] v, long[] out) {
+		Arrays.fill(out, 0, GF2Matrix.words(numRows), 0L);
+		for (int r=0; r<numRows; r++) {
+			int parity = 0;
+			for (int i=rowStart[r]; i<rowStart[r + 1]; i++) {
+				parity ^= GF2Matrix.getBit(v, cols[i]);
+			}
+			if (parity == 1) {
+				out[r >>> 6] |= 1L << r;
+			}
+		}
+	}
+
+	// returns the block diagonal matrix [[this, 0], [0, other]], which is sparse as well
+	public SparseGF2Matrix directSum(GF2Matrix other) {
+		Builder builder = new Builder(numRows + other.numRows, numCols + other.numCols);
+		for (int r=0; r<numRows; r++) {
+			for (int i=rowStart[r]; i<rowStart[r + 1]; i++) {
+				builder.add(r, cols[i]);
+			}
+		}
+		for (int r=0; r<other.numRows; r++) {
+			long[] row = other.rows[r];
+			for (int c=GF2Matrix.nextSetBit(row, 0); c != -1; c=GF2Matrix.nextSetBit(row, c + 1)) {
+				builder.add(numRows + r, numCols + c);
+			}
+		}
+		return builder.build();
+	}
+
+	// returns a dense (and modifiable) copy
+	public GF2Matrix toDense() {
+		GF2Matrix out = new GF2Matrix(numRows, numCols);
+		for (int r=0; r<numRows; r++) {
+			flipRow(r, out.rows[r]);
+		}
+		return out;
+	}
+
+	// dst += row of this matrix
+	private void flipRow(int row, long[] dst) {
+		for (int i=rowStart[row]; i<rowStart[row + 1]; i++) {
+			dst[cols[i] >>> 6] ^= 1L << cols[i];
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * StatisticalEquivalenceOracle.java
+ *
+ * Approximate equivalence queries for targets that only answer membership queries, such as the NBAs of NBA.java
+ * and the functions of MQ.java: a hypothesis passes if it agrees with the target on numTests random words of
+ * length at most maxTestLen.
+ *
+ * The tests are split into chunks of CHUNK_SIZE run in parallel on the common fork-join pool. Every chunk draws its
+ * tests from its own generator, split off the oracle's generator in the order of the chunks, so the tests (and the
+ * counter-example, the first failed test) only depend on the seed and not on the number of threads. Chunks after a
+ * known failed test are skipped, unless every failure has to be counted for the last EQ.
+ *
+ * After limit-1 failed EQ's, the last EQ counts its failed tests and accepts the hypothesis (see failuresAtLimit).
+ * An oracle keeps its own generator and count of EQ's, so it belongs to one session (see LearnerSession.forTarget).
+ */
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+public class StatisticalEquivalenceOracle implements EquivalenceOracle {
+
+	// number of tests generated and run by each task
+	public static final int CHUNK_SIZE = 64;
+
+	private final int numLetters;
+	// MQ on the target, called from several threads at once
+	private final ToIntFunction<Word> target;
+	private final SplittableRandom random;
+
+	// EQ settings
+	public final int maxTestLen;
+	public final int numTests;
+	public final int limit;
+	// number of EQ's that found a counter-example
+	public int numPerformed;
+	// number of failed tests of the last EQ, if it reached the limit with some (0 otherwise)
+	public int failuresAtLimit;
+	// the Hankel matrix of the session, where the answers of the tests up to the counter-example are recorded as a
+	// sequential EQ would have (nothing is recorded if it is null)
+	public Supplier<HankelStore> Hankel;
+
+	public StatisticalEquivalenceOracle(int numLetters, ToIntFunction<Word> target, int maxTestLen, int numTests, int limit, SplittableRandom random) {
+		this.numLetters = numLetters;
+		this.target = target;
+		this.maxTestLen = maxTestLen;
+		this.numTests = numTests;
+		this.limit = limit;
+		this.random = random;
+	}
+
+	@Override
+	public Word counterExample(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) {
+		boolean countFailures = (numPerformed == limit-1);
+
+		int numChunks = (numTests + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		SplittableRandom[] chunkRandom = new SplittableRandom[numChunks];
+		for (int c=0; c<numChunks; c++) {
+			chunkRandom[c] = random.split();
+		}
+
+		Word[] tests = new Word[numTests];
+		int[] answers = new int[numTests];
+		boolean[] failed = new boolean[numTests];
+		AtomicInteger firstFailure = new AtomicInteger(numTests);
+
+		IntStream.range(0, numChunks).parallel().forEach(c -> {
+			int from = c * CHUNK_SIZE;
+			int to = Math.min(from + CHUNK_SIZE, numTests);
+			if (!countFailures && from > firstFailure.get()) {
+				return;
+			}
+
+			// evaluators are not thread-safe, so every chunk uses its own
+			M2MAEvaluator hypothesis = new M2MAEvaluator(hypothesisFinalVector, hypothesisTransitionMatrices);
+			for (int i=from; i<to; i++) {
+				tests[i] = testWord(chunkRandom[c].nextInt(maxTestLen + 1), chunkRandom[c]);
+				answers[i] = target.applyAsInt(tests[i]);
+
+				if (answers[i] != hypothesis.evaluate(tests[i])) {
+					failed[i] = true;
+					firstFailure.accumulateAndGet(i, Math::min);
+					if (!countFailures) {
+						return;
+					}
+				}
+			}
+		});
+
+		HankelStore store = (Hankel == null) ? null : Hankel.get();
+		int last = countFailures ? numTests - 1 : Math.min(firstFailure.get(), numTests - 1);
+		for (int i=0; store != null && i<=last; i++) {
+			if (tests[i] != null && !store.containsKey(tests[i])) {
+				store.put(tests[i], answers[i]);
+			}
+		}
+
+		int numFail = 0;
+		for (int i=0; i<numTests; i++) {
+			if (failed[i]) {
+				// found a counter-example
+				// count the number of counter-examples
+				if (countFailures) {
+					numFail++;
+				} else {
+					numPerformed++;
+					return tests[i];
+				}
+			}
+		}
+
+		failuresAtLimit = numFail;
+		return null;
+	}
+
+	// returns a uniformly random word of length len
+	private Word testWord(int len, SplittableRandom random) {
+		int[] test = new int[len];
+		for (int i=0; i<len; i++) {
+			test[i] = random.nextInt(numLetters);
+		}
+		return Word.wrap(test);
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * TestEchelonBasis.java
+ *
+ * Test program for EchelonBasis: inserts random vectors, some of them sums of earlier ones, and checks the
+ * independence of every vector and the rank against a plain elimination on int arrays, and that the tracked
+ * combinations of the dependent vectors sum back to them.
+ *
+ * Usage: java TestEchelonBasis [trials]
+ *   trials : number of random bases of each dimension, 100 by default
+ */
+
+import java.util.*;
+
+public class TestEchelonBasis {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+
+        System.out.println("EchelonBasis Tests");
+        System.out.println("==================\n");
+
+        int passed = 0;
+        int failed = 0;
+
+        // dimensions that straddle the 64-bit words of a packed vector
+        int[] dims = { 1, 2, 7, 63, 64, 65, 130 };
+        for (int n : dims) {
+            boolean independence = true, rank = true, combinations = true, pivots = true;
+            for (int t=0; t<trials; t++) {
+                EchelonBasis basis = new EchelonBasis(n, true);
+                ArrayList<long[]> inserted = new ArrayList<long[]>();
+                ArrayList<int[]> reference = new ArrayList<int[]>();
+                int numVectors = 1 + random.nextInt(n + 5);
+                for (int i=0; i<numVectors; i++) {
+                    long[] v = randomVector(n);
+                    if (inserted.size() > 0 && random.nextInt(3) == 0) {
+                        // a sum of inserted vectors
+                        v = new long[GF2Matrix.words(n)];
+                        for (long[] u : inserted) {
+                            if (random.nextBoolean()) {
+                                GF2Matrix.xorInto(v, u);
+                            }
+                        }
+                    }
+
+                    boolean expected = naiveRank(reference, toInts(v, n)) > reference.size();
+                    independence &= basis.isIndependent(v) == expected;
+                    if (!expected) {
+                        // the combination of the inserted vectors gives v back
+                        long[] c = basis.combination(v);
+                        long[] sum = new long[GF2Matrix.words(n)];
+                        for (int j=0; c != null && j<inserted.size(); j++) {
+                            if (GF2Matrix.getBit(c, j) == 1) {
+                                GF2Matrix.xorInto(sum, inserted.get(j));
+                            }
+                        }
+                        combinations &= c != null && Arrays.equals(sum, v);
+                    }
+
+                    independence &= basis.add(v) == expected;
+                    if (expected) {
+                        inserted.add(v);
+                        reference.add(toInts(v, n));
+                        // the pivot of the new row is a 1 of a row at the pivots of no earlier row
+                        int pivot = basis.pivot(basis.rank() - 1);
+                        pivots &= pivot >= 0 && pivot < n;
+                        for (int j=0; j<basis.rank()-1; j++) {
+                            pivots &= basis.pivot(j) != pivot;
+                        }
+                    }
+                    rank &= basis.rank() == inserted.size() && basis.rank() <= n;
+                }
+            }
+            String name = "Dimension " + n;
+            if (check(name + " independence", independence)) passed++; else failed++;
+            if (check(name + " rank", rank)) passed++; else failed++;
+            if (check(name + " combinations", combinations)) passed++; else failed++;
+            if (check(name + " pivots", pivots)) passed++; else failed++;
+        }
+
+        // bits past the dimension are ignored, and the zero vector is never independent
+        EchelonBasis basis = new EchelonBasis(3);
+        long[] outside = new long[1];
+        GF2Matrix.setBit(outside, 5);
+        boolean ignored = !basis.isIndependent(outside) && !basis.add(outside) && !basis.add(new long[1]) && basis.rank() == 0;
+        if (check("Bits past the dimension and the zero vector", ignored)) passed++; else failed++;
+
+        // combinations are only given by a basis that tracks them
+        boolean rejected = false;
+        try {
+            basis.combination(new long[1]);
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        if (check("Combinations of an untracked basis rejected", rejected)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static long[] randomVector(int n) {
+        long[] v = new long[GF2Matrix.words(n)];
+        for (int i=0; i<n; i++) {
+            if (random.nextBoolean()) {
+                GF2Matrix.setBit(v, i);
+            }
+        }
+        return v;
+    }
+
+    private static int[] toInts(long[] v, int n) {
+        int[] out = new int[n];
+        for (int i=0; i<n; i++) {
+            out[i] = GF2Matrix.getBit(v, i);
+        }
+        return out;
+    }
+
+    // the rank of the vectors and v, by elimination on int arrays
+    private static int naiveRank(ArrayList<int[]> vectors, int[] v) {
+        ArrayList<int[]> m = new ArrayList<int[]>();
+        for (int[] u : vectors) {
+            m.add(u.clone());
+        }
+        m.add(v.clone());
+
+        int n = v.length;
+        int rank = 0;
+        for (int c=0; c<n && rank<m.size(); c++) {
+            int pivot = rank;
+            while (pivot < m.size() && m.get(pivot)[c] == 0) {
+                pivot++;
+            }
+            if (pivot == m.size()) {
+                continue;
+            }
+            Collections.swap(m, pivot, rank);
+            for (int r=0; r<m.size(); r++) {
+                if (r != rank && m.get(r)[c] == 1) {
+                    for (int k=c; k<n; k++) {
+                        m.get(r)[k] ^= m.get(rank)[k];
+                    }
+                }
+            }
+            rank++;
+        }
+        return rank;
+    }
+}
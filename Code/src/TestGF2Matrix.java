@@ -0,0 +1,149 @@
+/*
+ * TestGF2Matrix.java
+ *
+ * Test program for the products of GF2Matrix: multiplies random matrices with the row-by-row product, with the
+ * Method of Four Russians (multiplyM4RM) and entry by entry, and checks that the three agree, as do the vector
+ * products, the transpose and the combination tables M4RI is built on.
+ *
+ * multiply() switches to M4RM for matrices of dimension at least GF2Matrix.M4RI_THRESHOLD (256 by default); run
+ * with -Dm4riThreshold=1 to check that every product it gives then is still correct.
+ *
+ * Usage: java [-Dm4riThreshold=n] TestGF2Matrix [trials]
+ *   trials : number of random products of each shape, 20 by default
+ */
+
+import java.util.*;
+
+public class TestGF2Matrix {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+
+        System.out.println("GF2Matrix Tests");
+        System.out.println("===============\n");
+        System.out.println("M4RI threshold: " + GF2Matrix.M4RI_THRESHOLD + "\n");
+
+        int passed = 0;
+        int failed = 0;
+
+        // m x n times n x p, with n not a multiple of M4RI_BITS or 64, and one product above the default threshold
+        int[][] shapes = { {1, 1, 1}, {3, 5, 7}, {8, 8, 8}, {10, 13, 9}, {64, 64, 64}, {65, 71, 63}, {100, 130, 70}, {257, 300, 260} };
+        for (int[] shape : shapes) {
+            int m = shape[0];
+            int n = shape[1];
+            int p = shape[2];
+            int numTrials = (n >= 256) ? Math.max(1, trials / 10) : trials;
+            boolean multiply = true, m4rm = true, vectors = true, transpose = true;
+            for (int t=0; t<numTrials; t++) {
+                GF2Matrix a = randomMatrix(m, n);
+                GF2Matrix b = randomMatrix(n, p);
+                GF2Matrix expected = naiveMultiply(a, b);
+
+                multiply &= a.multiply(b).equals(expected);
+                m4rm &= a.multiplyM4RM(b).equals(expected);
+
+                // v × a is the product of the row matrix v and a, a × w that of a and the column matrix w
+                GF2Matrix v = randomMatrix(1, m);
+                long[] out = new long[GF2Matrix.words(n)];
+                a.vectorTimes(v.getRow(0), out);
+                vectors &= Arrays.equals(out, naiveMultiply(v, a).getRow(0));
+                GF2Matrix w = randomMatrix(1, n);
+                out = new long[GF2Matrix.words(m)];
+                a.timesVector(w.getRow(0), out);
+                vectors &= Arrays.equals(out, naiveMultiply(a, w.transpose()).transpose().getRow(0));
+
+                GF2Matrix aT = a.transpose();
+                for (int r=0; r<m; r++) {
+                    for (int c=0; c<n; c++) {
+                        transpose &= aT.get(c, r) == a.get(r, c);
+                    }
+                }
+                transpose &= aT.transpose().equals(a);
+            }
+            String name = m + "x" + n + " times " + n + "x" + p;
+            if (check(name + " multiply", multiply)) passed++; else failed++;
+            if (check(name + " multiplyM4RM", m4rm)) passed++; else failed++;
+            if (check(name + " vectorTimes and timesVector", vectors)) passed++; else failed++;
+            if (check(name + " transpose", transpose)) passed++; else failed++;
+        }
+
+        // table[i] is the sum of the selected rows given by the bits of i
+        boolean tables = true;
+        for (int t=0; t<trials; t++) {
+            GF2Matrix a = randomMatrix(1 + random.nextInt(100), 1 + random.nextInt(150));
+            int k = 1 + random.nextInt(Math.min(GF2Matrix.M4RI_BITS, a.getRowDimension()));
+            int[] selected = new int[k];
+            for (int j=0; j<k; j++) {
+                selected[j] = random.nextInt(a.getRowDimension());
+            }
+            long[][] table = new long[1 << k][GF2Matrix.words(a.getColumnDimension())];
+            a.fillCombinationTable(selected, k, table);
+            for (int i=0; i<(1 << k); i++) {
+                long[] sum = new long[GF2Matrix.words(a.getColumnDimension())];
+                for (int j=0; j<k; j++) {
+                    if ((i >>> j & 1) == 1) {
+                        GF2Matrix.xorInto(sum, a.getRow(selected[j]));
+                    }
+                }
+                tables &= Arrays.equals(table[i], sum);
+            }
+        }
+        if (check("Combination tables", tables)) passed++; else failed++;
+
+        // products with the identity and the zero matrix
+        GF2Matrix a = randomMatrix(300, 300);
+        boolean special = a.multiply(GF2Matrix.identity(300)).equals(a) && GF2Matrix.identity(300).multiplyM4RM(a).equals(a)
+                && a.multiplyM4RM(new GF2Matrix(300, 5)).equals(new GF2Matrix(300, 5));
+        if (check("Identity and zero products", special)) passed++; else failed++;
+
+        // products of matrices of invalid dimension are rejected
+        boolean rejected = false;
+        try {
+            randomMatrix(3, 4).multiplyM4RM(randomMatrix(5, 3));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        if (check("Invalid dimensions rejected", rejected)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static GF2Matrix randomMatrix(int numRows, int numCols) {
+        GF2Matrix m = new GF2Matrix(numRows, numCols);
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numCols; c++) {
+                if (random.nextBoolean()) {
+                    m.set(r, c);
+                }
+            }
+        }
+        return m;
+    }
+
+    // the product entry by entry
+    private static GF2Matrix naiveMultiply(GF2Matrix a, GF2Matrix b) {
+        GF2Matrix out = new GF2Matrix(a.getRowDimension(), b.getColumnDimension());
+        for (int r=0; r<a.getRowDimension(); r++) {
+            for (int c=0; c<b.getColumnDimension(); c++) {
+                int sum = 0;
+                for (int k=0; k<a.getColumnDimension(); k++) {
+                    sum ^= a.get(r, k) & b.get(k, c);
+                }
+                if (sum == 1) {
+                    out.set(r, c);
+                }
+            }
+        }
+        return out;
+    }
+}
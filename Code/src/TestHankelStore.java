@@ -0,0 +1,119 @@
+/*
+ * TestHankelStore.java
+ *
+ * Test program for HankelStore: stores random answers, through words and through row+col and row+letter+col
+ * entries, next to a HashMap of the same answers, and checks the lookups, the walks, the size, the hit counts and
+ * a store written and read back against the map.
+ *
+ * Usage: java TestHankelStore [trials]
+ *   trials : number of random stores, 100 by default
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class TestHankelStore {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+
+        System.out.println("HankelStore Tests");
+        System.out.println("=================\n");
+
+        boolean lookups = true, entries = true, walks = true, size = true, counts = true, reloaded = true, cleared = true;
+        for (int t=0; t<trials; t++) {
+            int numLetters = 1 + random.nextInt(4);
+            HankelStore store = new HankelStore(numLetters);
+            HashMap<Word, Integer> expected = new HashMap<Word, Integer>();
+
+            // enough words to grow the arrays of the trie several times, some of them stored again with another answer
+            int numPuts = random.nextInt(2000);
+            for (int i=0; i<numPuts; i++) {
+                Word row = randomWord(numLetters, random.nextInt(6));
+                Word col = randomWord(numLetters, random.nextInt(6));
+                int letter = random.nextInt(numLetters);
+                int answer = random.nextInt(2);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        store.put(row.concat(col), answer);
+                        expected.put(row.concat(col), answer);
+                        break;
+                    case 1:
+                        store.put(row, col, answer);
+                        expected.put(row.concat(col), answer);
+                        break;
+                    default:
+                        store.put(row, letter, col, answer);
+                        expected.put(row.concat(letter, col), answer);
+                        break;
+                }
+            }
+            size &= store.size() == expected.size();
+
+            long numLookups = 0;
+            long numHits = 0;
+            for (int i=0; i<500; i++) {
+                Word row = randomWord(numLetters, random.nextInt(6));
+                Word col = randomWord(numLetters, random.nextInt(6));
+                int letter = random.nextInt(numLetters);
+                int answer = expected.getOrDefault(row.concat(col), -1);
+                int letterAnswer = expected.getOrDefault(row.concat(letter, col), -1);
+
+                lookups &= store.get(row.concat(col)) == answer && store.containsKey(row.concat(col)) == (answer != -1);
+                entries &= store.get(row, col) == answer && store.get(row, letter, col) == letterAnswer;
+                walks &= store.answerAt(store.nodeOf(row.concat(col))) == answer
+                        && store.answerAt(store.childOf(store.nodeOf(row), letter)) == expected.getOrDefault(row.concat(letter), -1);
+
+                numLookups += 3;
+                numHits += ((answer != -1) ? 2 : 0) + ((letterAnswer != -1) ? 1 : 0);
+            }
+            counts &= store.lookups() == numLookups && store.hits() == numHits;
+
+            // a store read back has the same answers, and its counts start from 0
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            store.writeTo(new DataOutputStream(bytes));
+            HankelStore copy = HankelStore.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            reloaded &= copy.size() == store.size() && copy.numNodes() == store.numNodes() && copy.lookups() == 0;
+            for (Map.Entry<Word, Integer> e : expected.entrySet()) {
+                reloaded &= copy.get(e.getKey()) == e.getValue();
+            }
+            // and can still grow
+            Word longWord = randomWord(numLetters, 40);
+            copy.put(longWord, 1);
+            reloaded &= copy.get(longWord) == 1 && copy.size() == expected.size() + (expected.containsKey(longWord) ? 0 : 1);
+
+            store.clear();
+            cleared &= store.size() == 0 && store.numNodes() == 1 && store.get(Word.EMPTY) == -1 && store.lookups() == 1;
+        }
+
+        int passed = 0;
+        int failed = 0;
+        if (check("Lookups of words", lookups)) passed++; else failed++;
+        if (check("Lookups of row+col and row+letter+col", entries)) passed++; else failed++;
+        if (check("Walks", walks)) passed++; else failed++;
+        if (check("Size", size)) passed++; else failed++;
+        if (check("Lookup and hit counts", counts)) passed++; else failed++;
+        if (check("Written and read back", reloaded)) passed++; else failed++;
+        if (check("Cleared", cleared)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static Word randomWord(int numLetters, int len) {
+        int[] letters = new int[len];
+        for (int i=0; i<len; i++) {
+            letters[i] = random.nextInt(numLetters);
+        }
+        return Word.of(letters);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * TestHankelTable.java
+ *
+ * Test program for HankelTable: sets random entries of growing tables, next to an int[][] of the same entries
+ * (-1 for the unknown ones), and checks the entries, the packed rows, the unknown counts and the completed rows
+ * against it, for numbers of columns that straddle the 64-bit words of a packed row. The rows of a table are also
+ * set from several threads at once.
+ *
+ * Usage: java TestHankelTable [trials]
+ *   trials : number of random tables of each width, 50 by default
+ */
+
+import java.util.*;
+
+public class TestHankelTable {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+
+        System.out.println("HankelTable Tests");
+        System.out.println("=================\n");
+
+        int passed = 0;
+        int failed = 0;
+
+        int[] widths = { 1, 5, 63, 64, 65, 200 };
+        for (int n : widths) {
+            boolean entries = true, rows = true, counts = true, complete = true;
+            for (int t=0; t<trials; t++) {
+                HankelTable table = new HankelTable(n);
+                ArrayList<int[]> expected = new ArrayList<int[]>();
+                // enough rows to grow the arrays of rows, each filled up to a random column as FromExamples does
+                int numRows = random.nextInt(60);
+                for (int i=0; i<numRows; i++) {
+                    int r = table.addRow();
+                    entries &= r == expected.size();
+                    int[] row = new int[n];
+                    Arrays.fill(row, -1);
+                    expected.add(row);
+
+                    int reach = 1 + random.nextInt(n);
+                    int numSets = random.nextInt(2 * reach);
+                    for (int j=0; j<numSets; j++) {
+                        int c = random.nextInt(reach);
+                        int answer = random.nextInt(3) - 1;
+                        table.set(r, c, answer);
+                        if (answer != -1) {
+                            row[c] = answer;
+                        }
+                    }
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            table.setAllKnown(r);
+                            for (int c=0; c<n; c++) {
+                                row[c] = Math.max(row[c], 0);
+                            }
+                            break;
+                        case 1:
+                            table.compact(r);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+
+                // entries set again after the rows were completed or compacted
+                for (int j=0; j<numRows; j++) {
+                    int r = random.nextInt(numRows);
+                    int c = random.nextInt(n);
+                    int answer = random.nextInt(2);
+                    table.set(r, c, answer);
+                    expected.get(r)[c] = answer;
+                }
+
+                entries &= table.numRows() == numRows && table.numCols() == n;
+                long totalUnknown = 0;
+                for (int r=0; r<numRows; r++) {
+                    int[] row = expected.get(r);
+                    long[] values = new long[GF2Matrix.words(n)];
+                    long[] known = new long[GF2Matrix.words(n)];
+                    int unknown = 0;
+                    for (int c=0; c<n; c++) {
+                        entries &= table.get(r, c) == row[c];
+                        if (row[c] == 1) {
+                            GF2Matrix.setBit(values, c);
+                        }
+                        if (row[c] != -1) {
+                            GF2Matrix.setBit(known, c);
+                        } else {
+                            unknown++;
+                        }
+                    }
+                    rows &= Arrays.equals(table.valueRow(r), values) && Arrays.equals(table.knownRow(r), known);
+                    counts &= table.countUnknown(r) == unknown;
+                    complete &= table.isComplete(r) == (unknown == 0);
+                    totalUnknown += unknown;
+                }
+                counts &= table.countUnknown() == totalUnknown;
+            }
+            String name = n + " columns";
+            if (check(name + " entries", entries)) passed++; else failed++;
+            if (check(name + " packed rows", rows)) passed++; else failed++;
+            if (check(name + " unknown counts", counts)) passed++; else failed++;
+            if (check(name + " complete rows", complete)) passed++; else failed++;
+        }
+
+        // rows set from several threads, each thread setting its own rows
+        int n = 130;
+        int numThreads = 4;
+        HankelTable table = new HankelTable(n);
+        int[][] expected = new int[400][n];
+        for (int r=0; r<expected.length; r++) {
+            table.addRow();
+            for (int c=0; c<n; c++) {
+                expected[r][c] = random.nextInt(3) - 1;
+            }
+        }
+        Thread[] threads = new Thread[numThreads];
+        for (int i=0; i<numThreads; i++) {
+            int first = i;
+            threads[i] = new Thread(() -> {
+                for (int r=first; r<expected.length; r+=numThreads) {
+                    for (int c=0; c<n; c++) {
+                        table.set(r, c, expected[r][c]);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean concurrent = true;
+        for (int r=0; r<expected.length; r++) {
+            for (int c=0; c<n; c++) {
+                concurrent &= table.get(r, c) == expected[r][c];
+            }
+        }
+        if (check("Rows set from " + numThreads + " threads", concurrent)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * TestHypothesisTables.java
+ *
+ * Test program for the bordered updates of the hypothesis tables of LearnerSession: grows observation tables one
+ * row and column at a time, and checks after every step that the hypothesis transition matrices it keeps between
+ * rounds are the ones solved from scratch (F_xi_letter * F_xi^-1 for the table of the session's MQ's, or zero
+ * matrices if F_xi is singular).
+ *
+ * The tables of random functions are often singular, so they take both the bordered update and
+ * the factorization from scratch after a singular table. The learning runs on random mod-2-MAs check every
+ * hypothesis of a run, and that the learned dimension is the minimized one.
+ *
+ * Usage: java TestHypothesisTables [trials]
+ *   trials : number of random tables and of learning runs, 100 by default
+ */
+
+import java.util.*;
+
+public class TestHypothesisTables {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+
+        System.out.println("Hypothesis Table Tests");
+        System.out.println("======================\n");
+
+        // tables of random functions, grown by random indices
+        boolean grown = true;
+        int numBordered = 0;
+        int numSingular = 0;
+        for (int t=0; t<trials; t++) {
+            int numLetters = 1 + random.nextInt(3);
+            long seed = random.nextLong();
+            String[] alphabet = alphabet(numLetters);
+            LearnerSession session = new LearnerSession(alphabet,
+                    word -> new SplittableRandom(seed * 31 + word.hashCode()).nextInt(2), null);
+            session.Hankel = new HankelStore(numLetters);
+            session.learnedRowIndices = new ArrayList<Word>();
+            session.learnedColIndices = new ArrayList<Word>();
+
+            HashSet<Word> rows = new HashSet<Word>();
+            HashSet<Word> cols = new HashSet<Word>();
+            boolean previousInvertible = false;
+            int size = 1 + random.nextInt(40);
+            while (session.learnedSize < size) {
+                session.learnedRowIndices.add(newWord(numLetters, rows));
+                session.learnedColIndices.add(newWord(numLetters, cols));
+                session.learnedSize++;
+
+                GF2Matrix[] kept = session.createHypothesisTransitionMatrices();
+                GF2Matrix F_xi = table(session, -1);
+                boolean invertible = new solver(F_xi).isNonSingular();
+                grown &= Arrays.equals(kept, fromScratch(session, F_xi));
+
+                if (previousInvertible && invertible) {
+                    numBordered++;
+                } else if (!invertible) {
+                    numSingular++;
+                }
+                previousInvertible = invertible;
+            }
+        }
+
+        // learning runs on random mod-2-MAs, checking every hypothesis
+        boolean learned = true;
+        boolean dimensions = true;
+        for (int t=0; t<trials; t++) {
+            int numLetters = 1 + random.nextInt(3);
+            int dim = 1 + random.nextInt(30);
+            String[] alphabet = alphabet(numLetters);
+            GF2Matrix finalVector = randomMatrix(1, dim);
+            GF2Matrix[] transitionMatrices = new GF2Matrix[numLetters];
+            for (int i=0; i<numLetters; i++) {
+                transitionMatrices[i] = randomMatrix(dim, dim);
+            }
+            Minimizer minimizer = new Minimizer(alphabet, finalVector, transitionMatrices);
+            minimizer.run();
+
+            LearnerSession session = LearnerSession.forM2MA(alphabet, minimizer.minFinalVector, minimizer.minTransitionMatrices);
+            session.maxSize = minimizer.minSize;
+            session.learnInitial();
+            while (true) {
+                GF2Matrix hypothesisFinalVector = session.createHypothesisFinalVector();
+                GF2Matrix[] hypothesisTransitionMatrices = session.createHypothesisTransitionMatrices();
+                learned &= Arrays.equals(hypothesisTransitionMatrices, fromScratch(session, table(session, -1)));
+                if (session.EQ(hypothesisFinalVector, hypothesisTransitionMatrices)) {
+                    break;
+                }
+                session.growObservationTable(hypothesisTransitionMatrices);
+            }
+            dimensions &= session.learnedSize == minimizer.minSize;
+        }
+
+        int passed = 0;
+        int failed = 0;
+        System.out.println("Bordered updates: " + numBordered + ", singular tables: " + numSingular + "\n");
+        if (check("Tables of random functions", grown && numBordered > 0 && numSingular > 0)) passed++; else failed++;
+        if (check("Hypotheses of learning runs", learned)) passed++; else failed++;
+        if (check("Learned dimensions", dimensions)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    // F_xi (letter -1) or F_xi_letter of the session's observation table, from its MQ's
+    private static GF2Matrix table(LearnerSession session, int letter) throws Exception {
+        int n = session.learnedSize;
+        GF2Matrix out = new GF2Matrix(n, n);
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<n; j++) {
+                Word row = session.learnedRowIndices.get(i);
+                Word col = session.learnedColIndices.get(j);
+                if ((letter == -1 ? session.MQ(row, col) : session.MQ(row, letter, col)) == 1) {
+                    out.set(i, j);
+                }
+            }
+        }
+        return out;
+    }
+
+    // the hypothesis transition matrices solved from scratch
+    private static GF2Matrix[] fromScratch(LearnerSession session, GF2Matrix F_xi) throws Exception {
+        int n = session.learnedSize;
+        solver s = new solver(F_xi);
+        GF2Matrix[] out = new GF2Matrix[session.alphabet.length];
+        for (int c=0; c<out.length; c++) {
+            out[c] = s.isNonSingular() ? s.solveLeft(table(session, c)) : new GF2Matrix(n, n);
+        }
+        return out;
+    }
+
+    // a random word that isn't in words yet, which is added to them
+    private static Word newWord(int numLetters, HashSet<Word> words) {
+        while (true) {
+            // a unary alphabet has only one word of every length
+            int[] letters = new int[random.nextInt(numLetters == 1 ? 48 : 8)];
+            for (int i=0; i<letters.length; i++) {
+                letters[i] = random.nextInt(numLetters);
+            }
+            Word w = Word.of(letters);
+            if (words.add(w)) {
+                return w;
+            }
+        }
+    }
+
+    private static String[] alphabet(int numLetters) {
+        String[] alphabet = new String[numLetters];
+        for (int i=0; i<numLetters; i++) {
+            alphabet[i] = Integer.toString(i);
+        }
+        return alphabet;
+    }
+
+    private static GF2Matrix randomMatrix(int numRows, int numCols) {
+        GF2Matrix m = new GF2Matrix(numRows, numCols);
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numCols; c++) {
+                if (random.nextBoolean()) {
+                    m.set(r, c);
+                }
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * TestNBASimulator.java
+ *
+ * Test program for NBASimulator: answers random membership queries u v^ω on random NBAs, and checks them against
+ * a direct search for an accepting lasso: a final state on a cycle of the product of the NBA and the positions of
+ * v, reachable from the states reached on u. NBA.MQ is checked on the same queries written as u$v, and on words
+ * without exactly one $ or with an empty v.
+ *
+ * loopMQ, the membership queries of SUBA.java, is checked against a search of the (state, passed a final state)
+ * pairs reached on one v from every state reached on u.
+ *
+ * Usage: java TestNBASimulator [trials]
+ *   trials : number of random NBAs, 300 by default
+ */
+
+import java.util.*;
+
+public class TestNBASimulator {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+
+        System.out.println("NBASimulator Tests");
+        System.out.println("==================\n");
+
+        boolean mq = true, dollar = true, loop = true;
+        int numAccepted = 0;
+        int numLoopAccepted = 0;
+        int numQueries = 0;
+        for (int t=0; t<trials; t++) {
+            int numStates = 1 + random.nextInt(t < trials / 2 ? 8 : 70);
+            int numLetters = 1 + random.nextInt(3);
+            ArrayList<Integer>[][] transitions = randomTransitions(numStates, numLetters);
+            boolean[] finalStates = new boolean[numStates + 1];
+            for (int q=1; q<=numStates; q++) {
+                finalStates[q] = random.nextInt(4) == 0;
+            }
+            NBASimulator simulator = new NBASimulator(numStates, transitions, finalStates);
+
+            for (int i=0; i<50; i++) {
+                Word u = randomWord(numLetters, random.nextInt(7));
+                Word v = randomWord(numLetters, 1 + random.nextInt(5));
+                int expected = acceptsLasso(numStates, transitions, finalStates, u, v) ? 1 : 0;
+                mq &= simulator.MQ(u, v) == expected;
+                // u$v, where $ is the letter after the NBA's letters
+                dollar &= NBA.MQ(simulator, numLetters, u.concat(numLetters, v)) == expected;
+                // words without a single $ followed by a nonempty v are rejected
+                dollar &= NBA.MQ(simulator, numLetters, u) == 0 && NBA.MQ(simulator, numLetters, u.concat(numLetters)) == 0
+                        && NBA.MQ(simulator, numLetters, u.concat(numLetters, v).concat(numLetters, v)) == 0;
+                int expectedLoop = acceptsLoop(transitions, finalStates, u, v) ? 1 : 0;
+                loop &= simulator.loopMQ(u, v) == expectedLoop;
+                numLoopAccepted += expectedLoop;
+                numAccepted += expected;
+                numQueries++;
+            }
+        }
+
+        int passed = 0;
+        int failed = 0;
+        System.out.println(numAccepted + " of " + numQueries + " queries accepted, " + numLoopAccepted + " by loopMQ\n");
+        if (check("MQ", mq)) passed++; else failed++;
+        if (check("NBA.MQ of u$v", dollar)) passed++; else failed++;
+        if (check("loopMQ", loop)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    // true iff a final state of the product of the NBA and the positions of v is reachable and lies on a cycle
+    private static boolean acceptsLasso(int numStates, ArrayList<Integer>[][] transitions, boolean[] finalStates, Word u, Word v) {
+        // node (q, i) is q * v.length() + i - v.length() for 1 <= q <= numStates, 0 <= i < v.length()
+        int n = v.length();
+        HashSet<Integer> reached = new HashSet<Integer>();
+        for (int q : readU(transitions, u)) {
+            reached.add(q * n - n);
+        }
+        reached = closure(reached, transitions, v);
+        for (int node : reached) {
+            if (finalStates[node / n + 1] && closure(successors(node, transitions, v), transitions, v).contains(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // true iff some state q reached on u has a path on v from q back to q that passes a final state (q included)
+    private static boolean acceptsLoop(ArrayList<Integer>[][] transitions, boolean[] finalStates, Word u, Word v) {
+        for (int q : readU(transitions, u)) {
+            // pairs q' * 2 + (1 if a final state was passed)
+            HashSet<Integer> current = new HashSet<Integer>();
+            current.add(q * 2 + (finalStates[q] ? 1 : 0));
+            for (int i=0; i<v.length(); i++) {
+                HashSet<Integer> next = new HashSet<Integer>();
+                for (int pair : current) {
+                    for (int p : transitions[pair / 2][v.letterAt(i)]) {
+                        next.add(p * 2 + ((pair % 2 == 1 || finalStates[p]) ? 1 : 0));
+                    }
+                }
+                current = next;
+            }
+            if (current.contains(q * 2 + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the states reachable from q_1 on u
+    private static HashSet<Integer> readU(ArrayList<Integer>[][] transitions, Word u) {
+        HashSet<Integer> current = new HashSet<Integer>();
+        current.add(1);
+        for (int i=0; i<u.length(); i++) {
+            HashSet<Integer> next = new HashSet<Integer>();
+            for (int q : current) {
+                next.addAll(transitions[q][u.letterAt(i)]);
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    // the nodes of the product reachable from nodes (nodes included)
+    private static HashSet<Integer> closure(Collection<Integer> nodes, ArrayList<Integer>[][] transitions, Word v) {
+        HashSet<Integer> out = new HashSet<Integer>(nodes);
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>(nodes);
+        while (!queue.isEmpty()) {
+            for (int next : successors(queue.poll(), transitions, v)) {
+                if (out.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static ArrayList<Integer> successors(int node, ArrayList<Integer>[][] transitions, Word v) {
+        int n = v.length();
+        int q = node / n + 1;
+        int i = node % n;
+        ArrayList<Integer> out = new ArrayList<Integer>();
+        for (int next : transitions[q][v.letterAt(i)]) {
+            out.add(next * n - n + (i + 1) % n);
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Integer>[][] randomTransitions(int numStates, int numLetters) {
+        ArrayList<Integer>[][] transitions = new ArrayList[numStates + 1][numLetters];
+        double density = 1.5 * random.nextDouble() / numStates;
+        for (int q=1; q<=numStates; q++) {
+            for (int a=0; a<numLetters; a++) {
+                transitions[q][a] = new ArrayList<Integer>();
+                for (int p=1; p<=numStates; p++) {
+                    if (random.nextDouble() < density) {
+                        transitions[q][a].add(p);
+                    }
+                }
+            }
+        }
+        return transitions;
+    }
+
+    private static Word randomWord(int numLetters, int len) {
+        int[] letters = new int[len];
+        for (int i=0; i<len; i++) {
+            letters[i] = random.nextInt(numLetters);
+        }
+        return Word.of(letters);
+    }
+}
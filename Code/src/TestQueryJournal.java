@@ -0,0 +1,169 @@
+/*
+ * TestQueryJournal.java
+ *
+ * Test program for QueryJournal: records random MQ's and EQ's in each mode, next to a list of the same queries, and
+ * checks the counts, the queries dropped, and the entries read back: the last n of each kind in RING mode, and all
+ * of them, in order, from the file in FILE mode. The file journal records more distinct words than it has word
+ * slots, so that words are spelled again after their slots are reused.
+ *
+ * The mode is read from -DqueryJournal when a journal is made, so the program sets it before making each journal.
+ *
+ * Usage: java TestQueryJournal [trials]
+ *   trials : number of random journals of each mode, 20 by default
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class TestQueryJournal {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+
+        System.out.println("QueryJournal Tests");
+        System.out.println("==================\n");
+
+        File dir = Files.createTempDirectory("journal").toFile();
+        boolean ring = true, ringDropped = true, file = true, fileDropped = true, off = true, cleared = true;
+        for (int t=0; t<trials; t++) {
+            // the first file journal outgrows the word slots
+            int numQueries = (t == 0) ? 150000 : random.nextInt(3000);
+            ArrayList<Object[]> mqs = new ArrayList<Object[]>();
+            ArrayList<String> eqs = new ArrayList<String>();
+            int ringSize = random.nextInt(50);
+
+            QueryJournal ringJournal = journal("ring:" + ringSize, "ring");
+            QueryJournal fileJournal = journal("file:" + dir, "file" + t);
+            QueryJournal offJournal = journal("off", "off");
+            for (int i=0; i<numQueries; i++) {
+                if (random.nextInt(20) == 0) {
+                    String counterExample = (random.nextInt(4) == 0) ? null : randomWord(t == 0);
+                    eqs.add(counterExample);
+                    ringJournal.eq(counterExample);
+                    fileJournal.eq(counterExample);
+                    offJournal.eq(counterExample);
+                } else {
+                    String w = randomWord(t == 0);
+                    int answer = random.nextInt(2);
+                    boolean cached = random.nextBoolean();
+                    mqs.add(new Object[] {w, answer, cached});
+                    ringJournal.mq(w, answer, cached);
+                    fileJournal.mq(w, answer, cached);
+                    offJournal.mq(w, answer, cached);
+                }
+            }
+
+            ring &= ringJournal.mode() == QueryJournal.Mode.RING && sameCounts(ringJournal, mqs, eqs)
+                    && sameMQs(ringJournal, mqs, Math.max(0, mqs.size() - ringSize))
+                    && sameEQs(ringJournal, eqs, Math.max(0, eqs.size() - ringSize));
+            ringDropped &= ringJournal.numDropped(QueryJournal.MQ) == Math.max(0, mqs.size() - ringSize)
+                    && ringJournal.numDropped(QueryJournal.EQ) == Math.max(0, eqs.size() - ringSize);
+
+            // read twice, the second time after more queries
+            file &= fileJournal.mode() == QueryJournal.Mode.FILE && sameCounts(fileJournal, mqs, eqs)
+                    && sameMQs(fileJournal, mqs, 0) && sameEQs(fileJournal, eqs, 0);
+            fileJournal.mq("extra", 1, false);
+            mqs.add(new Object[] {"extra", 1, false});
+            fileJournal.flush();
+            file &= new File(dir, "file" + t + ".journal").length() > 0 && sameMQs(fileJournal, mqs, 0) && sameEQs(fileJournal, eqs, 0);
+            fileDropped &= fileJournal.numDropped(QueryJournal.MQ) == 0 && fileJournal.numDropped(QueryJournal.EQ) == 0;
+
+            off &= offJournal.mode() == QueryJournal.Mode.OFF && offJournal.numMQs() == mqs.size() - 1
+                    && offJournal.numDropped(QueryJournal.MQ) == mqs.size() - 1 && !offJournal.read(QueryJournal.MQ).hasNext();
+
+            // a cleared journal starts over, and a cleared file journal reopens its file on the next query
+            ringJournal.clear();
+            fileJournal.clear();
+            cleared &= ringJournal.numMQs() == 0 && !ringJournal.read(QueryJournal.MQ).hasNext()
+                    && fileJournal.numMQs() == 0 && !fileJournal.read(QueryJournal.MQ).hasNext();
+            fileJournal.mq("again", 0, true);
+            ArrayList<Object[]> again = new ArrayList<Object[]>();
+            again.add(new Object[] {"again", 0, true});
+            cleared &= sameMQs(fileJournal, again, 0) && sameEQs(fileJournal, new ArrayList<String>(), 0);
+            fileJournal.clear();
+        }
+
+        int passed = 0;
+        int failed = 0;
+        if (check("RING entries", ring)) passed++; else failed++;
+        if (check("RING queries dropped", ringDropped)) passed++; else failed++;
+        if (check("FILE entries", file)) passed++; else failed++;
+        if (check("FILE queries dropped", fileDropped)) passed++; else failed++;
+        if (check("OFF counts", off)) passed++; else failed++;
+        if (check("Cleared", cleared)) passed++; else failed++;
+
+        // an unknown mode is rejected
+        boolean rejected = false;
+        try {
+            journal("tape", "tape");
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        if (check("Invalid mode rejected", rejected)) passed++; else failed++;
+
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static QueryJournal journal(String setting, String name) {
+        System.setProperty("queryJournal", setting);
+        return new QueryJournal(name);
+    }
+
+    private static boolean sameCounts(QueryJournal journal, ArrayList<Object[]> mqs, ArrayList<String> eqs) {
+        return journal.numMQs() == mqs.size() && journal.numEQs() == eqs.size();
+    }
+
+    // the MQ's read back are mqs from index first on, numbered from first + 1
+    private static boolean sameMQs(QueryJournal journal, ArrayList<Object[]> mqs, int first) throws IOException {
+        boolean same = true;
+        int i = first;
+        try (QueryJournal.Reader reader = journal.read(QueryJournal.MQ)) {
+            while (reader.hasNext()) {
+                QueryJournal.Entry e = reader.next();
+                same &= i < mqs.size() && e.kind == QueryJournal.MQ && e.call == i + 1 && e.word.equals(mqs.get(i)[0])
+                        && e.answer == (int) mqs.get(i)[1] && e.cached == (boolean) mqs.get(i)[2];
+                i++;
+            }
+        }
+        return same && i == mqs.size();
+    }
+
+    private static boolean sameEQs(QueryJournal journal, ArrayList<String> eqs, int first) throws IOException {
+        boolean same = true;
+        int i = first;
+        try (QueryJournal.Reader reader = journal.read(QueryJournal.EQ)) {
+            while (reader.hasNext()) {
+                QueryJournal.Entry e = reader.next();
+                same &= i < eqs.size() && e.kind == QueryJournal.EQ && e.call == i + 1 && Objects.equals(e.word, eqs.get(i));
+                i++;
+            }
+        }
+        return same && i == eqs.size();
+    }
+
+    // a word over a few letters, mostly repeated unless many are needed
+    private static String randomWord(boolean many) {
+        int len = random.nextInt(many ? 28 : 6);
+        StringBuilder w = new StringBuilder();
+        for (int i=0; i<len; i++) {
+            w.append((char) ('a' + random.nextInt(3)));
+        }
+        return w.toString();
+    }
+}
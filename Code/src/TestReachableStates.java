@@ -0,0 +1,95 @@
+/*
+ * TestReachableStates.java
+ *
+ * Test program for ReachableStates under a small heap: counts the reachable states of mod-2-MAs
+ * whose counts are known, with the default heap budget and with a budget small enough that the
+ * visited vectors and the frontier are written to temporary files.
+ *
+ * The first letter is the companion matrix C of the primitive polynomial x^n + x + 1, whose powers
+ * take (1,0,...,0) to every nonzero vector, and the second a random invertible matrix, which
+ * keeps them nonzero, so exactly the 2^n - 1 nonzero vectors are reachable. The second letter
+ * makes the levels of the search as wide as those of a random mod-2-MA, a few dozen levels deep.
+ *
+ * Usage: java -Xmx64m TestReachableStates [n]
+ *   n : the dimension, 22 by default (4194303 states); x^n + x + 1 must be primitive, e.g. n = 7, 15 or 22
+ */
+
+import java.util.*;
+
+public class TestReachableStates {
+
+    public static void main(String[] args) throws Exception {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 22;
+        long maxHeap = Runtime.getRuntime().maxMemory();
+
+        System.out.println("ReachableStates Tests");
+        System.out.println("=====================\n");
+        System.out.println("Dimension: " + n + ", maximum heap: " + (maxHeap >> 20) + " MB\n");
+
+        GF2Matrix[] letters = { companion(n), randomInvertible(n, new Random(1)) };
+        GF2Matrix[] withZero = { letters[0], letters[1], new GF2Matrix(n, n) };
+        int nonzero = (1 << n) - 1;
+
+        int passed = 0;
+        int failed = 0;
+
+        // Test 1: every nonzero vector, within the default heap budget
+        if (check("All nonzero vectors, default budget", count(letters, Integer.MAX_VALUE, -1), nonzero)) passed++; else failed++;
+
+        // Test 2: the same with a 1 MB budget, so that the shards write runs and merge them
+        if (check("All nonzero vectors, 1 MB budget", count(letters, Integer.MAX_VALUE, 1 << 20), nonzero)) passed++; else failed++;
+
+        // Test 3: a letter for the zero matrix adds the zero vector, which a run keeps apart
+        if (check("With the zero vector, 1 MB budget", count(withZero, Integer.MAX_VALUE, 1 << 20), nonzero + 1)) passed++; else failed++;
+
+        // Test 4: the search stops at the cap
+        if (check("Capped at 100000, 1 MB budget", count(letters, 100000, 1 << 20), Math.min(100000, nonzero))) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    // counts the vectors reachable from (1,0,...,0) with the given heap budget (-1 for the default)
+    private static int count(GF2Matrix[] transitionMatrices, int cap, long heapBudget) throws Exception {
+        long[] initialVector = new long[GF2Matrix.words(transitionMatrices[0].getRowDimension())];
+        GF2Matrix.setBit(initialVector, 0);
+        if (heapBudget == -1) {
+            return ReachableStates.count(transitionMatrices, initialVector, cap);
+        }
+        return ReachableStates.count(transitionMatrices, initialVector, cap, heapBudget);
+    }
+
+    private static boolean check(String name, int actual, int expected) {
+        boolean correct = (actual == expected);
+        System.out.println("  " + name + ": " + actual + " (expected: " + expected + ") " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    // the companion matrix of x^n + x + 1
+    private static GF2Matrix companion(int n) {
+        GF2Matrix c = new GF2Matrix(n, n);
+        for (int i = 0; i < n - 1; i++) {
+            c.set(i, i + 1);
+        }
+        c.set(n - 1, 0);
+        c.set(n - 1, 1);
+        return c;
+    }
+
+    // L * U for random lower and upper unitriangular matrices L and U
+    private static GF2Matrix randomInvertible(int n, Random random) {
+        GF2Matrix lower = new GF2Matrix(n, n);
+        GF2Matrix upper = new GF2Matrix(n, n);
+        for (int i = 0; i < n; i++) {
+            lower.set(i, i);
+            upper.set(i, i);
+            for (int j = 0; j < i; j++) {
+                if (random.nextBoolean()) lower.set(i, j);
+                if (random.nextBoolean()) upper.set(j, i);
+            }
+        }
+        return lower.multiply(upper);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * TestSolver.java
+ *
+ * Test program for solver.java: reduces random square matrices over GF(2), some of them made singular, and checks
+ * the rank against a plain elimination on int arrays, the inverse against the identity, and the solutions of
+ * A × X = B, X × A = B and A × x = b against the products they must give.
+ *
+ * Matrices of dimension at least GF2Matrix.M4RI_THRESHOLD (256 by default) are reduced with M4RI and the others by
+ * Gauss-Jordan elimination one column at a time; run with -Dm4riThreshold=1 to reduce every matrix with M4RI.
+ *
+ * Usage: java [-Dm4riThreshold=n] TestSolver [trials]
+ *   trials : number of random matrices of each dimension, 50 by default
+ */
+
+import java.util.*;
+
+public class TestSolver {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+
+        System.out.println("solver Tests");
+        System.out.println("============\n");
+        System.out.println("M4RI threshold: " + GF2Matrix.M4RI_THRESHOLD + "\n");
+
+        int passed = 0;
+        int failed = 0;
+
+        // dimensions that straddle the 64-bit words of a packed row and the M4RI groups, and one above the default threshold
+        int[] dims = { 1, 2, 5, 8, 9, 63, 64, 65, 130, 300 };
+        for (int n : dims) {
+            int numTrials = (n >= 256) ? Math.max(1, trials / 10) : trials;
+            boolean rank = true, inverse = true, solve = true, solveLeft = true, solveVector = true, unchanged = true;
+            int numSingular = 0;
+            for (int t=0; t<numTrials; t++) {
+                GF2Matrix a = randomMatrix(n, n);
+                if (t % 3 == 0 && n > 1) {
+                    // a repeated row makes a singular matrix
+                    a.setRow(random.nextInt(n), a.getRow(random.nextInt(n)).clone());
+                }
+                GF2Matrix copy = a.copy();
+
+                solver s = new solver(a);
+                unchanged &= a.equals(copy);
+                int expectedRank = naiveRank(a);
+                rank &= s.getRank() == expectedRank;
+                rank &= s.isNonSingular() == (expectedRank == n);
+                if (!s.isNonSingular()) {
+                    numSingular++;
+                    inverse &= s.getInverse() == null && s.solve(randomMatrix(n, 3)) == null;
+                    continue;
+                }
+
+                GF2Matrix inv = s.getInverse();
+                inverse &= naiveMultiply(a, inv).equals(GF2Matrix.identity(n)) && naiveMultiply(inv, a).equals(GF2Matrix.identity(n));
+
+                GF2Matrix b = randomMatrix(n, 1 + random.nextInt(70));
+                solve &= naiveMultiply(a, s.solve(b)).equals(b);
+
+                GF2Matrix c = randomMatrix(1 + random.nextInt(70), n);
+                solveLeft &= naiveMultiply(s.solveLeft(c), a).equals(c);
+
+                GF2Matrix column = randomMatrix(n, 1);
+                long[] bVector = column.transpose().getRow(0);
+                long[] x = s.solve(bVector);
+                long[] ax = new long[GF2Matrix.words(n)];
+                a.timesVector(x, ax);
+                solveVector &= Arrays.equals(ax, bVector);
+            }
+            String name = n + "x" + n + " (" + numSingular + " of " + numTrials + " singular)";
+            if (check(name + " rank", rank)) passed++; else failed++;
+            if (check(name + " inverse", inverse)) passed++; else failed++;
+            if (check(name + " solve", solve)) passed++; else failed++;
+            if (check(name + " solveLeft", solveLeft)) passed++; else failed++;
+            if (check(name + " solve of a vector", solveVector)) passed++; else failed++;
+            if (check(name + " input unchanged", unchanged)) passed++; else failed++;
+        }
+
+        // the zero and identity matrices
+        boolean special = new solver(new GF2Matrix(70, 70)).getRank() == 0
+                && new solver(GF2Matrix.identity(70)).getInverse().equals(GF2Matrix.identity(70));
+        if (check("Zero and identity matrices", special)) passed++; else failed++;
+
+        // non-square matrices are rejected
+        boolean rejected = false;
+        try {
+            new solver(new GF2Matrix(3, 4));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        if (check("Non-square matrix rejected", rejected)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static GF2Matrix randomMatrix(int numRows, int numCols) {
+        GF2Matrix m = new GF2Matrix(numRows, numCols);
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numCols; c++) {
+                if (random.nextBoolean()) {
+                    m.set(r, c);
+                }
+            }
+        }
+        return m;
+    }
+
+    // the product entry by entry
+    private static GF2Matrix naiveMultiply(GF2Matrix a, GF2Matrix b) {
+        GF2Matrix out = new GF2Matrix(a.getRowDimension(), b.getColumnDimension());
+        for (int r=0; r<a.getRowDimension(); r++) {
+            for (int c=0; c<b.getColumnDimension(); c++) {
+                int sum = 0;
+                for (int k=0; k<a.getColumnDimension(); k++) {
+                    sum ^= a.get(r, k) & b.get(k, c);
+                }
+                if (sum == 1) {
+                    out.set(r, c);
+                }
+            }
+        }
+        return out;
+    }
+
+    // the rank by elimination on an int array
+    private static int naiveRank(GF2Matrix a) {
+        int numRows = a.getRowDimension();
+        int numCols = a.getColumnDimension();
+        int[][] m = new int[numRows][numCols];
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numCols; c++) {
+                m[r][c] = a.get(r, c);
+            }
+        }
+
+        int rank = 0;
+        for (int c=0; c<numCols && rank<numRows; c++) {
+            int pivot = rank;
+            while (pivot < numRows && m[pivot][c] == 0) {
+                pivot++;
+            }
+            if (pivot == numRows) {
+                continue;
+            }
+            int[] tmp = m[pivot];
+            m[pivot] = m[rank];
+            m[rank] = tmp;
+            for (int r=0; r<numRows; r++) {
+                if (r != rank && m[r][c] == 1) {
+                    for (int k=c; k<numCols; k++) {
+                        m[r][k] ^= m[rank][k];
+                    }
+                }
+            }
+            rank++;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * TestSparseGF2Matrix.java
+ *
+ * Test program for SparseGF2Matrix: builds random sparse matrices (with repeated 1's) next to the dense GF2Matrix
+ * with the same 1's, and checks that the entries, the vector products, the product with a dense matrix, the
+ * direct sum and the shortest distinguishing word agree with the dense ones.
+ *
+ * Usage: java TestSparseGF2Matrix [trials]
+ *   trials : number of random matrices of each shape, 200 by default
+ */
+
+import java.util.*;
+
+public class TestSparseGF2Matrix {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+
+        System.out.println("SparseGF2Matrix Tests");
+        System.out.println("=====================\n");
+
+        int passed = 0;
+        int failed = 0;
+
+        // shapes that straddle the 64-bit words of a packed row
+        int[][] shapes = { {1, 1}, {3, 5}, {64, 64}, {65, 70}, {130, 40}, {40, 130} };
+        for (int[] shape : shapes) {
+            int numRows = shape[0];
+            int numCols = shape[1];
+            boolean entries = true, products = true, multiply = true, directSum = true;
+            for (int t=0; t<trials; t++) {
+                SparseGF2Matrix.Builder builder = new SparseGF2Matrix.Builder(numRows, numCols);
+                GF2Matrix dense = new GF2Matrix(numRows, numCols);
+                int numAdded = random.nextInt(2 * (numRows + numCols));
+                for (int i=0; i<numAdded; i++) {
+                    int row = random.nextInt(numRows);
+                    int col = random.nextInt(numCols);
+                    builder.add(row, col);
+                    dense.set(row, col);
+                    if (random.nextInt(4) == 0) {
+                        builder.add(row, col);
+                    }
+                }
+                SparseGF2Matrix sparse = builder.build();
+
+                entries &= sparse.toDense().equals(dense) && sparse.cardinality() == dense.cardinality();
+                for (int r=0; r<numRows; r++) {
+                    for (int c=0; c<numCols; c++) {
+                        entries &= sparse.get(r, c) == dense.get(r, c);
+                    }
+                }
+
+                long[] v = randomVector(numRows);
+                long[] w = randomVector(numCols);
+                // the sparse products must clear out, which starts with every bit set
+                long[] sparseOut = new long[GF2Matrix.words(numCols)];
+                long[] denseOut = new long[sparseOut.length];
+                Arrays.fill(sparseOut, -1L);
+                sparse.vectorTimes(v, sparseOut);
+                dense.vectorTimes(v, denseOut);
+                products &= Arrays.equals(sparseOut, denseOut);
+                sparseOut = new long[GF2Matrix.words(numRows)];
+                denseOut = new long[sparseOut.length];
+                Arrays.fill(sparseOut, -1L);
+                sparse.timesVector(w, sparseOut);
+                dense.timesVector(w, denseOut);
+                products &= Arrays.equals(sparseOut, denseOut);
+
+                GF2Matrix other = randomMatrix(numCols, 1 + random.nextInt(80));
+                multiply &= sparse.multiply(other).equals(dense.multiply(other));
+
+                GF2Matrix block = randomMatrix(1 + random.nextInt(70), 1 + random.nextInt(70));
+                directSum &= sparse.directSum(block).toDense().equals(GF2Matrix.directSum(dense, block));
+            }
+            String name = numRows + "x" + numCols;
+            if (check(name + " entries and toDense", entries)) passed++; else failed++;
+            if (check(name + " vectorTimes and timesVector", products)) passed++; else failed++;
+            if (check(name + " multiply", multiply)) passed++; else failed++;
+            if (check(name + " directSum", directSum)) passed++; else failed++;
+        }
+
+        // the exact equivalence check finds the same shortest distinguishing word for a sparse and a dense target
+        boolean words = true;
+        for (int t=0; t<trials; t++) {
+            int dimA = 1 + random.nextInt(30);
+            int dimB = 1 + random.nextInt(30);
+            GF2Matrix finalA = randomMatrix(1, dimA);
+            GF2Matrix finalB = randomMatrix(1, dimB);
+            GF2LinearMap[] sparseA = new GF2LinearMap[2];
+            GF2Matrix[] denseA = new GF2Matrix[2];
+            GF2Matrix[] denseB = new GF2Matrix[2];
+            for (int letter=0; letter<2; letter++) {
+                SparseGF2Matrix.Builder builder = new SparseGF2Matrix.Builder(dimA, dimA);
+                denseA[letter] = new GF2Matrix(dimA, dimA);
+                for (int i=0; i<2*dimA; i++) {
+                    int row = random.nextInt(dimA);
+                    int col = random.nextInt(dimA);
+                    builder.add(row, col);
+                    denseA[letter].set(row, col);
+                }
+                sparseA[letter] = builder.build();
+                denseB[letter] = randomMatrix(dimB, dimB);
+            }
+            Word fromSparse = M2MA.distinguishingWord(finalA, sparseA, finalB, denseB);
+            Word fromDense = M2MA.distinguishingWord(finalA, denseA, finalB, denseB);
+            words &= Objects.equals(fromSparse, fromDense);
+        }
+        if (check("Distinguishing words of sparse and dense targets", words)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    private static long[] randomVector(int n) {
+        long[] v = new long[GF2Matrix.words(n)];
+        for (int i=0; i<n; i++) {
+            if (random.nextBoolean()) {
+                GF2Matrix.setBit(v, i);
+            }
+        }
+        return v;
+    }
+
+    private static GF2Matrix randomMatrix(int numRows, int numCols) {
+        GF2Matrix m = new GF2Matrix(numRows, numCols);
+        for (int r=0; r<numRows; r++) {
+            m.setRow(r, randomVector(numCols));
+        }
+        return m;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * TestWordTrie.java
+ *
+ * Test program for WordTrie: builds forward and reversed tries over random words, and checks the values and state
+ * vectors of a batch against M2MAEvaluator word by word, the ids of repeated words, and that firstMismatch returns
+ * the lexicographically smallest labelled word whose value differs from its label, for a given order of the letters.
+ *
+ * Tries of at least WordTrie.PARALLEL_THRESHOLD nodes are searched for their first mismatch in parallel; run with
+ * -DtrieParallelThreshold=1 (and -Djava.util.concurrent.ForkJoinPool.common.parallelism=4 on a single core) to
+ * search every trie in parallel.
+ *
+ * Usage: java [-DtrieParallelThreshold=n] TestWordTrie [trials]
+ *   trials : number of random tries, 200 by default
+ */
+
+import java.util.*;
+
+public class TestWordTrie {
+
+    private static final Random random = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+
+        System.out.println("WordTrie Tests");
+        System.out.println("==============\n");
+        System.out.println("Parallel threshold: " + WordTrie.PARALLEL_THRESHOLD + " nodes\n");
+
+        boolean values = true, reversedValues = true, states = true, reversedStates = true, ids = true, mismatch = true, noMismatch = true;
+        for (int t=0; t<trials; t++) {
+            int numLetters = 1 + random.nextInt(4);
+            int dim = 1 + random.nextInt(70);
+            GF2Matrix finalVector = randomMatrix(1, dim);
+            GF2Matrix[] transitionMatrices = new GF2Matrix[numLetters];
+            for (int i=0; i<numLetters; i++) {
+                transitionMatrices[i] = randomMatrix(dim, dim);
+            }
+            M2MAEvaluator evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
+
+            WordTrie trie = new WordTrie(numLetters);
+            WordTrie reversed = new WordTrie(numLetters, true);
+            ArrayList<Word> words = new ArrayList<Word>();
+            int numWords = 1 + random.nextInt(300);
+            for (int i=0; i<numWords; i++) {
+                Word w = randomWord(numLetters, random.nextInt(9));
+                int id = trie.add(w);
+                reversed.add(w);
+                if (id == words.size()) {
+                    words.add(w);
+                } else {
+                    // a repeated word keeps its id
+                    ids &= words.get(id).equals(w);
+                }
+            }
+            ids &= trie.size() == words.size() && reversed.size() == words.size();
+            for (int i=0; i<words.size(); i++) {
+                ids &= trie.indexOf(words.get(i)) == i && trie.get(i).equals(words.get(i));
+            }
+            ids &= trie.indexOf(randomWord(numLetters, 12)) == -1;
+
+            int[] forwardValues = trie.evaluateAll(evaluator);
+            int[] backwardValues = reversed.evaluateAll(evaluator);
+            long[][] forwardStates = trie.states(evaluator);
+            long[][] backwardStates = reversed.states(evaluator);
+            for (int i=0; i<words.size(); i++) {
+                Word w = words.get(i);
+                int expected = evaluator.evaluate(w);
+                values &= forwardValues[i] == expected;
+                reversedValues &= backwardValues[reversed.indexOf(w)] == expected;
+
+                // the state of a word is (1,0,...,0) * μ(w), and the value of uw is the state of u times the co-state of w
+                long[] state = new long[GF2Matrix.words(dim)];
+                evaluator.initialState(state);
+                for (int j=0; j<w.length(); j++) {
+                    long[] next = new long[state.length];
+                    evaluator.step(state, w.letterAt(j), next);
+                    state = next;
+                }
+                states &= Arrays.equals(forwardStates[i], state);
+                Word u = words.get(random.nextInt(words.size()));
+                int uw = evaluator.evaluate(u.concat(w));
+                reversedStates &= GF2Matrix.dot(forwardStates[trie.indexOf(u)], backwardStates[reversed.indexOf(w)]) == uw;
+            }
+
+            // label every word with its value, flip a few, and search in a random order of the letters
+            WordTrie labelled = new WordTrie(numLetters);
+            int[] order = randomOrder(numLetters);
+            Word expectedMismatch = null;
+            for (Word w : words) {
+                int label = evaluator.evaluate(w);
+                if (random.nextInt(20) == 0) {
+                    label ^= 1;
+                    if (expectedMismatch == null || compare(w, expectedMismatch, order) < 0) {
+                        expectedMismatch = w;
+                    }
+                }
+                labelled.add(w, label);
+            }
+            int found = labelled.firstMismatch(evaluator, order);
+            if (expectedMismatch == null) {
+                noMismatch &= found == -1;
+            } else {
+                mismatch &= found != -1 && labelled.get(found).equals(expectedMismatch);
+            }
+        }
+
+        int passed = 0;
+        int failed = 0;
+        if (check("evaluateAll, forward", values)) passed++; else failed++;
+        if (check("evaluateAll, reversed", reversedValues)) passed++; else failed++;
+        if (check("States, forward", states)) passed++; else failed++;
+        if (check("Co-states, reversed", reversedStates)) passed++; else failed++;
+        if (check("Ids of repeated and missing words", ids)) passed++; else failed++;
+        if (check("First mismatch in a random letter order", mismatch)) passed++; else failed++;
+        if (check("No mismatch", noMismatch)) passed++; else failed++;
+
+        // a label of -1 keeps the label of a repeated word, any other replaces it
+        WordTrie trie = new WordTrie(2);
+        int id = trie.add(Word.of(0, 1), 1);
+        boolean labels = trie.add(Word.of(0, 1)) == id && trie.label(id) == 1 && trie.add(Word.of(0, 1), 0) == id && trie.label(id) == 0;
+        if (check("Labels of repeated words", labels)) passed++; else failed++;
+
+        // the letters sorted by their strings
+        boolean alphabetOrder = Arrays.equals(WordTrie.alphabetOrder(new String[] {"b", "c", "a", "ab"}), new int[] {2, 3, 0, 1});
+        if (check("alphabetOrder", alphabetOrder)) passed++; else failed++;
+
+        // a reversed trie has no lexicographic order
+        boolean rejected = false;
+        try {
+            new WordTrie(2, true).firstMismatch(new M2MAEvaluator(randomMatrix(1, 1), new GF2Matrix[] {randomMatrix(1, 1), randomMatrix(1, 1)}), null);
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        if (check("firstMismatch of a reversed trie rejected", rejected)) passed++; else failed++;
+
+        System.out.println("\nPassed: " + passed + ", failed: " + failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, boolean correct) {
+        System.out.println("  " + name + ": " + (correct ? "✓" : "✗"));
+        return correct;
+    }
+
+    // compares u and w lexicographically, where order lists the letters from smallest to largest and a prefix comes first
+    private static int compare(Word u, Word w, int[] order) {
+        int[] rank = new int[order.length];
+        for (int i=0; i<order.length; i++) {
+            rank[order[i]] = i;
+        }
+        for (int i=0; i<Math.min(u.length(), w.length()); i++) {
+            if (u.letterAt(i) != w.letterAt(i)) {
+                return rank[u.letterAt(i)] - rank[w.letterAt(i)];
+            }
+        }
+        return u.length() - w.length();
+    }
+
+    private static int[] randomOrder(int numLetters) {
+        List<Integer> letters = new ArrayList<Integer>();
+        for (int i=0; i<numLetters; i++) {
+            letters.add(i);
+        }
+        Collections.shuffle(letters, random);
+        int[] order = new int[numLetters];
+        for (int i=0; i<numLetters; i++) {
+            order[i] = letters.get(i);
+        }
+        return order;
+    }
+
+    private static Word randomWord(int numLetters, int len) {
+        int[] letters = new int[len];
+        for (int i=0; i<len; i++) {
+            letters[i] = random.nextInt(numLetters);
+        }
+        return Word.of(letters);
+    }
+
+    private static GF2Matrix randomMatrix(int numRows, int numCols) {
+        GF2Matrix m = new GF2Matrix(numRows, numCols);
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numCols; c++) {
+                if (random.nextBoolean()) {
+                    m.set(r, c);
+                }
+            }
+        }
+        return m;
+    }
+}
@@ -49,9 +49,9 @@ public class VerifyEquivalence {
             testQueries(M2MA.resultFinalVector, M2MA.resultTransitionMatrices);
         }
         
-        // Test on random words
-        System.out.println("\nTesting on random words (1000 words, max length 15)...");
-        testRandomWords(M2MA.resultFinalVector, M2MA.resultTransitionMatrices, 1000, 15);
+        // Test on all words
+        System.out.println("\nTesting equivalence on all words...");
+        testExact(M2MA.resultFinalVector, M2MA.resultTransitionMatrices);
         
         System.out.println("\nVerification completed!");
     }
@@ -59,8 +59,9 @@ public class VerifyEquivalence {
     /**
      * Test on collected queries.
      */
-    public static void testQueries(HashMap<Integer, ArrayList<Integer>> finalVector,
-                                   HashMap<Integer, ArrayList<Integer>>[] transitionMatrices) throws Exception {
+    public static void testQueries(GF2Matrix finalVector,
+                                   GF2Matrix[] transitionMatrices) throws Exception {
+        M2MAEvaluator evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
         int correct = 0;
         int wrong = 0;
         List<String> mismatches = new ArrayList<>();
@@ -68,7 +69,7 @@ public class VerifyEquivalence {
         for (Map.Entry<String, Integer> entry : CharacteristicSetGeneratingOracle.allQueries.entrySet()) {
             String word = entry.getKey();
             int dfaAnswer = CharacteristicSetGeneratingOracle.MQ(word);
-            int m2maAnswer = M2MA.MQArbitrary(finalVector, transitionMatrices, word);
+            int m2maAnswer = evaluator.evaluate(word);
             
             if (dfaAnswer == m2maAnswer) {
                 correct++;
@@ -87,55 +88,32 @@ public class VerifyEquivalence {
             System.out.println("  First " + Math.min(mismatches.size(), 10) + " mismatches:");
             for (String word : mismatches) {
                 int dfaAnswer = CharacteristicSetGeneratingOracle.MQ(word);
-                int m2maAnswer = M2MA.MQArbitrary(finalVector, transitionMatrices, word);
+                int m2maAnswer = evaluator.evaluate(word);
                 System.out.println("    \"" + word + "\": DFA=" + dfaAnswer + ", M2MA=" + m2maAnswer);
             }
         }
     }
     
     /**
-     * Test on random words.
+     * Exact test: compares the learned M2MA with the DFA, read as a mod-2-MA, on every word
+     * (see M2MA.distinguishingWord).
      */
-    public static void testRandomWords(HashMap<Integer, ArrayList<Integer>> finalVector,
-                                      HashMap<Integer, ArrayList<Integer>>[] transitionMatrices,
-                                      int numTests, int maxLen) throws Exception {
-        int correct = 0;
-        int wrong = 0;
-        List<String> mismatches = new ArrayList<>();
-        
-        for (int i = 0; i < numTests; i++) {
-            String test = M2MA.genTest((int) (Math.random() * (maxLen + 1)), false);
-            int dfaAnswer = CharacteristicSetGeneratingOracle.MQ(test);
-            int m2maAnswer = M2MA.MQArbitrary(finalVector, transitionMatrices, test);
-            
-            if (dfaAnswer == m2maAnswer) {
-                correct++;
-            } else {
-                wrong++;
-                if (mismatches.size() < 10) {
-                    mismatches.add(test);
-                }
-            }
-        }
+    public static void testExact(GF2Matrix finalVector,
+                                 GF2Matrix[] transitionMatrices) throws Exception {
+        Word distinguishingWord = M2MA.distinguishingWord(
+            CharacteristicSetGeneratingOracle.getFinalVector(),
+            CharacteristicSetGeneratingOracle.getTransitionMatrices(),
+            finalVector, transitionMatrices);
         
-        System.out.println("  Correct: " + correct + "/" + (correct + wrong));
-        System.out.println("  Wrong: " + wrong);
-        System.out.println("  Success rate: " + String.format("%.2f", 100.0 * correct / (correct + wrong)) + "%");
-        
-        if (wrong > 0 && mismatches.size() > 0) {
-            System.out.println("  First " + Math.min(mismatches.size(), 10) + " mismatches:");
-            for (String word : mismatches) {
-                int dfaAnswer = CharacteristicSetGeneratingOracle.MQ(word);
-                int m2maAnswer = M2MA.MQArbitrary(finalVector, transitionMatrices, word);
-                System.out.println("    \"" + word + "\": DFA=" + dfaAnswer + ", M2MA=" + m2maAnswer);
-            }
-        }
-        
-        if (wrong == 0) {
+        if (distinguishingWord == null) {
             System.out.println("\n  ✓ Perfect equivalence!");
         } else {
-            System.out.println("\n  ✗ " + wrong + " mismatches found");
+            M2MAEvaluator evaluator = new M2MAEvaluator(finalVector, transitionMatrices);
+            int dfaAnswer = CharacteristicSetGeneratingOracle.MQ(distinguishingWord);
+            int m2maAnswer = evaluator.evaluate(distinguishingWord);
+            System.out.println("  Shortest mismatch:");
+            System.out.println("    \"" + distinguishingWord + "\": DFA=" + dfaAnswer + ", M2MA=" + m2maAnswer);
+            System.out.println("\n  ✗ Not equivalent");
         }
     }
 }
-
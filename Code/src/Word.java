@@ -0,0 +1,224 @@
+/*
+ * Word.java
+ *
+ * An immutable word over the alphabet of M2MA, stored as the array of its letter indices.
+ *
+ * The learner, the Hankel cache, the oracles and the evaluators pass words around in this form, so that
+ * concatenating two words is a single array copy and hashing a word never touches a String. Words are
+ * only converted from and to space-separated strings (e.g. "a b0 b0") when they are read or displayed.
+ *
+ * Words compare lexicographically by letter index, a proper prefix coming before its extensions.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public final class Word implements Comparable<Word> {
+
+	public static final Word EMPTY = new Word(new int[0]);
+
+	// letter indices, never modified after construction
+	final int[] letters;
+	private final int hash;
+
+	private Word(int[] letters) {
+		this.letters = letters;
+		this.hash = Arrays.hashCode(letters);
+	}
+
+	// returns the word with the given letter indices
+	public static Word of(int... letters) {
+		if (letters.length == 0) {
+			return EMPTY;
+		}
+		return new Word(letters.clone());
+	}
+
+	// returns the word with the given letter indices without copying them, letters must not be modified afterwards
+	static Word wrap(int[] letters) {
+		if (letters.length == 0) {
+			return EMPTY;
+		}
+		return new Word(letters);
+	}
+
+	// returns the one-letter word
+	public static Word letter(int letter) {
+		return new Word(new int[] {letter});
+	}
+
+	// parses a space-separated word over the alphabet of M2MA
+	public static Word parse(String word) {
+		return parse(word, M2MA.letterToIndex);
+	}
+
+	// parses a space-separated word, using letterToIndex to map letters to indices
+	public static Word parse(String word, Map<String, Integer> letterToIndex) {
+		Word out = tryParse(word, letterToIndex);
+		if (out == null) {
+			throw new IllegalArgumentException("Word not over the alphabet: \"" + word + "\"");
+		}
+		return out;
+	}
+
+	// parses a space-separated word, returning null if it contains a letter not in letterToIndex
+	public static Word tryParse(String word, Map<String, Integer> letterToIndex) {
+		if (word.length() == 0) {
+			return EMPTY;
+		}
+
+		String[] wordArr = word.split(" ");
+		int[] letters = new int[wordArr.length];
+		for (int i=0; i<wordArr.length; i++) {
+			Integer index = letterToIndex.get(wordArr[i]);
+			if (index == null) {
+				return null;
+			}
+			letters[i] = index;
+		}
+		return new Word(letters);
+	}
+
+	public int length() {
+		return letters.length;
+	}
+
+	public boolean isEmpty() {
+		return letters.length == 0;
+	}
+
+	public int letterAt(int i) {
+		return letters[i];
+	}
+
+	// returns this+suffix
+	public Word concat(Word suffix) {
+		if (suffix.letters.length == 0) {
+			return this;
+		}
+		if (letters.length == 0) {
+			return suffix;
+		}
+
+		int[] out = Arrays.copyOf(letters, letters.length + suffix.letters.length);
+		System.arraycopy(suffix.letters, 0, out, letters.length, suffix.letters.length);
+		return new Word(out);
+	}
+
+	// returns this+letter
+	public Word concat(int letter) {
+		int[] out = Arrays.copyOf(letters, letters.length + 1);
+		out[letters.length] = letter;
+		return new Word(out);
+	}
+
+	// returns this+letter+suffix
+	public Word concat(int letter, Word suffix) {
+		int[] out = Arrays.copyOf(letters, letters.length + 1 + suffix.letters.length);
+		out[letters.length] = letter;
+		System.arraycopy(suffix.letters, 0, out, letters.length + 1, suffix.letters.length);
+		return new Word(out);
+	}
+
+	// returns letter+this
+	public Word prepend(int letter) {
+		int[] out = new int[letters.length + 1];
+		out[0] = letter;
+		System.arraycopy(letters, 0, out, 1, letters.length);
+		return new Word(out);
+	}
+
+	// returns the first len letters of this word
+	public Word prefix(int len) {
+		return subword(0, len);
+	}
+
+	// returns the letters from, ..., to-1 of this word
+	public Word subword(int from, int to) {
+		if (from == 0 && to == letters.length) {
+			return this;
+		}
+		if (from == to) {
+			return EMPTY;
+		}
+		return new Word(Arrays.copyOfRange(letters, from, to));
+	}
+
+	// returns the index of the first occurrence of letter, or -1 if it doesn't occur
+	public int indexOf(int letter) {
+		for (int i=0; i<letters.length; i++) {
+			if (letters[i] == letter) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// writes the length of the word followed by its letter indices
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(letters.length);
+		for (int letter : letters) {
+			out.writeInt(letter);
+		}
+	}
+
+	// reads a word written by writeTo
+	public static Word readFrom(DataInput in) throws IOException {
+		int[] letters = new int[in.readInt()];
+		for (int i=0; i<letters.length; i++) {
+			letters[i] = in.readInt();
+		}
+		return wrap(letters);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Word)) {
+			return false;
+		}
+		Word other = (Word) o;
+		return hash == other.hash && Arrays.equals(letters, other.letters);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public int compareTo(Word other) {
+		int len = Math.min(letters.length, other.letters.length);
+		for (int i=0; i<len; i++) {
+			if (letters[i] != other.letters[i]) {
+				return Integer.compare(letters[i], other.letters[i]);
+			}
+		}
+		return Integer.compare(letters.length, other.letters.length);
+	}
+
+	// returns the word as a space-separated string over the alphabet of M2MA
+	@Override
+	public String toString() {
+		return toString(M2MA.alphabet, " ");
+	}
+
+	// returns the letters of the word joined by separator
+	public String toString(String[] alphabet, String separator) {
+		if (letters.length == 0) {
+			return "";
+		}
+
+		StringBuilder out = new StringBuilder();
+		out.append(alphabet[letters[0]]);
+		for (int i=1; i<letters.length; i++) {
+			out.append(separator).append(alphabet[letters[i]]);
+		}
+		return out.toString();
+	}
+}
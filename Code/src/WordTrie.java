@@ -0,0 +1,351 @@
+/*
+ * WordTrie.java
+ *
+ * A prefix trie over a batch of words (see Word.java), used to evaluate all of them on a mod-2-MA at once.
+ *
+ * The trie is walked depth-first, keeping the state vector of every node on the current path, so a prefix
+ * shared by many words is multiplied by its transition matrix only once: evaluating the batch costs one
+ * vector-matrix product per trie node instead of one per letter of every word.
+ *
+ * A reversed trie reads its words from the last letter to the first, starting from the final vector, so that
+ * words sharing suffixes (such as the columns of an observation table) share work instead. Its states are the
+ * co-state vectors μ(w) * (final vector)^T, and the value of u+w is (state of u) * (co-state of w).
+ *
+ * Words may be labelled with an expected value. In a forward trie, children are visited in a given letter
+ * order and every node before its children, so the first word whose value differs from its label is the
+ * lexicographically smallest mismatch.
+ *
+ * A large trie is searched for its first mismatch in parallel: it is cut, in the order of the walk, into pieces
+ * that are single nodes or whole subtrees, and the pieces are walked on the common fork-join pool. A piece stops
+ * as soon as an earlier piece is known to have a mismatch, and the mismatch of the first piece that has one is
+ * returned, the same word as a sequential walk returns. The pieces share the evaluator, whose single steps don't
+ * use its scratch vectors.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class WordTrie {
+
+	// smallest trie searched for its first mismatch in parallel, in nodes, set with -DtrieParallelThreshold=n
+	public static final int PARALLEL_THRESHOLD = Integer.getInteger("trieParallelThreshold", 1 << 14);
+	// number of pieces a parallel search cuts the trie into per thread
+	private static final int PIECES_PER_THREAD = 8;
+
+	private final int alphabetSize;
+	private final boolean reversed;
+
+	private int numNodes;
+	// children[node * alphabetSize + letter] is the child of node on letter, or 0 if there is none (0 is the root)
+	private int[] children;
+	// wordAt[node] is the id of the word ending at node, or -1
+	private int[] wordAt;
+	private int maxDepth;
+
+	// words and their labels (-1 if unlabelled), by id
+	private final ArrayList<Word> words = new ArrayList<Word>();
+	private int[] labels = new int[16];
+
+	public WordTrie(int alphabetSize) {
+		this(alphabetSize, false);
+	}
+
+	public WordTrie(int alphabetSize, boolean reversed) {
+		this.alphabetSize = alphabetSize;
+		this.reversed = reversed;
+
+		numNodes = 1;
+		children = new int[16 * Math.max(alphabetSize, 1)];
+		wordAt = new int[16];
+		wordAt[0] = -1;
+	}
+
+	public int size() {
+		return words.size();
+	}
+
+	public int numNodes() {
+		return numNodes;
+	}
+
+	public boolean isReversed() {
+		return reversed;
+	}
+
+	public Word get(int id) {
+		return words.get(id);
+	}
+
+	public int label(int id) {
+		return labels[id];
+	}
+
+	// inserts an unlabelled word, and returns its id
+	public int add(Word word) {
+		return add(word, -1);
+	}
+
+	/*
+	 * Inserts a word with an expected value (or -1), and returns its id.
+	 * A word that is already in the trie keeps its id, and its label is replaced unless label is -1.
+	 */
+	public int add(Word word, int label) {
+		int node = 0;
+		int len = word.length();
+		for (int i=0; i<len; i++) {
+			int letter = word.letterAt(reversed ? len - 1 - i : i);
+			int child = children[node * alphabetSize + letter];
+			if (child == 0) {
+				child = newNode();
+				children[node * alphabetSize + letter] = child;
+			}
+			node = child;
+		}
+		maxDepth = Math.max(maxDepth, len);
+
+		int id = wordAt[node];
+		if (id == -1) {
+			id = words.size();
+			words.add(word);
+			if (id == labels.length) {
+				labels = Arrays.copyOf(labels, 2 * id);
+			}
+			labels[id] = label;
+			wordAt[node] = id;
+		} else if (label != -1) {
+			labels[id] = label;
+		}
+		return id;
+	}
+
+	// returns the id of word, or -1 if it isn't in the trie
+	public int indexOf(Word word) {
+		int node = 0;
+		int len = word.length();
+		for (int i=0; i<len; i++) {
+			int letter = word.letterAt(reversed ? len - 1 - i : i);
+			node = children[node * alphabetSize + letter];
+			if (node == 0) {
+				return -1;
+			}
+		}
+		return wordAt[node];
+	}
+
+	private int newNode() {
+		if (numNodes == wordAt.length) {
+			wordAt = Arrays.copyOf(wordAt, 2 * numNodes);
+			children = Arrays.copyOf(children, 2 * numNodes * Math.max(alphabetSize, 1));
+		}
+		wordAt[numNodes] = -1;
+		return numNodes++;
+	}
+
+	/*
+	 * Returns the state vector reached by every word, by id: (1,0,...,0) * μ(w) in a forward trie,
+	 * and μ(w) * (final vector)^T in a reversed trie.
+	 */
+	public long[][] states(M2MAEvaluator evaluator) {
+		long[][] out = new long[words.size()][];
+		walk(0, rootVector(evaluator), evaluator, null, out, null, false, null, 0);
+		return out;
+	}
+
+	// returns the value of every word, by id
+	public int[] evaluateAll(M2MAEvaluator evaluator) {
+		int[] out = new int[words.size()];
+		walk(0, rootVector(evaluator), evaluator, null, null, out, false, null, 0);
+		return out;
+	}
+
+	/*
+	 * Returns the id of the first labelled word whose value differs from its label, or -1 if there is none.
+	 * Children are visited in the given order of letter indices (null for the order of the indices), so the
+	 * returned word is the lexicographically smallest mismatch with respect to that order.
+	 */
+	public int firstMismatch(M2MAEvaluator evaluator, int[] order) {
+		if (reversed) {
+			throw new IllegalStateException("The words of a reversed trie are not visited in lexicographic order.");
+		}
+		if (numNodes < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() == 1) {
+			return walk(0, rootVector(evaluator), evaluator, order, null, null, true, null, 0);
+		}
+
+		// cut the trie into pieces, in the order of the walk
+		ArrayList<Piece> pieces = new ArrayList<Piece>();
+		pieces.add(new Piece(0, rootVector(evaluator), true));
+		int target = PIECES_PER_THREAD * ForkJoinPool.getCommonPoolParallelism();
+		boolean cut = true;
+		while (pieces.size() < target && cut) {
+			cut = false;
+			ArrayList<Piece> smaller = new ArrayList<Piece>();
+			for (Piece piece : pieces) {
+				if (!piece.subtree || !hasChildren(piece.node)) {
+					smaller.add(piece);
+					continue;
+				}
+
+				// a subtree is its root followed by the subtrees of its children
+				cut = true;
+				smaller.add(new Piece(piece.node, piece.vector, false));
+				for (int i=0; i<alphabetSize; i++) {
+					int letter = (order == null) ? i : order[i];
+					int child = children[piece.node * alphabetSize + letter];
+					if (child != 0) {
+						long[] vector = new long[piece.vector.length];
+						evaluator.step(piece.vector, letter, vector);
+						smaller.add(new Piece(child, vector, true));
+					}
+				}
+			}
+			pieces = smaller;
+		}
+
+		// first is the first piece known to have a mismatch
+		int numPieces = pieces.size();
+		Piece[] toWalk = pieces.toArray(new Piece[0]);
+		int[] mismatches = new int[numPieces];
+		AtomicInteger first = new AtomicInteger(numPieces);
+		IntStream.range(0, numPieces).parallel().forEach(i -> {
+			mismatches[i] = -1;
+			if (i > first.get()) {
+				return;
+			}
+			Piece piece = toWalk[i];
+			if (piece.subtree) {
+				mismatches[i] = walk(piece.node, piece.vector, evaluator, order, null, null, true, first, i);
+			} else {
+				mismatches[i] = visit(piece.node, piece.vector, evaluator, null, null, true);
+			}
+			if (mismatches[i] != -1) {
+				first.accumulateAndGet(i, Math::min);
+			}
+		});
+
+		int i = first.get();
+		return (i == numPieces) ? -1 : mismatches[i];
+	}
+
+	// a node, or the subtree of a node, with the state vector of the node
+	private static final class Piece {
+
+		private final int node;
+		private final long[] vector;
+		private final boolean subtree;
+
+		private Piece(int node, long[] vector, boolean subtree) {
+			this.node = node;
+			this.vector = vector;
+			this.subtree = subtree;
+		}
+	}
+
+	private boolean hasChildren(int node) {
+		for (int letter=0; letter<alphabetSize; letter++) {
+			if (children[node * alphabetSize + letter] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// the state vector of the root, (1,0,...,0) in a forward trie and (final vector)^T in a reversed trie
+	private long[] rootVector(M2MAEvaluator evaluator) {
+		long[] vector = new long[GF2Matrix.words(evaluator.size())];
+		if (reversed) {
+			evaluator.finalCoState(vector);
+		} else {
+			evaluator.initialState(vector);
+		}
+		return vector;
+	}
+
+	// returns the letter indices sorted by their strings, the order of the space-separated spellings of words
+	public static int[] alphabetOrder(String[] alphabet) {
+		Integer[] sorted = new Integer[alphabet.length];
+		for (int i=0; i<alphabet.length; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (a, b) -> alphabet[a].compareTo(alphabet[b]));
+
+		int[] order = new int[alphabet.length];
+		for (int i=0; i<alphabet.length; i++) {
+			order[i] = sorted[i];
+		}
+		return order;
+	}
+
+	/*
+	 * Depth-first walk of the subtree of root, filling in states and/or values, and returning the first mismatch if
+	 * stopAtMismatch. The walk of piece stops (returning -1) once first is below piece, if first isn't null.
+	 */
+	private int walk(int root, long[] rootVector, M2MAEvaluator evaluator, int[] order, long[][] states, int[] values,
+			boolean stopAtMismatch, AtomicInteger first, int piece) {
+		int numWords = rootVector.length;
+
+		// path[d] is the node at depth d on the current path, next[d] the position of its next child to visit,
+		// and vectors[d] its state vector
+		int[] path = new int[maxDepth + 1];
+		int[] next = new int[maxDepth + 1];
+		long[][] vectors = new long[maxDepth + 1][numWords];
+		System.arraycopy(rootVector, 0, vectors[0], 0, numWords);
+		path[0] = root;
+
+		int depth = 0;
+		int mismatch = visit(root, vectors[0], evaluator, states, values, stopAtMismatch);
+		while (mismatch == -1 && depth >= 0) {
+			if (first != null && first.get() < piece) {
+				return -1;
+			}
+			int node = path[depth];
+			if (next[depth] == alphabetSize) {
+				depth--;
+				continue;
+			}
+
+			int letter = (order == null) ? next[depth] : order[next[depth]];
+			next[depth]++;
+			int child = children[node * alphabetSize + letter];
+			if (child == 0) {
+				continue;
+			}
+
+			if (reversed) {
+				evaluator.stepBackward(vectors[depth], letter, vectors[depth + 1]);
+			} else {
+				evaluator.step(vectors[depth], letter, vectors[depth + 1]);
+			}
+			depth++;
+			path[depth] = child;
+			next[depth] = 0;
+
+			mismatch = visit(child, vectors[depth], evaluator, states, values, stopAtMismatch);
+		}
+		return mismatch;
+	}
+
+	// records the state and value of the word ending at node (if any), returning its id if it is a mismatch
+	private int visit(int node, long[] vector, M2MAEvaluator evaluator, long[][] states, int[] values, boolean stopAtMismatch) {
+		int id = wordAt[node];
+		if (id == -1) {
+			return -1;
+		}
+
+		if (states != null) {
+			states[id] = vector.clone();
+		}
+		if (values != null || stopAtMismatch) {
+			int value = reversed ? evaluator.coOutput(vector) : evaluator.output(vector);
+			if (values != null) {
+				values[id] = value;
+			}
+			if (stopAtMismatch && labels[id] != -1 && value != labels[id]) {
+				return id;
+			}
+		}
+		return -1;
+	}
+}
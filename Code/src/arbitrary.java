@@ -8,8 +8,8 @@
 
 import java.io.BufferedReader;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
 
 public class arbitrary {
 	
@@ -21,6 +21,32 @@ public class arbitrary {
 	public static int EQNumTests;
 	public static int EQLimit;
 	public static int EQNumPerformed;
+	
+	// the functions in MQ.java only read their input, so batches of MQ's are answered in parallel
+	public static final MembershipOracle ORACLE = new MembershipOracle() {
+		@Override
+		public int answer(Word word) throws Exception {
+			try {
+				return MQConcurrent(word);
+			} catch (InvalidMQFunctionException e) {
+				M2MA.throwException(null, "Invalid input: invalid membership query function.");
+				return 0;
+			}
+		}
+		
+		@Override
+		public int[] answerBatch(List<Word> words) throws Exception {
+			try {
+				return MembershipOracle.answerInParallel(words, word -> MQConcurrent(word));
+			} catch (InvalidMQFunctionException e) {
+				M2MA.throwException(null, "Invalid input: invalid membership query function.");
+				return null;
+			}
+		}
+	};
+	
+	// generator of the tests of EQstatistical, seeded by the system property "seed" if it is set (e.g. java -Dseed=1)
+	public static SplittableRandom EQRandom = new SplittableRandom(Long.getLong("seed", System.nanoTime()));
 
 	public static void main(String[] args) throws Exception {
 		System.out.println("Program Description:");
@@ -42,9 +68,9 @@ public class arbitrary {
 	}
 	
 	public static void readInput() throws Exception {
-		System.out.println("Input file name and optional flag -v (e.g. arb_input1.txt or arb_input1.txt -v)");
+		System.out.println("Input file name and optional flag -vcr (e.g. arb_input1.txt or arb_input1.txt -v)");
 
-		BufferedReader f = M2MA.getFile(true, false, false, false);
+		BufferedReader f = M2MA.getFile(true, false, false, false, true);
 		
 		// membership query function to call in MQ.java
 		try {
@@ -62,35 +88,77 @@ public class arbitrary {
 		f.close();
 	}
 	
-	// approximate equivalence query using a given number of randomly generated tests of some max length
-	public static boolean EQstatistical(HashMap<Integer, ArrayList<Integer>> hypothesisFinalVector, HashMap<Integer, ArrayList<Integer>>[] hypothesisTransitionMatrices) throws Exception {
-		int numFail = 0;
-		for (int i=0; i<EQNumTests; i++) {
-			String test = M2MA.genTest((int) (Math.random() * (EQMaxTestLen + 1)), false);
-			
-			if (M2MA.MQ(test) != M2MA.MQArbitrary(hypothesisFinalVector, hypothesisTransitionMatrices, test)) {
-				// found a counter-example
-				// count the number of counter-examples
-				if (EQNumPerformed == EQLimit-1) {
-					numFail++;
-				} else {
-					EQNumPerformed++;
-					M2MA.counterExample = test;
-					return false;
-				}
-			}
+	public static void setSeed(long seed) {
+		EQRandom = new SplittableRandom(seed);
+	}
+	
+	/*
+	 * Approximate equivalence query using a given number of randomly generated tests of some max length, in the
+	 * default session (see StatisticalEquivalenceOracle.java). The tests are drawn from EQRandom, and the answers
+	 * are recorded in M2MA.Hankel. Once the limit is reached and the last EQ fails, the last hypothesis is
+	 * displayed and the program terminates.
+	 */
+	public static boolean EQstatistical(GF2Matrix hypothesisFinalVector, GF2Matrix[] hypothesisTransitionMatrices) throws Exception {
+		StatisticalEquivalenceOracle oracle = new StatisticalEquivalenceOracle(M2MA.alphabet.length, arbitrary::MQConcurrent,
+				EQMaxTestLen, EQNumTests, EQLimit, EQRandom);
+		oracle.numPerformed = EQNumPerformed;
+		oracle.Hankel = () -> M2MA.Hankel;
+		
+		Word counterExample = null;
+		try {
+			counterExample = oracle.counterExample(hypothesisFinalVector, hypothesisTransitionMatrices);
+		} catch (InvalidMQFunctionException e) {
+			M2MA.throwException(null, "Invalid input: invalid membership query function.");
+		}
+		EQNumPerformed = oracle.numPerformed;
+		
+		if (counterExample != null) {
+			M2MA.counterExample = counterExample;
+			return false;
 		}
 		
 		// performs EQlimit equivalence queries
-		if (EQNumPerformed == EQLimit-1 && numFail != 0) {
+		if (oracle.failuresAtLimit != 0) {
 			M2MA.resultFinalVector = hypothesisFinalVector;
 			M2MA.resultTransitionMatrices = hypothesisTransitionMatrices;
 			M2MA.displayResults();
 			
-			System.out.println("Reached equivalence query limit.\nFinal equivalence query failed on " + numFail + " out of " + EQNumTests + " tests.");
+			System.out.println("Reached equivalence query limit.\nFinal equivalence query failed on " + oracle.failuresAtLimit + " out of " + EQNumTests + " tests.");
 			System.exit(0);
 		}
 
 		return true;
 	}
+	
+	// MQ on the target without the Hankel matrix, safe to call from several threads as the MQ functions of NBA.java
+	// and MQ.java only read their automaton
+	public static int MQConcurrent(Word word) {
+		if (NBA.NBAFinalStates != null) {
+			return NBA.MQ(word);
+		}
+		return MQConcurrent(MQMethod, M2MA.alphabet, word);
+	}
+	
+	// MQ on the function of MQ.java given by method, which takes words over alphabet, safe to call from several threads
+	public static int MQConcurrent(Method method, String[] alphabet, Word word) {
+		Object answer;
+		try {
+			answer = method.invoke(null, word.toString(alphabet, " "));
+		} catch (ReflectiveOperationException | IllegalArgumentException e) {
+			throw new InvalidMQFunctionException(e);
+		}
+		if (!(answer instanceof Integer)) {
+			throw new InvalidMQFunctionException(null);
+		}
+		return (Integer) answer;
+	}
+	
+	// the MQ function of MQ.java couldn't be called, threw an exception or didn't return an int
+	public static class InvalidMQFunctionException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public InvalidMQFunctionException(Throwable cause) {
+			super(cause);
+		}
+	}
 }
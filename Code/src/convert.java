@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Scanner;
+import java.util.SplittableRandom;
 
 public class convert {
 	
@@ -25,6 +26,9 @@ public class convert {
 	public static BufferedReader f;
 	public static PrintWriter out;
 	
+	public static int numInstances;
+	public static int prevPercentComplete;
+	
 	public static void main(String[] args) throws Exception {
 		readInput();
 		
@@ -48,7 +52,8 @@ public class convert {
 		M2MA.in = new Scanner(System.in);
 		
 		System.out.println("Enter 1 to convert SUBA, 2 to convert NBA, and 3 to convert DBA.");
-		int automataToConvert = Integer.parseInt(M2MA.in.nextLine());
+		String automataLine = M2MA.in.nextLine();
+		int automataToConvert = Integer.parseInt(automataLine);
 		
 		if (automataToConvert == 1) {
 			inSUBA = true;
@@ -59,7 +64,8 @@ public class convert {
 		}
 		
 		System.out.println("Enter 1 to convert to a M2MA, and 2 to convert to a DFA.");
-		int convertToAutomata = Integer.parseInt(M2MA.in.nextLine());
+		String convertLine = M2MA.in.nextLine();
+		int convertToAutomata = Integer.parseInt(convertLine);
 		
 		if (convertToAutomata == 1) {
 			inM2MA = true;
@@ -68,10 +74,12 @@ public class convert {
 		}
 		
 		System.out.println("Input file name.");
-		f = new BufferedReader(new FileReader(M2MA.in.nextLine()));
+		String inputFile = M2MA.in.nextLine();
+		f = new BufferedReader(new FileReader(inputFile));
 		
 		System.out.println("Output file name.");
-		out = new PrintWriter(new BufferedWriter(new FileWriter(M2MA.in.nextLine())));
+		String outputFile = M2MA.in.nextLine();
+		out = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
 
 		M2MA.in.close();
 		
@@ -82,9 +90,8 @@ public class convert {
 	}
 	
 	public static void convertSUBA() throws Exception {
-		int numSUBA = Integer.parseInt(M2MA.readFile(f));
+		numInstances = Integer.parseInt(M2MA.readFile(f));
 		
-		int prevPercentComplete = 0;
 		System.out.println("0% complete.");
 		
 		if (inM2MA) {
@@ -93,34 +100,52 @@ public class convert {
 			out.println("SUBA size, minimized M2MA size, minimized DFA size");
 		}
 		
-		for (int i = 0; i < numSUBA; i++) {
-			int percentComplete = (int) ((((double) i) / numSUBA) * 100);
-			if (percentComplete >= prevPercentComplete + 5) {
-				System.out.println(percentComplete + "% complete.");
-				prevPercentComplete = percentComplete;
-			}
-			
+		BatchRunner batch = new BatchRunner(numInstances, convert::addResult);
+		for (int i = 0; i < numInstances; i++) {
+			// the SUBAs are read in order, and each is minimized on its own
 			SUBA.SUBAtoUFA();
 			
-			SUBA.UFAtoMod2MA();
+			int states = SUBA.SUBAStates;
+			Minimizer minimizer = new Minimizer(M2MA.alphabet, SUBA.UFAFinalVector(), SUBA.UFATransitionMatrices());
+			minimizer.sizeOnly = inM2MA;
 			
-			M2MA.minimize();
-
-			results[SUBA.SUBAStates][0]++;
-			
-			if (inM2MA) {
-				// add to results the size of the converted minimized M2MA
-				results[SUBA.SUBAStates][1] += M2MA.minSize;
-				out.println(SUBA.SUBAStates + " " + M2MA.minSize);
-			} else {
-				// add to results the size of the converted minimized DFA
-				int dim = M2MA.dimensionMinDFA(true);
-				results[SUBA.SUBAStates][1] += dim;
-				out.println(SUBA.SUBAStates + " " + M2MA.minSize + " " + dim);
-			}
+			batch.submit(i, () -> {
+				minimizer.run();
+				
+				if (inM2MA) {
+					// the size of the converted minimized M2MA
+					return states + " " + minimizer.minSize;
+				}
+				// the size of the converted minimized DFA, searched for with a share of the heap budget
+				int dim = M2MA.dimensionMinDFA(minimizer.minTransitionMatrices, M2MA.dfaStateCap,
+						ReachableStates.defaultHeapBudget() / batch.numWorkers());
+				return states + " " + minimizer.minSize + " " + dim;
+			});
 		}
+		
+		batch.finish();
 		System.out.println("100% complete.\n");
 	}
+	
+	/*
+	 * Adds the result of an instance, "input automaton size, minimized M2MA size[, minimized DFA size]", to results
+	 * and the output file. The result is empty if the generated automaton had no states left.
+	 */
+	public static void addResult(int instance, String result) {
+		if (result.length() != 0) {
+			String[] sizes = result.split(" ");
+			int states = Integer.parseInt(sizes[0]);
+			results[states][0]++;
+			results[states][1] += Integer.parseInt(sizes[sizes.length - 1]);
+			out.println(result);
+		}
+		
+		int percentComplete = (int) ((((double) instance + 1) / numInstances) * 100);
+		if (percentComplete >= prevPercentComplete + 5 && percentComplete < 100) {
+			System.out.println(percentComplete + "% complete.");
+			prevPercentComplete = percentComplete;
+		}
+	}
 
 	public static void convertNBA() throws Exception {
 		arbitrary.EQMaxTestLen = Integer.parseInt(M2MA.readFile(f));	
@@ -131,6 +156,40 @@ public class convert {
 		
 		int numLines = Integer.parseInt(M2MA.readFile(f));	
 		
+		int[][] lines = new int[numLines][];
+		numInstances = 0;
+		for (int i = 0; i < numLines; i++) {
+			String[] line = M2MA.readFile(f).split(" ");
+			lines[i] = new int[line.length];
+			for (int j = 0; j < line.length; j++) {
+				lines[i][j] = Integer.parseInt(line[j]);
+			}
+			numInstances += lines[i][0];
+		}
+		
+		writeHeader();
+		
+		BatchRunner batch = new BatchRunner(numInstances, convert::addResult);
+		int firstInstance = 0;
+		for (int i = 0; i < numLines; i++) {
+			int numNBA = lines[i][0];
+			int numStates = lines[i][1];
+			int numTransitionsToRemove = lines[i][2];
+			int numFinal = lines[i][3];
+			
+			for (int j = 0; j < numNBA; j++) {
+				int instance = firstInstance + j;
+				batch.submit(instance, () -> runNBA(new SplittableRandom(batch.seed(instance)), numStates, numTransitionsToRemove,
+						numFinal, batch.numWorkers()));
+			}
+			firstInstance += numNBA;
+		}
+		
+		batch.finish();
+		System.out.println("100% complete.\n");
+	}
+	
+	public static void writeHeader() {
 		if (inM2MA) {
 			if (inNBA) {
 				out.println("NBA size, minimized M2MA size");
@@ -145,125 +204,113 @@ public class convert {
 			}
 		}
 		
-		int prevPercentComplete = 0;
 		System.out.println("0% complete.");
-		
-		for (int i = 0; i < numLines; i++) {			
-			int percentComplete = (int) ((((double) i) / numLines) * 100);
-			if (percentComplete >= prevPercentComplete + 5) {
-				System.out.println(percentComplete + "% complete.");
-				prevPercentComplete = percentComplete;
-			}
-			
-			String[] line = M2MA.readFile(f).split(" ");
-			int numNBA = Integer.parseInt(line[0]);
-			int numStates = Integer.parseInt(line[1]);
-			int numTransitionsToRemove = Integer.parseInt(line[2]);
-			int numFinal = Integer.parseInt(line[3]);
-			
-			runNBA(numNBA, numStates, numTransitionsToRemove, numFinal);
-		}
-		System.out.println("100% complete.\n");
 	}
 	
+	/*
+	 * Generates an automaton with the given random generator and converts it, in objects of its own, so several
+	 * automata can be converted at once (numWorkers is the number of them, which share the heap budget of the DFA
+	 * search). Returns the result for addResult.
+	 */
 	@SuppressWarnings("unchecked")
-	public static void runNBA(int numTimes, int numStates, int numTransitionsToRemove, int numFinalStates) throws Exception {
-		for (int i = 0; i < numTimes; i++) {
-			arbitrary.EQNumPerformed = 0;
+	public static String runNBA(SplittableRandom random, int numStates, int numTransitionsToRemove, int numFinalStates, int numWorkers) throws Exception {
+		int numLetters = M2MA.alphabet.length - 1;
+		
+		ArrayList<int[]>[] tempTransitions = new ArrayList[numStates + 1];
+		ArrayList<int[]>[] reverseTempTransitions = new ArrayList[numStates + 1];
+		for (int j = 1; j <= numStates; j++) {
+			tempTransitions[j] = new ArrayList<int[]>();
+			reverseTempTransitions[j] = new ArrayList<int[]>();
+		}
+		
+		if (inNBA) {
+			NBAtransitions(random, numStates, numLetters, numTransitionsToRemove, tempTransitions, reverseTempTransitions);
+		} else {
+			DBAtransitions(random, numStates, numLetters, numTransitionsToRemove, tempTransitions, reverseTempTransitions);
+		}
+		
+		// find all reachable states from state 1
+		HashSet<Integer> reachableStates = new HashSet<Integer>();
+		reachable(1, tempTransitions, reachableStates);
+		
+		HashSet<Integer> tempFinalStates = new HashSet<Integer>();
+		finalStates(random, reachableStates, numFinalStates, tempFinalStates);
+		
+		// Find all the reachable states from every final state, reverse-deterministically.
+		// If a final state can't reach itself, remove its final property.
+		// If a final state reaches itself, add all the reachable states to finalReachableStates.
+		HashSet<Integer> finalReachableStates = new HashSet<Integer>();
+		HashSet<Integer> finalFinalStates = new HashSet<Integer>();
+		
+		for (int finalState : tempFinalStates) {
+			HashSet<Integer> tempFinalReachableStates = new HashSet<Integer>();
 			
-			ArrayList<int[]>[] tempTransitions = new ArrayList[numStates + 1];
-			ArrayList<int[]>[] reverseTempTransitions = new ArrayList[numStates + 1];
-			for (int j = 1; j <= numStates; j++) {
-				tempTransitions[j] = new ArrayList<int[]>();
-				reverseTempTransitions[j] = new ArrayList<int[]>();
-			}
+			finalReachable(true, false, finalState, finalState, finalReachableStates, tempFinalReachableStates, reachableStates, reverseTempTransitions);
 			
-			if (inNBA) {
-				NBAtransitions(numStates, numTransitionsToRemove, tempTransitions, reverseTempTransitions);
-			} else {
-				DBAtransitions(numStates, numTransitionsToRemove, tempTransitions, reverseTempTransitions);
+			if (tempFinalReachableStates.contains(finalState)) {
+				finalFinalStates.add(finalState);
 			}
-			
-			// find all reachable states from state 1
-			HashSet<Integer> reachableStates = new HashSet<Integer>();
-			reachable(1, tempTransitions, reachableStates);
-			
-			HashSet<Integer> tempFinalStates = new HashSet<Integer>();
-			finalStates(reachableStates, numFinalStates, tempFinalStates);
-			
-			// Find all the reachable states from every final state, reverse-deterministically.
-			// If a final state can't reach itself, remove its final property.
-			// If a final state reaches itself, add all the reachable states to finalReachableStates.
-			HashSet<Integer> finalReachableStates = new HashSet<Integer>();
-			HashSet<Integer> finalFinalStates = new HashSet<Integer>();
-			
-			for (int finalState : tempFinalStates) {
-				HashSet<Integer> tempFinalReachableStates = new HashSet<Integer>();
-				
-				finalReachable(true, false, finalState, finalState, finalReachableStates, tempFinalReachableStates, reachableStates, reverseTempTransitions);
-				
-				if (tempFinalReachableStates.contains(finalState)) {
-					finalFinalStates.add(finalState);
-				}
-			}			
-			
-			if (finalReachableStates.size() != 0) {
-				// construct the NBA
-				NBA.NBAStates = finalReachableStates.size();
-				
-				HashMap<Integer, Integer> tempToRealState = new HashMap<Integer, Integer>();
-				boolean[] tempStatesFound = new boolean[numStates + 1];
-				
-				for (int state : finalReachableStates) {
-					tempStatesFound[state] = true;
-				}
-				
-				int count = 1;
-				for (int j = 1; j <= numStates; j++) {
-					if (tempStatesFound[j]) {
-						tempToRealState.put(j, count);
-						count++;
-					}
-				}
-				
-				NBA.NBAFinalStates = new boolean[NBA.NBAStates + 1];
-				for (int state : finalFinalStates) {
-					NBA.NBAFinalStates[tempToRealState.get(state)] = true;
-				}
-				
-				NBA.NBATransitions = new ArrayList[NBA.NBAStates + 1][M2MA.alphabet.length - 1];
-				for (int j = 1; j <= NBA.NBAStates; j++) {
-					for (int k = 0; k < M2MA.alphabet.length - 1; k++) {
-						NBA.NBATransitions[j][k] = new ArrayList<Integer>();
-					}
-				}
-				
-				for (int state1 = 1; state1 <= numStates; state1++) {
-					if (finalReachableStates.contains(state1)) {
-						for (int[] transition : tempTransitions[state1]) {
-							if (finalReachableStates.contains(transition[1])) {
-								NBA.NBATransitions[tempToRealState.get(state1)][transition[0]].add(tempToRealState.get(transition[1]));
-							}
-						}
+		}			
+		
+		if (finalReachableStates.size() == 0) {
+			return "";
+		}
+		
+		// construct the NBA
+		int NBAStates = finalReachableStates.size();
+		
+		HashMap<Integer, Integer> tempToRealState = new HashMap<Integer, Integer>();
+		boolean[] tempStatesFound = new boolean[numStates + 1];
+		
+		for (int state : finalReachableStates) {
+			tempStatesFound[state] = true;
+		}
+		
+		int count = 1;
+		for (int j = 1; j <= numStates; j++) {
+			if (tempStatesFound[j]) {
+				tempToRealState.put(j, count);
+				count++;
+			}
+		}
+		
+		boolean[] NBAFinalStates = new boolean[NBAStates + 1];
+		for (int state : finalFinalStates) {
+			NBAFinalStates[tempToRealState.get(state)] = true;
+		}
+		
+		ArrayList<Integer>[][] NBATransitions = new ArrayList[NBAStates + 1][numLetters];
+		for (int j = 1; j <= NBAStates; j++) {
+			for (int k = 0; k < numLetters; k++) {
+				NBATransitions[j][k] = new ArrayList<Integer>();
+			}
+		}
+		
+		for (int state1 = 1; state1 <= numStates; state1++) {
+			if (finalReachableStates.contains(state1)) {
+				for (int[] transition : tempTransitions[state1]) {
+					if (finalReachableStates.contains(transition[1])) {
+						NBATransitions[tempToRealState.get(state1)][transition[0]].add(tempToRealState.get(transition[1]));
 					}
 				}
-				
-				M2MA.Hankel = null;
-				M2MA.learn();
-				
-				results[NBA.NBAStates][0]++;
-				if (inM2MA) {
-					// add to results the size of the converted minimized M2MA
-					results[NBA.NBAStates][1] += M2MA.learnedSize;
-					out.println(NBA.NBAStates + " " + M2MA.learnedSize);
-				} else {
-					// add to results the size of the converted minimized DFA
-					int dim = M2MA.dimensionMinDFA(false);
-					results[NBA.NBAStates][1] += dim;
-					out.println(NBA.NBAStates + " " + M2MA.learnedSize + " " + dim);
-				}
 			}
 		}
+		
+		// learn the NBA in a session of its own, with EQ tests drawn from the automaton's generator
+		NBASimulator simulator = new NBASimulator(NBAStates, NBATransitions, NBAFinalStates);
+		int dollar = M2MA.letterToIndex.get("$");
+		LearnerSession session = LearnerSession.forTarget(M2MA.alphabet, w -> NBA.MQ(simulator, dollar, w),
+				arbitrary.EQMaxTestLen, arbitrary.EQNumTests, arbitrary.EQLimit, random.nextLong());
+		session.learn();
+		
+		if (inM2MA) {
+			// the size of the converted minimized M2MA
+			return NBAStates + " " + session.learnedSize;
+		}
+		// the size of the converted minimized DFA, searched for with a share of the heap budget
+		int dim = M2MA.dimensionMinDFA(session.resultTransitionMatrices, M2MA.dfaStateCap,
+				ReachableStates.defaultHeapBudget() / numWorkers);
+		return NBAStates + " " + session.learnedSize + " " + dim;
 	}
 	
 	// find the states reachable from startState, checking to see if startState is reachable from itself upon some positive number of transitions
@@ -293,13 +340,13 @@ public class convert {
 	
 	// generate the transitions of the NBA
 	// begin with a complete NBA and then randomly remove some given number of transitions
-	public static void NBAtransitions(int numStates, int numTransitionsToRemove, ArrayList<int[]>[] tempTransitions, ArrayList<int[]>[] reverseTempTransitions) {
-		boolean[][][] unusedTransitions = new boolean[numStates + 1][M2MA.alphabet.length - 1][numStates + 1];
+	public static void NBAtransitions(SplittableRandom random, int numStates, int numLetters, int numTransitionsToRemove, ArrayList<int[]>[] tempTransitions, ArrayList<int[]>[] reverseTempTransitions) {
+		boolean[][][] unusedTransitions = new boolean[numStates + 1][numLetters][numStates + 1];
 		
 		for (int i = 0; i < numTransitionsToRemove; i++) {
-			int state1 = (int) (Math.random() * numStates) + 1;
-			int letter = (int) (Math.random() * (M2MA.alphabet.length - 1));
-			int state2 = (int) (Math.random() * numStates) + 1;
+			int state1 = random.nextInt(numStates) + 1;
+			int letter = random.nextInt(numLetters);
+			int state2 = random.nextInt(numStates) + 1;
 			
 			if (!unusedTransitions[state1][letter][state2]) {	
 				unusedTransitions[state1][letter][state2] = true;
@@ -307,7 +354,7 @@ public class convert {
 		}
 		
 		for (int state1 = 1; state1 <= numStates; state1++) {
-			for (int letter = 0; letter < M2MA.alphabet.length - 1; letter++) {
+			for (int letter = 0; letter < numLetters; letter++) {
 				for (int state2 = 1; state2 <= numStates; state2++) {
 					if (!unusedTransitions[state1][letter][state2]) {
 						int[] transition = new int[2];
@@ -327,12 +374,12 @@ public class convert {
 	
 	// generate the transitions of the DBA
 	// begin with a complete DBA and then randomly remove some given number of transitions
-	public static void DBAtransitions(int numStates, int numTransitionsToRemove, ArrayList<int[]>[] tempTransitions, ArrayList<int[]>[] reverseTempTransitions) {
-		boolean[][] unusedTransitions = new boolean[numStates + 1][M2MA.alphabet.length - 1];
+	public static void DBAtransitions(SplittableRandom random, int numStates, int numLetters, int numTransitionsToRemove, ArrayList<int[]>[] tempTransitions, ArrayList<int[]>[] reverseTempTransitions) {
+		boolean[][] unusedTransitions = new boolean[numStates + 1][numLetters];
 		
 		for (int i = 0; i < numTransitionsToRemove; i++) {
-			int state1 = (int) (Math.random() * numStates) + 1;
-			int letter = (int) (Math.random() * (M2MA.alphabet.length - 1));
+			int state1 = random.nextInt(numStates) + 1;
+			int letter = random.nextInt(numLetters);
 			
 			if (!unusedTransitions[state1][letter]) {
 				unusedTransitions[state1][letter] = true;
@@ -340,9 +387,9 @@ public class convert {
 		}
 		
 		for (int state1 = 1; state1 <= numStates; state1++) {
-			for (int letter = 0; letter < M2MA.alphabet.length - 1; letter++) {
+			for (int letter = 0; letter < numLetters; letter++) {
 				if (!unusedTransitions[state1][letter]) {
-					int state2 = (int) (Math.random() * numStates) + 1;
+					int state2 = random.nextInt(numStates) + 1;
 					
 					int[] transition = new int[2];
 					transition[0] = letter;
@@ -370,13 +417,13 @@ public class convert {
 	}
 	
 	// randomly choose numFinalStates states out of the set of reachableStates to be final 
-	public static void finalStates(HashSet<Integer> reachableStates, int numFinalStates, HashSet<Integer> tempFinalStates) {	
+	public static void finalStates(SplittableRandom random, HashSet<Integer> reachableStates, int numFinalStates, HashSet<Integer> tempFinalStates) {	
 		int size = reachableStates.size();
 		numFinalStates = Math.min(size, numFinalStates);
 		HashSet<Integer> randomSet = new HashSet<Integer>();
 		
 		for (int i = 0; i < numFinalStates; i++) {
-			int randomNum = (int) (Math.random() * size);
+			int randomNum = random.nextInt(size);
 			
 			int count = 0;
 			while (count < size) {
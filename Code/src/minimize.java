@@ -31,7 +31,7 @@ public class minimize {
 		
 		M2MA.in.close();
 		
-		if (M2MA.finalCheck(25, 1000, true)) {
+		if (M2MA.finalCheck(true)) {
 			displayResults();
 		} else {
 			throw new Exception("Algorithm failed: failed final check.");
@@ -1,236 +1,224 @@
 /*
- *  This is a modified version of LUDecomposition.java found in the Apache Commons Math 3 package.
- *  The program performs LU decomposition, solves matrix equations, and computes inverses in the field modulo 2.
+ *  The program solves matrix equations and computes inverses in the field modulo 2.
+ *  A square matrix is reduced once by Gauss-Jordan elimination on bit-packed rows (see GF2Matrix.java),
+ *  recording its rank and, when it is non-singular, its inverse. Every right-hand side is then solved
+ *  by a single multiplication with the inverse, so one factorization serves all letters of the alphabet.
+ *  Matrices of dimension at least GF2Matrix.M4RI_THRESHOLD are reduced with the Method of Four Russians
+ *  (M4RI): pivots are found GF2Matrix.M4RI_BITS columns at a time, and those columns are then cleared
+ *  from every other row with a single lookup in a table of all sums of the new pivot rows.
  */
 
-import org.apache.commons.math3.exception.DimensionMismatchException;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.DecompositionSolver;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.NonSquareMatrixException;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.linear.SingularMatrixException;
-import org.apache.commons.math3.util.FastMath;
-
 public class solver {
 
-    // Entries of LU decomposition.
-    private final double[][] lu;
-    // Pivot permutation associated with LU decomposition.
-    private final int[] pivot;
-    // Parity of the permutation associated with the LU decomposition.
-    private boolean even;
-    // Singularity indicator.
-    private boolean singular;
+    // Dimension of the decomposed matrix.
+    private final int m;
+    // Rank of the decomposed matrix.
+    private int rank;
+    // Inverse of the decomposed matrix, or null if the matrix is singular.
+    private GF2Matrix inverse;
 
     /*
-     * Calculates the LU-decomposition of the given matrix.
-     * @param matrix The matrix to decompose.
-     * @throws NonSquareMatrixException if matrix is not square
+     * Reduces the given matrix to reduced row echelon form, applying the same row operations to
+     * the identity matrix. If every column has a pivot, the identity has become the inverse.
+     * @param matrix The square matrix to decompose (left unchanged).
+     * @throws IllegalArgumentException if matrix is not square
      */
-    public solver(RealMatrix matrix) {
-    	if (!matrix.isSquare()) {
-            throw new NonSquareMatrixException(matrix.getRowDimension(), matrix.getColumnDimension());
-    	}
-
-        final int m = matrix.getColumnDimension();
-        lu = matrix.getData();
-        pivot = new int[m];
+    public solver(GF2Matrix matrix) {
+        if (matrix.getRowDimension() != matrix.getColumnDimension()) {
+            throw new IllegalArgumentException("Non-square matrix: " + matrix.getRowDimension() + "x" + matrix.getColumnDimension());
+        }
 
-        // Initialize permutation array and parity
-        for (int row=0; row<m; row++) {
-            pivot[row] = row;
+        m = matrix.getRowDimension();
+        if (m >= GF2Matrix.M4RI_THRESHOLD) {
+            reduceM4RI(matrix);
+        } else {
+            reduce(matrix);
         }
-        even = true;
-        singular = false;
+    }
+
+    // Gauss-Jordan elimination one column at a time
+    private void reduce(GF2Matrix matrix) {
+        GF2Matrix reduced = matrix.copy();
+        GF2Matrix augmented = GF2Matrix.identity(m);
 
-        // Loop over columns
+        // Loop over columns, the next pivot is placed in row rank
+        rank = 0;
         for (int col=0; col<m; col++) {
-            // upper
-            for (int row=0; row<col; row++) {
-                final double[] luRow = lu[row];
-                double sum = luRow[col];
-                for (int i=0; i<row; i++) {
-                    sum -= luRow[i] * lu[i][col];
+            // find a row with a 1 in this column
+            int pivot = -1;
+            for (int row=rank; row<m; row++) {
+                if (reduced.get(row, col) == 1) {
+                    pivot = row;
+                    break;
                 }
-                sum = M2MA.mod2(sum);
-                luRow[col] = sum;
             }
 
-            // lower
-            // permutation row
-            int max = col;
-            double largest = Double.NEGATIVE_INFINITY;
-            for (int row=col; row<m; row++) {
-                final double[] luRow = lu[row];
-                double sum = luRow[col];
-                for (int i=0; i<col; i++) {
-                    sum -= luRow[i] * lu[i][col];
-                }
-                sum = M2MA.mod2(sum);
-                luRow[col] = sum;
-
-                // maintain best permutation choice
-                if (sum > largest) {
-                    largest = FastMath.abs(sum);
-                    max = row;
-                }
+            // no pivot in this column, so the matrix is singular
+            if (pivot == -1) {
+                continue;
             }
 
-            // Singularity check
-            if (lu[max][col] == 0) {
-                singular = true;
-                return;
+            if (pivot != rank) {
+                reduced.swapRows(pivot, rank);
+                augmented.swapRows(pivot, rank);
             }
 
-            // Pivot if necessary
-            if (max != col) {
-                double tmp = 0;
-                final double[] luMax = lu[max];
-                final double[] luCol = lu[col];
-                for (int i=0; i<m; i++) {
-                    tmp = luMax[i];
-                    luMax[i] = luCol[i];
-                    luCol[i] = tmp;
+            // eliminate the column from every other row
+            for (int row=0; row<m; row++) {
+                if (row != rank && reduced.get(row, col) == 1) {
+                    reduced.addRow(rank, row);
+                    augmented.addRow(rank, row);
                 }
-                int temp = pivot[max];
-                pivot[max] = pivot[col];
-                pivot[col] = temp;
-                even = !even;
             }
+
+            rank++;
         }
-    }
 
-    /*
-     * Get a solver for finding the A &times; X = B solution in exact linear sense.
-     * @return a solver
-     */
-    public DecompositionSolver getSolver() {
-        return new Solver(lu, pivot, singular);
+        inverse = (rank == m) ? augmented : null;
     }
 
-    // Specialized solver
-    private static class Solver implements DecompositionSolver {
+    // Gauss-Jordan elimination M4RI_BITS columns at a time on the augmented matrix [matrix | identity]
+    private void reduceM4RI(GF2Matrix matrix) {
+        final int k = GF2Matrix.M4RI_BITS;
+        final int words = GF2Matrix.words(m);
 
-    	// Entries of LU decomposition
-        private final double[][] lu;
+        // the identity starts on a word boundary, so that the inverse can be copied out word by word
+        final int offset = words << 6;
+        GF2Matrix augmented = new GF2Matrix(m, offset + m);
+        for (int row=0; row<m; row++) {
+            System.arraycopy(matrix.getRow(row), 0, augmented.getRow(row), 0, words);
+            augmented.set(row, offset + row);
+        }
 
-        // Pivot permutation associated with LU decomposition
-        private final int[] pivot;
+        long[][] table = new long[1 << k][GF2Matrix.words(offset + m)];
+        int[] pivotCols = new int[k];
+
+        rank = 0;
+        for (int first=0; first<m; first+=k) {
+            int last = Math.min(first + k, m);
+
+            // find the pivots of this block of columns, they are placed in rows rank, ..., rank+numPivots-1
+            int numPivots = 0;
+            for (int col=first; col<last; col++) {
+                int pivot = -1;
+                for (int row=rank+numPivots; row<m; row++) {
+                    // reduce the candidate by the pivots already found in this block
+                    for (int j=0; j<numPivots; j++) {
+                        if (augmented.get(row, pivotCols[j]) == 1) {
+                            augmented.addRow(rank + j, row);
+                        }
+                    }
+                    if (augmented.get(row, col) == 1) {
+                        pivot = row;
+                        break;
+                    }
+                }
 
-        // Singularity indicator
-        private final boolean singular;
+                // no pivot in this column, so the matrix is singular
+                if (pivot == -1) {
+                    continue;
+                }
 
-        /*
-         * Build a solver from decomposed matrix.
-         * @param lu entries of LU decomposition
-         * @param pivot pivot permutation associated with LU decomposition
-         * @param singular singularity indicator
-         */
-        private Solver(final double[][] lu, final int[] pivot, final boolean singular) {
-            this.lu       = lu;
-            this.pivot    = pivot;
-            this.singular = singular;
-        }
+                if (pivot != rank + numPivots) {
+                    augmented.swapRows(pivot, rank + numPivots);
+                }
 
-        public boolean isNonSingular() {
-            return !singular;
-        }
+                // keep the pivot rows of the block reduced with respect to each other
+                for (int j=0; j<numPivots; j++) {
+                    if (augmented.get(rank + j, col) == 1) {
+                        augmented.addRow(rank + numPivots, rank + j);
+                    }
+                }
 
-        public RealVector solve(RealVector b) {
-            final int m = pivot.length;
-            if (b.getDimension() != m) {
-                throw new DimensionMismatchException(b.getDimension(), m);
-            }
-            if (singular) {
-                throw new SingularMatrixException();
+                pivotCols[numPivots++] = col;
             }
 
-            final double[] bp = new double[m];
-
-            // Apply permutations to b
-            for (int row=0; row<m; row++) {
-                bp[row] = b.getEntry(pivot[row]);
+            if (numPivots == 0) {
+                continue;
             }
 
-            // Solve LY = b
-            for (int col=0; col<m; col++) {
-                final double bpCol = bp[col];
-                for (int i=col+1; i<m; i++) {
-                    bp[i] = M2MA.mod2(bp[i] - bpCol * lu[i][col]);
+            // clear the pivot columns from every other row with one table lookup per row
+            augmented.fillCombinationTable(rank, numPivots, table);
+            for (int row=0; row<m; row++) {
+                if (row >= rank && row < rank + numPivots) {
+                    continue;
                 }
-            }
-
-            // Solve UX = Y
-            for (int col=m-1; col>=0; col--) {
-                bp[col] /= lu[col][col];
-                final double bpCol = bp[col];
-                for (int i=0; i<col; i++) {
-                	bp[i] = M2MA.mod2(bp[i] - bpCol * lu[i][col]);
+                int bits = 0;
+                for (int j=0; j<numPivots; j++) {
+                    bits |= augmented.get(row, pivotCols[j]) << j;
+                }
+                if (bits != 0) {
+                    GF2Matrix.xorInto(augmented.getRow(row), table[bits]);
                 }
             }
 
-            return new ArrayRealVector(bp, false);
+            rank += numPivots;
         }
 
-        public RealMatrix solve(RealMatrix b) {
-            final int m = pivot.length;
-            if (b.getRowDimension() != m) {
-                throw new DimensionMismatchException(b.getRowDimension(), m);
-            }
-            if (singular) {
-                throw new SingularMatrixException();
-            }
-
-            final int nColB = b.getColumnDimension();
-
-            // Apply permutations to b
-            final double[][] bp = new double[m][nColB];
+        if (rank == m) {
+            // the left half is now the identity and the right half the inverse
+            inverse = new GF2Matrix(m, m);
             for (int row=0; row<m; row++) {
-                final double[] bpRow = bp[row];
-                final int pRow = pivot[row];
-                for (int col=0; col<nColB; col++) {
-                    bpRow[col] = b.getEntry(pRow, col);
-                }
+                System.arraycopy(augmented.getRow(row), words, inverse.getRow(row), 0, words);
             }
+        } else {
+            inverse = null;
+        }
+    }
 
-            // Solve LY = b
-            for (int col=0; col<m; col++) {
-                final double[] bpCol = bp[col];
-                for (int i=col+1; i<m; i++) {
-                    final double[] bpI = bp[i];
-                    final double luICol = lu[i][col];
-                    for (int j=0; j<nColB; j++) {
-                        bpI[j] = M2MA.mod2(bpI[j] - bpCol[j] * luICol);
-                    }
-                }
-            }
+    public int getRank() {
+        return rank;
+    }
 
-            // Solve UX = Y
-            for (int col=m-1; col>=0; col--) {
-                final double[] bpCol = bp[col];
-                for (int i=0; i<col; i++) {
-                    final double[] bpI = bp[i];
-                    final double luICol = lu[i][col];
-                    for (int j=0; j<nColB; j++) {
-                    	bpI[j] = M2MA.mod2(bpI[j] - bpCol[j] * luICol);
-                    }
-                }
-            }
+    public boolean isNonSingular() {
+        return inverse != null;
+    }
 
-            return new Array2DRowRealMatrix(bp, false);
+    /*
+     * @return the inverse of the decomposed matrix, or null if it is singular
+     */
+    public GF2Matrix getInverse() {
+        return inverse;
+    }
+
+    /*
+     * Solves A × X = B for X.
+     * @return X = A^-1 × B, or null if A is singular
+     */
+    public GF2Matrix solve(GF2Matrix b) {
+        if (b.getRowDimension() != m) {
+            throw new IllegalArgumentException("Dimension mismatch: " + b.getRowDimension() + " != " + m);
         }
+        if (inverse == null) {
+            return null;
+        }
+        return inverse.multiply(b);
+    }
 
-        /*
-         * Get the inverse of the decomposed matrix.
-         * @return the inverse matrix.
-         * @throws SingularMatrixException if the decomposed matrix is singular.
-         */
-        public RealMatrix getInverse() {
-            return solve(MatrixUtils.createRealIdentityMatrix(pivot.length));
+    /*
+     * Solves X × A = B for X, i.e. expresses every row of B as a combination of the rows of A.
+     * @return X = B × A^-1, or null if A is singular
+     */
+    public GF2Matrix solveLeft(GF2Matrix b) {
+        if (b.getColumnDimension() != m) {
+            throw new IllegalArgumentException("Dimension mismatch: " + b.getColumnDimension() + " != " + m);
         }
+        if (inverse == null) {
+            return null;
+        }
+        return b.multiply(inverse);
     }
 
+    /*
+     * Solves A × x = b for a single packed column vector b.
+     * @return x, or null if A is singular
+     */
+    public long[] solve(long[] b) {
+        if (inverse == null) {
+            return null;
+        }
+        long[] x = new long[GF2Matrix.words(m)];
+        inverse.timesVector(b, x);
+        return x;
+    }
 }